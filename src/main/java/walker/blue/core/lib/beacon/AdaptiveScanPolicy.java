@@ -0,0 +1,245 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * Policy deciding when the window of a scan can end. The window ends once
+ * the RSSI estimates of the strongest beacons have converged, but never
+ * before the minimum window time and never after the maximum window time.
+ * An estimate is considered converged once the standard error of the mean
+ * RSSI of the beacon falls below the configured threshold.
+ *
+ * Running statistics are held in arrays indexed by the slot of each beacon
+ * in the BeaconRegistry, so adding a sample takes constant time and does not
+ * allocate. Checking the window does not allocate either, but once the min
+ * window time has passed it finds the strongest beacons again each time,
+ * which takes time linear in the number of beacons seen in the window times
+ * the number of strongest beacons. Not thread safe
+ */
+public class AdaptiveScanPolicy {
+
+    /**
+     * Default min time (in ms) a window lasts
+     */
+    public static final int DEFAULT_MIN_WINDOW = 300;
+    /**
+     * Default max time (in ms) a window lasts
+     */
+    public static final int DEFAULT_MAX_WINDOW = 3000;
+    /**
+     * Default number of strongest beacons which need to converge
+     */
+    public static final int DEFAULT_STRONGEST_BEACONS = 3;
+    /**
+     * Default min number of samples needed for an estimate to converge
+     */
+    public static final int DEFAULT_MIN_SAMPLES = 3;
+    /**
+     * Default max standard error (in dBm) of a converged estimate
+     */
+    public static final double DEFAULT_MAX_STANDARD_ERROR = 1.5;
+
+    /**
+     * Min time (in ms) a window lasts
+     */
+    private final int minWindow;
+    /**
+     * Max time (in ms) a window lasts
+     */
+    private final int maxWindow;
+    /**
+     * Number of strongest beacons which need to converge
+     */
+    private final int strongestBeacons;
+    /**
+     * Min number of samples needed for an estimate to converge
+     */
+    private final int minSamples;
+    /**
+     * Max variance of the mean of a converged estimate
+     */
+    private final double maxVarianceOfMean;
+    /**
+     * Number of samples of each beacon in the current window
+     */
+    private final int[] counts;
+    /**
+     * Mean RSSI of each beacon in the current window
+     */
+    private final double[] means;
+    /**
+     * Sum of the squared differences from the mean of each beacon
+     */
+    private final double[] squaredDiffs;
+    /**
+     * Slots of the beacons seen in the current window
+     */
+    private final int[] seenSlots;
+    /**
+     * Number of beacons seen in the current window
+     */
+    private int numSeen;
+    /**
+     * Slots of the strongest beacons, strongest first. Reused by every check
+     */
+    private final int[] strongestSlots;
+
+    /**
+     * Constructor. Creates a policy with the default values for the given
+     * number of beacon slots
+     *
+     * @param capacity Number of slots of the registry being used
+     */
+    public AdaptiveScanPolicy(final int capacity) {
+        this(capacity,
+                DEFAULT_MIN_WINDOW,
+                DEFAULT_MAX_WINDOW,
+                DEFAULT_STRONGEST_BEACONS,
+                DEFAULT_MIN_SAMPLES,
+                DEFAULT_MAX_STANDARD_ERROR);
+    }
+
+    /**
+     * Constructor. Creates a policy using the given values
+     *
+     * @param capacity Number of slots of the registry being used
+     * @param minWindow Min time (in ms) a window lasts
+     * @param maxWindow Max time (in ms) a window lasts
+     * @param strongestBeacons Number of strongest beacons which need to
+     *                         converge
+     * @param minSamples Min number of samples needed for an estimate to
+     *                   converge
+     * @param maxStandardError Max standard error (in dBm) of a converged
+     *                         estimate
+     */
+    public AdaptiveScanPolicy(final int capacity,
+                              final int minWindow,
+                              final int maxWindow,
+                              final int strongestBeacons,
+                              final int minSamples,
+                              final double maxStandardError) {
+        if (minWindow > maxWindow) {
+            throw new IllegalArgumentException("minWindow > maxWindow");
+        }
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.strongestBeacons = Math.max(1, strongestBeacons);
+        this.minSamples = Math.max(2, minSamples);
+        this.maxVarianceOfMean = maxStandardError * maxStandardError;
+        this.counts = new int[capacity];
+        this.means = new double[capacity];
+        this.squaredDiffs = new double[capacity];
+        this.seenSlots = new int[capacity];
+        this.numSeen = 0;
+        this.strongestSlots = new int[this.strongestBeacons];
+    }
+
+    /**
+     * Clears the statistics of the previous window
+     */
+    public void reset() {
+        for (int i = 0; i < this.numSeen; i++) {
+            final int slot = this.seenSlots[i];
+            this.counts[slot] = 0;
+            this.means[slot] = 0;
+            this.squaredDiffs[slot] = 0;
+        }
+        this.numSeen = 0;
+    }
+
+    /**
+     * Adds a sample to the running statistics of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @param rssi RSSI value of the sample
+     */
+    public void addSample(final int slot, final int rssi) {
+        if (this.counts[slot] == 0) {
+            this.seenSlots[this.numSeen++] = slot;
+        }
+        final int count = ++this.counts[slot];
+        final double delta = rssi - this.means[slot];
+        this.means[slot] += delta / count;
+        this.squaredDiffs[slot] += delta * (rssi - this.means[slot]);
+    }
+
+    /**
+     * Checks whether the window can end
+     *
+     * @param elapsed Time (in ms) since the window started
+     * @return boolean indicating whether the window can end
+     */
+    public boolean isWindowOver(final long elapsed) {
+        if (elapsed >= this.maxWindow) {
+            return true;
+        }
+        return elapsed >= this.minWindow && this.isConverged();
+    }
+
+    /**
+     * Checks whether the estimates of the strongest beacons seen in the
+     * window have converged
+     *
+     * @return boolean indicating whether the estimates have converged
+     */
+    public boolean isConverged() {
+        if (this.numSeen == 0) {
+            return false;
+        }
+        final int numStrongest = this.findStrongest();
+        for (int i = 0; i < numStrongest; i++) {
+            final int slot = this.strongestSlots[i];
+            final int count = this.counts[slot];
+            if (count < this.minSamples) {
+                return false;
+            }
+            final double varianceOfMean = this.squaredDiffs[slot] / (count - 1) / count;
+            if (varianceOfMean > this.maxVarianceOfMean) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the min time a window lasts
+     *
+     * @return Min time (in ms) a window lasts
+     */
+    public int getMinWindow() {
+        return this.minWindow;
+    }
+
+    /**
+     * Getter for the max time a window lasts
+     *
+     * @return Max time (in ms) a window lasts
+     */
+    public int getMaxWindow() {
+        return this.maxWindow;
+    }
+
+    /**
+     * Places the slots of the strongest beacons in strongestSlots
+     *
+     * @return Number of slots placed
+     */
+    private int findStrongest() {
+        int found = 0;
+        for (int i = 0; i < this.numSeen; i++) {
+            final int slot = this.seenSlots[i];
+            int position = found;
+            while (position > 0 && this.means[this.strongestSlots[position - 1]] < this.means[slot]) {
+                if (position < this.strongestBeacons) {
+                    this.strongestSlots[position] = this.strongestSlots[position - 1];
+                }
+                position--;
+            }
+            if (position < this.strongestBeacons) {
+                this.strongestSlots[position] = slot;
+                if (found < this.strongestBeacons) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+}
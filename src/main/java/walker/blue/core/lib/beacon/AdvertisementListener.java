@@ -0,0 +1,28 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * Listener receiving the beacon advertisements found by an
+ * AdvertisementSource
+ */
+public interface AdvertisementListener {
+
+    /**
+     * Called for every beacon advertisement found. Implementations should
+     * return quickly and avoid allocating, since this is called for every
+     * packet received
+     *
+     * @param uuidMost most significant bits of the UUID of the beacon
+     * @param uuidLeast least significant bits of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @param rssi RSSI value measured for the advertisement
+     * @param time Time (in ms) at which the advertisement was received,
+     *             according to the clock of the source
+     */
+    void onAdvertisement(long uuidMost, long uuidLeast, int major, int minor, int rssi, long time);
+
+    /**
+     * Called when a scan cycle started using startScanning ends
+     */
+    void onScanCycleEnded();
+}
@@ -0,0 +1,212 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * Reads the beacon fields straight out of the scan record of a BLE
+ * advertisement. None of the methods allocate, so they can be used for every
+ * advertisement received in the scan callback
+ */
+public class AdvertisementParser {
+
+    /**
+     * Value returned when the scan record does not contain beacon data
+     */
+    public static final int NOT_A_BEACON = -1;
+    /**
+     * AD type of the manufacturer specific data structure
+     */
+    private static final int TYPE_MANUFACTURER_DATA = 0xFF;
+    /**
+     * Length of the manufacturer specific data of a beacon, including the
+     * AD type byte
+     */
+    private static final int BEACON_DATA_LENGTH = 0x1A;
+    /**
+     * First byte of the beacon prefix (beacon type)
+     */
+    private static final int BEACON_TYPE = 0x02;
+    /**
+     * Second byte of the beacon prefix (remaining data length)
+     */
+    private static final int BEACON_REMAINING_LENGTH = 0x15;
+    /**
+     * Offset from the AD type to the beacon prefix, skipping the company id
+     */
+    private static final int PREFIX_OFFSET = 3;
+    /**
+     * Offset from the AD type to the UUID
+     */
+    private static final int UUID_OFFSET = 5;
+    /**
+     * Offsets from the start of the UUID to the major and minor
+     */
+    private static final int MAJOR_OFFSET = 16;
+    private static final int MINOR_OFFSET = 18;
+    /**
+     * Digits used when converting the UUID to a string
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Private constructor so class cant be initialized
+     */
+    private AdvertisementParser() {}
+
+    /**
+     * Finds the beacon data within the given scan record
+     *
+     * @param scanRecord Raw scan record of the advertisement
+     * @return offset of the UUID within the scan record or NOT_A_BEACON if
+     *         the record does not contain beacon data
+     */
+    public static int findBeaconData(final byte[] scanRecord) {
+        if (scanRecord == null) {
+            return NOT_A_BEACON;
+        }
+        int index = 0;
+        while (index < scanRecord.length) {
+            final int length = scanRecord[index] & 0xFF;
+            if (length == 0 || index + length >= scanRecord.length) {
+                return NOT_A_BEACON;
+            }
+            final int type = index + 1;
+            if ((scanRecord[type] & 0xFF) == TYPE_MANUFACTURER_DATA &&
+                    length == BEACON_DATA_LENGTH &&
+                    scanRecord[type + PREFIX_OFFSET] == BEACON_TYPE &&
+                    scanRecord[type + PREFIX_OFFSET + 1] == BEACON_REMAINING_LENGTH) {
+                return type + UUID_OFFSET;
+            }
+            index += length + 1;
+        }
+        return NOT_A_BEACON;
+    }
+
+    /**
+     * Reads the most significant 64 bits of the UUID
+     *
+     * @param scanRecord Raw scan record of the advertisement
+     * @param offset offset of the UUID returned by findBeaconData
+     * @return most significant bits of the UUID
+     */
+    public static long getUUIDMostSignificantBits(final byte[] scanRecord, final int offset) {
+        return readLong(scanRecord, offset);
+    }
+
+    /**
+     * Reads the least significant 64 bits of the UUID
+     *
+     * @param scanRecord Raw scan record of the advertisement
+     * @param offset offset of the UUID returned by findBeaconData
+     * @return least significant bits of the UUID
+     */
+    public static long getUUIDLeastSignificantBits(final byte[] scanRecord, final int offset) {
+        return readLong(scanRecord, offset + 8);
+    }
+
+    /**
+     * Reads the major of the beacon
+     *
+     * @param scanRecord Raw scan record of the advertisement
+     * @param offset offset of the UUID returned by findBeaconData
+     * @return major of the beacon
+     */
+    public static int getMajor(final byte[] scanRecord, final int offset) {
+        return readUnsignedShort(scanRecord, offset + MAJOR_OFFSET);
+    }
+
+    /**
+     * Reads the minor of the beacon
+     *
+     * @param scanRecord Raw scan record of the advertisement
+     * @param offset offset of the UUID returned by findBeaconData
+     * @return minor of the beacon
+     */
+    public static int getMinor(final byte[] scanRecord, final int offset) {
+        return readUnsignedShort(scanRecord, offset + MINOR_OFFSET);
+    }
+
+    /**
+     * Converts the given UUID bits into the string format used by the
+     * beacons and the building data (32 lowercase hex digits). Allocates, so
+     * it should only be used when a beacon is seen for the first time
+     *
+     * @param most most significant bits of the UUID
+     * @param least least significant bits of the UUID
+     * @return string representation of the UUID
+     */
+    public static String uuidToString(final long most, final long least) {
+        final char[] chars = new char[32];
+        for (int i = 0; i < 16; i++) {
+            chars[15 - i] = HEX_DIGITS[(int) ((most >>> (4 * i)) & 0xF)];
+            chars[31 - i] = HEX_DIGITS[(int) ((least >>> (4 * i)) & 0xF)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Gets the most significant bits of the UUID in the given string. Dashes
+     * are ignored
+     *
+     * @param uuid string representation of the UUID
+     * @return most significant bits of the UUID
+     * @throws NumberFormatException if the string is not a valid UUID
+     */
+    public static long getUUIDMostSignificantBits(final String uuid) {
+        return parseHexLong(uuid.replace("-", ""), 0);
+    }
+
+    /**
+     * Gets the least significant bits of the UUID in the given string. Dashes
+     * are ignored
+     *
+     * @param uuid string representation of the UUID
+     * @return least significant bits of the UUID
+     * @throws NumberFormatException if the string is not a valid UUID
+     */
+    public static long getUUIDLeastSignificantBits(final String uuid) {
+        return parseHexLong(uuid.replace("-", ""), 16);
+    }
+
+    /**
+     * Parses the 16 hex digits starting at the given index of a 32 digit
+     * UUID string
+     *
+     * @param hex UUID string without dashes
+     * @param start index of the first digit
+     * @return long value of the digits
+     * @throws NumberFormatException if the digits are not valid
+     */
+    private static long parseHexLong(final String hex, final int start) {
+        if (hex.length() != 32) {
+            throw new NumberFormatException(hex);
+        }
+        final long high = Long.parseLong(hex.substring(start, start + 8), 16);
+        final long low = Long.parseLong(hex.substring(start + 8, start + 16), 16);
+        return (high << 32) | low;
+    }
+
+    /**
+     * Reads a big endian long from the given bytes
+     *
+     * @param bytes bytes being read
+     * @param offset offset of the first byte
+     * @return long value
+     */
+    private static long readLong(final byte[] bytes, final int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Reads a big endian unsigned short from the given bytes
+     *
+     * @param bytes bytes being read
+     * @param offset offset of the first byte
+     * @return unsigned short value
+     */
+    private static int readUnsignedShort(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,63 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * Source of beacon advertisements. Besides the advertisements themselves the
+ * source provides the clock used to stamp them, so the same pipeline can be
+ * fed by the radio or by a recorded scan log
+ */
+public interface AdvertisementSource {
+
+    /**
+     * Adds a listener which will receive the advertisements found
+     *
+     * @param listener Listener being added
+     */
+    void addListener(AdvertisementListener listener);
+
+    /**
+     * Removes a listener from the source
+     *
+     * @param listener Listener being removed
+     */
+    void removeListener(AdvertisementListener listener);
+
+    /**
+     * Sets the length of the scan cycles
+     *
+     * @param scanInterval Length (in ms) of each scan cycle
+     */
+    void setScanningInterval(int scanInterval);
+
+    /**
+     * Starts a scan cycle unless one is already in progress. The listeners
+     * are notified when the cycle ends
+     */
+    void startScanning();
+
+    /**
+     * Signals that a consumer is waiting on advertisements which have not
+     * been received yet. Sources driven by the radio ignore it
+     */
+    void acquireDemand();
+
+    /**
+     * Signals that a consumer which called acquireDemand is no longer
+     * waiting. Sources driven by the radio ignore it
+     */
+    void releaseDemand();
+
+    /**
+     * Gets the current time of the source
+     *
+     * @return current time in ms
+     */
+    long currentTimeMillis();
+
+    /**
+     * Blocks until the clock of the source reaches the given time
+     *
+     * @param time Time (in ms) to wait for
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void sleepUntil(long time) throws InterruptedException;
+}
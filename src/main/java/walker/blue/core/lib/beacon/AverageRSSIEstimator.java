@@ -0,0 +1,31 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+
+/**
+ * RSSIEstimator which uses the average of the RSSI values measured for the
+ * beacon during the last scan window
+ */
+public class AverageRSSIEstimator implements RSSIEstimator {
+
+    @Override
+    public double getRSSI(final Beacon beacon) {
+        return beacon.getAverageRSSIValue();
+    }
+
+    @Override
+    public double getRSSIVariance(final Beacon beacon) {
+        final List<Integer> rssiValues = beacon.getMeasuredRSSIValues();
+        if (rssiValues.size() < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double average = beacon.getAverageRSSIValue();
+        double squaredDiffs = 0;
+        for (final int rssi : rssiValues) {
+            squaredDiffs += (rssi - average) * (rssi - average);
+        }
+        return squaredDiffs / (rssiValues.size() - 1);
+    }
+}
@@ -0,0 +1,91 @@
+package walker.blue.core.lib.beacon;
+
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.types.Building;
+
+/**
+ * Filter admitting only the beacons deployed in a building. Used in the scan
+ * callback to drop foreign beacons, such as the ones of neighbouring tenants,
+ * before they are buffered. Lookups take constant time and do not allocate.
+ * The set of admitted beacons never changes once the filter is built, so it
+ * can be read from any thread
+ */
+public class BeaconAdmissionFilter {
+
+    /**
+     * Log Messages
+     */
+    private static final String LOG_INVALID_UUID = "Ignoring beacon with invalid UUID - %s";
+
+    /**
+     * Registry holding the admitted beacons
+     */
+    private final BeaconRegistry admitted;
+    /**
+     * Number of advertisements rejected so far
+     */
+    private final AtomicLong rejectedCount;
+
+    /**
+     * Constructor. Creates a filter admitting the beacons of the given
+     * building
+     *
+     * @param building Building whose beacons are admitted
+     */
+    public BeaconAdmissionFilter(final Building building) {
+        this(building.getBeaconLocationMap().keySet());
+    }
+
+    /**
+     * Constructor. Creates a filter admitting the given beacons
+     *
+     * @param beacons Beacons which are admitted
+     */
+    public BeaconAdmissionFilter(final Collection<Beacon> beacons) {
+        this.admitted = new BeaconRegistry(Math.max(1, beacons.size()),
+                Math.max(BeaconRegistry.DEFAULT_MAX_UUIDS, beacons.size()));
+        this.rejectedCount = new AtomicLong();
+        for (final Beacon beacon : beacons) {
+            try {
+                this.admitted.findOrRegister(AdvertisementParser.getUUIDMostSignificantBits(beacon.getUUID()),
+                        AdvertisementParser.getUUIDLeastSignificantBits(beacon.getUUID()),
+                        beacon.getMajor(),
+                        beacon.getMinor());
+            } catch (final NumberFormatException e) {
+                Log.d(this.getClass().getName(), String.format(LOG_INVALID_UUID, beacon.getUUID()));
+            }
+        }
+    }
+
+    /**
+     * Checks whether the beacon with the given identifiers is admitted,
+     * counting it as rejected if it is not
+     *
+     * @param uuidMost most significant bits of the UUID of the beacon
+     * @param uuidLeast least significant bits of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @return boolean indicating whether the beacon is admitted
+     */
+    public boolean admit(final long uuidMost, final long uuidLeast, final int major, final int minor) {
+        if (this.admitted.find(uuidMost, uuidLeast, major, minor) != BeaconRegistry.NO_SLOT) {
+            return true;
+        }
+        this.rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Getter for the number of advertisements rejected so far
+     *
+     * @return Number of advertisements rejected
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+}
@@ -5,15 +5,37 @@ import java.util.Comparator;
 import walker.blue.beacon.lib.beacon.Beacon;
 
 /**
- * Comparator which compares two beacons based on the average value of the
- * measured rssi value
+ * Comparator which compares two beacons based on their estimated rssi value.
+ * By default the average value of the measured rssi values is used
  */
 public class BeaconComparator implements Comparator<Beacon> {
 
+    /**
+     * Estimator used to get the rssi value of each beacon
+     */
+    private RSSIEstimator rssiEstimator;
+
+    /**
+     * Constructor. Compares the beacons using the average of the measured
+     * rssi values
+     */
+    public BeaconComparator() {
+        this(new AverageRSSIEstimator());
+    }
+
+    /**
+     * Constructor. Compares the beacons using the given estimator
+     *
+     * @param rssiEstimator Estimator used to get the rssi value of each beacon
+     */
+    public BeaconComparator(final RSSIEstimator rssiEstimator) {
+        this.rssiEstimator = rssiEstimator;
+    }
+
     @Override
     public int compare(final Beacon lhs, final Beacon rhs) {
-        final double lhsAveragePower = lhs.getAverageRSSIValue();
-        final double rhsAveragePower = rhs.getAverageRSSIValue();
+        final double lhsAveragePower = this.rssiEstimator.getRSSI(lhs);
+        final double rhsAveragePower = this.rssiEstimator.getRSSI(rhs);
 
         return (lhsAveragePower < rhsAveragePower) ? -1 : (lhsAveragePower > rhsAveragePower) ? 1 : 0;
     }
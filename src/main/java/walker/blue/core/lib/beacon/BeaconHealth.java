@@ -0,0 +1,134 @@
+package walker.blue.core.lib.beacon;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+
+/**
+ * Snapshot of the link quality of a single beacon, as tracked by the
+ * BeaconHealthMonitor
+ */
+public class BeaconHealth {
+
+    /**
+     * Beacon being described
+     */
+    private final Beacon beacon;
+    /**
+     * Number of packets received from the beacon
+     */
+    private final long packetCount;
+    /**
+     * Rate at which packets are being received
+     */
+    private final double packetsPerSecond;
+    /**
+     * Time (in ms) since the last packet was received
+     */
+    private final long lastSeenAge;
+    /**
+     * Variance of the RSSI values received
+     */
+    private final double rssiVariance;
+    /**
+     * Number of consecutive scan cycles in which the beacon was not heard
+     */
+    private final int dropoutStreak;
+    /**
+     * Longest number of consecutive scan cycles in which the beacon was not
+     * heard
+     */
+    private final int longestDropoutStreak;
+
+    /**
+     * Constructor. Sets the fields to the given values
+     *
+     * @param beacon Beacon being described
+     * @param packetCount Number of packets received from the beacon
+     * @param packetsPerSecond Rate at which packets are being received
+     * @param lastSeenAge Time (in ms) since the last packet was received
+     * @param rssiVariance Variance (in dBm^2) of the RSSI values received
+     * @param dropoutStreak Number of consecutive scan cycles in which the
+     *                      beacon was not heard
+     * @param longestDropoutStreak Longest number of consecutive scan cycles
+     *                             in which the beacon was not heard
+     */
+    public BeaconHealth(final Beacon beacon,
+                        final long packetCount,
+                        final double packetsPerSecond,
+                        final long lastSeenAge,
+                        final double rssiVariance,
+                        final int dropoutStreak,
+                        final int longestDropoutStreak) {
+        this.beacon = beacon;
+        this.packetCount = packetCount;
+        this.packetsPerSecond = packetsPerSecond;
+        this.lastSeenAge = lastSeenAge;
+        this.rssiVariance = rssiVariance;
+        this.dropoutStreak = dropoutStreak;
+        this.longestDropoutStreak = longestDropoutStreak;
+    }
+
+    /**
+     * Getter for the beacon being described
+     *
+     * @return Beacon being described
+     */
+    public Beacon getBeacon() {
+        return this.beacon;
+    }
+
+    /**
+     * Getter for the number of packets received from the beacon
+     *
+     * @return Number of packets received from the beacon
+     */
+    public long getPacketCount() {
+        return this.packetCount;
+    }
+
+    /**
+     * Getter for the rate at which packets are being received
+     *
+     * @return Packets received per second
+     */
+    public double getPacketsPerSecond() {
+        return this.packetsPerSecond;
+    }
+
+    /**
+     * Getter for the time since the last packet was received
+     *
+     * @return Time (in ms) since the last packet was received
+     */
+    public long getLastSeenAge() {
+        return this.lastSeenAge;
+    }
+
+    /**
+     * Getter for the variance of the RSSI values received
+     *
+     * @return Variance (in dBm^2) of the RSSI values received
+     */
+    public double getRSSIVariance() {
+        return this.rssiVariance;
+    }
+
+    /**
+     * Getter for the current dropout streak
+     *
+     * @return Number of consecutive scan cycles in which the beacon was not
+     *         heard
+     */
+    public int getDropoutStreak() {
+        return this.dropoutStreak;
+    }
+
+    /**
+     * Getter for the longest dropout streak
+     *
+     * @return Longest number of consecutive scan cycles in which the beacon
+     *         was not heard
+     */
+    public int getLongestDropoutStreak() {
+        return this.longestDropoutStreak;
+    }
+}
@@ -0,0 +1,217 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running link quality statistics of every beacon in a BeaconRegistry: the
+ * rate at which packets arrive, the time since the last packet, the variance
+ * of the RSSI values and the number of consecutive scan cycles in which the
+ * beacon was not heard. Rates and variances are exponentially weighted so
+ * they follow beacons whose batteries are dying.
+ *
+ * Statistics are held in arrays indexed by the slot of each beacon, so a
+ * packet is folded in using constant time and memory, and the per slot
+ * getters can be read by the localizer at no extra cost. Not thread safe
+ */
+public class BeaconHealthMonitor {
+
+    /**
+     * Default weight given to the newest packet in the running statistics
+     */
+    public static final double DEFAULT_SMOOTHING = 0.1;
+
+    /**
+     * Weight given to the newest packet in the running statistics
+     */
+    private final double smoothing;
+    /**
+     * Number of packets received from each beacon
+     */
+    private final long[] packetCounts;
+    /**
+     * Time (in ms) of the last packet of each beacon
+     */
+    private final long[] lastSeenTimes;
+    /**
+     * Weighted mean time (in ms) between the packets of each beacon
+     */
+    private final double[] meanIntervals;
+    /**
+     * Weighted mean RSSI value of each beacon
+     */
+    private final double[] rssiMeans;
+    /**
+     * Weighted variance of the RSSI values of each beacon
+     */
+    private final double[] rssiVariances;
+    /**
+     * Whether each beacon was heard during the current scan cycle
+     */
+    private final boolean[] heardInCycle;
+    /**
+     * Number of consecutive scan cycles in which each beacon was not heard
+     */
+    private final int[] dropoutStreaks;
+    /**
+     * Longest dropout streak of each beacon
+     */
+    private final int[] longestDropoutStreaks;
+
+    /**
+     * Constructor. Creates a monitor with the default smoothing for the
+     * given number of beacon slots
+     *
+     * @param capacity Number of slots of the registry being used
+     */
+    public BeaconHealthMonitor(final int capacity) {
+        this(capacity, DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * Constructor. Creates a monitor with the given smoothing
+     *
+     * @param capacity Number of slots of the registry being used
+     * @param smoothing Weight given to the newest packet, between 0 and 1
+     */
+    public BeaconHealthMonitor(final int capacity, final double smoothing) {
+        this.smoothing = smoothing;
+        this.packetCounts = new long[capacity];
+        this.lastSeenTimes = new long[capacity];
+        this.meanIntervals = new double[capacity];
+        this.rssiMeans = new double[capacity];
+        this.rssiVariances = new double[capacity];
+        this.heardInCycle = new boolean[capacity];
+        this.dropoutStreaks = new int[capacity];
+        this.longestDropoutStreaks = new int[capacity];
+    }
+
+    /**
+     * Folds a packet into the statistics of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @param rssi RSSI value of the packet
+     * @param time Time (in ms) at which the packet was received
+     */
+    public void update(final int slot, final int rssi, final long time) {
+        final long count = ++this.packetCounts[slot];
+        if (count == 1) {
+            this.rssiMeans[slot] = rssi;
+            this.rssiVariances[slot] = 0;
+        } else {
+            final long interval = Math.max(0, time - this.lastSeenTimes[slot]);
+            this.meanIntervals[slot] = count == 2
+                    ? interval
+                    : this.meanIntervals[slot] + this.smoothing * (interval - this.meanIntervals[slot]);
+            final double delta = rssi - this.rssiMeans[slot];
+            this.rssiMeans[slot] += this.smoothing * delta;
+            this.rssiVariances[slot] =
+                    (1 - this.smoothing) * (this.rssiVariances[slot] + this.smoothing * delta * delta);
+        }
+        this.lastSeenTimes[slot] = time;
+        this.heardInCycle[slot] = true;
+        this.dropoutStreaks[slot] = 0;
+    }
+
+    /**
+     * Ends the current scan cycle, extending the dropout streak of every
+     * known beacon which was not heard during it
+     *
+     * @param numSlots Number of slots in use in the registry
+     */
+    public void endCycle(final int numSlots) {
+        for (int slot = 0; slot < numSlots; slot++) {
+            if (this.heardInCycle[slot]) {
+                this.heardInCycle[slot] = false;
+            } else if (this.packetCounts[slot] > 0) {
+                this.dropoutStreaks[slot]++;
+                if (this.dropoutStreaks[slot] > this.longestDropoutStreaks[slot]) {
+                    this.longestDropoutStreaks[slot] = this.dropoutStreaks[slot];
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter for the number of packets received from the given beacon
+     *
+     * @param slot slot of the beacon
+     * @return Number of packets received
+     */
+    public long getPacketCount(final int slot) {
+        return this.packetCounts[slot];
+    }
+
+    /**
+     * Gets the rate at which packets of the given beacon are being received
+     *
+     * @param slot slot of the beacon
+     * @return Packets per second, or 0 if less than two packets were received
+     */
+    public double getPacketsPerSecond(final int slot) {
+        if (this.packetCounts[slot] < 2) {
+            return 0;
+        }
+        return this.meanIntervals[slot] > 0 ? 1000 / this.meanIntervals[slot] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gets the time since the last packet of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @param now Current time (in ms)
+     * @return Time (in ms) since the last packet or Long.MAX_VALUE if the
+     *         beacon was never heard
+     */
+    public long getLastSeenAge(final int slot, final long now) {
+        if (this.packetCounts[slot] == 0) {
+            return Long.MAX_VALUE;
+        }
+        return now - this.lastSeenTimes[slot];
+    }
+
+    /**
+     * Getter for the variance of the RSSI values of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @return Variance (in dBm^2) of the RSSI values
+     */
+    public double getRSSIVariance(final int slot) {
+        return this.rssiVariances[slot];
+    }
+
+    /**
+     * Getter for the current dropout streak of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @return Number of consecutive scan cycles in which the beacon was not
+     *         heard
+     */
+    public int getDropoutStreak(final int slot) {
+        return this.dropoutStreaks[slot];
+    }
+
+    /**
+     * Builds a snapshot of the statistics of every beacon heard so far
+     *
+     * @param registry Registry assigning a slot to each beacon
+     * @param now Current time (in ms)
+     * @return List holding the health of each beacon heard so far
+     */
+    public List<BeaconHealth> snapshot(final BeaconRegistry registry, final long now) {
+        final List<BeaconHealth> result = new ArrayList<>();
+        for (int slot = 0; slot < registry.size(); slot++) {
+            if (this.packetCounts[slot] == 0) {
+                continue;
+            }
+            result.add(new BeaconHealth(registry.getBeacon(slot),
+                    this.packetCounts[slot],
+                    this.getPacketsPerSecond(slot),
+                    this.getLastSeenAge(slot, now),
+                    this.rssiVariances[slot],
+                    this.dropoutStreaks[slot],
+                    this.longestDropoutStreaks[slot]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,340 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+
+/**
+ * Hash index assigning a slot to each beacon seen by the scan client. Beacons
+ * are keyed by a primitive packed from the id of their UUID, their major and
+ * their minor so lookups in the scan callback are O(1) and do not depend on
+ * the number of beacons in range. Slots are never released, which allows
+ * other structures to keep per beacon data in arrays indexed by slot, so
+ * the registry should be sized for the beacons of the building using
+ * capacityFor. Beacons seen once the registry is full are counted and
+ * dropped.
+ *
+ * This class is not thread safe
+ */
+public class BeaconRegistry {
+
+    /**
+     * Default max number of beacons held by the registry
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+    /**
+     * Slots added on top of the beacons of a building, for beacons which are
+     * added to the building after it was loaded
+     */
+    public static final int CAPACITY_HEADROOM = 64;
+    /**
+     * Value returned when a beacon is not in the registry
+     */
+    public static final int NO_SLOT = -1;
+    /**
+     * Marks an empty entry in the hash table
+     */
+    private static final long EMPTY_KEY = -1L;
+    /**
+     * Default max number of UUIDs the registry assigns an id to. Beacons
+     * with other UUIDs are dropped, so foreign UUIDs in a crowded area cannot
+     * grow the UUID table, which is searched for every advertisement
+     */
+    public static final int DEFAULT_MAX_UUIDS = 16;
+    /**
+     * Value returned when a UUID has no id
+     */
+    private static final int NO_UUID = -1;
+    /**
+     * Initial number of UUIDs the registry has room for
+     */
+    private static final int INITIAL_UUID_CAPACITY = 4;
+    /**
+     * Multiplier used to spread the keys over the hash table
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Keys stored in the hash table
+     */
+    private final long[] tableKeys;
+    /**
+     * Slot corresponding to each entry in the hash table
+     */
+    private final int[] tableSlots;
+    /**
+     * Number of bits used to index the hash table
+     */
+    private final int tableBits;
+    /**
+     * Beacon registered in each slot
+     */
+    private final Beacon[] beacons;
+    /**
+     * Most and least significant bits of the UUIDs seen so far. The position
+     * of a UUID in these arrays is its id
+     */
+    private long[] uuidMostBits;
+    private long[] uuidLeastBits;
+    /**
+     * Number of UUIDs seen so far
+     */
+    private int uuidCount;
+    /**
+     * Max number of UUIDs assigned an id
+     */
+    private final int maxUUIDs;
+    /**
+     * Maps the string form of the UUIDs seen so far to their id
+     */
+    private final Map<String, Integer> uuidIds;
+    /**
+     * Number of slots in use
+     */
+    private int size;
+    /**
+     * Number of times a beacon could not be registered because the registry
+     * or the UUID table was full
+     */
+    private long overflowCount;
+
+    /**
+     * Constructor. Creates a registry with the default capacity
+     */
+    public BeaconRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor. Creates a registry which can hold the given number of
+     * beacons
+     *
+     * @param capacity Max number of beacons held by the registry
+     */
+    public BeaconRegistry(final int capacity) {
+        this(capacity, DEFAULT_MAX_UUIDS);
+    }
+
+    /**
+     * Constructor. Creates a registry which can hold the given number of
+     * beacons with the given number of UUIDs
+     *
+     * @param capacity Max number of beacons held by the registry
+     * @param maxUUIDs Max number of UUIDs assigned an id
+     */
+    public BeaconRegistry(final int capacity, final int maxUUIDs) {
+        this.maxUUIDs = Math.max(1, maxUUIDs);
+        int bits = 1;
+        while ((1 << bits) < capacity * 2) {
+            bits++;
+        }
+        this.tableBits = bits;
+        this.tableKeys = new long[1 << bits];
+        this.tableSlots = new int[1 << bits];
+        Arrays.fill(this.tableKeys, EMPTY_KEY);
+        this.beacons = new Beacon[capacity];
+        this.uuidMostBits = new long[INITIAL_UUID_CAPACITY];
+        this.uuidLeastBits = new long[INITIAL_UUID_CAPACITY];
+        this.uuidCount = 0;
+        this.uuidIds = new HashMap<>();
+        this.size = 0;
+    }
+
+    /**
+     * Finds the slot of the given beacon
+     *
+     * @param beacon Beacon being looked up
+     * @return slot of the beacon or NO_SLOT if it is not in the registry
+     */
+    public int find(final Beacon beacon) {
+        final Integer uuidId = this.uuidIds.get(beacon.getUUID());
+        if (uuidId == null) {
+            return NO_SLOT;
+        }
+        return this.find(uuidId, beacon.getMajor(), beacon.getMinor());
+    }
+
+    /**
+     * Finds the slot of the beacon with the given identifiers
+     *
+     * @param uuidId id of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @return slot of the beacon or NO_SLOT if it is not in the registry
+     */
+    public int find(final int uuidId, final int major, final int minor) {
+        final long key = toKey(uuidId, major, minor);
+        final int mask = this.tableKeys.length - 1;
+        int index = this.hash(key);
+        while (this.tableKeys[index] != EMPTY_KEY) {
+            if (this.tableKeys[index] == key) {
+                return this.tableSlots[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Finds the slot of the beacon with the given identifiers without
+     * registering it. Does not allocate
+     *
+     * @param uuidMost most significant bits of the UUID of the beacon
+     * @param uuidLeast least significant bits of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @return slot of the beacon or NO_SLOT if it is not in the registry
+     */
+    public int find(final long uuidMost, final long uuidLeast, final int major, final int minor) {
+        for (int i = 0; i < this.uuidCount; i++) {
+            if (this.uuidMostBits[i] == uuidMost && this.uuidLeastBits[i] == uuidLeast) {
+                return this.find(i, major, minor);
+            }
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Finds the slot of the beacon with the given identifiers, registering
+     * the beacon if it is not in the registry yet. Only allocates when the
+     * beacon is registered
+     *
+     * @param uuidMost most significant bits of the UUID of the beacon
+     * @param uuidLeast least significant bits of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @return slot of the beacon or NO_SLOT if the registry is full
+     */
+    public int findOrRegister(final long uuidMost, final long uuidLeast, final int major, final int minor) {
+        final int uuidId = this.getUUIDId(uuidMost, uuidLeast);
+        if (uuidId == NO_UUID) {
+            this.overflowCount++;
+            return NO_SLOT;
+        }
+        final long key = toKey(uuidId, major, minor);
+        final int mask = this.tableKeys.length - 1;
+        int index = this.hash(key);
+        while (this.tableKeys[index] != EMPTY_KEY) {
+            if (this.tableKeys[index] == key) {
+                return this.tableSlots[index];
+            }
+            index = (index + 1) & mask;
+        }
+        if (this.size == this.beacons.length) {
+            this.overflowCount++;
+            return NO_SLOT;
+        }
+        final int slot = this.size++;
+        this.beacons[slot] = new BeaconBuilder()
+                .setBeaconUUID(AdvertisementParser.uuidToString(uuidMost, uuidLeast))
+                .setBeaconMajor(major)
+                .setBeaconMinor(minor)
+                .build();
+        this.tableKeys[index] = key;
+        this.tableSlots[index] = slot;
+        return slot;
+    }
+
+    /**
+     * Gets the beacon registered in the given slot
+     *
+     * @param slot slot of the beacon
+     * @return Beacon registered in the slot
+     */
+    public Beacon getBeacon(final int slot) {
+        return this.beacons[slot];
+    }
+
+    /**
+     * Getter for the number of slots in use
+     *
+     * @return number of beacons in the registry
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter for the number of times a beacon could not be registered
+     * because the registry or the UUID table was full
+     *
+     * @return Number of lookups dropped because the registry was full
+     */
+    public long getOverflowCount() {
+        return this.overflowCount;
+    }
+
+    /**
+     * Gets the capacity a registry needs to hold the given number of beacons
+     * along with some headroom
+     *
+     * @param beaconCount Number of beacons deployed in the building
+     * @return Capacity of the registry
+     */
+    public static int capacityFor(final int beaconCount) {
+        return Math.max(1, beaconCount) + CAPACITY_HEADROOM;
+    }
+
+    /**
+     * Getter for the max number of beacons held by the registry
+     *
+     * @return capacity of the registry
+     */
+    public int capacity() {
+        return this.beacons.length;
+    }
+
+    /**
+     * Gets the id for the given UUID, assigning a new one if the UUID has not
+     * been seen before. At most maxUUIDs are kept so they are searched
+     * linearly
+     *
+     * @param uuidMost most significant bits of the UUID
+     * @param uuidLeast least significant bits of the UUID
+     * @return id of the UUID, or NO_UUID if the UUID is new and maxUUIDs
+     *         have already been seen
+     */
+    private int getUUIDId(final long uuidMost, final long uuidLeast) {
+        for (int i = 0; i < this.uuidCount; i++) {
+            if (this.uuidMostBits[i] == uuidMost && this.uuidLeastBits[i] == uuidLeast) {
+                return i;
+            }
+        }
+        if (this.uuidCount == this.maxUUIDs) {
+            return NO_UUID;
+        }
+        if (this.uuidCount == this.uuidMostBits.length) {
+            this.uuidMostBits = Arrays.copyOf(this.uuidMostBits, this.uuidCount * 2);
+            this.uuidLeastBits = Arrays.copyOf(this.uuidLeastBits, this.uuidCount * 2);
+        }
+        this.uuidMostBits[this.uuidCount] = uuidMost;
+        this.uuidLeastBits[this.uuidCount] = uuidLeast;
+        this.uuidIds.put(AdvertisementParser.uuidToString(uuidMost, uuidLeast), this.uuidCount);
+        return this.uuidCount++;
+    }
+
+    /**
+     * Hashes the given key into an index of the hash table
+     *
+     * @param key key being hashed
+     * @return index of the key in the hash table
+     */
+    private int hash(final long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> (Long.SIZE - this.tableBits));
+    }
+
+    /**
+     * Packs the given identifiers into a single key
+     *
+     * @param uuidId id of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @return key for the beacon
+     */
+    private static long toKey(final int uuidId, final int major, final int minor) {
+        return ((long) uuidId << 32) | ((major & 0xFFFFL) << 16) | (minor & 0xFFFFL);
+    }
+}
@@ -0,0 +1,138 @@
+package walker.blue.core.lib.beacon;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import walker.blue.beacon.lib.client.BeaconClientBuilder;
+import walker.blue.beacon.lib.client.BeaconScanClient;
+import walker.blue.beacon.lib.service.ScanEndUserCallback;
+
+/**
+ * AdvertisementSource backed by the BLE radio of the device. Use the ScanHub
+ * of the process rather than creating one of these per consumer, so the
+ * radio is only scanned once
+ */
+public class BluetoothAdvertisementSource implements AdvertisementSource {
+
+    /**
+     * Default length (in ms) of each scan cycle
+     */
+    private static final int DEFAULT_SCAN_INTERVAL = 5000;
+
+    /**
+     * Client used to scan for beacons
+     */
+    private BeaconScanClient beaconScanClient;
+    /**
+     * Listeners receiving the advertisements found. Replaced on every change
+     * so it can be iterated in the scan callback without allocating
+     */
+    private volatile AdvertisementListener[] listeners;
+
+    /**
+     * Callback used by the client whenever a BLE device is found
+     */
+    private BluetoothAdapter.LeScanCallback leScanCallback = new BluetoothAdapter.LeScanCallback() {
+        @Override
+        public void onLeScan(final BluetoothDevice device, final int rssi, final byte[] scanRecord) {
+            final long time = currentTimeMillis();
+            final int offset = AdvertisementParser.findBeaconData(scanRecord);
+            if (offset == AdvertisementParser.NOT_A_BEACON) {
+                return;
+            }
+            final long uuidMost = AdvertisementParser.getUUIDMostSignificantBits(scanRecord, offset);
+            final long uuidLeast = AdvertisementParser.getUUIDLeastSignificantBits(scanRecord, offset);
+            final int major = AdvertisementParser.getMajor(scanRecord, offset);
+            final int minor = AdvertisementParser.getMinor(scanRecord, offset);
+            final AdvertisementListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                current[i].onAdvertisement(uuidMost, uuidLeast, major, minor, rssi, time);
+            }
+        }
+    };
+
+    /**
+     * Callback used by the client when the radio stops scanning
+     */
+    private ScanEndUserCallback scanEndCallback = new ScanEndUserCallback() {
+        @Override
+        public void execute() {
+            final AdvertisementListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                current[i].onScanCycleEnded();
+            }
+        }
+    };
+
+    /**
+     * Constructor. Creates a source scanning with the radio of the device
+     *
+     * @param context Context under which the source is being used
+     */
+    public BluetoothAdvertisementSource(final Context context) {
+        this.listeners = new AdvertisementListener[0];
+        this.beaconScanClient = new BeaconClientBuilder()
+                .scanInterval(DEFAULT_SCAN_INTERVAL)
+                .setLeScanCallback(leScanCallback)
+                .setContext(context)
+                .setUserCallback(scanEndCallback)
+                .build();
+    }
+
+    @Override
+    public synchronized void addListener(final AdvertisementListener listener) {
+        final AdvertisementListener[] updated = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        updated[this.listeners.length] = listener;
+        this.listeners = updated;
+    }
+
+    @Override
+    public synchronized void removeListener(final AdvertisementListener listener) {
+        for (int i = 0; i < this.listeners.length; i++) {
+            if (this.listeners[i] == listener) {
+                final AdvertisementListener[] updated = new AdvertisementListener[this.listeners.length - 1];
+                System.arraycopy(this.listeners, 0, updated, 0, i);
+                System.arraycopy(this.listeners, i + 1, updated, i, this.listeners.length - i - 1);
+                this.listeners = updated;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void setScanningInterval(final int scanInterval) {
+        this.beaconScanClient.setScanningInterval(scanInterval);
+    }
+
+    @Override
+    public void startScanning() {
+        this.beaconScanClient.startScanning();
+    }
+
+    @Override
+    public void acquireDemand() {
+        // The radio finds advertisements regardless of the consumers
+    }
+
+    @Override
+    public void releaseDemand() {
+        // The radio finds advertisements regardless of the consumers
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @Override
+    public void sleepUntil(final long time) throws InterruptedException {
+        final long delay = time - this.currentTimeMillis();
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * Hampel filter over the latest samples of each beacon. A sample further
+ * from the median of the window than the threshold times the scaled median
+ * absolute deviation (MAD) is replaced by the median, which removes the
+ * single sample spikes caused by reflections and body blocking while
+ * following real changes of the signal once they fill half the window. A
+ * threshold of 0 turns it into a rolling median.
+ *
+ * Each beacon owns a ring of samples and a copy of the same samples kept in
+ * order, both indexed by its slot. The ordered copy is updated by removing
+ * the oldest sample and inserting the new one, so no list is ever sorted
+ * and filtering a sample takes time linear in the window size without
+ * allocating. Not thread safe
+ */
+public class HampelRSSIFilter implements RSSISampleFilter {
+
+    /**
+     * Default number of samples in the window of each beacon
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 5;
+    /**
+     * Default number of scaled MADs from the median after which a sample is
+     * considered an outlier
+     */
+    public static final double DEFAULT_THRESHOLD = 3.0;
+    /**
+     * Factor scaling the MAD into an estimate of the standard deviation
+     */
+    private static final double MAD_SCALE = 1.4826;
+    /**
+     * Min scaled MAD (in dBm), so windows holding the same value do not
+     * reject every change of the signal
+     */
+    private static final double MIN_DEVIATION = 1.0;
+    /**
+     * Min number of samples in the window before samples are rejected
+     */
+    private static final int MIN_SAMPLES = 3;
+
+    /**
+     * Number of samples in the window of each beacon
+     */
+    private final int windowSize;
+    /**
+     * Number of scaled MADs from the median after which a sample is
+     * considered an outlier
+     */
+    private final double threshold;
+    /**
+     * Samples of each beacon in arrival order. The ring of the beacon in
+     * slot s starts at s * windowSize
+     */
+    private final int[] ring;
+    /**
+     * Samples of each beacon in ascending order
+     */
+    private final int[] ordered;
+    /**
+     * Index within its ring where the next sample of each beacon is written
+     */
+    private final int[] heads;
+    /**
+     * Number of samples in the window of each beacon
+     */
+    private final int[] counts;
+
+    /**
+     * Constructor. Creates a filter with the default values for the given
+     * number of beacon slots
+     *
+     * @param capacity Number of slots of the registry being used
+     */
+    public HampelRSSIFilter(final int capacity) {
+        this(capacity, DEFAULT_WINDOW_SIZE, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor. Creates a filter with the given values
+     *
+     * @param capacity Number of slots of the registry being used
+     * @param windowSize Number of samples in the window of each beacon
+     * @param threshold Number of scaled MADs from the median after which a
+     *                  sample is considered an outlier
+     */
+    public HampelRSSIFilter(final int capacity, final int windowSize, final double threshold) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize < 1");
+        }
+        this.windowSize = windowSize;
+        this.threshold = threshold;
+        this.ring = new int[capacity * windowSize];
+        this.ordered = new int[capacity * windowSize];
+        this.heads = new int[capacity];
+        this.counts = new int[capacity];
+    }
+
+    @Override
+    public int filter(final int slot, final int rssi) {
+        final int start = slot * this.windowSize;
+        final int count = this.counts[slot];
+        if (count == this.windowSize) {
+            this.removeOrdered(start, count, this.ring[start + this.heads[slot]]);
+            this.insertOrdered(start, count - 1, rssi);
+        } else {
+            this.insertOrdered(start, count, rssi);
+            this.counts[slot]++;
+        }
+        this.ring[start + this.heads[slot]] = rssi;
+        this.heads[slot] = (this.heads[slot] + 1) % this.windowSize;
+        if (this.counts[slot] < MIN_SAMPLES) {
+            return rssi;
+        }
+        final int median = this.ordered[start + this.counts[slot] / 2];
+        final double deviation = Math.max(MIN_DEVIATION, MAD_SCALE * this.getMAD(start, this.counts[slot], median));
+        if (Math.abs(rssi - median) > this.threshold * deviation) {
+            return median;
+        }
+        return rssi;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < this.counts.length; slot++) {
+            this.heads[slot] = 0;
+            this.counts[slot] = 0;
+        }
+    }
+
+    /**
+     * Removes a value from the ordered samples of a beacon
+     *
+     * @param start index where the ordered samples of the beacon start
+     * @param count number of ordered samples
+     * @param value value being removed
+     */
+    private void removeOrdered(final int start, final int count, final int value) {
+        int i = start;
+        while (this.ordered[i] != value) {
+            i++;
+        }
+        for (; i < start + count - 1; i++) {
+            this.ordered[i] = this.ordered[i + 1];
+        }
+    }
+
+    /**
+     * Inserts a value in the ordered samples of a beacon
+     *
+     * @param start index where the ordered samples of the beacon start
+     * @param count number of ordered samples before the insertion
+     * @param value value being inserted
+     */
+    private void insertOrdered(final int start, final int count, final int value) {
+        int i = start + count;
+        while (i > start && this.ordered[i - 1] > value) {
+            this.ordered[i] = this.ordered[i - 1];
+            i--;
+        }
+        this.ordered[i] = value;
+    }
+
+    /**
+     * Gets the median absolute deviation of the ordered samples of a beacon.
+     * The deviations below and above the median are each already in order,
+     * so they are merged until the middle one is reached
+     *
+     * @param start index where the ordered samples of the beacon start
+     * @param count number of ordered samples
+     * @param median median of the samples
+     * @return median absolute deviation of the samples
+     */
+    private int getMAD(final int start, final int count, final int median) {
+        final int middle = start + count / 2;
+        int below = middle - 1;
+        int above = middle + 1;
+        int deviation = 0;
+        for (int taken = 1; taken <= count / 2; taken++) {
+            final int belowDeviation = below >= start ? median - this.ordered[below] : Integer.MAX_VALUE;
+            final int aboveDeviation = above < start + count ? this.ordered[above] - median : Integer.MAX_VALUE;
+            if (belowDeviation <= aboveDeviation) {
+                deviation = belowDeviation;
+                below--;
+            } else {
+                deviation = aboveDeviation;
+                above++;
+            }
+        }
+        return deviation;
+    }
+}
@@ -0,0 +1,151 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * One dimensional Kalman filter tracking the RSSI value of every beacon in a
+ * BeaconRegistry. The state of each beacon is held in arrays indexed by its
+ * slot, so every sample is folded in using constant time and memory, and the
+ * estimates persist from one scan window to the next. The variance of an
+ * estimate grows with the time elapsed since the previous sample, so fresh
+ * samples quickly take over a stale estimate. Not thread safe
+ */
+public class KalmanRSSIFilter {
+
+    /**
+     * Default variance (in dBm^2) added to an estimate every second
+     */
+    public static final double DEFAULT_PROCESS_NOISE = 9.0;
+    /**
+     * Default variance (in dBm^2) of a single RSSI sample
+     */
+    public static final double DEFAULT_MEASUREMENT_NOISE = 16.0;
+
+    /**
+     * Variance added to an estimate every ms
+     */
+    private final double processNoisePerMilli;
+    /**
+     * Variance of a single RSSI sample
+     */
+    private final double measurementNoise;
+    /**
+     * Estimated RSSI value of each beacon
+     */
+    private final double[] estimates;
+    /**
+     * Variance of the estimate of each beacon
+     */
+    private final double[] variances;
+    /**
+     * Time (in ms) of the last sample of each beacon
+     */
+    private final long[] lastUpdateTimes;
+    /**
+     * Whether each beacon has an estimate
+     */
+    private final boolean[] initialized;
+
+    /**
+     * Constructor. Creates a filter with the default noise values for the
+     * given number of beacon slots
+     *
+     * @param capacity Number of slots of the registry being used
+     */
+    public KalmanRSSIFilter(final int capacity) {
+        this(capacity, DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * Constructor. Creates a filter with the given noise values
+     *
+     * @param capacity Number of slots of the registry being used
+     * @param processNoise Variance (in dBm^2) added to an estimate every second
+     * @param measurementNoise Variance (in dBm^2) of a single RSSI sample
+     */
+    public KalmanRSSIFilter(final int capacity, final double processNoise, final double measurementNoise) {
+        this.processNoisePerMilli = processNoise / 1000;
+        this.measurementNoise = measurementNoise;
+        this.estimates = new double[capacity];
+        this.variances = new double[capacity];
+        this.lastUpdateTimes = new long[capacity];
+        this.initialized = new boolean[capacity];
+    }
+
+    /**
+     * Folds a sample into the estimate of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @param rssi RSSI value of the sample
+     * @param time Time (in ms) at which the sample was received
+     */
+    public void update(final int slot, final int rssi, final long time) {
+        if (!this.initialized[slot]) {
+            this.estimates[slot] = rssi;
+            this.variances[slot] = this.measurementNoise;
+            this.lastUpdateTimes[slot] = time;
+            this.initialized[slot] = true;
+            return;
+        }
+        final long elapsed = Math.max(0, time - this.lastUpdateTimes[slot]);
+        final double predictedVariance = this.variances[slot] + elapsed * this.processNoisePerMilli;
+        final double gain = predictedVariance / (predictedVariance + this.measurementNoise);
+        this.estimates[slot] += gain * (rssi - this.estimates[slot]);
+        this.variances[slot] = (1 - gain) * predictedVariance;
+        this.lastUpdateTimes[slot] = time;
+    }
+
+    /**
+     * Checks whether the given beacon has an estimate
+     *
+     * @param slot slot of the beacon
+     * @return boolean indicating whether the beacon has an estimate
+     */
+    public boolean hasEstimate(final int slot) {
+        return slot >= 0 && slot < this.initialized.length && this.initialized[slot];
+    }
+
+    /**
+     * Gets the estimated RSSI value of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @return estimated RSSI value or NaN if the beacon has no estimate
+     */
+    public double getEstimate(final int slot) {
+        return this.hasEstimate(slot) ? this.estimates[slot] : Double.NaN;
+    }
+
+    /**
+     * Gets the variance of the estimate of the given beacon as of its last
+     * sample
+     *
+     * @param slot slot of the beacon
+     * @return variance of the estimate or NaN if the beacon has no estimate
+     */
+    public double getVariance(final int slot) {
+        return this.hasEstimate(slot) ? this.variances[slot] : Double.NaN;
+    }
+
+    /**
+     * Gets the variance of the estimate of the given beacon at the given time,
+     * accounting for the time elapsed since its last sample
+     *
+     * @param slot slot of the beacon
+     * @param time Current time (in ms)
+     * @return variance of the estimate or NaN if the beacon has no estimate
+     */
+    public double getVariance(final int slot, final long time) {
+        if (!this.hasEstimate(slot)) {
+            return Double.NaN;
+        }
+        final long elapsed = Math.max(0, time - this.lastUpdateTimes[slot]);
+        return this.variances[slot] + elapsed * this.processNoisePerMilli;
+    }
+
+    /**
+     * Removes the estimates of all the beacons
+     */
+    public void clear() {
+        for (int slot = 0; slot < this.initialized.length; slot++) {
+            this.initialized[slot] = false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package walker.blue.core.lib.beacon;
+
+import android.content.SharedPreferences;
+
+/**
+ * Linear correction of the RSSI values read by this device, so they match
+ * the values the building was modeled with. The correction is learned
+ * online from pairs of measured and expected RSSI values using an
+ * exponentially weighted least squares fit, and is only applied once enough
+ * pairs have been seen. Applying the correction takes constant time and can
+ * be done from any thread
+ */
+public class RSSICalibration {
+
+    /**
+     * Name of the preferences file holding the calibration
+     */
+    public static final String PREFERENCES_NAME = "walker.blue.core.lib.RSSICalibration";
+    /**
+     * Preference keys
+     */
+    private static final String PREF_OFFSET = "offset";
+    private static final String PREF_GAIN = "gain";
+    private static final String PREF_SAMPLES = "samples";
+    /**
+     * Weight kept by the previous pairs each time a pair is added
+     */
+    private static final double FORGETTING_FACTOR = 0.999;
+    /**
+     * Number of pairs needed before the correction is fitted
+     */
+    private static final int MIN_SAMPLES = 30;
+    /**
+     * Min variance (in dBm^2) of the measured values needed to fit the gain.
+     * Under it only the offset is fitted
+     */
+    private static final double MIN_VARIANCE = 4.0;
+    /**
+     * Min gain of the correction
+     */
+    private static final double MIN_GAIN = 0.5;
+    /**
+     * Max gain of the correction
+     */
+    private static final double MAX_GAIN = 1.5;
+    /**
+     * Max absolute offset (in dBm) of the correction
+     */
+    private static final double MAX_OFFSET = 30.0;
+
+    /**
+     * Offset (in dBm) added to the scaled RSSI values
+     */
+    private volatile double offset;
+    /**
+     * Gain the RSSI values are scaled by
+     */
+    private volatile double gain;
+    /**
+     * Number of pairs seen, including the ones the loaded calibration was
+     * fitted with
+     */
+    private int samples;
+    /**
+     * Number of pairs held in the sums of the fit
+     */
+    private int fitSamples;
+    /**
+     * Weighted sums of the fit
+     */
+    private double sumWeight;
+    private double sumMeasured;
+    private double sumExpected;
+    private double sumMeasuredSquared;
+    private double sumProduct;
+
+    /**
+     * Constructor. Creates a calibration which leaves the RSSI values as
+     * they are
+     */
+    public RSSICalibration() {
+        this.reset();
+    }
+
+    /**
+     * Corrects the given RSSI value
+     *
+     * @param rssi RSSI value measured by the device
+     * @return Corrected RSSI value
+     */
+    public int apply(final int rssi) {
+        return (int) Math.round(this.gain * rssi + this.offset);
+    }
+
+    /**
+     * Adds a pair of measured and expected RSSI values to the fit
+     *
+     * @param corrected RSSI value measured for a beacon, with the current
+     *                  correction applied
+     * @param expected RSSI value expected for the beacon at the location
+     *                 of the user
+     */
+    public synchronized void addReference(final double corrected, final double expected) {
+        final double measured = (corrected - this.offset) / this.gain;
+        this.sumWeight = FORGETTING_FACTOR * this.sumWeight + 1;
+        this.sumMeasured = FORGETTING_FACTOR * this.sumMeasured + measured;
+        this.sumExpected = FORGETTING_FACTOR * this.sumExpected + expected;
+        this.sumMeasuredSquared = FORGETTING_FACTOR * this.sumMeasuredSquared + measured * measured;
+        this.sumProduct = FORGETTING_FACTOR * this.sumProduct + measured * expected;
+        this.samples++;
+        this.fitSamples++;
+        if (this.fitSamples >= MIN_SAMPLES) {
+            this.fit();
+        }
+    }
+
+    /**
+     * Loads the calibration saved in the given preferences, if any
+     *
+     * @param preferences Preferences holding the calibration
+     */
+    public synchronized void load(final SharedPreferences preferences) {
+        if (!preferences.contains(PREF_GAIN)) {
+            return;
+        }
+        this.reset();
+        this.gain = preferences.getFloat(PREF_GAIN, 1f);
+        this.offset = preferences.getFloat(PREF_OFFSET, 0f);
+        this.samples = preferences.getInt(PREF_SAMPLES, 0);
+    }
+
+    /**
+     * Saves the calibration in the given preferences. The sums of the fit
+     * are not saved, so a loaded calibration is refitted from new pairs
+     *
+     * @param preferences Preferences the calibration is saved in
+     */
+    public synchronized void save(final SharedPreferences preferences) {
+        preferences.edit()
+                .putFloat(PREF_GAIN, (float) this.gain)
+                .putFloat(PREF_OFFSET, (float) this.offset)
+                .putInt(PREF_SAMPLES, this.samples)
+                .apply();
+    }
+
+    /**
+     * Forgets the correction and all the pairs seen so far
+     */
+    public synchronized void reset() {
+        this.offset = 0;
+        this.gain = 1;
+        this.samples = 0;
+        this.fitSamples = 0;
+        this.sumWeight = 0;
+        this.sumMeasured = 0;
+        this.sumExpected = 0;
+        this.sumMeasuredSquared = 0;
+        this.sumProduct = 0;
+    }
+
+    /**
+     * Getter for the offset of the correction
+     *
+     * @return Offset (in dBm) added to the scaled RSSI values
+     */
+    public double getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Getter for the gain of the correction
+     *
+     * @return Gain the RSSI values are scaled by
+     */
+    public double getGain() {
+        return this.gain;
+    }
+
+    /**
+     * Getter for the number of pairs seen
+     *
+     * @return Number of pairs of measured and expected values seen
+     */
+    public synchronized int getSampleCount() {
+        return this.samples;
+    }
+
+    /**
+     * Fits the correction to the pairs seen so far
+     */
+    private void fit() {
+        if (this.sumWeight == 0) {
+            return;
+        }
+        final double meanMeasured = this.sumMeasured / this.sumWeight;
+        final double meanExpected = this.sumExpected / this.sumWeight;
+        final double variance = this.sumMeasuredSquared / this.sumWeight - meanMeasured * meanMeasured;
+        final double covariance = this.sumProduct / this.sumWeight - meanMeasured * meanExpected;
+        double newGain = variance >= MIN_VARIANCE ? covariance / variance : 1;
+        newGain = Math.max(MIN_GAIN, Math.min(MAX_GAIN, newGain));
+        final double newOffset = meanExpected - newGain * meanMeasured;
+        this.gain = newGain;
+        this.offset = Math.max(-MAX_OFFSET, Math.min(MAX_OFFSET, newOffset));
+    }
+}
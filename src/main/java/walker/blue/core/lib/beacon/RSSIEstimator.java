@@ -0,0 +1,26 @@
+package walker.blue.core.lib.beacon;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+
+/**
+ * Estimates the RSSI value of a beacon, used by the localizer to rank the
+ * beacons which have been scanned
+ */
+public interface RSSIEstimator {
+
+    /**
+     * Gets the estimated RSSI value of the given beacon
+     *
+     * @param beacon beacon whose RSSI value is being estimated
+     * @return estimated RSSI value (in dBm)
+     */
+    double getRSSI(Beacon beacon);
+
+    /**
+     * Gets the variance of the estimated RSSI value of the given beacon
+     *
+     * @param beacon beacon whose RSSI value is being estimated
+     * @return variance (in dBm^2) of the estimate
+     */
+    double getRSSIVariance(Beacon beacon);
+}
@@ -0,0 +1,24 @@
+package walker.blue.core.lib.beacon;
+
+/**
+ * Streaming filter applied to every RSSI sample before it is buffered by the
+ * ScanWindow, and so before it reaches the RSSI estimators and the localizer.
+ * Implementations keep their state in arrays indexed by the slot of each
+ * beacon in the BeaconRegistry and must use constant memory per beacon
+ */
+public interface RSSISampleFilter {
+
+    /**
+     * Filters a sample of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @param rssi RSSI value of the sample
+     * @return RSSI value to be buffered in place of the sample
+     */
+    int filter(int slot, int rssi);
+
+    /**
+     * Removes the state of all the beacons
+     */
+    void clear();
+}
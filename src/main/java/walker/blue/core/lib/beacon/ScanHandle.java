@@ -0,0 +1,289 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+
+/**
+ * Handle to a scan started by the SyncBeaconScanClient. Signals two separate
+ * events: the minimum number of beacons being seen and the scan window
+ * finishing. Callers can either register a listener or wait for each event
+ * with a timeout. No thread is blocked unless a caller decides to wait.
+ * Cancelling the handle finishes the scan right away and releases the radio
+ */
+public class ScanHandle implements Future<List<Beacon>> {
+
+    /**
+     * Listener notified of the events of the scan. Listeners are called on
+     * the thread which completed the event, so they should return quickly
+     */
+    public interface Listener {
+
+        /**
+         * Called when the minimum number of beacons has been seen
+         *
+         * @param handle handle of the scan
+         */
+        void onMinimumBeaconsSeen(ScanHandle handle);
+
+        /**
+         * Called when the scan window has finished
+         *
+         * @param handle handle of the scan
+         */
+        void onWindowFinished(ScanHandle handle);
+    }
+
+    /**
+     * Minimum number of beacons which need to be seen
+     */
+    private final int minNumOfBeacons;
+    /**
+     * Released once the minimum number of beacons is seen or the window
+     * finishes, whichever happens first
+     */
+    private final CountDownLatch minimumLatch;
+    /**
+     * Released once the window finishes
+     */
+    private final CountDownLatch finishedLatch;
+    /**
+     * Whether the minimum number of beacons has been seen
+     */
+    private volatile boolean minimumSeen;
+    /**
+     * Whether the window has finished
+     */
+    private volatile boolean finished;
+    /**
+     * Listeners notified of the events of the scan
+     */
+    private final List<Listener> listeners;
+    /**
+     * Beacons seen by the time the minimum number of beacons was reached
+     */
+    private volatile List<Beacon> earlyBeacons;
+    /**
+     * Beacons seen during the whole window
+     */
+    private volatile List<Beacon> beacons;
+    /**
+     * Whether the scan was cancelled before the window finished
+     */
+    private volatile boolean cancelled;
+    /**
+     * Called when the handle is cancelled, so the client finishes the scan.
+     * Null if nothing has to be done
+     */
+    private volatile Runnable cancelHook;
+
+    /**
+     * Constructor. Creates a handle for a scan which needs to see the given
+     * number of beacons
+     *
+     * @param minNumOfBeacons Minimum number of beacons which need to be seen
+     */
+    public ScanHandle(final int minNumOfBeacons) {
+        this.minNumOfBeacons = minNumOfBeacons;
+        this.minimumLatch = new CountDownLatch(1);
+        this.finishedLatch = new CountDownLatch(1);
+        this.minimumSeen = false;
+        this.finished = false;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.earlyBeacons = null;
+        this.beacons = null;
+        this.cancelled = false;
+    }
+
+    /**
+     * Adds a listener to the handle. The listener is called right away for
+     * the events which already happened
+     *
+     * @param listener Listener being added
+     */
+    public synchronized void addListener(final Listener listener) {
+        this.listeners.add(listener);
+        if (this.minimumSeen) {
+            listener.onMinimumBeaconsSeen(this);
+        }
+        if (this.finished) {
+            listener.onWindowFinished(this);
+        }
+    }
+
+    /**
+     * Removes a listener from the handle
+     *
+     * @param listener Listener being removed
+     */
+    public void removeListener(final Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Waits until the minimum number of beacons is seen or the window
+     * finishes
+     *
+     * @param timeout max time to wait
+     * @param unit unit of the timeout
+     * @return boolean indicating whether the minimum number of beacons was
+     *         seen
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitMinimumBeacons(final long timeout, final TimeUnit unit) throws InterruptedException {
+        this.minimumLatch.await(timeout, unit);
+        return this.minimumSeen;
+    }
+
+    /**
+     * Waits until the window finishes
+     *
+     * @param timeout max time to wait
+     * @param unit unit of the timeout
+     * @return boolean indicating whether the window finished
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitFinished(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.finishedLatch.await(timeout, unit);
+    }
+
+    /**
+     * Checks whether the minimum number of beacons has been seen
+     *
+     * @return boolean indicating whether the minimum number of beacons has
+     *         been seen
+     */
+    public boolean isMinimumBeaconsSeen() {
+        return this.minimumSeen;
+    }
+
+    /**
+     * Getter for the minimum number of beacons which need to be seen
+     *
+     * @return Minimum number of beacons
+     */
+    public int getMinNumOfBeacons() {
+        return this.minNumOfBeacons;
+    }
+
+    /**
+     * Gets the beacons seen when the minimum number of beacons was reached.
+     * If the window finished first, these are all the beacons seen during
+     * the window
+     *
+     * @return Beacons seen so far or null if neither event has happened
+     */
+    public List<Beacon> getEarlyBeacons() {
+        return this.earlyBeacons;
+    }
+
+    @Override
+    public synchronized boolean cancel(final boolean mayInterruptIfRunning) {
+        if (this.finished) {
+            return false;
+        }
+        this.cancelled = true;
+        final Runnable hook = this.cancelHook;
+        if (hook != null) {
+            hook.run();
+        }
+        this.finish(null);
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.finished;
+    }
+
+    @Override
+    public List<Beacon> get() throws InterruptedException, ExecutionException {
+        this.finishedLatch.await();
+        return this.getResult();
+    }
+
+    @Override
+    public List<Beacon> get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.finishedLatch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return this.getResult();
+    }
+
+    /**
+     * Sets the callback run when the handle is cancelled, before the handle
+     * is finished
+     *
+     * @param cancelHook Callback finishing the scan, or null
+     */
+    void setCancelHook(final Runnable cancelHook) {
+        this.cancelHook = cancelHook;
+    }
+
+    /**
+     * Signals that the minimum number of beacons has been seen. Has no effect
+     * if either event already happened
+     *
+     * @param beaconsSeen Beacons seen so far
+     */
+    synchronized void signalMinimumBeacons(final List<Beacon> beaconsSeen) {
+        if (this.minimumSeen || this.finished) {
+            return;
+        }
+        this.earlyBeacons = beaconsSeen;
+        this.minimumSeen = true;
+        this.minimumLatch.countDown();
+        for (final Listener listener : this.listeners) {
+            listener.onMinimumBeaconsSeen(this);
+        }
+    }
+
+    /**
+     * Signals that the window finished. Has no effect if the window already
+     * finished
+     *
+     * @param windowBeacons Beacons seen during the window
+     * @return boolean indicating whether this call finished the window
+     */
+    synchronized boolean finish(final List<Beacon> windowBeacons) {
+        if (this.finished) {
+            return false;
+        }
+        this.beacons = windowBeacons;
+        if (this.earlyBeacons == null) {
+            this.earlyBeacons = windowBeacons;
+        }
+        this.finished = true;
+        this.minimumLatch.countDown();
+        this.finishedLatch.countDown();
+        for (final Listener listener : this.listeners) {
+            listener.onWindowFinished(this);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the result of the scan once the window finished
+     *
+     * @return Beacons seen during the window
+     */
+    private List<Beacon> getResult() {
+        if (this.cancelled) {
+            throw new CancellationException();
+        }
+        return this.beacons;
+    }
+}
@@ -0,0 +1,321 @@
+package walker.blue.core.lib.beacon;
+
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process wide hub sharing a single radio scan among all the consumers of
+ * beacon advertisements. Each consumer subscribes to the hub and gets its
+ * own AdvertisementSource, with its own scan cycles, while the hub keeps one
+ * scan of the underlying source running for as long as any subscription is
+ * scanning. Every advertisement is delivered on the thread of the underlying
+ * source, so the hub adds no threads of its own. The hub neither locks nor
+ * allocates while delivering an advertisement
+ */
+public class ScanHub {
+
+    /**
+     * Min length (in ms) of the scan cycles of the underlying source
+     */
+    private static final int MIN_SOURCE_INTERVAL = 500;
+    /**
+     * Default length (in ms) of the scan cycles of a subscription
+     */
+    private static final int DEFAULT_SCAN_INTERVAL = 5000;
+
+    /**
+     * Hub shared by the whole process
+     */
+    private static ScanHub instance;
+
+    /**
+     * Source shared by all the subscriptions
+     */
+    private final AdvertisementSource source;
+    /**
+     * Current subscriptions. Replaced on every change so it can be iterated
+     * in the scan callback without locking or allocating
+     */
+    private volatile Subscription[] subscriptions;
+    /**
+     * Whether the underlying source is scanning
+     */
+    private boolean sourceScanning;
+
+    /**
+     * Listener receiving the advertisements of the underlying source
+     */
+    private AdvertisementListener sourceListener = new AdvertisementListener() {
+        @Override
+        public void onAdvertisement(final long uuidMost,
+                                    final long uuidLeast,
+                                    final int major,
+                                    final int minor,
+                                    final int rssi,
+                                    final long time) {
+            final Subscription[] current = subscriptions;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].checkCycle(time)) {
+                    current[i].deliver(uuidMost, uuidLeast, major, minor, rssi, time);
+                }
+            }
+        }
+
+        @Override
+        public void onScanCycleEnded() {
+            synchronized (ScanHub.this) {
+                sourceScanning = false;
+            }
+            final long now = source.currentTimeMillis();
+            final Subscription[] current = subscriptions;
+            for (int i = 0; i < current.length; i++) {
+                current[i].checkCycle(now);
+            }
+            ensureScanning();
+        }
+    };
+
+    /**
+     * Gets the hub shared by the whole process, which scans using the radio
+     * of the device
+     *
+     * @param context Context under which the hub is being used
+     * @return Hub shared by the whole process
+     */
+    public static synchronized ScanHub getInstance(final Context context) {
+        if (instance == null) {
+            instance = new ScanHub(new BluetoothAdvertisementSource(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor. Creates a hub sharing the given source
+     *
+     * @param source Source shared by all the subscriptions
+     */
+    public ScanHub(final AdvertisementSource source) {
+        this.source = source;
+        this.subscriptions = new Subscription[0];
+        this.sourceScanning = false;
+        this.source.addListener(this.sourceListener);
+    }
+
+    /**
+     * Creates a new subscription to the hub. The subscription is dropped once
+     * its last listener is removed
+     *
+     * @return AdvertisementSource fed by the hub
+     */
+    public AdvertisementSource subscribe() {
+        return new Subscription();
+    }
+
+    /**
+     * Getter for the number of subscriptions with listeners
+     *
+     * @return Number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        return this.subscriptions.length;
+    }
+
+    /**
+     * Adds the given subscription to the hub
+     *
+     * @param subscription Subscription being added
+     */
+    private synchronized void add(final Subscription subscription) {
+        final Subscription[] current = this.subscriptions;
+        final Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        this.subscriptions = updated;
+    }
+
+    /**
+     * Removes the given subscription from the hub
+     *
+     * @param subscription Subscription being removed
+     */
+    private synchronized void remove(final Subscription subscription) {
+        final Subscription[] current = this.subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                final Subscription[] updated = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                this.subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts a scan cycle of the underlying source if any subscription is
+     * scanning and the source is not. The cycle lasts until the earliest end
+     * of the cycles of the subscriptions
+     */
+    private void ensureScanning() {
+        synchronized (this) {
+            if (this.sourceScanning) {
+                return;
+            }
+            final long now = this.source.currentTimeMillis();
+            long earliestEnd = Long.MAX_VALUE;
+            for (final Subscription subscription : this.subscriptions) {
+                if (subscription.scanning.get()) {
+                    earliestEnd = Math.min(earliestEnd, subscription.cycleEnd);
+                }
+            }
+            if (earliestEnd == Long.MAX_VALUE) {
+                return;
+            }
+            this.sourceScanning = true;
+            this.source.setScanningInterval((int) Math.max(MIN_SOURCE_INTERVAL, earliestEnd - now));
+        }
+        this.source.startScanning();
+    }
+
+    /**
+     * AdvertisementSource given to each consumer of the hub
+     */
+    private class Subscription implements AdvertisementSource {
+
+        /**
+         * Listeners of the subscription
+         */
+        private volatile AdvertisementListener[] listeners = new AdvertisementListener[0];
+        /**
+         * Length (in ms) of each scan cycle. Guarded by the hub
+         */
+        private int scanInterval = DEFAULT_SCAN_INTERVAL;
+        /**
+         * Whether a scan cycle is in progress and when it ends. Only changed
+         * while holding the lock of the hub, except when the cycle is ended
+         * by the scan callback. cycleEnd is written before scanning is set,
+         * so it can be read without locking once scanning is seen
+         */
+        private final AtomicBoolean scanning = new AtomicBoolean(false);
+        private volatile long cycleEnd;
+
+        @Override
+        public void addListener(final AdvertisementListener listener) {
+            synchronized (ScanHub.this) {
+                final AdvertisementListener[] current = this.listeners;
+                final AdvertisementListener[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = listener;
+                this.listeners = updated;
+                if (current.length == 0) {
+                    add(this);
+                }
+            }
+        }
+
+        @Override
+        public void removeListener(final AdvertisementListener listener) {
+            synchronized (ScanHub.this) {
+                final AdvertisementListener[] current = this.listeners;
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] == listener) {
+                        final AdvertisementListener[] updated = new AdvertisementListener[current.length - 1];
+                        System.arraycopy(current, 0, updated, 0, i);
+                        System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                        this.listeners = updated;
+                        break;
+                    }
+                }
+                if (this.listeners.length == 0) {
+                    this.scanning.set(false);
+                    remove(this);
+                }
+            }
+        }
+
+        @Override
+        public void setScanningInterval(final int scanInterval) {
+            synchronized (ScanHub.this) {
+                this.scanInterval = scanInterval;
+            }
+        }
+
+        @Override
+        public void startScanning() {
+            synchronized (ScanHub.this) {
+                if (!this.scanning.get()) {
+                    this.cycleEnd = source.currentTimeMillis() + this.scanInterval;
+                    this.scanning.set(true);
+                }
+            }
+            ensureScanning();
+        }
+
+        @Override
+        public void acquireDemand() {
+            source.acquireDemand();
+        }
+
+        @Override
+        public void releaseDemand() {
+            source.releaseDemand();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return source.currentTimeMillis();
+        }
+
+        @Override
+        public void sleepUntil(final long time) throws InterruptedException {
+            source.sleepUntil(time);
+        }
+
+        /**
+         * Ends the scan cycle of the subscription if it is over by the given
+         * time, notifying the listeners. Does not lock, and only one caller
+         * ends each cycle
+         *
+         * @param time Current time (in ms)
+         * @return boolean indicating whether the subscription is scanning
+         */
+        private boolean checkCycle(final long time) {
+            if (!this.scanning.get()) {
+                return false;
+            }
+            if (time < this.cycleEnd) {
+                return true;
+            }
+            if (!this.scanning.compareAndSet(true, false)) {
+                return false;
+            }
+            final AdvertisementListener[] current = this.listeners;
+            for (int i = 0; i < current.length; i++) {
+                current[i].onScanCycleEnded();
+            }
+            return false;
+        }
+
+        /**
+         * Delivers an advertisement to the listeners of the subscription
+         *
+         * @param uuidMost most significant bits of the UUID of the beacon
+         * @param uuidLeast least significant bits of the UUID of the beacon
+         * @param major major of the beacon
+         * @param minor minor of the beacon
+         * @param rssi RSSI value measured for the advertisement
+         * @param time Time (in ms) at which the advertisement was received
+         */
+        private void deliver(final long uuidMost,
+                             final long uuidLeast,
+                             final int major,
+                             final int minor,
+                             final int rssi,
+                             final long time) {
+            final AdvertisementListener[] current = this.listeners;
+            for (int i = 0; i < current.length; i++) {
+                current[i].onAdvertisement(uuidMost, uuidLeast, major, minor, rssi, time);
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+
+/**
+ * Time-stamped sliding window of the advertisements received by the scan
+ * client. Each beacon in the registry owns a preallocated ring of samples
+ * indexed by its slot, so adding a sample takes constant time and does not
+ * allocate once the beacon has been registered
+ */
+public class ScanWindow {
+
+    /**
+     * Default number of samples held for each beacon
+     */
+    private static final int DEFAULT_SAMPLES_PER_BEACON = 32;
+
+    /**
+     * Registry assigning a slot to each beacon
+     */
+    private final BeaconRegistry registry;
+    /**
+     * Number of samples held for each beacon
+     */
+    private final int samplesPerBeacon;
+    /**
+     * Time (in ms) at which each sample was received. Samples of the beacon
+     * in slot s start at s * samplesPerBeacon
+     */
+    private final long[] times;
+    /**
+     * RSSI value of each sample
+     */
+    private final int[] rssiValues;
+    /**
+     * Index within its ring where the next sample of each beacon is written
+     */
+    private final int[] heads;
+    /**
+     * Number of samples held for each beacon
+     */
+    private final int[] counts;
+    /**
+     * Filter tracking the RSSI value of each beacon across windows
+     */
+    private final KalmanRSSIFilter rssiFilter;
+    /**
+     * Link quality statistics of each beacon. Kept when the window is cleared
+     */
+    private final BeaconHealthMonitor healthMonitor;
+    /**
+     * Filter applied to every sample before it is buffered. If null samples
+     * are buffered as measured
+     */
+    private RSSISampleFilter sampleFilter;
+    /**
+     * Calibration applied to every sample before the sample filter. If null
+     * samples are used as measured
+     */
+    private RSSICalibration calibration;
+
+    /**
+     * Constructor. Creates a window with the default capacity
+     */
+    public ScanWindow() {
+        this(new BeaconRegistry(), DEFAULT_SAMPLES_PER_BEACON);
+    }
+
+    /**
+     * Constructor. Creates a window holding the given number of beacons
+     *
+     * @param capacity Max number of beacons held by the window
+     */
+    public ScanWindow(final int capacity) {
+        this(new BeaconRegistry(capacity), DEFAULT_SAMPLES_PER_BEACON);
+    }
+
+    /**
+     * Constructor. Creates a window for the beacons in the given registry
+     *
+     * @param registry Registry assigning a slot to each beacon
+     * @param samplesPerBeacon Max number of samples held for each beacon
+     */
+    public ScanWindow(final BeaconRegistry registry, final int samplesPerBeacon) {
+        this.registry = registry;
+        this.samplesPerBeacon = samplesPerBeacon;
+        this.times = new long[registry.capacity() * samplesPerBeacon];
+        this.rssiValues = new int[registry.capacity() * samplesPerBeacon];
+        this.heads = new int[registry.capacity()];
+        this.counts = new int[registry.capacity()];
+        this.rssiFilter = new KalmanRSSIFilter(registry.capacity());
+        this.healthMonitor = new BeaconHealthMonitor(registry.capacity());
+    }
+
+    /**
+     * Adds the advertisement contained in the given scan record to the
+     * window. Reads the beacon fields straight out of the scan record and
+     * does not allocate unless the beacon is seen for the first time
+     *
+     * @param scanRecord Raw scan record of the advertisement
+     * @param rssi RSSI value measured for the advertisement
+     * @param time Time (in ms) at which the advertisement was received
+     * @return slot of the beacon or BeaconRegistry.NO_SLOT if the record does
+     *         not contain beacon data or the registry is full
+     */
+    public int add(final byte[] scanRecord, final int rssi, final long time) {
+        final int offset = AdvertisementParser.findBeaconData(scanRecord);
+        if (offset == AdvertisementParser.NOT_A_BEACON) {
+            return BeaconRegistry.NO_SLOT;
+        }
+        return this.add(AdvertisementParser.getUUIDMostSignificantBits(scanRecord, offset),
+                AdvertisementParser.getUUIDLeastSignificantBits(scanRecord, offset),
+                AdvertisementParser.getMajor(scanRecord, offset),
+                AdvertisementParser.getMinor(scanRecord, offset),
+                rssi,
+                time);
+    }
+
+    /**
+     * Adds a sample to the window, overwriting the oldest sample of the
+     * beacon if its ring is full. The sample goes through the sample filter,
+     * if any, before being buffered and folded into the RSSI estimate. The
+     * health of the beacon is tracked on the sample as measured, while the
+     * calibration, if any, is applied before the sample filter
+     *
+     * @param uuidMost most significant bits of the UUID of the beacon
+     * @param uuidLeast least significant bits of the UUID of the beacon
+     * @param major major of the beacon
+     * @param minor minor of the beacon
+     * @param rssi RSSI value measured for the advertisement
+     * @param time Time (in ms) at which the advertisement was received
+     * @return slot of the beacon or BeaconRegistry.NO_SLOT if the registry
+     *         is full
+     */
+    public synchronized int add(final long uuidMost,
+                                final long uuidLeast,
+                                final int major,
+                                final int minor,
+                                final int rssi,
+                                final long time) {
+        final int slot = this.registry.findOrRegister(uuidMost, uuidLeast, major, minor);
+        if (slot != BeaconRegistry.NO_SLOT) {
+            this.healthMonitor.update(slot, rssi, time);
+            final int calibrated = this.calibration == null ? rssi : this.calibration.apply(rssi);
+            final int filtered = this.sampleFilter == null
+                    ? calibrated
+                    : this.sampleFilter.filter(slot, calibrated);
+            final int index = slot * this.samplesPerBeacon + this.heads[slot];
+            this.times[index] = time;
+            this.rssiValues[index] = filtered;
+            this.heads[slot] = (this.heads[slot] + 1) % this.samplesPerBeacon;
+            if (this.counts[slot] < this.samplesPerBeacon) {
+                this.counts[slot]++;
+            }
+            this.rssiFilter.update(slot, filtered, time);
+        }
+        return slot;
+    }
+
+    /**
+     * Builds the list of beacons seen within the given amount of time before
+     * the given time. Each beacon holds the RSSI values measured within the
+     * window, oldest first
+     *
+     * @param windowMillis Length (in ms) of the window
+     * @param now Current time (in ms)
+     * @return List of beacons seen within the window
+     */
+    public List<Beacon> snapshot(final long windowMillis, final long now) {
+        return this.snapshotSince(now - windowMillis);
+    }
+
+    /**
+     * Builds the list of beacons seen at or after the given time. Each beacon
+     * holds the RSSI values measured since then, oldest first
+     *
+     * @param cutoff Time (in ms) of the oldest sample included
+     * @return List of beacons seen since the given time
+     */
+    public synchronized List<Beacon> snapshotSince(final long cutoff) {
+        final List<Beacon> result = new ArrayList<>();
+        for (int slot = 0; slot < this.registry.size(); slot++) {
+            int inWindow = 0;
+            while (inWindow < this.counts[slot] && this.times[this.indexOf(slot, inWindow)] >= cutoff) {
+                inWindow++;
+            }
+            if (inWindow == 0) {
+                continue;
+            }
+            final Beacon beacon = this.registry.getBeacon(slot);
+            final BeaconBuilder builder = new BeaconBuilder()
+                    .setBeaconUUID(beacon.getUUID())
+                    .setBeaconMajor(beacon.getMajor())
+                    .setBeaconMinor(beacon.getMinor());
+            for (int age = inWindow - 1; age >= 0; age--) {
+                builder.setMeasuredRSSI(this.rssiValues[this.indexOf(slot, age)]);
+            }
+            result.add(builder.build());
+        }
+        return result;
+    }
+
+    /**
+     * Ends the current scan cycle for the link quality statistics
+     */
+    public synchronized void endCycle() {
+        this.healthMonitor.endCycle(this.registry.size());
+    }
+
+    /**
+     * Builds a snapshot of the link quality of every beacon heard so far
+     *
+     * @param now Current time (in ms)
+     * @return List holding the health of each beacon heard so far
+     */
+    public synchronized List<BeaconHealth> healthSnapshot(final long now) {
+        return this.healthMonitor.snapshot(this.registry, now);
+    }
+
+    /**
+     * Removes all the samples and RSSI estimates from the window. Beacons
+     * keep their slots and their link quality statistics
+     */
+    public synchronized void clear() {
+        for (int slot = 0; slot < this.counts.length; slot++) {
+            this.heads[slot] = 0;
+            this.counts[slot] = 0;
+        }
+        this.rssiFilter.clear();
+        if (this.sampleFilter != null) {
+            this.sampleFilter.clear();
+        }
+    }
+
+    /**
+     * Gets the latest sample buffered for the given beacon, after going
+     * through the sample filter
+     *
+     * @param slot slot of the beacon
+     * @return RSSI value of the latest sample or 0 if the beacon has no
+     *         samples
+     */
+    public synchronized int getLatestRSSI(final int slot) {
+        return this.counts[slot] == 0 ? 0 : this.rssiValues[this.indexOf(slot, 0)];
+    }
+
+    /**
+     * Sets the filter applied to every sample before it is buffered. The
+     * filter must be sized for the capacity of the registry
+     *
+     * @param sampleFilter Filter applied to every sample or null to buffer
+     *                     samples as measured
+     */
+    public synchronized void setSampleFilter(final RSSISampleFilter sampleFilter) {
+        this.sampleFilter = sampleFilter;
+    }
+
+    /**
+     * Sets the calibration applied to every sample before the sample filter
+     *
+     * @param calibration Calibration of the device or null to use samples
+     *                    as measured
+     */
+    public synchronized void setCalibration(final RSSICalibration calibration) {
+        this.calibration = calibration;
+    }
+
+    /**
+     * Getter for the registry used by the window
+     *
+     * @return Registry assigning a slot to each beacon
+     */
+    public BeaconRegistry getRegistry() {
+        return this.registry;
+    }
+
+    /**
+     * Getter for the filter tracking the RSSI value of each beacon. The
+     * filter is updated while holding the lock of the window, so it must be
+     * read while holding the same lock
+     *
+     * @return Filter tracking the RSSI value of each beacon
+     */
+    public KalmanRSSIFilter getRSSIFilter() {
+        return this.rssiFilter;
+    }
+
+    /**
+     * Getter for the link quality statistics of each beacon. The statistics
+     * are updated while holding the lock of the window, so they must be read
+     * while holding the same lock
+     *
+     * @return Link quality statistics of each beacon
+     */
+    public BeaconHealthMonitor getHealthMonitor() {
+        return this.healthMonitor;
+    }
+
+    /**
+     * Gets the index of a sample of the given beacon
+     *
+     * @param slot slot of the beacon
+     * @param age position of the sample, 0 being the newest
+     * @return index of the sample
+     */
+    private int indexOf(final int slot, final int age) {
+        final int ringIndex = (this.heads[slot] - 1 - age + 2 * this.samplesPerBeacon) % this.samplesPerBeacon;
+        return slot * this.samplesPerBeacon + ringIndex;
+    }
+}
@@ -0,0 +1,140 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.Collection;
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+
+/**
+ * Selects the k beacons with the strongest estimated RSSI out of a scan in a
+ * single pass. The scan list is neither sorted nor modified, and the
+ * selection is held in preallocated arrays, so selecting is linear in the
+ * size of the scan for a fixed k and does not allocate. Not thread safe
+ */
+public class StrongestBeacons {
+
+    /**
+     * Max number of beacons selected
+     */
+    private final int k;
+    /**
+     * Selected beacons, strongest first
+     */
+    private final Beacon[] beacons;
+    /**
+     * Estimated RSSI of each selected beacon
+     */
+    private final double[] rssiValues;
+    /**
+     * Number of beacons selected by the last call to select
+     */
+    private int size;
+
+    /**
+     * Constructor. Creates a selector for the given number of beacons
+     *
+     * @param k Max number of beacons selected
+     */
+    public StrongestBeacons(final int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k < 1");
+        }
+        this.k = k;
+        this.beacons = new Beacon[k];
+        this.rssiValues = new double[k];
+        this.size = 0;
+    }
+
+    /**
+     * Selects the strongest beacons of the given scan
+     *
+     * @param scan Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @return Number of beacons selected
+     */
+    public int select(final List<Beacon> scan, final RSSIEstimator estimator) {
+        return this.select(scan, estimator, null);
+    }
+
+    /**
+     * Selects the strongest beacons of the given scan out of the given
+     * candidates. Beacons with the same RSSI keep the order of the scan.
+     * Each beacon of the scan is looked up in the candidates, so a small
+     * list of candidates does as well as a set
+     *
+     * @param scan Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @param candidates Beacons which can be selected, or null to allow all
+     *                   the beacons of the scan
+     * @return Number of beacons selected
+     */
+    public int select(final List<Beacon> scan, final RSSIEstimator estimator, final Collection<Beacon> candidates) {
+        for (int i = 0; i < this.size; i++) {
+            this.beacons[i] = null;
+        }
+        this.size = 0;
+        for (int i = 0; i < scan.size(); i++) {
+            final Beacon beacon = scan.get(i);
+            if (candidates != null && !candidates.contains(beacon)) {
+                continue;
+            }
+            final double rssi = estimator.getRSSI(beacon);
+            if (this.size == this.k && rssi <= this.rssiValues[this.k - 1]) {
+                continue;
+            }
+            int position = this.size < this.k ? this.size++ : this.k - 1;
+            while (position > 0 && this.rssiValues[position - 1] < rssi) {
+                this.beacons[position] = this.beacons[position - 1];
+                this.rssiValues[position] = this.rssiValues[position - 1];
+                position--;
+            }
+            this.beacons[position] = beacon;
+            this.rssiValues[position] = rssi;
+        }
+        return this.size;
+    }
+
+    /**
+     * Gets the selected beacon with the given rank
+     *
+     * @param rank rank of the beacon, 0 being the strongest
+     * @return Beacon with the given rank
+     */
+    public Beacon getBeacon(final int rank) {
+        if (rank >= this.size) {
+            throw new IndexOutOfBoundsException("rank >= size");
+        }
+        return this.beacons[rank];
+    }
+
+    /**
+     * Gets the estimated RSSI of the selected beacon with the given rank
+     *
+     * @param rank rank of the beacon, 0 being the strongest
+     * @return Estimated RSSI of the beacon with the given rank
+     */
+    public double getRSSI(final int rank) {
+        if (rank >= this.size) {
+            throw new IndexOutOfBoundsException("rank >= size");
+        }
+        return this.rssiValues[rank];
+    }
+
+    /**
+     * Getter for the number of beacons selected by the last call to select
+     *
+     * @return Number of beacons selected
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter for the max number of beacons selected
+     *
+     * @return Max number of beacons selected
+     */
+    public int capacity() {
+        return this.k;
+    }
+}
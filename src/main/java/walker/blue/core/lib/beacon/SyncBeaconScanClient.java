@@ -1,137 +1,191 @@
 package walker.blue.core.lib.beacon;
 
 
-import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
 import android.content.Context;
 import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
 
 import walker.blue.beacon.lib.beacon.Beacon;
-import walker.blue.beacon.lib.beacon.BluetoothDeviceToBeacon;
-import walker.blue.beacon.lib.client.BeaconClientBuilder;
-import walker.blue.beacon.lib.client.BeaconScanClient;
-import walker.blue.beacon.lib.service.ScanEndUserCallback;
 
 /**
- * Wrapper around the BeaconScanClient that allows the output to be consumed
- * using Futures
+ * Wrapper around an AdvertisementSource that allows the output to be consumed
+ * using ScanHandles. By default the advertisements come from a subscription
+ * to the ScanHub of the process, but any source, such as a recorded scan log,
+ * can be used instead
  */
 public class SyncBeaconScanClient {
 
     /**
      * Log Messages
      */
-    private static final String LOG_INITIAL_LOCKING_THREAD = "Acquiring initial semaphore";
-    private static final String LOG_LOCKING_THREAD = "Acquiring semaphore to lock thread # %d";
-    private static final String LOG_RELEASE_THREAD = "Releasing semaphore";
-    private static final String LOG_THREAD_UNBLOCKED = "Locked thread (id # %d) unblocked";
-    private static final String LOG_FAILED_ACQUIRE = "Failed acquiring semaphore - %s";
-    private static final String LOG_SCAN_START = "Starting syncronous scan in thread id # %d";
-    private static final String LOG_INITIAL_LOCKING_BD = "Acquiring initial BuildingDetector semaphore";
-    private static final String LOG_BD_RELEASE = "Releasing BuildingDetector semaphore";
-    private static final String LOG_BD_LATE_RELEASE = "Not ebough beacons found. Releasing BD lock now";
+    private static final String LOG_SCAN_START = "Starting scan. Waiting for %d beacons";
+    private static final String LOG_MIN_BEACONS = "Minimum number of beacons seen (%d)";
+    private static final String LOG_SCAN_END = "Scan window finished after %d ms. %d beacons seen";
+    private static final String LOG_SCAN_REPLACED = "Scan started before the previous one finished";
+    private static final String LOG_CONTINUOUS_START = "Starting continuous scan";
+    private static final String LOG_CONTINUOUS_STOP = "Stopping continuous scan";
+    private static final String LOG_REGISTRY_FULL = "Beacon registry full (%d beacons). New beacons are dropped";
     /**
      * Default scan time (in ms) for the client
      */
     private static final int DEFAULT_SCAN_TIME = 5000;
+
     /**
-     * Number of permits allowed in the semaphore
+     * Minimum number of beacons which need to be seen before the handle of
+     * a scan signals it
      */
-    private static final int NUMBER_OF_PERMITS = 1;
-
     private int minNumOfBeacons = 1;
     /**
-     * Semaphore used to lock the thread
+     * Handle of the scan currently in progress
+     */
+    private volatile ScanHandle currentHandle;
+    /**
+     * Collection where the beacons are stored. Holds each beacon once, in
+     * the order in which they were first seen during the current scan
      */
-    private Semaphore lock;
+    private List<Beacon> beacons;
     /**
-     * Semaphore used to lock the building detector until the necessary number
-     * of beacons are found
+     * Source of the advertisements
      */
-    private Semaphore bdLock;
+    private AdvertisementSource advertisementSource;
     /**
-     * Collection where the beacons are stored
+     * Sliding window holding the advertisements received while scanning
+     * continuously
      */
-    private List<Beacon> beacons;
+    private ScanWindow scanWindow;
     /**
-     * Executor service used to launch the scan
+     * Whether the client restarts the scan as soon as it ends
      */
-    private ExecutorService executorService;
+    private volatile boolean continuous;
     /**
-     * Client used to scan for beacons
+     * Whether the radio is currently scanning
      */
-    private BeaconScanClient beaconScanClient;
+    private volatile boolean scanning;
+    /**
+     * Number of the current scan, used to find the beacons not seen yet
+     * during the current scan
+     */
+    private volatile int scanNumber;
+    /**
+     * Number of the last scan in which the beacon in each slot was seen
+     */
+    private int[] seenInScan;
+    /**
+     * Time (in ms) at which the current scan started
+     */
+    private long scanStartTime;
+    /**
+     * Policy used to end the window of a scan early. If null the window
+     * ends when the radio stops scanning
+     */
+    private AdaptiveScanPolicy scanPolicy;
+    /**
+     * Filter dropping the advertisements of unknown beacons before they are
+     * buffered. If null every beacon is admitted
+     */
+    private volatile BeaconAdmissionFilter admissionFilter;
+    /**
+     * Whether the registry has been logged as full
+     */
+    private volatile boolean registryFullLogged;
 
     /**
-     * Callback used by the client whenever a BLE device is found
+     * Estimator reading the RSSI values tracked by the filter of the window
      */
-    private BluetoothAdapter.LeScanCallback leScanCallback = new BluetoothAdapter.LeScanCallback() {
+    private final RSSIEstimator rssiEstimator = new RSSIEstimator() {
         @Override
-        public void onLeScan(final BluetoothDevice device, final int rssi, final byte[] scanRecord) {
-            final Beacon beacon = BluetoothDeviceToBeacon.toBeacon(device, rssi, scanRecord);
-            int index = -1;
-            if (beacon != null && (index = beacons.indexOf(beacon)) == -1) {
-                beacons.add(beacon);
-            } else if (beacon != null) {
-                beacons.get(index).addMeasuredRSSI(beacon.getMeasuredRSSIValues().get(0));
+        public double getRSSI(final Beacon beacon) {
+            synchronized (scanWindow) {
+                final int slot = scanWindow.getRegistry().find(beacon);
+                if (scanWindow.getRSSIFilter().hasEstimate(slot)) {
+                    return scanWindow.getRSSIFilter().getEstimate(slot);
+                }
             }
-            if (bdLock != null && beacons.size() >= minNumOfBeacons && bdLock.hasQueuedThreads()) {
-                Log.d(this.getClass().getName(), LOG_BD_RELEASE);
-                bdLock.release();
+            return beacon.getAverageRSSIValue();
+        }
+
+        @Override
+        public double getRSSIVariance(final Beacon beacon) {
+            synchronized (scanWindow) {
+                final int slot = scanWindow.getRegistry().find(beacon);
+                if (scanWindow.getRSSIFilter().hasEstimate(slot)) {
+                    return scanWindow.getRSSIFilter().getVariance(slot, currentTimeMillis());
+                }
             }
+            return Double.POSITIVE_INFINITY;
         }
     };
 
     /**
-     * Callback used to release the lock
+     * Listener ingesting the advertisements found by the source
      */
-    private ScanEndUserCallback unlockCallback = new ScanEndUserCallback() {
+    private AdvertisementListener advertisementListener = new AdvertisementListener() {
         @Override
-        public void execute() {
-            if (bdLock != null && bdLock.hasQueuedThreads()) {
-                Log.d(this.getClass().getName(), LOG_BD_LATE_RELEASE);
-                bdLock.release();
+        public void onAdvertisement(final long uuidMost,
+                                    final long uuidLeast,
+                                    final int major,
+                                    final int minor,
+                                    final int rssi,
+                                    final long time) {
+            final BeaconAdmissionFilter filter = admissionFilter;
+            if (filter != null && !filter.admit(uuidMost, uuidLeast, major, minor)) {
+                return;
+            }
+            final int slot = scanWindow.add(uuidMost, uuidLeast, major, minor, rssi, time);
+            if (slot == BeaconRegistry.NO_SLOT) {
+                if (!registryFullLogged) {
+                    registryFullLogged = true;
+                    Log.d(this.getClass().getName(),
+                            String.format(LOG_REGISTRY_FULL, scanWindow.getRegistry().capacity()));
+                }
+                return;
+            }
+            final ScanHandle handle;
+            List<Beacon> beaconsSeen = null;
+            boolean windowOver = false;
+            synchronized (scanWindow) {
+                handle = currentHandle;
+                if (seenInScan[slot] != scanNumber) {
+                    seenInScan[slot] = scanNumber;
+                    beacons.add(scanWindow.getRegistry().getBeacon(slot));
+                    if (handle != null && !handle.isMinimumBeaconsSeen() && beacons.size() >= minNumOfBeacons) {
+                        beaconsSeen = new ArrayList<>(beacons);
+                    }
+                }
+                if (handle != null && scanPolicy != null) {
+                    scanPolicy.addSample(slot, scanWindow.getLatestRSSI(slot));
+                    windowOver = beacons.size() >= minNumOfBeacons && scanPolicy.isWindowOver(time - scanStartTime);
+                }
+            }
+            if (beaconsSeen != null) {
+                Log.d(this.getClass().getName(), String.format(LOG_MIN_BEACONS, beaconsSeen.size()));
+                handle.signalMinimumBeacons(beaconsSeen);
+            }
+            if (windowOver) {
+                finishScan(handle);
             }
-            Log.d(this.getClass().getName(),  LOG_RELEASE_THREAD);
-            lock.release();
         }
-    };
 
-    /**
-     * Callable thats starts the scan and locks the thread
-     */
-    private Callable<List<Beacon>> startScanCallable = new Callable<List<Beacon>>() {
         @Override
-        public List<Beacon> call() {
-            Log.d(this.getClass().getName(),  String.format(LOG_SCAN_START, Thread.currentThread().getId()));
-            if (!beacons.isEmpty()) {
-                beacons.clear();
+        public void onScanCycleEnded() {
+            scanWindow.endCycle();
+            final ScanHandle handle;
+            final boolean windowOver;
+            synchronized (scanWindow) {
+                handle = currentHandle;
+                windowOver = scanPolicy == null || scanPolicy.isWindowOver(currentTimeMillis() - scanStartTime);
             }
-            beaconScanClient.startScanning();
-            try {
-                Log.d(this.getClass().getName(), String.format(LOG_LOCKING_THREAD, Thread.currentThread().getId()));
-                lock.acquire();
-                Log.d(this.getClass().getName(), String.format(LOG_THREAD_UNBLOCKED, Thread.currentThread().getId()));
-            } catch (Exception e) {
-                Log.d(this.getClass().getName(), String.format(LOG_FAILED_ACQUIRE, e.getMessage()));
-                return null;
-            } finally {
-                lock.release();
+            if (windowOver) {
+                finishScan(handle);
             }
-            return new ArrayList<>(beacons);
+            onScanEnded();
         }
     };
 
     /**
-     * Constructor. Creates the locking client using the given context
+     * Constructor. Creates the client using the given context
      *
      * @param context Constext under which the client is being used
      */
@@ -140,39 +194,100 @@ public class SyncBeaconScanClient {
     }
 
     /**
-     * Constructor. Creates the locking client using the given context and beacons
+     * Constructor. Creates the client using the given context and beacons
      *
      * @param context Constext under which the client is being used
      * @param beacons The collection where the beacons will be placed
      */
     public SyncBeaconScanClient(final Context context, final List<Beacon> beacons) {
-        this(context, beacons, DEFAULT_SCAN_TIME, 0, null);
+        this(context, beacons, DEFAULT_SCAN_TIME, 0);
     }
 
     /**
-     * Constructor. Creates the lock, client and executor service using the
-     * given contexts, set of beacons and scan time
+     * Constructor. Creates the client using the given contexts, set of
+     * beacons, scan time and minimum number of beacons
      *
      * @param context Constext under which the client is being used
      * @param beacons The collection where the beacons will be placed
      * @param scanTime Time in ms that the client will scan
+     * @param minNumOfBeacons Number of beacons which need to be seen before
+     *                        the handle of a scan signals it
      */
     public SyncBeaconScanClient(final Context context,
+                                final List<Beacon> beacons,
+                                final int scanTime,
+                                final int minNumOfBeacons) {
+        this(ScanHub.getInstance(context).subscribe(), beacons, scanTime, minNumOfBeacons);
+    }
+
+    /**
+     * Constructor. Creates the client using the given source of
+     * advertisements
+     *
+     * @param advertisementSource Source of the advertisements
+     */
+    public SyncBeaconScanClient(final AdvertisementSource advertisementSource) {
+        this(advertisementSource, new ArrayList<Beacon>(), DEFAULT_SCAN_TIME, 0);
+    }
+
+    /**
+     * Constructor. Creates the client using the given source of
+     * advertisements, set of beacons, scan time and minimum number of beacons
+     *
+     * @param advertisementSource Source of the advertisements
+     * @param beacons The collection where the beacons will be placed
+     * @param scanTime Time in ms that the client will scan
+     * @param minNumOfBeacons Number of beacons which need to be seen before
+     *                        the handle of a scan signals it
+     */
+    public SyncBeaconScanClient(final AdvertisementSource advertisementSource,
+                                final List<Beacon> beacons,
+                                final int scanTime,
+                                final int minNumOfBeacons) {
+        this(advertisementSource, beacons, scanTime, minNumOfBeacons, BeaconRegistry.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor. Creates the client using the given source of
+     * advertisements, holding at most the given number of beacons
+     *
+     * @param advertisementSource Source of the advertisements
+     * @param capacity Max number of beacons held by the client
+     */
+    public SyncBeaconScanClient(final AdvertisementSource advertisementSource, final int capacity) {
+        this(advertisementSource, new ArrayList<Beacon>(), DEFAULT_SCAN_TIME, 0, capacity);
+    }
+
+    /**
+     * Constructor. Creates the client using the given source of
+     * advertisements, set of beacons, scan time, minimum number of beacons
+     * and capacity
+     *
+     * @param advertisementSource Source of the advertisements
+     * @param beacons The collection where the beacons will be placed
+     * @param scanTime Time in ms that the client will scan
+     * @param minNumOfBeacons Number of beacons which need to be seen before
+     *                        the handle of a scan signals it
+     * @param capacity Max number of beacons held by the client. Beacons
+     *                 seen once it is full are dropped
+     */
+    public SyncBeaconScanClient(final AdvertisementSource advertisementSource,
                                 final List<Beacon> beacons,
                                 final int scanTime,
                                 final int minNumOfBeacons,
-                                final Semaphore bdLock) {
+                                final int capacity) {
         this.minNumOfBeacons = minNumOfBeacons;
-        this.bdLock = bdLock;
-        this.lock = new Semaphore(NUMBER_OF_PERMITS);
+        this.currentHandle = null;
         this.beacons = beacons;
-        this.executorService = Executors.newSingleThreadExecutor();
-        this.beaconScanClient = new BeaconClientBuilder()
-                .scanInterval(scanTime)
-                .setLeScanCallback(leScanCallback)
-                .setContext(context)
-                .setUserCallback(unlockCallback)
-                .build();
+        this.scanWindow = new ScanWindow(capacity);
+        this.scanWindow.setSampleFilter(new HampelRSSIFilter(this.scanWindow.getRegistry().capacity()));
+        this.seenInScan = new int[this.scanWindow.getRegistry().capacity()];
+        this.scanNumber = 1;
+        this.continuous = false;
+        this.scanning = false;
+        this.advertisementSource = advertisementSource;
+        this.advertisementSource.setScanningInterval(scanTime);
+        this.advertisementSource.addListener(this.advertisementListener);
     }
 
     /**
@@ -181,26 +296,285 @@ public class SyncBeaconScanClient {
      * @param scanTime new scan time for the client
      */
     public void setScanTime(final int scanTime) {
-        this.beaconScanClient.setScanningInterval(scanTime);
+        this.advertisementSource.setScanningInterval(scanTime);
+    }
+
+    /**
+     * Sets the policy used to end the window of a scan early. The radio
+     * scans for the max window time of the policy
+     *
+     * @param scanPolicy Policy used to end the window of a scan early or
+     *                   null to end the window when the radio stops scanning
+     */
+    public void setScanPolicy(final AdaptiveScanPolicy scanPolicy) {
+        synchronized (this.scanWindow) {
+            this.scanPolicy = scanPolicy;
+        }
+        if (scanPolicy != null) {
+            this.setScanTime(scanPolicy.getMaxWindow());
+        }
     }
 
     /**
-     * Startes the beacons scan
+     * Sets the filter used to drop the advertisements of unknown beacons
+     * before they are buffered
      *
-     * @return Future allowing the set of beacons to be consumed
+     * @param admissionFilter Filter used to drop the advertisements or null
+     *                        to admit every beacon
      */
-    public Future<List<Beacon>> startScan() {
-        try {
-            Log.d(this.getClass().getName(), LOG_INITIAL_LOCKING_THREAD);
-            lock.acquire();
-            if (bdLock != null) {
-                Log.d(this.getClass().getName(), LOG_INITIAL_LOCKING_BD);
-                bdLock.acquire();
+    public void setAdmissionFilter(final BeaconAdmissionFilter admissionFilter) {
+        this.admissionFilter = admissionFilter;
+    }
+
+    /**
+     * Getter for the number of advertisements dropped because the registry
+     * of the client was full
+     *
+     * @return Number of advertisements dropped
+     */
+    public long getOverflowCount() {
+        synchronized (this.scanWindow) {
+            return this.scanWindow.getRegistry().getOverflowCount();
+        }
+    }
+
+    /**
+     * Getter for the filter used to drop the advertisements of unknown
+     * beacons
+     *
+     * @return Filter used to drop the advertisements or null if every beacon
+     *         is admitted
+     */
+    public BeaconAdmissionFilter getAdmissionFilter() {
+        return this.admissionFilter;
+    }
+
+    /**
+     * Sets the filter applied to every RSSI sample before it is buffered. By
+     * default a HampelRSSIFilter is used
+     *
+     * @param sampleFilter Filter sized for the registry used by the client,
+     *                     or null to buffer samples as measured
+     */
+    public void setSampleFilter(final RSSISampleFilter sampleFilter) {
+        this.scanWindow.setSampleFilter(sampleFilter);
+    }
+
+    /**
+     * Sets the calibration applied to every RSSI sample before it is
+     * filtered. By default samples are used as measured
+     *
+     * @param calibration Calibration of the device, or null to use samples
+     *                    as measured
+     */
+    public void setCalibration(final RSSICalibration calibration) {
+        this.scanWindow.setCalibration(calibration);
+    }
+
+    /**
+     * Creates an AdaptiveScanPolicy sized for the registry used by the client
+     *
+     * @param minWindow Min time (in ms) a window lasts
+     * @param maxWindow Max time (in ms) a window lasts
+     * @return AdaptiveScanPolicy using default convergence settings
+     */
+    public AdaptiveScanPolicy createScanPolicy(final int minWindow, final int maxWindow) {
+        return new AdaptiveScanPolicy(this.scanWindow.getRegistry().capacity(),
+                minWindow,
+                maxWindow,
+                AdaptiveScanPolicy.DEFAULT_STRONGEST_BEACONS,
+                AdaptiveScanPolicy.DEFAULT_MIN_SAMPLES,
+                AdaptiveScanPolicy.DEFAULT_MAX_STANDARD_ERROR);
+    }
+
+    /**
+     * Startes the beacons scan. The window of the scan finishes when the
+     * scan policy decides so or, if there is no policy, when the radio stops
+     * scanning. If a scan is already in progress its window is finished
+     * right away. Cancelling the handle finishes the window and releases the
+     * radio
+     *
+     * @return ScanHandle signaling when the minimum number of beacons is seen
+     *         and when the window finishes
+     */
+    public ScanHandle startScan() {
+        Log.d(this.getClass().getName(), String.format(LOG_SCAN_START, this.minNumOfBeacons));
+        if (this.currentHandle != null) {
+            Log.d(this.getClass().getName(), LOG_SCAN_REPLACED);
+            this.finishScan(this.currentHandle);
+        }
+        final ScanHandle handle = new ScanHandle(this.minNumOfBeacons);
+        handle.setCancelHook(new Runnable() {
+            @Override
+            public void run() {
+                finishScan(handle);
+            }
+        });
+        synchronized (this.scanWindow) {
+            this.beacons.clear();
+            this.scanNumber++;
+            this.scanStartTime = this.currentTimeMillis();
+            this.currentHandle = handle;
+            if (this.scanPolicy != null) {
+                this.scanPolicy.reset();
+            }
+        }
+        this.advertisementSource.acquireDemand();
+        if (this.minNumOfBeacons <= 0) {
+            handle.signalMinimumBeacons(new ArrayList<Beacon>());
+        }
+        this.startScanning();
+        return handle;
+    }
+
+    /**
+     * Starts scanning continuously. The scan is restarted as soon as it ends
+     * and every advertisement is placed in the sliding window, which can be
+     * consumed at any moment using getSnapshot
+     */
+    public void startContinuousScan() {
+        Log.d(this.getClass().getName(), LOG_CONTINUOUS_START);
+        this.continuous = true;
+        this.startScanning();
+    }
+
+    /**
+     * Stops the continuous scan. The radio stops once the current scan ends
+     */
+    public void stopContinuousScan() {
+        Log.d(this.getClass().getName(), LOG_CONTINUOUS_STOP);
+        this.continuous = false;
+        this.scanWindow.clear();
+    }
+
+    /**
+     * Pauses the continuous scan. The radio stops once the current scan ends,
+     * but the window and the RSSI estimates are kept so the scan can be
+     * resumed using startContinuousScan
+     */
+    public void pauseContinuousScan() {
+        this.continuous = false;
+    }
+
+    /**
+     * Checks whether the client is scanning continuously
+     *
+     * @return boolean indicating whether the client is scanning continuously
+     */
+    public boolean isContinuous() {
+        return this.continuous;
+    }
+
+    /**
+     * Gets the beacons seen during the given amount of time. Does not block
+     * waiting for the scan to end
+     *
+     * @param windowMillis Length (in ms) of the window
+     * @return List of the beacons seen within the last windowMillis ms
+     */
+    public List<Beacon> getSnapshot(final long windowMillis) {
+        return this.scanWindow.snapshot(windowMillis, this.currentTimeMillis());
+    }
+
+    /**
+     * Gets the link quality of every beacon heard by the client, used to find
+     * dead or badly placed beacons
+     *
+     * @return List holding the health of each beacon heard so far
+     */
+    public List<BeaconHealth> getBeaconHealth() {
+        return this.scanWindow.healthSnapshot(this.currentTimeMillis());
+    }
+
+    /**
+     * Getter for the source of the advertisements
+     *
+     * @return Source of the advertisements
+     */
+    public AdvertisementSource getAdvertisementSource() {
+        return this.advertisementSource;
+    }
+
+    /**
+     * Gets the current time of the clock used to stamp the advertisements
+     *
+     * @return current time in ms
+     */
+    public long currentTimeMillis() {
+        return this.advertisementSource.currentTimeMillis();
+    }
+
+    /**
+     * Blocks until the clock used to stamp the advertisements reaches the
+     * given time
+     *
+     * @param time Time (in ms) to wait for
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void sleepUntil(final long time) throws InterruptedException {
+        this.advertisementSource.sleepUntil(time);
+    }
+
+    /**
+     * Stops listening to the source of the advertisements. The window of the
+     * current scan, if any, is finished right away
+     */
+    public void close() {
+        this.continuous = false;
+        this.finishScan(this.currentHandle);
+        this.advertisementSource.removeListener(this.advertisementListener);
+    }
+
+    /**
+     * Gets the estimator of the RSSI values of the scanned beacons. The
+     * estimates are smoothed across scan windows and keep being updated as
+     * long as the client scans
+     *
+     * @return RSSIEstimator backed by the client
+     */
+    public RSSIEstimator getRSSIEstimator() {
+        return this.rssiEstimator;
+    }
+
+    /**
+     * Finishes the window of the given scan unless it already finished
+     *
+     * @param handle handle of the scan being finished
+     */
+    private void finishScan(final ScanHandle handle) {
+        final List<Beacon> windowBeacons;
+        final long elapsed;
+        synchronized (this.scanWindow) {
+            if (handle == null || handle != this.currentHandle) {
+                return;
             }
-        } catch (Exception e) {
-            Log.d(this.getClass().getName(), String.format(LOG_FAILED_ACQUIRE, e.getMessage()));
-            return null;
+            this.currentHandle = null;
+            windowBeacons = this.scanWindow.snapshotSince(this.scanStartTime);
+            elapsed = this.currentTimeMillis() - this.scanStartTime;
+        }
+        this.advertisementSource.releaseDemand();
+        Log.d(this.getClass().getName(), String.format(LOG_SCAN_END, elapsed, windowBeacons.size()));
+        handle.finish(windowBeacons);
+    }
+
+    /**
+     * Starts the radio unless it is already scanning
+     */
+    private synchronized void startScanning() {
+        if (!this.scanning) {
+            this.scanning = true;
+            this.advertisementSource.startScanning();
+        }
+    }
+
+    /**
+     * Restarts the radio if the client is scanning continuously or the
+     * window of the current scan has not finished yet
+     */
+    private synchronized void onScanEnded() {
+        this.scanning = false;
+        if (this.continuous || this.currentHandle != null) {
+            this.startScanning();
         }
-        return this.executorService.submit(this.startScanCallable);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,362 @@
+package walker.blue.core.lib.capture;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import walker.blue.core.lib.beacon.AdvertisementListener;
+import walker.blue.core.lib.beacon.AdvertisementSource;
+
+/**
+ * AdvertisementSource replaying a scan log, so a recorded walk can be rerun
+ * without a radio. The advertisements are delivered by a worker thread
+ * either at the pace at which they were recorded or as fast as possible.
+ *
+ * When replaying as fast as possible the clock of the source only moves
+ * forward while a consumer is waiting on it, either through sleepUntil or
+ * through acquireDemand. Since the consumers read the same clock, a replay
+ * produces the same results no matter how fast the machine running it is.
+ * Advertisements recorded while no scan cycle is in progress are dropped,
+ * just like the radio would. The replay can be paused, which holds back
+ * every event and stops the clock until it is resumed
+ */
+public class ReplayAdvertisementSource implements AdvertisementSource, Closeable {
+
+    /**
+     * Log Messages
+     */
+    private static final String LOG_READ_FAILED = "Failed reading scan log. Replay stopped - %s";
+    /**
+     * Name of the thread delivering the advertisements
+     */
+    private static final String WORKER_NAME = "ScanReplay";
+    /**
+     * Default length (in ms) of each scan cycle
+     */
+    private static final int DEFAULT_SCAN_INTERVAL = 5000;
+
+    /**
+     * Reader of the log being replayed
+     */
+    private final ScanLogReader reader;
+    /**
+     * Whether the log is replayed at the pace at which it was recorded
+     */
+    private final boolean realTime;
+    /**
+     * Listeners receiving the advertisements
+     */
+    private final List<AdvertisementListener> listeners;
+    /**
+     * Length (in ms) of each scan cycle
+     */
+    private int scanInterval;
+    /**
+     * Current time (in ms) of the source when replaying as fast as possible
+     */
+    private volatile long now;
+    /**
+     * Value of System.nanoTime and of the clock of the source when the
+     * replay started, used when replaying at real time
+     */
+    private final long startNanos;
+    private final long startTime;
+    /**
+     * Whether a scan cycle is in progress, and when it started and ends
+     */
+    private boolean scanning;
+    private long cycleStart;
+    private long cycleEnd;
+    /**
+     * Number of consumers waiting through acquireDemand
+     */
+    private int demand;
+    /**
+     * Number of consumers waiting through sleepUntil and the latest time any
+     * of them is waiting for
+     */
+    private int sleepers;
+    private long sleepLimit;
+    /**
+     * Whether the worker is delivering an event
+     */
+    private boolean delivering;
+    /**
+     * Next advertisement of the log, if any
+     */
+    private boolean hasPending;
+    private long pendingTime;
+    private long pendingMost;
+    private long pendingLeast;
+    private int pendingMajor;
+    private int pendingMinor;
+    private int pendingRSSI;
+    /**
+     * Thread delivering the advertisements
+     */
+    private Thread worker;
+    /**
+     * Whether the source was closed
+     */
+    private boolean closed;
+    /**
+     * Whether the replay is paused
+     */
+    private boolean paused;
+
+    /**
+     * Constructor. Creates a source replaying the log read by the given
+     * reader
+     *
+     * @param reader Reader of the log being replayed
+     * @param realTime Whether the log is replayed at the pace at which it was
+     *                 recorded, instead of as fast as possible
+     */
+    public ReplayAdvertisementSource(final ScanLogReader reader, final boolean realTime) {
+        this.reader = reader;
+        this.realTime = realTime;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.scanInterval = DEFAULT_SCAN_INTERVAL;
+        this.now = reader.getStartTime();
+        this.startNanos = System.nanoTime();
+        this.startTime = reader.getStartTime();
+        this.scanning = false;
+        this.demand = 0;
+        this.sleepers = 0;
+        this.delivering = false;
+        this.closed = false;
+        this.paused = false;
+        this.readNext();
+    }
+
+    @Override
+    public void addListener(final AdvertisementListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(final AdvertisementListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void setScanningInterval(final int scanInterval) {
+        this.scanInterval = scanInterval;
+    }
+
+    @Override
+    public synchronized void startScanning() {
+        if (this.worker == null) {
+            this.worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    replay();
+                }
+            }, WORKER_NAME);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+        if (!this.scanning) {
+            this.scanning = true;
+            this.cycleStart = this.currentTimeMillis();
+            this.cycleEnd = this.cycleStart + this.scanInterval;
+            this.notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void acquireDemand() {
+        this.demand++;
+        this.notifyAll();
+    }
+
+    @Override
+    public synchronized void releaseDemand() {
+        if (this.demand > 0) {
+            this.demand--;
+        }
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        if (this.realTime) {
+            return this.startTime + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos);
+        }
+        return this.now;
+    }
+
+    @Override
+    public void sleepUntil(final long time) throws InterruptedException {
+        if (this.realTime) {
+            final long delay = time - this.currentTimeMillis();
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            return;
+        }
+        synchronized (this) {
+            this.sleepLimit = this.sleepers == 0 ? time : Math.max(this.sleepLimit, time);
+            this.sleepers++;
+            try {
+                if (!this.scanning && !this.paused && this.now < time) {
+                    // Nothing is delivered outside of a scan cycle
+                    this.now = time;
+                }
+                this.notifyAll();
+                while ((this.now < time || this.delivering) && !this.closed) {
+                    this.wait();
+                }
+            } finally {
+                this.sleepers--;
+            }
+        }
+    }
+
+    /**
+     * Pauses the replay. No event is delivered and, when replaying as fast as
+     * possible, the clock does not move until the replay is resumed. Used to
+     * set up several consumers before any of them sees an advertisement
+     */
+    public synchronized void pause() {
+        this.paused = true;
+    }
+
+    /**
+     * Resumes the replay after a call to pause
+     */
+    public synchronized void resume() {
+        this.paused = false;
+        this.notifyAll();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        this.notifyAll();
+        this.reader.close();
+    }
+
+    /**
+     * Delivers the advertisements and the ends of the scan cycles to the
+     * listeners until the source is closed
+     */
+    private void replay() {
+        while (true) {
+            final boolean advertisement;
+            final long time;
+            final long uuidMost;
+            final long uuidLeast;
+            final int major;
+            final int minor;
+            final int rssi;
+            synchronized (this) {
+                if (this.closed) {
+                    return;
+                }
+                if (this.paused) {
+                    this.waitForChange(0);
+                    continue;
+                }
+                if (!this.scanning) {
+                    if (!this.realTime && this.sleepers > 0 && this.now < this.sleepLimit) {
+                        this.now = this.sleepLimit;
+                        this.notifyAll();
+                    }
+                    this.waitForChange(0);
+                    continue;
+                }
+                while (this.hasPending && this.pendingTime < this.cycleStart) {
+                    this.readNext();
+                }
+                advertisement = this.hasPending && this.pendingTime <= this.cycleEnd;
+                time = advertisement ? this.pendingTime : this.cycleEnd;
+                if (this.realTime) {
+                    final long delay = time - this.currentTimeMillis();
+                    if (delay > 0) {
+                        this.waitForChange(delay);
+                        continue;
+                    }
+                } else {
+                    final long limit = this.demand > 0
+                            ? Long.MAX_VALUE
+                            : this.sleepers > 0 ? this.sleepLimit : this.now;
+                    if (time > limit) {
+                        if (limit > this.now) {
+                            this.now = limit;
+                            this.notifyAll();
+                        }
+                        this.waitForChange(0);
+                        continue;
+                    }
+                    if (time > this.now) {
+                        this.now = time;
+                    }
+                }
+                uuidMost = this.pendingMost;
+                uuidLeast = this.pendingLeast;
+                major = this.pendingMajor;
+                minor = this.pendingMinor;
+                rssi = this.pendingRSSI;
+                if (advertisement) {
+                    this.readNext();
+                } else {
+                    this.scanning = false;
+                }
+                this.delivering = true;
+            }
+            try {
+                for (final AdvertisementListener listener : this.listeners) {
+                    if (advertisement) {
+                        listener.onAdvertisement(uuidMost, uuidLeast, major, minor, rssi, time);
+                    } else {
+                        listener.onScanCycleEnded();
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    this.delivering = false;
+                    this.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the state of the source changes or the given amount of
+     * time goes by. Must be called while holding the lock of the source
+     *
+     * @param timeout max time (in ms) to wait, 0 to wait without limit
+     */
+    private void waitForChange(final long timeout) {
+        try {
+            this.wait(timeout);
+        } catch (final InterruptedException e) {
+            this.closed = true;
+        }
+    }
+
+    /**
+     * Reads the next advertisement of the log into the pending fields. Must
+     * be called while holding the lock of the source
+     */
+    private void readNext() {
+        try {
+            this.hasPending = this.reader.next();
+        } catch (final IOException e) {
+            Log.d(this.getClass().getName(), String.format(LOG_READ_FAILED, e.getMessage()));
+            this.hasPending = false;
+        }
+        if (this.hasPending) {
+            this.pendingTime = this.reader.getTime();
+            this.pendingMost = this.reader.getUUIDMostSignificantBits();
+            this.pendingLeast = this.reader.getUUIDLeastSignificantBits();
+            this.pendingMajor = this.reader.getMajor();
+            this.pendingMinor = this.reader.getMinor();
+            this.pendingRSSI = this.reader.getRSSI();
+        }
+    }
+}
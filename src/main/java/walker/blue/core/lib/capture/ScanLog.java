@@ -0,0 +1,34 @@
+package walker.blue.core.lib.capture;
+
+/**
+ * Constants describing the binary format of a scan log. A log starts with a
+ * header holding MAGIC (int), VERSION (short) and the time of the first
+ * advertisement (long). It is followed by one record per advertisement:
+ *
+ *   time delta (int, ms since the previous advertisement)
+ *   uuid most significant bits (long)
+ *   uuid least significant bits (long)
+ *   major (unsigned short)
+ *   minor (unsigned short)
+ *   rssi (byte)
+ *
+ * All values are big endian, as written by DataOutputStream
+ */
+public final class ScanLog {
+
+    /**
+     * Value identifying a scan log ("BWSL")
+     */
+    public static final int MAGIC = 0x4257534C;
+    /**
+     * Version of the format
+     */
+    public static final short VERSION = 1;
+    /**
+     * Size (in bytes) of each record
+     */
+    public static final int RECORD_SIZE = 4 + 8 + 8 + 2 + 2 + 1;
+
+    private ScanLog() {
+    }
+}
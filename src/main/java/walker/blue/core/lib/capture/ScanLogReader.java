@@ -0,0 +1,168 @@
+package walker.blue.core.lib.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the advertisements held in a scan log one at a time. The fields of
+ * the current advertisement are exposed through getters, so reading does not
+ * allocate. Not thread safe
+ */
+public class ScanLogReader implements Closeable {
+
+    /**
+     * Error messages
+     */
+    private static final String ERROR_NOT_A_LOG = "Stream is not a scan log";
+    private static final String ERROR_VERSION = "Unsupported scan log version %d";
+
+    /**
+     * Stream from which the log is read
+     */
+    private final DataInputStream in;
+    /**
+     * Whether the end of the log was reached
+     */
+    private boolean exhausted;
+    /**
+     * Time (in ms) of the first advertisement of the log
+     */
+    private long startTime;
+    /**
+     * Fields of the current advertisement
+     */
+    private long time;
+    private long uuidMost;
+    private long uuidLeast;
+    private int major;
+    private int minor;
+    private int rssi;
+
+    /**
+     * Constructor. Reads the header of the log held in the given stream. An
+     * empty stream is read as an empty log
+     *
+     * @param in Stream from which the log is read
+     * @throws IOException if the stream does not hold a scan log
+     */
+    public ScanLogReader(final InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.exhausted = false;
+        final int magic;
+        try {
+            magic = this.in.readInt();
+        } catch (final EOFException e) {
+            this.exhausted = true;
+            return;
+        }
+        if (magic != ScanLog.MAGIC) {
+            throw new IOException(ERROR_NOT_A_LOG);
+        }
+        final short version = this.in.readShort();
+        if (version != ScanLog.VERSION) {
+            throw new IOException(String.format(ERROR_VERSION, version));
+        }
+        this.startTime = this.in.readLong();
+        this.time = this.startTime;
+    }
+
+    /**
+     * Moves to the next advertisement of the log
+     *
+     * @return boolean indicating whether there was another advertisement
+     * @throws IOException if reading the log fails
+     */
+    public boolean next() throws IOException {
+        if (this.exhausted) {
+            return false;
+        }
+        try {
+            final int delta = this.in.readInt();
+            this.uuidMost = this.in.readLong();
+            this.uuidLeast = this.in.readLong();
+            this.major = this.in.readUnsignedShort();
+            this.minor = this.in.readUnsignedShort();
+            this.rssi = this.in.readByte();
+            this.time += delta;
+            return true;
+        } catch (final EOFException e) {
+            this.exhausted = true;
+            return false;
+        }
+    }
+
+    /**
+     * Getter for the time of the first advertisement of the log
+     *
+     * @return Time in ms
+     */
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Getter for the time at which the current advertisement was received
+     *
+     * @return Time in ms
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * Getter for the most significant bits of the UUID of the current
+     * advertisement
+     *
+     * @return most significant bits of the UUID
+     */
+    public long getUUIDMostSignificantBits() {
+        return this.uuidMost;
+    }
+
+    /**
+     * Getter for the least significant bits of the UUID of the current
+     * advertisement
+     *
+     * @return least significant bits of the UUID
+     */
+    public long getUUIDLeastSignificantBits() {
+        return this.uuidLeast;
+    }
+
+    /**
+     * Getter for the major of the current advertisement
+     *
+     * @return major of the beacon
+     */
+    public int getMajor() {
+        return this.major;
+    }
+
+    /**
+     * Getter for the minor of the current advertisement
+     *
+     * @return minor of the beacon
+     */
+    public int getMinor() {
+        return this.minor;
+    }
+
+    /**
+     * Getter for the RSSI value of the current advertisement
+     *
+     * @return RSSI value
+     */
+    public int getRSSI() {
+        return this.rssi;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.exhausted = true;
+        this.in.close();
+    }
+}
@@ -0,0 +1,103 @@
+package walker.blue.core.lib.capture;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import walker.blue.core.lib.beacon.AdvertisementListener;
+
+/**
+ * Writes the advertisements found by an AdvertisementSource to a scan log.
+ * Add the recorder as a listener of the source used by a
+ * SyncBeaconScanClient to capture the stream seen by the client. Recording
+ * stops, without affecting the scan, if writing fails
+ */
+public class ScanRecorder implements AdvertisementListener, Closeable {
+
+    /**
+     * Log Messages
+     */
+    private static final String LOG_WRITE_FAILED = "Failed writing scan log. Recording stopped - %s";
+
+    /**
+     * Stream where the log is written
+     */
+    private DataOutputStream out;
+    /**
+     * Time (in ms) of the last advertisement written
+     */
+    private long lastTime;
+    /**
+     * Whether the header has been written
+     */
+    private boolean headerWritten;
+    /**
+     * Whether recording stopped
+     */
+    private boolean stopped;
+
+    /**
+     * Constructor. Creates a recorder writing to the given stream
+     *
+     * @param out Stream where the log is written
+     */
+    public ScanRecorder(final OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.headerWritten = false;
+        this.stopped = false;
+    }
+
+    @Override
+    public synchronized void onAdvertisement(final long uuidMost,
+                                             final long uuidLeast,
+                                             final int major,
+                                             final int minor,
+                                             final int rssi,
+                                             final long time) {
+        if (this.stopped) {
+            return;
+        }
+        try {
+            if (!this.headerWritten) {
+                this.out.writeInt(ScanLog.MAGIC);
+                this.out.writeShort(ScanLog.VERSION);
+                this.out.writeLong(time);
+                this.lastTime = time;
+                this.headerWritten = true;
+            }
+            this.out.writeInt((int) (time - this.lastTime));
+            this.out.writeLong(uuidMost);
+            this.out.writeLong(uuidLeast);
+            this.out.writeShort(major);
+            this.out.writeShort(minor);
+            this.out.writeByte(rssi);
+            this.lastTime = time;
+        } catch (final IOException e) {
+            Log.d(this.getClass().getName(), String.format(LOG_WRITE_FAILED, e.getMessage()));
+            this.stopped = true;
+        }
+    }
+
+    @Override
+    public synchronized void onScanCycleEnded() {
+        if (this.stopped) {
+            return;
+        }
+        try {
+            this.out.flush();
+        } catch (final IOException e) {
+            Log.d(this.getClass().getName(), String.format(LOG_WRITE_FAILED, e.getMessage()));
+            this.stopped = true;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.stopped = true;
+        this.out.close();
+    }
+}
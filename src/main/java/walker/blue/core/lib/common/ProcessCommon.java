@@ -2,11 +2,20 @@ package walker.blue.core.lib.common;
 
 import android.util.Log;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import walker.blue.beacon.lib.beacon.Beacon;
-import walker.blue.core.lib.beacon.BeaconComparator;
+import walker.blue.core.lib.beacon.AverageRSSIEstimator;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.beacon.StrongestBeacons;
+import walker.blue.core.lib.location.FingerprintLocator;
+import walker.blue.core.lib.location.FloorEstimator;
+import walker.blue.core.lib.location.GridParticleFilter;
+import walker.blue.core.lib.location.PositionEstimate;
+import walker.blue.core.lib.location.WeightedTrilateration;
 import walker.blue.core.lib.types.Building;
 import walker.blue.path.lib.node.GridNode;
 import walker.blue.path.lib.node.RectCoordinates;
@@ -21,18 +30,182 @@ public abstract class ProcessCommon {
      * Log Messages
      */
     private static final String LOG_PASSED_DETLA = "Beacons passed delta.";
-    private static final String LOG_MAX_BEACON = "Max Beacon: Major: %d Minor: %d AvgRSSI: %f";
-    private static final String LOG_SEC_BEACON = "Second Beacon: Major: %d Minor: %d AvgRSSI: %f";
+    private static final String LOG_MAX_BEACON = "Max Beacon: Major: %d Minor: %d RSSI: %f";
+    private static final String LOG_SEC_BEACON = "Second Beacon: Major: %d Minor: %d RSSI: %f";
     private static final String LOG_NEW_VALS = "New Values(x,y,z): (%d, %d, %d)";
     /**
      * Allowed delta value to place user between two beacons
      */
     private static final double BEACON_POWER_DELTA = 7;
+    /**
+     * Confidence radius (in grid units) of a location placed on a beacon
+     */
+    private static final double BEACON_PROXIMITY_RADIUS = 3;
+
+    /**
+     * Selector for the two strongest beacons of the scan
+     */
+    private final StrongestBeacons strongestBeacons = new StrongestBeacons(2);
+    /**
+     * Estimator used to get the rssi value of each beacon
+     */
+    private RSSIEstimator rssiEstimator;
+    /**
+     * Locator used for buildings holding RSSI fingerprints
+     */
+    private FingerprintLocator fingerprintLocator;
+    /**
+     * Estimator keeping track of the floor the user is on
+     */
+    private FloorEstimator floorEstimator;
+    /**
+     * Filter used instead of the trilateration engine when enabled
+     */
+    private GridParticleFilter particleFilter;
+    /**
+     * Number of particles of the particle filter, 0 when it is not used
+     */
+    private int numParticles;
+
+    /**
+     * Sets the estimator used to get the rssi value of each beacon. By
+     * default the average of the rssi values measured in the scan is used
+     *
+     * @param rssiEstimator Estimator used to get the rssi value of each beacon
+     */
+    protected void setRSSIEstimator(final RSSIEstimator rssiEstimator) {
+        this.rssiEstimator = rssiEstimator;
+    }
+
+    /**
+     * Getter for the estimator used to get the rssi value of each beacon
+     *
+     * @return Estimator used to get the rssi value of each beacon
+     */
+    protected RSSIEstimator getRSSIEstimator() {
+        if (this.rssiEstimator == null) {
+            this.setRSSIEstimator(new AverageRSSIEstimator());
+        }
+        return this.rssiEstimator;
+    }
+
+    /**
+     * Sets whether the users location is found using a particle filter
+     * instead of the trilateration engine. The filter follows the corridors
+     * and floor connectors of the building at the cost of more CPU time per
+     * fix, which grows with the number of particles. Disabled by default
+     *
+     * @param numParticles Number of particles of the filter (for example
+     *                     GridParticleFilter.DEFAULT_NUM_PARTICLES), or 0 to
+     *                     use the trilateration engine
+     */
+    public void setParticleFilter(final int numParticles) {
+        if (numParticles < 0) {
+            throw new IllegalArgumentException("numParticles must not be negative");
+        }
+        this.numParticles = numParticles;
+        if (this.particleFilter != null && this.particleFilter.getNumParticles() != numParticles) {
+            this.particleFilter = null;
+        }
+    }
+
+    /**
+     * Gets the current time used to move the particles of the particle
+     * filter. By default a monotonic clock is used
+     *
+     * @return Current time (in ms)
+     */
+    protected long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Gets the users location using the fingerprints of the building if it
+     * was surveyed, or the particle filter if it is enabled, or the given
+     * trilateration engine otherwise, falling back to the proximity of the
+     * beacons if none can find one. The trilateration is done on the floor
+     * given by the floor estimator
+     *
+     * @param beacons list of beacons scanned
+     * @param building object representing which building the user is currently in
+     * @param trilateration engine used to locate the user
+     * @return GridNode representing the current location of the user
+     */
+    protected GridNode getUserLocation(final List<Beacon> beacons,
+                                       final Building building,
+                                       final WeightedTrilateration trilateration) {
+        final PositionEstimate position = this.getUserPosition(beacons, building, trilateration);
+        return position == null ? null : position.getNode();
+    }
 
     /**
-     * Comparator used to sort the list of beacons according to their average rssi values
+     * Gets the users location the same way as getUserLocation, along with
+     * its confidence radius and the number of beacons it is based on
+     *
+     * @param beacons list of beacons scanned
+     * @param building object representing which building the user is currently in
+     * @param trilateration engine used to locate the user
+     * @return PositionEstimate holding the current location of the user, or
+     *         null if it could not be found
      */
-    private BeaconComparator beaconComparator;
+    protected PositionEstimate getUserPosition(final List<Beacon> beacons,
+                                               final Building building,
+                                               final WeightedTrilateration trilateration) {
+        if (beacons.isEmpty()) {
+            return null;
+        }
+        if (this.floorEstimator == null || this.floorEstimator.getBuilding() != building) {
+            this.floorEstimator = new FloorEstimator(building);
+        }
+        final int floor = this.floorEstimator.update(beacons, this.getRSSIEstimator());
+        PositionEstimate position = null;
+        if (building.getFingerprints() != null) {
+            if (this.fingerprintLocator == null || this.fingerprintLocator.getBuilding() != building) {
+                this.fingerprintLocator = new FingerprintLocator(building);
+            }
+            final GridNode location = floor == FloorEstimator.UNKNOWN_FLOOR
+                    ? this.fingerprintLocator.locate(beacons, this.getRSSIEstimator())
+                    : this.fingerprintLocator.locate(beacons, this.getRSSIEstimator(), floor);
+            if (location != null) {
+                position = new PositionEstimate(location,
+                        this.fingerprintLocator.getLastRadius(),
+                        this.fingerprintLocator.getLastBeaconCount());
+            }
+        }
+        if (position == null && this.numParticles > 0) {
+            if (this.particleFilter == null || this.particleFilter.getBuilding() != building) {
+                this.particleFilter = new GridParticleFilter(building,
+                        this.numParticles,
+                        GridParticleFilter.DEFAULT_WALKING_SPEED,
+                        new Random());
+            }
+            final GridNode location =
+                    this.particleFilter.locate(beacons, this.getRSSIEstimator(), this.currentTimeMillis());
+            if (location != null && this.particleFilter.getLastBeaconCount() > 0) {
+                position = new PositionEstimate(location,
+                        this.particleFilter.getLastRadius(),
+                        this.particleFilter.getLastBeaconCount());
+            }
+        }
+        if (position == null) {
+            final GridNode location = floor == FloorEstimator.UNKNOWN_FLOOR
+                    ? trilateration.locate(beacons, this.getRSSIEstimator())
+                    : trilateration.locate(beacons, this.getRSSIEstimator(), floor);
+            if (location != null) {
+                position = new PositionEstimate(location,
+                        trilateration.getLastRadius(),
+                        trilateration.getLastBeaconCount());
+            }
+        }
+        if (position != null) {
+            Log.d(this.getClass().getName(), String.format(LOG_NEW_VALS,
+                    position.getLocation().getX(),
+                    position.getLocation().getY(),
+                    position.getLocation().getZ()));
+            return position;
+        }
+        return this.getPositionByProximity(beacons, building);
+    }
 
     /**
      * Gets the users location by checking which beacon is closest to the user
@@ -43,38 +216,72 @@ public abstract class ProcessCommon {
      * @return GridNode representing the current location of the user
      */
     protected GridNode getUserLocationProximity(final List<Beacon> beacons, final Building building) {
-        if (this.beaconComparator == null) {
-            this.beaconComparator = new BeaconComparator();
-        }
+        final PositionEstimate position = this.getPositionByProximity(beacons, building);
+        return position == null ? null : position.getNode();
+    }
 
-        if (beacons.size() > 2) {
-            Collections.sort(beacons, this.beaconComparator);
-            final Beacon maxBeacon = beacons.get(beacons.size() - 1);
-            final Beacon secondBeacon = beacons.get(beacons.size() - 2);
-            if (Math.abs(maxBeacon.getAverageRSSIValue() - secondBeacon.getAverageRSSIValue()) <= BEACON_POWER_DELTA) {
+    /**
+     * Gets the users location by checking which beacon is closest to the
+     * user, along with its confidence radius. A location between two beacons
+     * is trusted up to half the distance between them. Once the floor of the
+     * user is known only the beacons on that floor are used
+     *
+     * @param beacons list of beacons scanned
+     * @param building object representing which building the user is currently in
+     * @return PositionEstimate holding the current location of the user, or
+     *         null if it could not be found
+     */
+    private PositionEstimate getPositionByProximity(final List<Beacon> beacons, final Building building) {
+        final int floor = this.getEstimatedFloor(building, FloorEstimator.UNKNOWN_FLOOR);
+        final Set<Beacon> candidates = floor == FloorEstimator.UNKNOWN_FLOOR
+                ? building.getBeaconLocationMap().keySet()
+                : building.getBeaconIndex().getFloorBeacons(floor);
+        final int found = this.strongestBeacons.select(beacons, this.getRSSIEstimator(), candidates);
+        if (found == 0) {
+            return null;
+        }
+        final Beacon maxBeacon = this.strongestBeacons.getBeacon(0);
+        if (beacons.size() > 2 && found > 1) {
+            final Beacon secondBeacon = this.strongestBeacons.getBeacon(1);
+            if (this.strongestBeacons.getRSSI(0) - this.strongestBeacons.getRSSI(1) <= BEACON_POWER_DELTA) {
                 Log.d(this.getClass().getName(), LOG_PASSED_DETLA);
                 this.logBeacon(LOG_MAX_BEACON, maxBeacon);
                 this.logBeacon(LOG_SEC_BEACON, secondBeacon);
                 final RectCoordinates maxLocation = building.getBeaconLocationMap().get(maxBeacon);
                 final RectCoordinates secondLocation = building.getBeaconLocationMap().get(secondBeacon);
-                final int newZ = (maxLocation.getZ() + secondLocation.getZ()) / 2;
+                final int newZ = this.getEstimatedFloor(building, (maxLocation.getZ() + secondLocation.getZ()) / 2);
                 final int newY = (maxLocation.getY() + secondLocation.getY()) / 2;
                 final int newX = (maxLocation.getX() + secondLocation.getX()) / 2;
                 Log.d(this.getClass().getName(), String.format(LOG_NEW_VALS, newX, newY, newZ));
-                if (building.searchSpaceContains(newX, newY, newZ)) {
-                    return building.getSearchSpace()
-                            .get(newZ)
-                            .get(newY)
-                            .get(newX);
-                } else {
+                final GridNode location = building.nodeAt(newX, newY, newZ);
+                if (location == null) {
                     return null;
                 }
+                final double spacing = Math.hypot(maxLocation.getX() - secondLocation.getX(),
+                        maxLocation.getY() - secondLocation.getY());
+                return new PositionEstimate(location, Math.max(BEACON_PROXIMITY_RADIUS, spacing / 2), 2);
             }
-            return this.getBeaconLocation(building, maxBeacon);
         } else {
-            this.logBeacon(LOG_MAX_BEACON, beacons.get(0));
-            return this.getBeaconLocation(building, beacons.get(0));
+            this.logBeacon(LOG_MAX_BEACON, maxBeacon);
+        }
+        final GridNode location = this.getBeaconLocation(building, maxBeacon);
+        return location == null ? null : new PositionEstimate(location, BEACON_PROXIMITY_RADIUS, 1);
+    }
+
+    /**
+     * Gets the floor the user is on according to the floor estimator
+     *
+     * @param building Building in which the user is located
+     * @param fallback Floor returned if the floor is not known yet
+     * @return Estimated floor of the user, or the fallback if it is unknown
+     */
+    private int getEstimatedFloor(final Building building, final int fallback) {
+        if (this.floorEstimator == null
+                || this.floorEstimator.getBuilding() != building
+                || this.floorEstimator.getFloor() == FloorEstimator.UNKNOWN_FLOOR) {
+            return fallback;
         }
+        return this.floorEstimator.getFloor();
     }
 
     /**
@@ -88,15 +295,7 @@ public abstract class ProcessCommon {
         if (!building.getBeaconLocationMap().containsKey(beacon)) {
             return null;
         }
-        final RectCoordinates beaconLoc = building.getBeaconLocationMap().get(beacon);
-        if (building.searchSpaceContains(beaconLoc.getX(), beaconLoc.getY(), beaconLoc.getZ())) {
-            return building.getSearchSpace()
-                    .get(beaconLoc.getZ())
-                    .get(beaconLoc.getY())
-                    .get(beaconLoc.getX());
-        } else {
-            return null;
-        }
+        return building.nodeAt(building.getBeaconLocationMap().get(beacon));
     }
 
     /**
@@ -106,6 +305,6 @@ public abstract class ProcessCommon {
      * @param b beacon being logged
      */
     private void logBeacon(final String f, final Beacon b) {
-        Log.d(this.getClass().getName(), String.format(f, b.getMajor(), b.getMinor(), b.getAverageRSSIValue()));
+        Log.d(this.getClass().getName(), String.format(f, b.getMajor(), b.getMinor(), this.getRSSIEstimator().getRSSI(b)));
     }
 }
@@ -13,6 +13,8 @@ import walker.blue.beacon.lib.beacon.BeaconBuilder;
 import walker.blue.core.lib.types.Building;
 import walker.blue.core.lib.types.DestinationTable;
 import walker.blue.core.lib.types.DestinationType;
+import walker.blue.core.lib.types.FingerprintDatabase;
+import walker.blue.core.lib.types.NodeGrid;
 import walker.blue.path.lib.floor.FloorConnector;
 import walker.blue.path.lib.node.GridNode;
 import walker.blue.path.lib.node.RectCoordinates;
@@ -59,13 +61,14 @@ public class AttrToJava {
         if (nodes == null || nodes.isEmpty()) {
             return null;
         }
-        final DestinationTable destinations = parseBuildingDestinations(rawBuildingData, nodes);
-        final List<FloorConnector> connectors = parseBuildingFloorConnectors(rawBuildingData, nodes);
+        final NodeGrid grid = new NodeGrid(nodes);
+        final DestinationTable destinations = parseBuildingDestinations(rawBuildingData, grid);
+        final List<FloorConnector> connectors = parseBuildingFloorConnectors(rawBuildingData, grid);
         final RectCoordinates northPoint = parseNorthPoint(rawBuildingData);
         if (floorHeight != DDBConstants.DEFAULT_FLOOR_HEIGHT && buildingUUID != null &&
                 nodeDistance != DDBConstants.DEFAULT_NODE_DISTANCE && beacons != null && !beacons.isEmpty() &&
                 destinations != null && !destinations.isEmpty()) {
-            return new Building(buildingUUID,
+            final Building building = new Building(buildingUUID,
                     nodeDistance,
                     floorHeight,
                     nodes,
@@ -73,6 +76,8 @@ public class AttrToJava {
                     beacons,
                     destinations,
                     northPoint);
+            building.setFingerprints(parseBuildingFingerprints(rawBuildingData));
+            return building;
         } else {
             return null;
         }
@@ -231,22 +236,25 @@ public class AttrToJava {
      * destinations of the building and their tags
      *
      * @param rawData Map of AttributeValues representing the Building data
-     * @param nodes List of nodes of the building
+     * @param grid Flat index over the nodes of the building
      * @return Map containing the tags as keys and their corresponding nodes
      * as values
      */
     private static DestinationTable parseBuildingDestinations(final Map<String, AttributeValue> rawData,
-                                                              final List<List<List<GridNode>>> nodes) {
-        if (!rawData.containsKey(DDBConstants.DESTINATIONS) || nodes.isEmpty()) {
+                                                              final NodeGrid grid) {
+        if (!rawData.containsKey(DDBConstants.DESTINATIONS) || grid.size() == 0) {
             return null;
         }
         final DestinationTable destinations = new DestinationTable();
         for(final AttributeValue destination : rawData.get(DDBConstants.DESTINATIONS).getL()) {
             final Map<String, AttributeValue> destMap = destination.getM();
             System.out.println();
-            final GridNode currentNode = nodes.get(Integer.valueOf(destMap.get(DDBConstants.Z).getN()))
-                    .get(Integer.valueOf(destMap.get(DDBConstants.Y).getN()))
-                    .get(Integer.valueOf(destMap.get(DDBConstants.X).getN()));
+            final GridNode currentNode = grid.nodeAt(Integer.valueOf(destMap.get(DDBConstants.X).getN()),
+                    Integer.valueOf(destMap.get(DDBConstants.Y).getN()),
+                    Integer.valueOf(destMap.get(DDBConstants.Z).getN()));
+            if (currentNode == null) {
+                continue;
+            }
             final String typeString = destMap.get(DDBConstants.DESTINATION_TYPE).getS();
             final DestinationType type = DestinationType.valueOf(typeString);
             final String key;
@@ -265,21 +273,21 @@ public class AttrToJava {
      * floor connectores of the building
      *
      * @param rawData Map of AttributeValues representing the Building data
-     * @param nodes List of nodes of the building
+     * @param grid Flat index over the nodes of the building
      * @return List containing containing the floor connectors for the building
      */
     private static List<FloorConnector> parseBuildingFloorConnectors(final Map<String, AttributeValue> rawData,
-                                                                     final List<List<List<GridNode>>> nodes) {
-        if (!rawData.containsKey(DDBConstants.FLOOR_CONNECTORS) || nodes.isEmpty()) {
+                                                                     final NodeGrid grid) {
+        if (!rawData.containsKey(DDBConstants.FLOOR_CONNECTORS) || grid.size() == 0) {
             return new ArrayList<>();
         }
         final List<FloorConnector> connectors = new ArrayList<>();
         int count = 0;
         for(final AttributeValue connector : rawData.get(DDBConstants.FLOOR_CONNECTORS).getL()) {
             final Map<String, AttributeValue> connMap = connector.getM();
-            final GridNode currentNode = nodes.get(Integer.valueOf(connMap.get(DDBConstants.Z).getN()))
-                    .get(Integer.valueOf(connMap.get(DDBConstants.Y).getN()))
-                    .get(Integer.valueOf(connMap.get(DDBConstants.X).getN()));
+            final GridNode currentNode = grid.nodeAt(Integer.valueOf(connMap.get(DDBConstants.X).getN()),
+                    Integer.valueOf(connMap.get(DDBConstants.Y).getN()),
+                    Integer.valueOf(connMap.get(DDBConstants.Z).getN()));
             if (!(currentNode instanceof FloorConnector)) {
                 continue;
             }
@@ -289,9 +297,9 @@ public class AttrToJava {
             boolean flag = false;
             for (final AttributeValue connection : connMap.get(DDBConstants.FLOOR_CONNECTORS_CONNECTIONS).getL()) {
                 final Map<String, AttributeValue> endConnMap = connection.getM();
-                final GridNode connectionNode = nodes.get(Integer.valueOf(endConnMap.get(DDBConstants.Z).getN()))
-                        .get(Integer.valueOf(endConnMap.get(DDBConstants.Y).getN()))
-                        .get(Integer.valueOf(endConnMap.get(DDBConstants.X).getN()));
+                final GridNode connectionNode = grid.nodeAt(Integer.valueOf(endConnMap.get(DDBConstants.X).getN()),
+                        Integer.valueOf(endConnMap.get(DDBConstants.Y).getN()),
+                        Integer.valueOf(endConnMap.get(DDBConstants.Z).getN()));
                 if (!(connectionNode instanceof FloorConnector)) {
                     continue;
                 } else {
@@ -328,4 +336,38 @@ public class AttrToJava {
             return null;
         }
     }
+
+    /**
+     * Parses the given map of strings to Attributes values in order get the
+     * RSSI fingerprints surveyed in the building
+     *
+     * @param rawData Map of AttributeValues representing the Building data
+     * @return FingerprintDatabase holding the fingerprints. Null if the
+     *         building was not surveyed or the data is not valid
+     */
+    private static FingerprintDatabase parseBuildingFingerprints(final Map<String, AttributeValue> rawData) {
+        if (!rawData.containsKey(DDBConstants.FINGERPRINTS)) {
+            return null;
+        }
+        final List<RectCoordinates> locations = new ArrayList<>();
+        final List<Map<Beacon, Double>> readings = new ArrayList<>();
+        try {
+            for (final AttributeValue rawFingerprint : rawData.get(DDBConstants.FINGERPRINTS).getL()) {
+                final Map<String, AttributeValue> attrFingerprint = rawFingerprint.getM();
+                if (!attrFingerprint.containsKey(DDBConstants.FINGERPRINT_READINGS)) {
+                    continue;
+                }
+                final Map<Beacon, Double> reading = new HashMap<>();
+                for (final AttributeValue rawReading : attrFingerprint.get(DDBConstants.FINGERPRINT_READINGS).getL()) {
+                    reading.put(attrToBeacon(rawReading),
+                            Double.valueOf(rawReading.getM().get(DDBConstants.BEACON_RSSI).getN()));
+                }
+                locations.add(attrToBeaconLocation(rawFingerprint));
+                readings.add(reading);
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        return locations.isEmpty() ? null : new FingerprintDatabase(locations, readings);
+    }
 }
\ No newline at end of file
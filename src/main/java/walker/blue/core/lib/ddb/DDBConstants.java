@@ -48,4 +48,7 @@ public class DDBConstants {
     public static final String UUID = "BuildingID";
     /* ---- NORTHCONSTANTS ---- */
     public static final String NORTH_POINT = "NorthPoint";
+    /* ---- FINGERPRINT CONSTANTS ---- */
+    public static final String FINGERPRINTS = "Fingerprints";
+    public static final String FINGERPRINT_READINGS = "Readings";
 }
\ No newline at end of file
@@ -302,6 +302,15 @@ public class OrientationManager {
         return mTracking;
     }
 
+    /**
+     * Gets the sensor manager used by the orientation manager.
+     *
+     * @return the sensor manager used to track the user's orientation
+     */
+    public SensorManager getSensorManager() {
+        return mSensorManager;
+    }
+
     /**
      * Notifies all listeners that the user's orientation has changed.
      */
@@ -0,0 +1,221 @@
+package walker.blue.core.lib.direction;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+/**
+ * Detects the steps of the user on the accelerometer stream. The magnitude
+ * of the acceleration is low-pass filtered and a step is counted each time
+ * it rises above an upper threshold after having dropped below a lower one.
+ * The length of each step is estimated from the swing of the acceleration
+ * during the step using the Weinberg model
+ */
+public class StepDetector implements SensorEventListener {
+
+    /**
+     * Classes should implement this interface if they want to be notified
+     * of the steps of the user
+     */
+    public interface OnStepListener {
+        /**
+         * Called when the user takes a step
+         *
+         * @param stepLength Estimated length (in meters) of the step
+         * @param time Time (in ms) at which the step was detected
+         */
+        void onStep(double stepLength, long time);
+    }
+
+    /**
+     * Weight given to each sample by the low-pass filter
+     */
+    private static final double FILTER_WEIGHT = 0.25;
+    /**
+     * Acceleration (in m/s^2) above gravity needed to count a step
+     */
+    private static final double UPPER_THRESHOLD = 1.5;
+    /**
+     * Acceleration (in m/s^2) above gravity the signal has to drop under
+     * between two steps
+     */
+    private static final double LOWER_THRESHOLD = 0.5;
+    /**
+     * Min amount of time (in ms) between two steps
+     */
+    private static final long MIN_STEP_INTERVAL = 250;
+    /**
+     * Constant of the Weinberg step length model
+     */
+    private static final double WEINBERG_CONSTANT = 0.45;
+    /**
+     * Step length (in meters) used when the swing of the step is unknown
+     */
+    private static final double DEFAULT_STEP_LENGTH = 0.7;
+    /**
+     * Min step length (in meters)
+     */
+    private static final double MIN_STEP_LENGTH = 0.3;
+    /**
+     * Max step length (in meters)
+     */
+    private static final double MAX_STEP_LENGTH = 1.2;
+    /**
+     * Nanoseconds in a millisecond
+     */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /**
+     * Listener notified of each step
+     */
+    private OnStepListener onStepListener;
+    /**
+     * Sensor manager the detector is registered with. Null if not started
+     */
+    private SensorManager sensorManager;
+    /**
+     * Filtered magnitude of the acceleration. Negative before the first
+     * sample
+     */
+    private double filtered;
+    /**
+     * Whether the signal dropped below the lower threshold since the last step
+     */
+    private boolean armed;
+    /**
+     * Min filtered magnitude since the last step
+     */
+    private double swingMin;
+    /**
+     * Max filtered magnitude since the last step
+     */
+    private double swingMax;
+    /**
+     * Time (in ms) of the last step
+     */
+    private long lastStepTime;
+    /**
+     * Number of steps detected
+     */
+    private int stepCount;
+
+    /**
+     * Constructor. Creates a detector which has not seen any sample yet
+     */
+    public StepDetector() {
+        this.reset();
+    }
+
+    /**
+     * Starts listening to the accelerometer of the given sensor manager
+     *
+     * @param sensorManager Sensor manager used to get the accelerometer
+     */
+    public void start(final SensorManager sensorManager) {
+        if (this.sensorManager == null) {
+            this.sensorManager = sensorManager;
+            this.sensorManager.registerListener(this,
+                    this.sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
+                    SensorManager.SENSOR_DELAY_GAME);
+        }
+    }
+
+    /**
+     * Stops listening to the accelerometer
+     */
+    public void stop() {
+        if (this.sensorManager != null) {
+            this.sensorManager.unregisterListener(this);
+            this.sensorManager = null;
+        }
+    }
+
+    /**
+     * Forgets all the samples seen so far
+     */
+    public void reset() {
+        this.filtered = -1;
+        this.armed = false;
+        this.swingMin = Double.MAX_VALUE;
+        this.swingMax = -Double.MAX_VALUE;
+        this.lastStepTime = Long.MIN_VALUE / 2;
+        this.stepCount = 0;
+    }
+
+    @Override
+    public void onSensorChanged(final SensorEvent event) {
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            this.addSample(event.values[0], event.values[1], event.values[2], event.timestamp / NANOS_PER_MILLI);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(final Sensor sensor, final int accuracy) { }
+
+    /**
+     * Adds an accelerometer sample to the detector
+     *
+     * @param x Acceleration (in m/s^2) along the x axis
+     * @param y Acceleration (in m/s^2) along the y axis
+     * @param z Acceleration (in m/s^2) along the z axis
+     * @param time Time (in ms) at which the sample was measured
+     * @return boolean indicating whether the sample completed a step
+     */
+    public boolean addSample(final float x, final float y, final float z, final long time) {
+        final double magnitude = Math.sqrt(x * x + y * y + z * z);
+        this.filtered = this.filtered < 0
+                ? magnitude
+                : this.filtered + FILTER_WEIGHT * (magnitude - this.filtered);
+        this.swingMin = Math.min(this.swingMin, this.filtered);
+        this.swingMax = Math.max(this.swingMax, this.filtered);
+        final double aboveGravity = this.filtered - SensorManager.GRAVITY_EARTH;
+        if (aboveGravity < LOWER_THRESHOLD) {
+            this.armed = true;
+        } else if (this.armed && aboveGravity > UPPER_THRESHOLD && time - this.lastStepTime >= MIN_STEP_INTERVAL) {
+            final double stepLength = this.getStepLength();
+            this.armed = false;
+            this.lastStepTime = time;
+            this.stepCount++;
+            this.swingMin = this.filtered;
+            this.swingMax = this.filtered;
+            if (this.onStepListener != null) {
+                this.onStepListener.onStep(stepLength, time);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the listener notified of each step
+     *
+     * @param onStepListener Listener notified of each step
+     */
+    public void setOnStepListener(final OnStepListener onStepListener) {
+        this.onStepListener = onStepListener;
+    }
+
+    /**
+     * Getter for the number of steps detected
+     *
+     * @return Number of steps detected
+     */
+    public int getStepCount() {
+        return this.stepCount;
+    }
+
+    /**
+     * Estimates the length of the current step from the swing of the
+     * acceleration since the last step
+     *
+     * @return Estimated length (in meters) of the step
+     */
+    private double getStepLength() {
+        if (this.stepCount == 0) {
+            return DEFAULT_STEP_LENGTH;
+        }
+        final double length = WEINBERG_CONSTANT * Math.pow(this.swingMax - this.swingMin, 0.25);
+        return Math.max(MIN_STEP_LENGTH, Math.min(MAX_STEP_LENGTH, length));
+    }
+}
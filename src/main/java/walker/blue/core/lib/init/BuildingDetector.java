@@ -4,38 +4,43 @@ import android.content.Context;
 import android.util.Log;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
 
 import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.AdvertisementListener;
+import walker.blue.core.lib.beacon.AdvertisementSource;
+import walker.blue.core.lib.beacon.ScanHandle;
+import walker.blue.core.lib.beacon.ScanHub;
 import walker.blue.core.lib.beacon.SyncBeaconScanClient;
 
 /**
  * Class in charge of detecting the Building ID for the building in which
- * the user is currently located
+ * the user is currently located. The UUIDs of the advertisements are fed to
+ * a SequentialBuildingDecider as they arrive, so the building is known as
+ * soon as one UUID leads the others, while the scan keeps going to gather
+ * the beacons used to locate the user
  */
 public class BuildingDetector implements Callable<BuildingDetector.Output> {
 
     /**
      * Log Messages
      */
-    private static final String LOG_LOCKING_THREAD = "Acquiring semaphore (BD) to lock thread # %d";
-    private static final String LOG_THREAD_UNBLOCKED = "Locked thread (BD) (id # %d) unblocked";
-    private static final String LOG_FAILED_ACQUIRE = "Failed acquiring semaphore - %s";
+    private static final String LOG_WAITING = "Waiting (BD) for beacons on thread # %d";
+    private static final String LOG_BEACONS_FOUND = "Beacons found (BD) - %d";
+    private static final String LOG_DECIDED = "Building decided after %d packets in %d ms";
+    private static final String LOG_UNDECIDED = "Scan finished before deciding. Using the leading UUID";
+    private static final String LOG_INTERRUPTED = "Interrupted while waiting for beacons - %s";
     /**
      * Max time (in milliseconds) which the client will scan for Beacons
      */
     private static final int SCAN_TIME = 2500;
     /**
-     * Number of permits allowed in the semaphore
+     * Min time (in milliseconds) which the client will scan for Beacons
      */
-    private static final int NUMBER_OF_PERMITS = 1;
+    private static final int MIN_SCAN_TIME = 300;
     /**
      * Minimum amount of Beacons which the class needs to determine the building ID
      */
@@ -50,10 +55,55 @@ public class BuildingDetector implements Callable<BuildingDetector.Output> {
      */
     private List<Beacon> beacons;
     /**
-     * Semaphore used to lock the thread until the minimum number of beacons
-     * are found
+     * Sequential test deciding the building as the advertisements arrive
      */
-    private Semaphore bdLock;
+    private SequentialBuildingDecider decider;
+    /**
+     * Released once the decider commits or the scan window finishes
+     */
+    private CountDownLatch decided;
+    /**
+     * Time (in ms) at which the decider committed
+     */
+    private volatile long decisionTime;
+
+    /**
+     * Feeds the UUID of every advertisement to the decider
+     */
+    private AdvertisementListener packetCounter = new AdvertisementListener() {
+        @Override
+        public void onAdvertisement(final long uuidMost,
+                                    final long uuidLeast,
+                                    final int major,
+                                    final int minor,
+                                    final int rssi,
+                                    final long time) {
+            if (decided.getCount() > 0 && decider.addPacket(uuidMost, uuidLeast)) {
+                decisionTime = time;
+                decided.countDown();
+            }
+        }
+
+        @Override
+        public void onScanCycleEnded() {
+        }
+    };
+
+    /**
+     * Stops listening to the source once the scan window finishes
+     */
+    private ScanHandle.Listener closeOnFinish = new ScanHandle.Listener() {
+        @Override
+        public void onMinimumBeaconsSeen(final ScanHandle handle) {
+        }
+
+        @Override
+        public void onWindowFinished(final ScanHandle handle) {
+            decided.countDown();
+            beaconScanClient.getAdvertisementSource().removeListener(packetCounter);
+            beaconScanClient.close();
+        }
+    };
 
     /**
      * Initializes all the fields for the Class
@@ -61,56 +111,65 @@ public class BuildingDetector implements Callable<BuildingDetector.Output> {
      * @param context Context used throughout the class
      */
     public BuildingDetector(final Context context) {
-        this.beacons = new ArrayList<>();
-        this.bdLock = new Semaphore(NUMBER_OF_PERMITS);
-        this.beaconScanClient = new SyncBeaconScanClient(context, this.beacons, SCAN_TIME, MIN_BEACONS, bdLock);
+        this(ScanHub.getInstance(context).subscribe());
     }
 
-    @Override
-    public Output call() {
-        if (!beacons.isEmpty()) {
-            beacons.clear();
-        }
-        final Future<List<Beacon>> futureBeacons = this.beaconScanClient.startScan();
-        try {
-            Log.d(this.getClass().getName(), String.format(LOG_LOCKING_THREAD, Thread.currentThread().getId()));
-            bdLock.acquire();
-            Log.d(this.getClass().getName(), String.format(LOG_THREAD_UNBLOCKED, Thread.currentThread().getId()));
-        } catch (Exception e) {
-            Log.d(this.getClass().getName(), String.format(LOG_FAILED_ACQUIRE, e.getMessage()));
-            return null;
-        } finally {
-            bdLock.release();
-        }
-        return new Output(futureBeacons, this.getGreatestOccurance(beacons));
+    /**
+     * Initializes all the fields for the Class
+     *
+     * @param advertisementSource Source of the advertisements being scanned
+     */
+    public BuildingDetector(final AdvertisementSource advertisementSource) {
+        this(advertisementSource, new SequentialBuildingDecider());
     }
 
     /**
-     * Finds the most common UUID in the given set of Beacons
+     * Initializes all the fields for the Class
      *
-     * @param beacons Set of Beacons
-     * @return String
+     * @param advertisementSource Source of the advertisements being scanned
+     * @param decider Sequential test deciding the building
      */
-    private String getGreatestOccurance(final Collection<Beacon> beacons) {
-        final Map<String, Integer> idOccurances = new HashMap<>();
-        for(final Beacon beacon : beacons) {
-            if (idOccurances.containsKey(beacon.getUUID())) {
-                int currentOccurances = idOccurances.get(beacon.getUUID());
-                idOccurances.put(beacon.getUUID(), currentOccurances + 1);
-            } else {
-                idOccurances.put(beacon.getUUID(), 0);
-            }
-        }
-        String result = null;
-        int currentMax = 0;
-        for (final Map.Entry<String, Integer> entry : idOccurances.entrySet()) {
-            if (result == null || entry.getValue() > currentMax) {
-                result = entry.getKey();
-                currentMax = entry.getValue();
+    public BuildingDetector(final AdvertisementSource advertisementSource,
+                            final SequentialBuildingDecider decider) {
+        this.beacons = new ArrayList<>();
+        this.decider = decider;
+        this.decided = new CountDownLatch(1);
+        this.beaconScanClient = new SyncBeaconScanClient(advertisementSource, this.beacons, SCAN_TIME, MIN_BEACONS);
+        this.beaconScanClient.setScanPolicy(this.beaconScanClient.createScanPolicy(MIN_SCAN_TIME, SCAN_TIME));
+        advertisementSource.addListener(this.packetCounter);
+    }
 
-            }
+    @Override
+    public Output call() {
+        final long startTime = this.beaconScanClient.currentTimeMillis();
+        final ScanHandle scanHandle = this.beaconScanClient.startScan();
+        scanHandle.addListener(this.closeOnFinish);
+        try {
+            Log.d(this.getClass().getName(), String.format(LOG_WAITING, Thread.currentThread().getId()));
+            // The latch is released when the window finishes at the latest
+            this.decided.await();
+        } catch (InterruptedException e) {
+            Log.d(this.getClass().getName(), String.format(LOG_INTERRUPTED, e.getMessage()));
+            scanHandle.cancel(true);
+            this.beaconScanClient.getAdvertisementSource().removeListener(this.packetCounter);
+            return null;
+        }
+        final String buildingID;
+        final long decisionLatency;
+        if (this.decider.isDecided()) {
+            buildingID = this.decider.getDecision();
+            decisionLatency = this.decisionTime - startTime;
+            Log.d(this.getClass().getName(),
+                    String.format(LOG_DECIDED, this.decider.getPacketsToDecision(), decisionLatency));
+        } else {
+            Log.d(this.getClass().getName(), LOG_UNDECIDED);
+            buildingID = this.decider.getLeader();
+            decisionLatency = this.beaconScanClient.currentTimeMillis() - startTime;
         }
-        return result;
+        final List<Beacon> heardBeacons =
+                this.beaconScanClient.getSnapshot(this.beaconScanClient.currentTimeMillis() - startTime);
+        Log.d(this.getClass().getName(), String.format(LOG_BEACONS_FOUND, heardBeacons.size()));
+        return new Output(scanHandle, buildingID, decisionLatency, heardBeacons);
     }
 
     /**
@@ -126,16 +185,32 @@ public class BuildingDetector implements Callable<BuildingDetector.Output> {
          * Id of the building the user is currently in
          */
         private String buildingID;
+        /**
+         * Time (in ms) between the start of the scan and the decision
+         */
+        private long decisionLatency;
+        /**
+         * Beacons heard before the decision
+         */
+        private List<Beacon> heardBeacons;
 
         /**
          * Contructor, Sets the fields of the class to the given values
          *
          * @param futureBeacons Future of the beacons being scanned by the client
          * @param buildingID Id of the building the user is currently in
+         * @param decisionLatency Time (in ms) between the start of the scan
+         *                        and the decision
+         * @param heardBeacons Beacons heard before the decision
          */
-        private Output(final Future<List<Beacon>> futureBeacons, final String buildingID) {
+        private Output(final Future<List<Beacon>> futureBeacons,
+                       final String buildingID,
+                       final long decisionLatency,
+                       final List<Beacon> heardBeacons) {
             this.futureBeacons = futureBeacons;
             this.buildingID = buildingID;
+            this.decisionLatency = decisionLatency;
+            this.heardBeacons = heardBeacons;
         }
 
         /**
@@ -155,5 +230,24 @@ public class BuildingDetector implements Callable<BuildingDetector.Output> {
         public String getBuildingID() {
             return this.buildingID;
         }
+
+        /**
+         * Getter method for the decisionLatency field
+         *
+         * @return Time (in ms) between the start of the scan and the decision
+         */
+        public long getDecisionLatency() {
+            return this.decisionLatency;
+        }
+
+        /**
+         * Getter method for the heardBeacons field
+         *
+         * @return Beacons heard before the decision, each holding the RSSI
+         *         values measured so far
+         */
+        public List<Beacon> getHeardBeacons() {
+            return this.heardBeacons;
+        }
     }
 }
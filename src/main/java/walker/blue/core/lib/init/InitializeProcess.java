@@ -10,14 +10,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.AdvertisementSource;
+import walker.blue.core.lib.beacon.ScanHub;
 import walker.blue.core.lib.common.ProcessCommon;
 import walker.blue.core.lib.ddb.AttrToJava;
 import walker.blue.core.lib.ddb.DynamoDBWrapper;
 import walker.blue.core.lib.input.UserInputParser;
+import walker.blue.core.lib.location.WeightedTrilateration;
 import walker.blue.core.lib.speech.GeneratedSpeech;
 import walker.blue.core.lib.speech.SpeechGenerator;
 import walker.blue.core.lib.types.Building;
@@ -27,7 +28,6 @@ import walker.blue.path.lib.floor.FloorSequencer;
 import walker.blue.path.lib.node.GridNode;
 import walker.blue.path.lib.node.RectCoordinates;
 import walker.blue.path.lib.finder.ThetaStar;
-import walker.blue.tri.lib.Trilateration;
 
 /**
  * Initialization process of the Bluewalker core package
@@ -47,6 +47,11 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
      * Context under which the initialize process is being run
      */
     protected Context context;
+    /**
+     * Source of the advertisements being scanned. If null the radio of the
+     * device is used
+     */
+    protected AdvertisementSource advertisementSource;
     /**
      * The user input
      */
@@ -63,6 +68,18 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
         this.userInput = userInput;
     }
 
+    /**
+     * Constructor. Sets the advertisementSource and userInput fields to the
+     * given objects
+     *
+     * @param advertisementSource Source of the advertisements being scanned
+     * @param userInput List of strings containing the users input
+     */
+    public InitializeProcess(final AdvertisementSource advertisementSource, final List<String> userInput) {
+        this.advertisementSource = advertisementSource;
+        this.userInput = userInput;
+    }
+
     @Override
     public Output call() {
         final BuildingDetector.Output bdOutput = this.getCurrentBuilding();
@@ -92,18 +109,21 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
         }
 
         // Consume beacons being scanned
-        final List<Beacon> beaconSet;
+        List<Beacon> beaconSet;
         try {
             Log.d(this.getClass().getName(), LOG_BEACONS_FUTURE);
             beaconSet = bdOutput.getFuture().get();
             Log.d(this.getClass().getName(), String.format(LOG_BEACONS_DONE, beaconSet.size()));
         } catch (final Exception e) {
             Log.d(this.getClass().getName(), String.format(LOG_FAILED_BEACONS, e.getMessage()));
-            return new Output(InitError.BEACONS_FAIL);
+            if (bdOutput.getHeardBeacons().isEmpty()) {
+                return new Output(InitError.BEACONS_FAIL);
+            }
+            beaconSet = bdOutput.getHeardBeacons();
         }
 
-        final Trilateration trilateration = null;
-        final GridNode currentNode = this.getUserLocationProximity(beaconSet, building);
+        final WeightedTrilateration trilateration = new WeightedTrilateration(building);
+        final GridNode currentNode = this.getUserLocation(beaconSet, building, trilateration);
 //        final GridNode currentNode = this.debugLocationGet(building);
         if (currentNode == null) {
             return new Output(InitError.LOCATION_FAIL);
@@ -139,17 +159,17 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
      * @return BuildingDetector.Output returned by the building detector
      */
     protected BuildingDetector.Output getCurrentBuilding() {
-        final ExecutorService executorService = Executors.newSingleThreadExecutor();
-        // Detect the building the user is in
-        final BuildingDetector buildingDetector = new BuildingDetector(this.context);
+        // Detect the building the user is in. The detector only waits on its
+        // scan handle, so it runs on the thread of the initialize process
+        final BuildingDetector buildingDetector = new BuildingDetector(this.getAdvertisementSource());
         final BuildingDetector.Output bdOutput;
         try {
-            bdOutput = executorService.submit(buildingDetector).get();
+            bdOutput = buildingDetector.call();
         } catch (Exception e) {
             Log.d(this.getClass().getName(), String.format(LOG_FAILED_BD, e.getMessage()));
             return null;
         }
-        if (bdOutput.getBuildingID() == null) {
+        if (bdOutput == null || bdOutput.getBuildingID() == null) {
             return null;
         } else {
             Log.d(this.getClass().getName(), String.format(LOG_RECIEVED_BUILDING_ID, bdOutput.getBuildingID()));
@@ -157,6 +177,19 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
         }
     }
 
+    /**
+     * Gets the source of the advertisements being scanned
+     *
+     * @return the given AdvertisementSource or a new subscription to the
+     *         ScanHub of the process if none was given
+     */
+    protected AdvertisementSource getAdvertisementSource() {
+        if (this.advertisementSource == null) {
+            return ScanHub.getInstance(this.context).subscribe();
+        }
+        return this.advertisementSource;
+    }
+
     /**
      * Fetches the data for the building corresponding to the given building id
      *
@@ -296,7 +329,7 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
     public class Output {
 
         private FloorSequencer pathfinder;
-        private Trilateration trilateration;
+        private WeightedTrilateration trilateration;
         private List<GridNode> path;
         private Building building;
         private GridNode currentLocation;
@@ -312,7 +345,7 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
         }
 
         public Output(final FloorSequencer pathfinder,
-                      final Trilateration trilateration,
+                      final WeightedTrilateration trilateration,
                       final List<GridNode> path,
                       final Building building,
                       final GridNode currentLocation,
@@ -325,7 +358,7 @@ public class InitializeProcess extends ProcessCommon implements Callable<Initial
             this.error = error;
         }
 
-        public Trilateration getTrilateration() {
+        public WeightedTrilateration getTrilateration() {
             return this.trilateration;
         }
 
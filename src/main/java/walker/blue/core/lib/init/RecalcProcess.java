@@ -7,18 +7,30 @@ import java.util.List;
 import java.util.concurrent.Future;
 
 import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.AdvertisementSource;
+import walker.blue.core.lib.beacon.BeaconAdmissionFilter;
+import walker.blue.core.lib.beacon.BeaconRegistry;
 import walker.blue.core.lib.beacon.SyncBeaconScanClient;
+import walker.blue.core.lib.location.WeightedTrilateration;
 import walker.blue.core.lib.types.Building;
 import walker.blue.path.lib.floor.FloorSequencer;
 import walker.blue.path.lib.node.GridNode;
 import walker.blue.path.lib.finder.ThetaStar;
-import walker.blue.tri.lib.Trilateration;
 
 /**
  * Initialization process of the Bluewalker core package
  */
 public class RecalcProcess extends InitializeProcess {
 
+    /**
+     * Min time (in ms) the client will scan for Beacons
+     */
+    private static final int MIN_SCAN_TIME = 300;
+    /**
+     * Max time (in ms) the client will scan for Beacons
+     */
+    private static final int MAX_SCAN_TIME = 3000;
+
     /**
      * The user input
      */
@@ -35,9 +47,24 @@ public class RecalcProcess extends InitializeProcess {
         this.prevOutput = prevOutput;
     }
 
+    /**
+     * Constructor. Sets the fields to the given values
+     *
+     * @param advertisementSource Source of the advertisements being scanned
+     * @param prevOutput previous output of the initialize process
+     */
+    public RecalcProcess(final AdvertisementSource advertisementSource, final InitializeProcess.Output prevOutput) {
+        super(advertisementSource, null);
+        this.prevOutput = prevOutput;
+    }
+
     @Override
     public InitializeProcess.Output call() {
-        final SyncBeaconScanClient scanClient = new SyncBeaconScanClient(context);
+        final Building building = this.prevOutput.getBuilding();
+        final SyncBeaconScanClient scanClient = new SyncBeaconScanClient(this.getAdvertisementSource(),
+                BeaconRegistry.capacityFor(building.getBeaconLocationMap().size()));
+        scanClient.setAdmissionFilter(new BeaconAdmissionFilter(building));
+        scanClient.setScanPolicy(scanClient.createScanPolicy(MIN_SCAN_TIME, MAX_SCAN_TIME));
         final Future<List<Beacon>> beaconFutures = scanClient.startScan();
 
         // Consume beacons being scanned
@@ -49,13 +76,14 @@ public class RecalcProcess extends InitializeProcess {
         } catch (final Exception e) {
             Log.d(this.getClass().getName(), String.format(LOG_FAILED_BEACONS, e.getMessage()));
             return new Output(InitError.BEACONS_FAIL);
+        } finally {
+            scanClient.close();
         }
 
-        final Building building = this.prevOutput.getBuilding();
         final GridNode destination = this.getDestinationFromPath(this.prevOutput.getPath());
 
-        final Trilateration trilateration = null;
-        final GridNode currentNode = this.getUserLocationProximity(beaconSet, building);
+        final WeightedTrilateration trilateration = new WeightedTrilateration(building);
+        final GridNode currentNode = this.getUserLocation(beaconSet, building, trilateration);
         if (currentNode == null) {
             return new Output(InitError.LOCATION_FAIL);
         }
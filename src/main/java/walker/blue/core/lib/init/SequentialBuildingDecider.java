@@ -0,0 +1,207 @@
+package walker.blue.core.lib.init;
+
+import walker.blue.core.lib.beacon.AdvertisementParser;
+
+/**
+ * Sequential test deciding which building the user is in as the
+ * advertisements arrive. Every packet is a vote for the UUID of its beacon,
+ * and the test commits to a UUID as soon as it leads every other UUID by
+ * the configured margin, which may happen after a handful of packets.
+ *
+ * Votes are held in fixed arrays of candidate UUIDs, so counting a packet
+ * does not allocate. Packets of UUIDs beyond the max number of candidates
+ * are ignored
+ */
+public class SequentialBuildingDecider {
+
+    /**
+     * Default number of packets by which a UUID needs to lead the others
+     */
+    public static final int DEFAULT_MARGIN = 3;
+    /**
+     * Default max number of UUIDs being tracked
+     */
+    public static final int DEFAULT_MAX_CANDIDATES = 16;
+    /**
+     * Index used when there is no candidate
+     */
+    private static final int NO_CANDIDATE = -1;
+
+    /**
+     * Number of packets by which a UUID needs to lead the others
+     */
+    private final int margin;
+    /**
+     * Most significant bits of the UUID of each candidate
+     */
+    private final long[] uuidMost;
+    /**
+     * Least significant bits of the UUID of each candidate
+     */
+    private final long[] uuidLeast;
+    /**
+     * Number of packets counted for each candidate
+     */
+    private final int[] votes;
+    /**
+     * Number of candidates seen so far
+     */
+    private int numCandidates;
+    /**
+     * Candidate with the most packets
+     */
+    private int leader;
+    /**
+     * Candidate the test committed to
+     */
+    private int decision;
+    /**
+     * Number of packets counted before the test committed to a candidate
+     */
+    private int packetsToDecision;
+    /**
+     * Number of packets counted
+     */
+    private int numPackets;
+
+    /**
+     * Constructor. Creates a decider using the default values
+     */
+    public SequentialBuildingDecider() {
+        this(DEFAULT_MARGIN, DEFAULT_MAX_CANDIDATES);
+    }
+
+    /**
+     * Constructor. Creates a decider using the given values
+     *
+     * @param margin Number of packets by which a UUID needs to lead the others
+     * @param maxCandidates Max number of UUIDs being tracked
+     */
+    public SequentialBuildingDecider(final int margin, final int maxCandidates) {
+        this.margin = Math.max(1, margin);
+        this.uuidMost = new long[maxCandidates];
+        this.uuidLeast = new long[maxCandidates];
+        this.votes = new int[maxCandidates];
+        this.numCandidates = 0;
+        this.leader = NO_CANDIDATE;
+        this.decision = NO_CANDIDATE;
+        this.numPackets = 0;
+    }
+
+    /**
+     * Counts a packet of a beacon with the given UUID
+     *
+     * @param uuidMost most significant bits of the UUID of the beacon
+     * @param uuidLeast least significant bits of the UUID of the beacon
+     * @return boolean indicating whether the test has committed to a UUID
+     */
+    public synchronized boolean addPacket(final long uuidMost, final long uuidLeast) {
+        if (this.decision != NO_CANDIDATE) {
+            return true;
+        }
+        final int candidate = this.findOrAdd(uuidMost, uuidLeast);
+        if (candidate == NO_CANDIDATE) {
+            return false;
+        }
+        this.numPackets++;
+        this.votes[candidate]++;
+        if (this.leader == NO_CANDIDATE || this.votes[candidate] > this.votes[this.leader]) {
+            this.leader = candidate;
+        }
+        if (this.votes[this.leader] - this.getRunnerUpVotes() >= this.margin) {
+            this.decision = this.leader;
+            this.packetsToDecision = this.numPackets;
+        }
+        return this.decision != NO_CANDIDATE;
+    }
+
+    /**
+     * Checks whether the test has committed to a UUID
+     *
+     * @return boolean indicating whether the test has committed to a UUID
+     */
+    public synchronized boolean isDecided() {
+        return this.decision != NO_CANDIDATE;
+    }
+
+    /**
+     * Gets the UUID the test committed to
+     *
+     * @return UUID of the building or null if the test has not committed yet
+     */
+    public synchronized String getDecision() {
+        return this.getUUID(this.decision);
+    }
+
+    /**
+     * Gets the UUID with the most packets so far, used when the scan ends
+     * before the test commits
+     *
+     * @return UUID with the most packets or null if no packet was counted
+     */
+    public synchronized String getLeader() {
+        return this.getUUID(this.leader);
+    }
+
+    /**
+     * Getter for the number of packets counted before the test committed
+     *
+     * @return number of packets needed to decide or 0 if the test has not
+     *         committed yet
+     */
+    public synchronized int getPacketsToDecision() {
+        return this.decision == NO_CANDIDATE ? 0 : this.packetsToDecision;
+    }
+
+    /**
+     * Finds the candidate with the given UUID, adding it if it has not been
+     * seen yet
+     *
+     * @param uuidMost most significant bits of the UUID
+     * @param uuidLeast least significant bits of the UUID
+     * @return index of the candidate or NO_CANDIDATE if there is no room left
+     */
+    private int findOrAdd(final long uuidMost, final long uuidLeast) {
+        for (int i = 0; i < this.numCandidates; i++) {
+            if (this.uuidMost[i] == uuidMost && this.uuidLeast[i] == uuidLeast) {
+                return i;
+            }
+        }
+        if (this.numCandidates == this.votes.length) {
+            return NO_CANDIDATE;
+        }
+        this.uuidMost[this.numCandidates] = uuidMost;
+        this.uuidLeast[this.numCandidates] = uuidLeast;
+        this.votes[this.numCandidates] = 0;
+        return this.numCandidates++;
+    }
+
+    /**
+     * Gets the number of packets of the strongest candidate other than the
+     * leader
+     *
+     * @return number of packets of the runner up
+     */
+    private int getRunnerUpVotes() {
+        int result = 0;
+        for (int i = 0; i < this.numCandidates; i++) {
+            if (i != this.leader && this.votes[i] > result) {
+                result = this.votes[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the UUID of the given candidate
+     *
+     * @param candidate index of the candidate
+     * @return UUID of the candidate or null if there is no candidate
+     */
+    private String getUUID(final int candidate) {
+        if (candidate == NO_CANDIDATE) {
+            return null;
+        }
+        return AdvertisementParser.uuidToString(this.uuidMost[candidate], this.uuidLeast[candidate]);
+    }
+}
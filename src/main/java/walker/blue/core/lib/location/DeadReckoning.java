@@ -0,0 +1,223 @@
+package walker.blue.core.lib.location;
+
+import walker.blue.core.lib.direction.OrientationManager;
+import walker.blue.core.lib.direction.StepDetector;
+import walker.blue.core.lib.types.Building;
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Fuses the steps of the user with the beacon fixes. Each step moves the
+ * position along the heading measured by the orientation manager, so the
+ * position keeps moving between fixes, and each fix pulls the position
+ * towards it to cancel the drift of the steps. Fixes far away from the
+ * position, or on another floor, replace it.
+ *
+ * Steps and fixes arrive on different threads, so the methods are
+ * synchronized
+ */
+public class DeadReckoning implements StepDetector.OnStepListener {
+
+    /**
+     * Default weight given to a fix when pulling the position towards it
+     */
+    public static final double DEFAULT_FIX_GAIN = 0.5;
+    /**
+     * Distance (in grid units) from the position over which a fix replaces it
+     */
+    private static final double RESET_DISTANCE = 5.0;
+    /**
+     * Growth of the confidence radius per grid unit walked
+     */
+    private static final double STEP_DRIFT = 0.1;
+
+    /**
+     * Building in which the user is being located
+     */
+    private final Building building;
+    /**
+     * Orientation manager giving the heading of the user
+     */
+    private final OrientationManager orientationManager;
+    /**
+     * Weight given to a fix when pulling the position towards it
+     */
+    private final double fixGain;
+    /**
+     * Distance (in meters) between two adjacent nodes
+     */
+    private final double nodeDistance;
+    /**
+     * x component of the grid direction the user faces at a heading of 0
+     */
+    private final double northX;
+    /**
+     * y component of the grid direction the user faces at a heading of 0
+     */
+    private final double northY;
+    /**
+     * x coordinate (in grid units) of the position
+     */
+    private double x;
+    /**
+     * y coordinate (in grid units) of the position
+     */
+    private double y;
+    /**
+     * Floor of the position
+     */
+    private int z;
+    /**
+     * Confidence radius (in grid units) of the position
+     */
+    private double radius;
+    /**
+     * Whether the position has been set by a fix
+     */
+    private boolean hasPosition;
+    /**
+     * Number of times the position has changed
+     */
+    private int version;
+
+    /**
+     * Constructor. Creates a fusion for the given building using the default
+     * fix gain
+     *
+     * @param building Building in which the user is being located
+     * @param orientationManager Orientation manager giving the heading of the
+     *                           user
+     */
+    public DeadReckoning(final Building building, final OrientationManager orientationManager) {
+        this(building, orientationManager, DEFAULT_FIX_GAIN);
+    }
+
+    /**
+     * Constructor. Creates a fusion for the given building
+     *
+     * @param building Building in which the user is being located
+     * @param orientationManager Orientation manager giving the heading of the
+     *                           user
+     * @param fixGain Weight (0 to 1) given to a fix when pulling the position
+     *                towards it
+     */
+    public DeadReckoning(final Building building,
+                         final OrientationManager orientationManager,
+                         final double fixGain) {
+        this.building = building;
+        this.orientationManager = orientationManager;
+        this.fixGain = fixGain;
+        this.nodeDistance = building.getNodeDistance() > 0 ? building.getNodeDistance() : 1;
+        final RectCoordinates northPoint = building.getNorthPoint();
+        final double northLength = northPoint == null ? 0 : Math.hypot(northPoint.getX(), northPoint.getY());
+        // Same axes as the UserAngleMapper, which swaps x and y of the north point
+        this.northX = northLength > 0 ? northPoint.getY() / northLength : 0;
+        this.northY = northLength > 0 ? northPoint.getX() / northLength : 1;
+        this.hasPosition = false;
+        this.version = 0;
+    }
+
+    /**
+     * Fuses the given beacon fix with the position
+     *
+     * @param fix Location of the user found using the beacons
+     * @param fixRadius Confidence radius (in grid units) of the fix
+     */
+    public synchronized void onFix(final RectCoordinates fix, final double fixRadius) {
+        final double dx = fix.getX() - this.x;
+        final double dy = fix.getY() - this.y;
+        if (!this.hasPosition || fix.getZ() != this.z || Math.hypot(dx, dy) > RESET_DISTANCE) {
+            this.x = fix.getX();
+            this.y = fix.getY();
+            this.z = fix.getZ();
+            this.radius = fixRadius;
+            this.hasPosition = true;
+        } else {
+            this.x += this.fixGain * dx;
+            this.y += this.fixGain * dy;
+            final double keptRadius = (1 - this.fixGain) * this.radius;
+            final double fixedRadius = this.fixGain * fixRadius;
+            this.radius = Math.sqrt(keptRadius * keptRadius + fixedRadius * fixedRadius);
+        }
+        this.version++;
+    }
+
+    @Override
+    public void onStep(final double stepLength, final long time) {
+        this.onStep(stepLength, this.orientationManager.getHeading());
+    }
+
+    /**
+     * Moves the position one step along the given heading
+     *
+     * @param stepLength Length (in meters) of the step
+     * @param heading Heading (in degrees from north) of the user
+     */
+    public synchronized void onStep(final double stepLength, final double heading) {
+        if (!this.hasPosition) {
+            return;
+        }
+        final double headingRads = Math.toRadians(heading);
+        final double cos = Math.cos(headingRads);
+        final double sin = Math.sin(headingRads);
+        final double distance = stepLength / this.nodeDistance;
+        this.x += distance * (cos * this.northX - sin * this.northY);
+        this.y += distance * (sin * this.northX + cos * this.northY);
+        this.radius += STEP_DRIFT * distance;
+        this.version++;
+    }
+
+    /**
+     * Gets the position snapped onto the closest traversable node
+     *
+     * @return Position of the user, or null if no fix has been fused yet
+     */
+    public synchronized RectCoordinates getPosition() {
+        if (!this.hasPosition) {
+            return null;
+        }
+        final GridNode node = GridSnap.closestTraversable(this.building, this.x, this.y, this.z);
+        return node != null
+                ? node.getLocation()
+                : new RectCoordinates((int) Math.round(this.x), (int) Math.round(this.y), this.z);
+    }
+
+    /**
+     * Getter for the confidence radius of the position. Shrinks with each
+     * fix and grows with each step
+     *
+     * @return Radius (in grid units) around the position within which the
+     *         user most likely is
+     */
+    public synchronized double getRadius() {
+        return this.radius;
+    }
+
+    /**
+     * Getter for the number of times the position has changed. Used to tell
+     * whether the position moved since it was last read
+     *
+     * @return Number of times the position has changed
+     */
+    public synchronized int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter for the x coordinate of the position before snapping
+     *
+     * @return x coordinate in grid units
+     */
+    public synchronized double getX() {
+        return this.x;
+    }
+
+    /**
+     * Getter for the y coordinate of the position before snapping
+     *
+     * @return y coordinate in grid units
+     */
+    public synchronized double getY() {
+        return this.y;
+    }
+}
@@ -0,0 +1,192 @@
+package walker.blue.core.lib.location;
+
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.FingerprintDatabase;
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Locates the user by matching the RSSI values scanned against the
+ * fingerprints surveyed in the building. The position is the average of the
+ * k closest fingerprints weighted by the inverse of their distance, snapped
+ * onto the closest traversable node. Used instead of a path loss model in
+ * buildings where the signal does not follow one. Not thread safe
+ */
+public class FingerprintLocator {
+
+    /**
+     * Default number of fingerprints averaged for a fix
+     */
+    public static final int DEFAULT_K = 3;
+    /**
+     * Distance (in dBm) added to each fingerprint before weighting it, so an
+     * exact match does not get an infinite weight
+     */
+    private static final double MIN_DISTANCE = 1e-3;
+
+    /**
+     * Building in which the user is being located
+     */
+    private final Building building;
+    /**
+     * Fingerprints surveyed in the building
+     */
+    private final FingerprintDatabase database;
+    /**
+     * Number of fingerprints averaged for a fix
+     */
+    private final int k;
+    /**
+     * RSSI vector of the current scan
+     */
+    private final double[] query;
+    /**
+     * Indices of the closest fingerprints
+     */
+    private final int[] indices;
+    /**
+     * Distances of the closest fingerprints
+     */
+    private final double[] distances;
+    /**
+     * Confidence radius (in grid units) of the last fix
+     */
+    private double lastRadius;
+    /**
+     * Number of surveyed beacons used for the last fix
+     */
+    private int lastBeaconCount;
+
+    /**
+     * Constructor. Creates a locator using the fingerprints of the given
+     * building
+     *
+     * @param building Building in which the user is being located. Must hold
+     *                 a FingerprintDatabase
+     */
+    public FingerprintLocator(final Building building) {
+        this(building, DEFAULT_K);
+    }
+
+    /**
+     * Constructor. Creates a locator using the fingerprints of the given
+     * building
+     *
+     * @param building Building in which the user is being located. Must hold
+     *                 a FingerprintDatabase
+     * @param k Number of fingerprints averaged for a fix
+     */
+    public FingerprintLocator(final Building building, final int k) {
+        this.building = building;
+        this.database = building.getFingerprints();
+        this.k = Math.max(1, k);
+        this.query = new double[this.database.getDimensions()];
+        this.indices = new int[this.k];
+        this.distances = new double[this.k];
+    }
+
+    /**
+     * Locates the user using the given beacons
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @return GridNode closest to the position of the user, or null if none
+     *         of the beacons was surveyed
+     */
+    public GridNode locate(final List<Beacon> beacons, final RSSIEstimator estimator) {
+        return this.locate(beacons, estimator, FingerprintDatabase.ANY_FLOOR);
+    }
+
+    /**
+     * Locates the user on the given floor using the given beacons. Only the
+     * fingerprints surveyed on that floor are matched
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @param floor Floor the user is on, or FingerprintDatabase.ANY_FLOOR to
+     *              use the floor of the closest fingerprint
+     * @return GridNode closest to the position of the user, or null if none
+     *         of the beacons was surveyed or the floor has no fingerprints
+     */
+    public GridNode locate(final List<Beacon> beacons, final RSSIEstimator estimator, final int floor) {
+        for (int d = 0; d < this.query.length; d++) {
+            this.query[d] = FingerprintDatabase.MISSING_RSSI;
+        }
+        int surveyed = 0;
+        for (final Beacon beacon : beacons) {
+            final int dimension = this.database.getDimension(beacon);
+            if (dimension >= 0) {
+                this.query[dimension] = estimator.getRSSI(beacon);
+                surveyed++;
+            }
+        }
+        if (surveyed == 0) {
+            return null;
+        }
+        final int found = this.database.findNearest(this.query, this.k, floor, this.indices, this.distances);
+        if (found == 0) {
+            return null;
+        }
+        double x = 0;
+        double y = 0;
+        double totalWeight = 0;
+        final int z = this.database.getLocation(this.indices[0]).getZ();
+        for (int i = 0; i < found; i++) {
+            final RectCoordinates location = this.database.getLocation(this.indices[i]);
+            if (location.getZ() != z) {
+                continue;
+            }
+            final double weight = 1 / (this.distances[i] + MIN_DISTANCE);
+            x += weight * location.getX();
+            y += weight * location.getY();
+            totalWeight += weight;
+        }
+        x /= totalWeight;
+        y /= totalWeight;
+        // Weighted spread of the fingerprints around the fix
+        double spread = 0;
+        for (int i = 0; i < found; i++) {
+            final RectCoordinates location = this.database.getLocation(this.indices[i]);
+            if (location.getZ() == z) {
+                final double dx = location.getX() - x;
+                final double dy = location.getY() - y;
+                spread += (dx * dx + dy * dy) / (this.distances[i] + MIN_DISTANCE);
+            }
+        }
+        this.lastRadius = Math.sqrt(spread / totalWeight);
+        this.lastBeaconCount = surveyed;
+        return GridSnap.closestTraversable(this.building, x, y, z);
+    }
+
+    /**
+     * Getter for the confidence radius of the last fix
+     *
+     * @return Radius (in grid units) around the last fix within which the
+     *         user most likely is
+     */
+    public double getLastRadius() {
+        return this.lastRadius;
+    }
+
+    /**
+     * Getter for the number of surveyed beacons used for the last fix
+     *
+     * @return Number of surveyed beacons used for the last fix
+     */
+    public int getLastBeaconCount() {
+        return this.lastBeaconCount;
+    }
+
+    /**
+     * Getter for the building whose fingerprints are being used
+     *
+     * @return Building in which the user is being located
+     */
+    public Building getBuilding() {
+        return this.building;
+    }
+}
@@ -0,0 +1,224 @@
+package walker.blue.core.lib.location;
+
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.types.Building;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Estimates the floor the user is on from every beacon heard. Each scan
+ * splits its evidence between the floors in proportion to the received
+ * power of the beacons on each floor, and the evidence is smoothed across
+ * scans. The estimated floor only changes once another floor has led the
+ * current one by a margin for several scans in a row, so a single strong
+ * beacon heard through a ceiling does not move the user. Not thread safe
+ */
+public class FloorEstimator {
+
+    /**
+     * Default weight given to the latest scan when smoothing the evidence
+     */
+    public static final double DEFAULT_SMOOTHING = 0.3;
+    /**
+     * Default lead the evidence of a floor needs over the current floor
+     */
+    public static final double DEFAULT_SWITCH_MARGIN = 0.2;
+    /**
+     * Default number of scans in a row a floor has to lead before switching
+     */
+    public static final int DEFAULT_SWITCH_SCANS = 3;
+    /**
+     * Floor returned while no beacon has been located
+     */
+    public static final int UNKNOWN_FLOOR = -1;
+
+    /**
+     * Building in which the user is being located
+     */
+    private final Building building;
+    /**
+     * Weight given to the latest scan when smoothing the evidence
+     */
+    private final double smoothing;
+    /**
+     * Lead the evidence of a floor needs over the current floor
+     */
+    private final double switchMargin;
+    /**
+     * Number of scans in a row a floor has to lead before switching
+     */
+    private final int switchScans;
+    /**
+     * Smoothed evidence of each floor. Adds up to 1 once a scan was used
+     */
+    private final double[] evidence;
+    /**
+     * Evidence of each floor in the latest scan
+     */
+    private final double[] scanEvidence;
+    /**
+     * Current estimate of the floor
+     */
+    private int floor;
+    /**
+     * Floor leading the current one by the margin
+     */
+    private int candidate;
+    /**
+     * Number of scans in a row the candidate has been leading
+     */
+    private int candidateScans;
+
+    /**
+     * Constructor. Creates an estimator for the given building using the
+     * default values
+     *
+     * @param building Building in which the user is being located
+     */
+    public FloorEstimator(final Building building) {
+        this(building, DEFAULT_SMOOTHING, DEFAULT_SWITCH_MARGIN, DEFAULT_SWITCH_SCANS);
+    }
+
+    /**
+     * Constructor. Creates an estimator for the given building
+     *
+     * @param building Building in which the user is being located
+     * @param smoothing Weight (0 to 1) given to the latest scan
+     * @param switchMargin Lead the evidence of a floor needs over the current
+     *                     floor
+     * @param switchScans Number of scans in a row a floor has to lead before
+     *                    switching
+     */
+    public FloorEstimator(final Building building,
+                          final double smoothing,
+                          final double switchMargin,
+                          final int switchScans) {
+        this.building = building;
+        this.smoothing = smoothing;
+        this.switchMargin = switchMargin;
+        this.switchScans = Math.max(1, switchScans);
+        final int floors = Math.max(1, building.getNodeGrid().getSizeZ());
+        this.evidence = new double[floors];
+        this.scanEvidence = new double[floors];
+        this.reset();
+    }
+
+    /**
+     * Forgets all the evidence gathered so far
+     */
+    public void reset() {
+        for (int z = 0; z < this.evidence.length; z++) {
+            this.evidence[z] = 0;
+        }
+        this.floor = UNKNOWN_FLOOR;
+        this.candidate = UNKNOWN_FLOOR;
+        this.candidateScans = 0;
+    }
+
+    /**
+     * Adds the evidence of the given scan and updates the estimated floor
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @return Estimated floor, or UNKNOWN_FLOOR if no beacon has been located
+     *         so far
+     */
+    public int update(final List<Beacon> beacons, final RSSIEstimator estimator) {
+        if (!this.loadScanEvidence(beacons, estimator)) {
+            return this.floor;
+        }
+        int leader = 0;
+        for (int z = 0; z < this.evidence.length; z++) {
+            this.evidence[z] = this.floor == UNKNOWN_FLOOR
+                    ? this.scanEvidence[z]
+                    : (1 - this.smoothing) * this.evidence[z] + this.smoothing * this.scanEvidence[z];
+            if (this.evidence[z] > this.evidence[leader]) {
+                leader = z;
+            }
+        }
+        if (this.floor == UNKNOWN_FLOOR) {
+            this.floor = leader;
+        } else if (leader != this.floor && this.evidence[leader] - this.evidence[this.floor] >= this.switchMargin) {
+            this.candidateScans = leader == this.candidate ? this.candidateScans + 1 : 1;
+            this.candidate = leader;
+            if (this.candidateScans >= this.switchScans) {
+                this.floor = leader;
+                this.candidate = UNKNOWN_FLOOR;
+                this.candidateScans = 0;
+            }
+        } else {
+            this.candidate = UNKNOWN_FLOOR;
+            this.candidateScans = 0;
+        }
+        return this.floor;
+    }
+
+    /**
+     * Getter for the estimated floor
+     *
+     * @return Estimated floor, or UNKNOWN_FLOOR if no beacon has been located
+     *         so far
+     */
+    public int getFloor() {
+        return this.floor;
+    }
+
+    /**
+     * Gets the smoothed evidence of the given floor
+     *
+     * @param z Floor whose evidence is being read
+     * @return Evidence (0 to 1) of the floor
+     */
+    public double getEvidence(final int z) {
+        return this.evidence[z];
+    }
+
+    /**
+     * Getter for the building used by the estimator
+     *
+     * @return Building in which the user is being located
+     */
+    public Building getBuilding() {
+        return this.building;
+    }
+
+    /**
+     * Splits the evidence of the given scan between the floors in proportion
+     * to the received power of the beacons located on each floor
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @return boolean indicating whether any of the beacons is located
+     */
+    private boolean loadScanEvidence(final List<Beacon> beacons, final RSSIEstimator estimator) {
+        double strongest = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < beacons.size(); i++) {
+            final RectCoordinates location = this.building.getBeaconLocationMap().get(beacons.get(i));
+            if (location != null && location.getZ() >= 0 && location.getZ() < this.evidence.length) {
+                strongest = Math.max(strongest, estimator.getRSSI(beacons.get(i)));
+            }
+        }
+        if (strongest == Double.NEGATIVE_INFINITY) {
+            return false;
+        }
+        for (int z = 0; z < this.scanEvidence.length; z++) {
+            this.scanEvidence[z] = 0;
+        }
+        double total = 0;
+        for (int i = 0; i < beacons.size(); i++) {
+            final RectCoordinates location = this.building.getBeaconLocationMap().get(beacons.get(i));
+            if (location != null && location.getZ() >= 0 && location.getZ() < this.evidence.length) {
+                // Received power relative to the strongest beacon
+                final double power = Math.pow(10, (estimator.getRSSI(beacons.get(i)) - strongest) / 10);
+                this.scanEvidence[location.getZ()] += power;
+                total += power;
+            }
+        }
+        for (int z = 0; z < this.scanEvidence.length; z++) {
+            this.scanEvidence[z] /= total;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,627 @@
+package walker.blue.core.lib.location;
+
+import java.util.List;
+import java.util.Random;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.NodeGrid;
+import walker.blue.path.lib.floor.FloorConnector;
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Particle filter locating the user on the traversable nodes of a building.
+ * Particles move following a walking speed motion model, and a move is
+ * discarded when any node on the line it walks is not traversable, so they
+ * follow corridors instead of going through walls. Particles next to a
+ * floor connector of the building may take it to the connector it leads to
+ * on the floor above or below, which is how the filter follows the user
+ * between floors. Each particle is weighted by the likelihood of the RSSI
+ * values scanned given a log-distance path loss model, and particles are
+ * resampled systematically once the weights degenerate.
+ *
+ * Particles are held in primitive arrays, with a second set of arrays used
+ * while resampling, so a fix does not allocate. The number of particles
+ * trades accuracy against CPU time. Not thread safe
+ */
+public class GridParticleFilter {
+
+    /**
+     * Default number of particles
+     */
+    public static final int DEFAULT_NUM_PARTICLES = 500;
+    /**
+     * Default walking speed (in m/s) of the user
+     */
+    public static final double DEFAULT_WALKING_SPEED = 1.4;
+    /**
+     * Variance (in dBm^2) of the path loss model, added to the variance of
+     * each RSSI estimate
+     */
+    private static final double MODEL_VARIANCE = 25.0;
+    /**
+     * Variance (in dBm^2) used for estimates without a known variance
+     */
+    private static final double DEFAULT_RSSI_VARIANCE = 16.0;
+    /**
+     * Min distance (in meters) used by the path loss model
+     */
+    private static final double MIN_DISTANCE = 0.5;
+    /**
+     * Fraction of the particles under which the effective sample size
+     * triggers a resample
+     */
+    private static final double RESAMPLE_THRESHOLD = 0.5;
+    /**
+     * Probability that a particle next to a floor connector takes it during
+     * a step
+     */
+    private static final double FLOOR_CHANGE_PROBABILITY = 0.2;
+    /**
+     * Max distance (in nodes) from a floor connector at which a particle can
+     * take it
+     */
+    private static final double CONNECTOR_REACH = 1.5;
+    /**
+     * Max distance (in nodes) between two connectors on adjacent floors for
+     * one to lead to the other
+     */
+    private static final double MAX_CONNECTOR_OFFSET = 5;
+    /**
+     * Index used when a connector does not lead to another floor
+     */
+    private static final int NO_CONNECTOR = -1;
+
+    /**
+     * Building in which the user is being located
+     */
+    private final Building building;
+    /**
+     * Number of particles
+     */
+    private final int numParticles;
+    /**
+     * Walking speed (in grid units per ms) of the user
+     */
+    private final double walkingSpeed;
+    /**
+     * Meters between two adjacent nodes
+     */
+    private final double nodeDistance;
+    /**
+     * Height (in grid units) of a floor
+     */
+    private final double floorHeight;
+    /**
+     * Random number generator used to move and resample the particles
+     */
+    private final Random random;
+    /**
+     * x coordinate of every traversable node, used to spread the particles
+     */
+    private final int[] traversableX;
+    /**
+     * y coordinate of every traversable node
+     */
+    private final int[] traversableY;
+    /**
+     * z coordinate of every traversable node
+     */
+    private final int[] traversableZ;
+    /**
+     * x coordinate of each floor connector
+     */
+    private final int[] connectorX;
+    /**
+     * y coordinate of each floor connector
+     */
+    private final int[] connectorY;
+    /**
+     * z coordinate of each floor connector
+     */
+    private final int[] connectorZ;
+    /**
+     * Index of the connector each connector leads to on the floor above, or
+     * NO_CONNECTOR
+     */
+    private final int[] connectorUp;
+    /**
+     * Index of the connector each connector leads to on the floor below, or
+     * NO_CONNECTOR
+     */
+    private final int[] connectorDown;
+    /**
+     * x coordinate (in grid units) of each particle
+     */
+    private double[] particleX;
+    /**
+     * y coordinate (in grid units) of each particle
+     */
+    private double[] particleY;
+    /**
+     * Floor of each particle
+     */
+    private int[] particleZ;
+    /**
+     * x coordinates the particles are copied into while resampling
+     */
+    private double[] resampledX;
+    /**
+     * y coordinates the particles are copied into while resampling
+     */
+    private double[] resampledY;
+    /**
+     * Floors the particles are copied into while resampling
+     */
+    private int[] resampledZ;
+    /**
+     * Weight of each particle. Log weights while updating, normalized after
+     */
+    private final double[] weights;
+    /**
+     * Sum of the weights of the particles on each floor
+     */
+    private final double[] floorWeights;
+    /**
+     * Time (in ms) of the last fix
+     */
+    private long lastTime;
+    /**
+     * Confidence radius (in grid units) of the last fix
+     */
+    private double lastRadius;
+    /**
+     * Number of beacons used for the last fix
+     */
+    private int lastBeaconCount;
+    /**
+     * Whether the particles have been spread
+     */
+    private boolean initialized;
+
+    /**
+     * Constructor. Creates a filter for the given building using the default
+     * values
+     *
+     * @param building Building in which the user is being located
+     */
+    public GridParticleFilter(final Building building) {
+        this(building, DEFAULT_NUM_PARTICLES, DEFAULT_WALKING_SPEED, new Random());
+    }
+
+    /**
+     * Constructor. Creates a filter for the given building using the given
+     * values
+     *
+     * @param building Building in which the user is being located
+     * @param numParticles Number of particles
+     * @param walkingSpeed Walking speed (in m/s) of the user
+     * @param random Random number generator used by the filter
+     */
+    public GridParticleFilter(final Building building,
+                              final int numParticles,
+                              final double walkingSpeed,
+                              final Random random) {
+        if (numParticles < 1) {
+            throw new IllegalArgumentException("numParticles < 1");
+        }
+        this.building = building;
+        this.numParticles = numParticles;
+        this.nodeDistance = building.getNodeDistance() > 0 ? building.getNodeDistance() : 1;
+        this.walkingSpeed = walkingSpeed / this.nodeDistance / 1000;
+        this.floorHeight = building.getFloorHeight() / this.nodeDistance;
+        this.random = random;
+        final NodeGrid grid = building.getNodeGrid();
+        int count = 0;
+        for (int id = 0; id < grid.size(); id++) {
+            final GridNode node = grid.getNode(id);
+            if (node != null && node.isTraversable()) {
+                count++;
+            }
+        }
+        this.traversableX = new int[count];
+        this.traversableY = new int[count];
+        this.traversableZ = new int[count];
+        int index = 0;
+        for (int id = 0; id < grid.size(); id++) {
+            final GridNode node = grid.getNode(id);
+            if (node != null && node.isTraversable()) {
+                this.traversableX[index] = id % grid.getSizeX();
+                this.traversableY[index] = id / grid.getSizeX() % grid.getSizeY();
+                this.traversableZ[index] = id / (grid.getSizeX() * grid.getSizeY());
+                index++;
+            }
+        }
+        final List<FloorConnector> connectors = building.getFloorConnectors();
+        final int connectorCount = connectors == null ? 0 : connectors.size();
+        this.connectorX = new int[connectorCount];
+        this.connectorY = new int[connectorCount];
+        this.connectorZ = new int[connectorCount];
+        for (int c = 0; c < connectorCount; c++) {
+            final RectCoordinates location = connectors.get(c).getLocation();
+            this.connectorX[c] = location.getX();
+            this.connectorY[c] = location.getY();
+            this.connectorZ[c] = location.getZ();
+        }
+        this.connectorUp = new int[connectorCount];
+        this.connectorDown = new int[connectorCount];
+        for (int c = 0; c < connectorCount; c++) {
+            this.connectorUp[c] = this.findConnector(c, this.connectorZ[c] + 1);
+            this.connectorDown[c] = this.findConnector(c, this.connectorZ[c] - 1);
+        }
+        this.particleX = new double[numParticles];
+        this.particleY = new double[numParticles];
+        this.particleZ = new int[numParticles];
+        this.resampledX = new double[numParticles];
+        this.resampledY = new double[numParticles];
+        this.resampledZ = new int[numParticles];
+        this.weights = new double[numParticles];
+        this.floorWeights = new double[Math.max(1, grid.getSizeZ())];
+        this.initialized = false;
+    }
+
+    /**
+     * Spreads the particles uniformly over the traversable nodes
+     *
+     * @param time Current time (in ms)
+     */
+    public void reset(final long time) {
+        if (this.traversableX.length == 0) {
+            return;
+        }
+        for (int i = 0; i < this.numParticles; i++) {
+            final int node = this.random.nextInt(this.traversableX.length);
+            this.particleX[i] = this.traversableX[node];
+            this.particleY[i] = this.traversableY[node];
+            this.particleZ[i] = this.traversableZ[node];
+            this.weights[i] = 1.0 / this.numParticles;
+        }
+        this.lastTime = time;
+        this.initialized = true;
+    }
+
+    /**
+     * Places every particle on the given node, used when the location of the
+     * user is already known
+     *
+     * @param node Node the user is at
+     * @param time Current time (in ms)
+     */
+    public void reset(final GridNode node, final long time) {
+        final RectCoordinates location = node.getLocation();
+        for (int i = 0; i < this.numParticles; i++) {
+            this.particleX[i] = location.getX();
+            this.particleY[i] = location.getY();
+            this.particleZ[i] = location.getZ();
+            this.weights[i] = 1.0 / this.numParticles;
+        }
+        this.lastTime = time;
+        this.initialized = true;
+    }
+
+    /**
+     * Locates the user by moving the particles to the given time and
+     * weighting them using the given beacons
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @param time Time (in ms) of the scan
+     * @return Traversable node closest to the estimated position, or null if
+     *         the building has no traversable nodes
+     */
+    public GridNode locate(final List<Beacon> beacons, final RSSIEstimator estimator, final long time) {
+        if (!this.initialized) {
+            this.reset(time);
+            if (!this.initialized) {
+                return null;
+            }
+        }
+        this.predict(time - this.lastTime);
+        this.lastTime = time;
+        if (this.update(beacons, estimator) && this.getEffectiveSampleSize() < RESAMPLE_THRESHOLD * this.numParticles) {
+            this.resample();
+        }
+        return this.estimate();
+    }
+
+    /**
+     * Getter for the number of particles
+     *
+     * @return Number of particles
+     */
+    public int getNumParticles() {
+        return this.numParticles;
+    }
+
+    /**
+     * Getter for the building in which the user is being located
+     *
+     * @return Building given to the constructor
+     */
+    public Building getBuilding() {
+        return this.building;
+    }
+
+    /**
+     * Getter for the confidence radius of the last fix
+     *
+     * @return Weighted standard deviation (in grid units) of the distance
+     *         between the particles on the floor of the last fix and the fix
+     */
+    public double getLastRadius() {
+        return this.lastRadius;
+    }
+
+    /**
+     * Getter for the number of beacons used for the last fix
+     *
+     * @return Number of beacons located in the building used for the last
+     *         fix
+     */
+    public int getLastBeaconCount() {
+        return this.lastBeaconCount;
+    }
+
+    /**
+     * Moves every particle a random step whose size follows the walking
+     * speed. Steps crossing a node which is not traversable are discarded.
+     * Particles next to a floor connector may then take it
+     *
+     * @param elapsed Time (in ms) since the previous fix
+     */
+    private void predict(final long elapsed) {
+        final double deviation = this.walkingSpeed * Math.max(0, elapsed);
+        if (deviation == 0) {
+            return;
+        }
+        for (int i = 0; i < this.numParticles; i++) {
+            final double x = this.particleX[i] + deviation * this.random.nextGaussian();
+            final double y = this.particleY[i] + deviation * this.random.nextGaussian();
+            if (this.isLineTraversable(this.particleX[i], this.particleY[i], x, y, this.particleZ[i])) {
+                this.particleX[i] = x;
+                this.particleY[i] = y;
+            }
+            if (this.connectorX.length > 0 && this.random.nextDouble() < FLOOR_CHANGE_PROBABILITY) {
+                this.takeConnector(i);
+            }
+        }
+    }
+
+    /**
+     * Checks whether every node on the line between the given positions is
+     * traversable. The line is walked in steps of at most one node along
+     * each axis, so no node on it is skipped
+     *
+     * @param fromX x coordinate the line starts at
+     * @param fromY y coordinate the line starts at
+     * @param toX x coordinate the line ends at
+     * @param toY y coordinate the line ends at
+     * @param z Floor of the line
+     * @return boolean indicating whether the line can be walked
+     */
+    private boolean isLineTraversable(final double fromX,
+                                      final double fromY,
+                                      final double toX,
+                                      final double toY,
+                                      final int z) {
+        final double dx = toX - fromX;
+        final double dy = toY - fromY;
+        final int steps = Math.max(1, (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy))));
+        for (int step = 1; step <= steps; step++) {
+            final double x = fromX + dx * step / steps;
+            final double y = fromY + dy * step / steps;
+            if (!GridSnap.isTraversable(this.building, (int) Math.round(x), (int) Math.round(y), z)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the given particle through the first floor connector within
+     * reach on its floor, onto the traversable node closest to the connector
+     * it leads to. Connectors leading both up and down are taken either way
+     * with the same probability
+     *
+     * @param particle Index of the particle being moved
+     */
+    private void takeConnector(final int particle) {
+        for (int c = 0; c < this.connectorX.length; c++) {
+            if (this.connectorZ[c] != this.particleZ[particle]) {
+                continue;
+            }
+            final double dx = this.particleX[particle] - this.connectorX[c];
+            final double dy = this.particleY[particle] - this.connectorY[c];
+            if (dx * dx + dy * dy > CONNECTOR_REACH * CONNECTOR_REACH) {
+                continue;
+            }
+            int target = this.random.nextBoolean() ? this.connectorUp[c] : this.connectorDown[c];
+            if (target == NO_CONNECTOR) {
+                target = this.connectorUp[c] == NO_CONNECTOR ? this.connectorDown[c] : this.connectorUp[c];
+            }
+            if (target == NO_CONNECTOR) {
+                return;
+            }
+            final GridNode node = GridSnap.closestTraversable(this.building,
+                    this.connectorX[target],
+                    this.connectorY[target],
+                    this.connectorZ[target]);
+            if (node != null) {
+                this.particleX[particle] = node.getLocation().getX();
+                this.particleY[particle] = node.getLocation().getY();
+                this.particleZ[particle] = node.getLocation().getZ();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Finds the connector on the given floor closest to the given connector,
+     * within MAX_CONNECTOR_OFFSET nodes of it
+     *
+     * @param connector Index of the connector being joined
+     * @param z Floor being searched
+     * @return Index of the closest connector, or NO_CONNECTOR if there is
+     *         none on the floor close enough
+     */
+    private int findConnector(final int connector, final int z) {
+        int result = NO_CONNECTOR;
+        double bestDistance = MAX_CONNECTOR_OFFSET * MAX_CONNECTOR_OFFSET;
+        for (int c = 0; c < this.connectorX.length; c++) {
+            if (this.connectorZ[c] != z) {
+                continue;
+            }
+            final double dx = this.connectorX[c] - this.connectorX[connector];
+            final double dy = this.connectorY[c] - this.connectorY[connector];
+            if (dx * dx + dy * dy <= bestDistance) {
+                result = c;
+                bestDistance = dx * dx + dy * dy;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Weights the particles using the likelihood of the RSSI value of each
+     * beacon located in the building
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @return boolean indicating whether any beacon was used. The number of
+     *         beacons used is kept as the beacon count of the fix
+     */
+    private boolean update(final List<Beacon> beacons, final RSSIEstimator estimator) {
+        final double dbPerDecade = 10 * WeightedTrilateration.DEFAULT_PATH_LOSS_EXPONENT;
+        for (int i = 0; i < this.numParticles; i++) {
+            this.weights[i] = Math.log(Math.max(this.weights[i], Double.MIN_VALUE));
+        }
+        int used = 0;
+        for (final Beacon beacon : beacons) {
+            final RectCoordinates location = this.building.getBeaconLocationMap().get(beacon);
+            if (location == null) {
+                continue;
+            }
+            used++;
+            final double rssi = estimator.getRSSI(beacon);
+            double variance = estimator.getRSSIVariance(beacon);
+            if (Double.isNaN(variance) || Double.isInfinite(variance)) {
+                variance = DEFAULT_RSSI_VARIANCE;
+            }
+            final double twiceVariance = 2 * (variance + MODEL_VARIANCE);
+            for (int i = 0; i < this.numParticles; i++) {
+                final double dx = this.particleX[i] - location.getX();
+                final double dy = this.particleY[i] - location.getY();
+                final double dz = (this.particleZ[i] - location.getZ()) * this.floorHeight;
+                final double meters = Math.max(MIN_DISTANCE, Math.sqrt(dx * dx + dy * dy + dz * dz) * this.nodeDistance);
+                final double expected = WeightedTrilateration.DEFAULT_RSSI_AT_ONE_METER
+                        - dbPerDecade * Math.log10(meters);
+                final double error = rssi - expected;
+                this.weights[i] -= error * error / twiceVariance;
+            }
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.numParticles; i++) {
+            max = Math.max(max, this.weights[i]);
+        }
+        double sum = 0;
+        for (int i = 0; i < this.numParticles; i++) {
+            this.weights[i] = Math.exp(this.weights[i] - max);
+            sum += this.weights[i];
+        }
+        for (int i = 0; i < this.numParticles; i++) {
+            this.weights[i] /= sum;
+        }
+        this.lastBeaconCount = used;
+        return used > 0;
+    }
+
+    /**
+     * Gets the effective sample size of the normalized weights
+     *
+     * @return Effective number of particles
+     */
+    private double getEffectiveSampleSize() {
+        double sumOfSquares = 0;
+        for (int i = 0; i < this.numParticles; i++) {
+            sumOfSquares += this.weights[i] * this.weights[i];
+        }
+        return 1 / sumOfSquares;
+    }
+
+    /**
+     * Resamples the particles systematically, using a single random offset
+     * and evenly spaced pointers over the cumulative weights
+     */
+    private void resample() {
+        final double step = 1.0 / this.numParticles;
+        double pointer = this.random.nextDouble() * step;
+        double cumulative = this.weights[0];
+        int source = 0;
+        for (int i = 0; i < this.numParticles; i++) {
+            while (pointer > cumulative && source < this.numParticles - 1) {
+                source++;
+                cumulative += this.weights[source];
+            }
+            this.resampledX[i] = this.particleX[source];
+            this.resampledY[i] = this.particleY[source];
+            this.resampledZ[i] = this.particleZ[source];
+            pointer += step;
+        }
+        final double[] swapX = this.particleX;
+        final double[] swapY = this.particleY;
+        final int[] swapZ = this.particleZ;
+        this.particleX = this.resampledX;
+        this.particleY = this.resampledY;
+        this.particleZ = this.resampledZ;
+        this.resampledX = swapX;
+        this.resampledY = swapY;
+        this.resampledZ = swapZ;
+        for (int i = 0; i < this.numParticles; i++) {
+            this.weights[i] = step;
+        }
+    }
+
+    /**
+     * Estimates the position of the user as the weighted mean of the
+     * particles on the floor holding the most weight, along with its
+     * confidence radius
+     *
+     * @return Traversable node closest to the estimate
+     */
+    private GridNode estimate() {
+        for (int z = 0; z < this.floorWeights.length; z++) {
+            this.floorWeights[z] = 0;
+        }
+        for (int i = 0; i < this.numParticles; i++) {
+            this.floorWeights[this.particleZ[i]] += this.weights[i];
+        }
+        int floor = 0;
+        for (int z = 1; z < this.floorWeights.length; z++) {
+            if (this.floorWeights[z] > this.floorWeights[floor]) {
+                floor = z;
+            }
+        }
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < this.numParticles; i++) {
+            if (this.particleZ[i] == floor) {
+                x += this.weights[i] * this.particleX[i];
+                y += this.weights[i] * this.particleY[i];
+            }
+        }
+        x /= this.floorWeights[floor];
+        y /= this.floorWeights[floor];
+        double spread = 0;
+        for (int i = 0; i < this.numParticles; i++) {
+            if (this.particleZ[i] == floor) {
+                final double dx = this.particleX[i] - x;
+                final double dy = this.particleY[i] - y;
+                spread += this.weights[i] * (dx * dx + dy * dy);
+            }
+        }
+        this.lastRadius = Math.sqrt(spread / this.floorWeights[floor]);
+        return GridSnap.closestTraversable(this.building, x, y, floor);
+    }
+}
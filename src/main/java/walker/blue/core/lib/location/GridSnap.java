@@ -0,0 +1,70 @@
+package walker.blue.core.lib.location;
+
+import walker.blue.core.lib.types.Building;
+import walker.blue.path.lib.node.GridNode;
+
+/**
+ * Snaps continuous positions onto the grid of a building
+ */
+final class GridSnap {
+
+    /**
+     * Max distance (in nodes) searched for a traversable node
+     */
+    static final int MAX_SNAP_RADIUS = 3;
+
+    /**
+     * Not instantiable
+     */
+    private GridSnap() {
+    }
+
+    /**
+     * Finds the traversable node closest to the given position, searching
+     * rings of nodes of growing radius around it
+     *
+     * @param building Building whose grid is being searched
+     * @param x x coordinate in grid units
+     * @param y y coordinate in grid units
+     * @param z floor of the position
+     * @return closest traversable node within MAX_SNAP_RADIUS nodes, or null
+     *         if there is none
+     */
+    static GridNode closestTraversable(final Building building, final double x, final double y, final int z) {
+        final int centerX = (int) Math.round(x);
+        final int centerY = (int) Math.round(y);
+        GridNode result = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (int radius = 0; radius <= MAX_SNAP_RADIUS && result == null; radius++) {
+            for (int ny = centerY - radius; ny <= centerY + radius; ny++) {
+                for (int nx = centerX - radius; nx <= centerX + radius; nx++) {
+                    if (Math.max(Math.abs(nx - centerX), Math.abs(ny - centerY)) != radius
+                            || !isTraversable(building, nx, ny, z)) {
+                        continue;
+                    }
+                    final double distance = (nx - x) * (nx - x) + (ny - y) * (ny - y);
+                    if (distance < bestDistance) {
+                        result = building.nodeAt(nx, ny, z);
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the node at the given coordinates exists and is
+     * traversable
+     *
+     * @param building Building whose grid is being checked
+     * @param x x coordinate of the node
+     * @param y y coordinate of the node
+     * @param z z coordinate of the node
+     * @return boolean indicating whether the node is traversable
+     */
+    static boolean isTraversable(final Building building, final int x, final int y, final int z) {
+        final GridNode node = building.nodeAt(x, y, z);
+        return node != null && node.isTraversable();
+    }
+}
@@ -0,0 +1,196 @@
+package walker.blue.core.lib.location;
+
+import java.util.List;
+
+import walker.blue.core.lib.types.Building;
+import walker.blue.path.lib.floor.FloorConnector;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Rejects fixes which would move the user faster than a person can walk.
+ * A fix is accepted if its distance from the last accepted fix can be
+ * covered at the max walking speed in the time elapsed, allowing for the
+ * confidence radius of both fixes. A fix on another floor is only accepted
+ * if a floor connector on the floor of the last accepted fix could have been
+ * reached from it in the time elapsed. After several rejections in a row
+ * the next fix is accepted anyway, so a wrong fix cannot hold the user in
+ * place. Each check takes constant time on the same floor and time linear
+ * in the number of floor connectors across floors. Not thread safe
+ */
+public class MotionGate {
+
+    /**
+     * Default max walking speed (in m/s)
+     */
+    public static final double DEFAULT_MAX_SPEED = 2.0;
+    /**
+     * Default number of rejections in a row after which a fix is accepted
+     */
+    public static final int DEFAULT_MAX_REJECTIONS = 3;
+    /**
+     * Distance (in grid units) always allowed between two fixes, to absorb
+     * the snapping of the fixes onto the grid
+     */
+    private static final double SNAP_SLACK = 1.0;
+    /**
+     * Milliseconds in a second
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * Max walking speed (in grid units per ms)
+     */
+    private final double maxSpeed;
+    /**
+     * Number of rejections in a row after which a fix is accepted
+     */
+    private final int maxRejections;
+    /**
+     * x coordinate of each floor connector of the building
+     */
+    private final int[] connectorX;
+    /**
+     * y coordinate of each floor connector of the building
+     */
+    private final int[] connectorY;
+    /**
+     * z coordinate of each floor connector of the building
+     */
+    private final int[] connectorZ;
+    /**
+     * Last accepted fix. Null if no fix has been accepted
+     */
+    private RectCoordinates lastFix;
+    /**
+     * Confidence radius (in grid units) of the last accepted fix
+     */
+    private double lastRadius;
+    /**
+     * Time (in ms) of the last accepted fix
+     */
+    private long lastTime;
+    /**
+     * Number of fixes rejected since the last accepted fix
+     */
+    private int consecutiveRejections;
+    /**
+     * Number of fixes rejected in total
+     */
+    private int rejectedCount;
+
+    /**
+     * Constructor. Creates a gate for the given building using the default
+     * values
+     *
+     * @param building Building in which the user is being located
+     */
+    public MotionGate(final Building building) {
+        this(building, DEFAULT_MAX_SPEED, DEFAULT_MAX_REJECTIONS);
+    }
+
+    /**
+     * Constructor. Creates a gate for the given building
+     *
+     * @param building Building in which the user is being located
+     * @param maxSpeed Max walking speed (in m/s)
+     * @param maxRejections Number of rejections in a row after which a fix
+     *                      is accepted
+     */
+    public MotionGate(final Building building, final double maxSpeed, final int maxRejections) {
+        final double nodeDistance = building.getNodeDistance() > 0 ? building.getNodeDistance() : 1;
+        this.maxSpeed = maxSpeed / nodeDistance / MILLIS_PER_SECOND;
+        this.maxRejections = maxRejections;
+        final List<FloorConnector> connectors = building.getFloorConnectors();
+        final int connectorCount = connectors == null ? 0 : connectors.size();
+        this.connectorX = new int[connectorCount];
+        this.connectorY = new int[connectorCount];
+        this.connectorZ = new int[connectorCount];
+        for (int c = 0; c < connectorCount; c++) {
+            final RectCoordinates location = connectors.get(c).getLocation();
+            this.connectorX[c] = location.getX();
+            this.connectorY[c] = location.getY();
+            this.connectorZ[c] = location.getZ();
+        }
+        this.reset();
+    }
+
+    /**
+     * Checks whether the given fix can be reached from the last accepted fix
+     * and, if so, makes it the last accepted fix
+     *
+     * @param fix Location of the user found using the beacons
+     * @param radius Confidence radius (in grid units) of the fix
+     * @param time Time (in ms) of the fix
+     * @return boolean indicating whether the fix was accepted
+     */
+    public boolean accept(final RectCoordinates fix, final double radius, final long time) {
+        if (this.lastFix != null && this.consecutiveRejections < this.maxRejections) {
+            final double walked = this.maxSpeed * Math.max(0, time - this.lastTime);
+            final boolean reachable = fix.getZ() == this.lastFix.getZ()
+                    ? this.isWithin(fix.getX(), fix.getY(), walked + radius + this.lastRadius + SNAP_SLACK)
+                    : this.canReachConnector(walked + this.lastRadius + SNAP_SLACK);
+            if (!reachable) {
+                this.consecutiveRejections++;
+                this.rejectedCount++;
+                return false;
+            }
+        }
+        this.lastFix = fix;
+        this.lastRadius = radius;
+        this.lastTime = time;
+        this.consecutiveRejections = 0;
+        return true;
+    }
+
+    /**
+     * Checks whether the given point is within the given distance of the
+     * last accepted fix
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @param distance Distance (in grid units)
+     * @return boolean indicating whether the point is within the distance
+     */
+    private boolean isWithin(final double x, final double y, final double distance) {
+        final double dx = x - this.lastFix.getX();
+        final double dy = y - this.lastFix.getY();
+        return dx * dx + dy * dy <= distance * distance;
+    }
+
+    /**
+     * Checks whether a floor connector on the floor of the last accepted fix
+     * is within the given distance of it
+     *
+     * @param distance Distance (in grid units) the user could have moved
+     * @return boolean indicating whether a floor connector could have been
+     *         reached
+     */
+    private boolean canReachConnector(final double distance) {
+        for (int c = 0; c < this.connectorX.length; c++) {
+            if (this.connectorZ[c] == this.lastFix.getZ()
+                    && this.isWithin(this.connectorX[c], this.connectorY[c], distance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the last accepted fix. The rejected count is kept
+     */
+    public void reset() {
+        this.lastFix = null;
+        this.lastRadius = 0;
+        this.lastTime = 0;
+        this.consecutiveRejections = 0;
+    }
+
+    /**
+     * Getter for the number of fixes rejected
+     *
+     * @return Number of fixes rejected since the gate was created
+     */
+    public int getRejectedCount() {
+        return this.rejectedCount;
+    }
+}
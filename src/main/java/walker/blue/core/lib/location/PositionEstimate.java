@@ -0,0 +1,78 @@
+package walker.blue.core.lib.location;
+
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Location of the user along with how much it can be trusted. The
+ * confidence radius is the distance around the location within which the
+ * user most likely is, and the evidence count is the number of beacons the
+ * location is based on
+ */
+public class PositionEstimate {
+
+    /**
+     * Node closest to the position of the user
+     */
+    private final GridNode node;
+    /**
+     * Radius (in grid units) around the node within which the user most
+     * likely is
+     */
+    private final double confidenceRadius;
+    /**
+     * Number of beacons the estimate is based on
+     */
+    private final int evidenceCount;
+
+    /**
+     * Constructor. Sets the fields to the given values
+     *
+     * @param node Node closest to the position of the user
+     * @param confidenceRadius Radius (in grid units) around the node within
+     *                         which the user most likely is
+     * @param evidenceCount Number of beacons the estimate is based on
+     */
+    public PositionEstimate(final GridNode node, final double confidenceRadius, final int evidenceCount) {
+        this.node = node;
+        this.confidenceRadius = confidenceRadius;
+        this.evidenceCount = evidenceCount;
+    }
+
+    /**
+     * Getter for the node closest to the position of the user
+     *
+     * @return Node closest to the position of the user
+     */
+    public GridNode getNode() {
+        return this.node;
+    }
+
+    /**
+     * Getter for the location of the node closest to the position of the user
+     *
+     * @return Location of the user
+     */
+    public RectCoordinates getLocation() {
+        return this.node.getLocation();
+    }
+
+    /**
+     * Getter for the confidence radius of the estimate
+     *
+     * @return Radius (in grid units) around the location within which the
+     *         user most likely is
+     */
+    public double getConfidenceRadius() {
+        return this.confidenceRadius;
+    }
+
+    /**
+     * Getter for the number of beacons the estimate is based on
+     *
+     * @return Number of beacons the estimate is based on
+     */
+    public int getEvidenceCount() {
+        return this.evidenceCount;
+    }
+}
@@ -0,0 +1,448 @@
+package walker.blue.core.lib.location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.beacon.StrongestBeacons;
+import walker.blue.core.lib.types.Building;
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Multilateration engine locating the user from the RSSI values of the
+ * strongest beacons. The RSSI of each beacon is turned into a distance using
+ * a log-distance path loss model, and the position minimizing the weighted
+ * squared range errors is found using Gauss-Newton, starting from the
+ * previous fix. Ranges are weighted by the inverse of their variance, which
+ * grows with the distance and with the variance of the RSSI estimate.
+ *
+ * The search is done in the plane of the floor of the strongest beacon, in
+ * grid units, and the continuous position is then snapped onto the closest
+ * traversable node of the building. Working arrays are sized for the max
+ * number of beacons, and the list of beacons around the previous fix for
+ * every beacon of the building, so a fix does not allocate. When the floor
+ * is given and enough beacons around the previous fix are heard, only those
+ * are used, so far away beacons heard through reflections do not pull the
+ * fix. No fix is given from a single beacon, and the previous fix is only
+ * kept once a fix snaps onto the grid. Not thread safe
+ */
+public class WeightedTrilateration {
+
+    /**
+     * Default max number of beacons used for a fix
+     */
+    public static final int DEFAULT_MAX_BEACONS = 4;
+    /**
+     * Default RSSI (in dBm) measured one meter away from a beacon
+     */
+    public static final double DEFAULT_RSSI_AT_ONE_METER = -59.0;
+    /**
+     * Default path loss exponent
+     */
+    public static final double DEFAULT_PATH_LOSS_EXPONENT = 2.0;
+    /**
+     * Max number of Gauss-Newton iterations for a fix
+     */
+    private static final int MAX_ITERATIONS = 10;
+    /**
+     * Step (in grid units) under which the solution is considered converged
+     */
+    private static final double CONVERGENCE_STEP = 1e-3;
+    /**
+     * Damping added to the normal equations so they can always be solved
+     */
+    private static final double DAMPING = 1e-6;
+    /**
+     * Variance (in dBm^2) used for estimates without a known variance
+     */
+    private static final double DEFAULT_RSSI_VARIANCE = 16.0;
+    /**
+     * Max distance (in meters) from the previous fix of the beacons
+     * preferred for the next fix
+     */
+    private static final double NEIGHBOURHOOD_RADIUS = 20.0;
+    /**
+     * Min number of beacons around the previous fix which have to be heard
+     * for the fix to only use them
+     */
+    private static final int MIN_NEIGHBOURS = 3;
+
+    /**
+     * Building in which the user is being located
+     */
+    private final Building building;
+    /**
+     * Max number of beacons used for a fix
+     */
+    private final int maxBeacons;
+    /**
+     * RSSI (in dBm) measured one meter away from a beacon
+     */
+    private final double rssiAtOneMeter;
+    /**
+     * Path loss exponent
+     */
+    private final double pathLossExponent;
+    /**
+     * Meters between two adjacent nodes
+     */
+    private final double nodeDistance;
+    /**
+     * Strongest beacons of the current fix
+     */
+    private final StrongestBeacons strongest;
+    /**
+     * Beacons around the previous fix
+     */
+    private final List<Beacon> neighbourhood;
+    /**
+     * x coordinate of each beacon used for the fix
+     */
+    private final double[] beaconX;
+    /**
+     * y coordinate of each beacon used for the fix
+     */
+    private final double[] beaconY;
+    /**
+     * Estimated distance (in grid units) to each beacon used for the fix
+     */
+    private final double[] ranges;
+    /**
+     * Weight of each range
+     */
+    private final double[] weights;
+    /**
+     * x coordinate (in grid units) of the last fix before snapping
+     */
+    private double lastX;
+    /**
+     * y coordinate (in grid units) of the last fix before snapping
+     */
+    private double lastY;
+    /**
+     * Floor of the last fix
+     */
+    private int lastZ;
+    /**
+     * Confidence radius (in grid units) of the last fix
+     */
+    private double lastRadius;
+    /**
+     * Number of beacons used for the last fix
+     */
+    private int lastBeaconCount;
+    /**
+     * Whether there is a previous fix
+     */
+    private boolean hasFix;
+
+    /**
+     * Constructor. Creates an engine for the given building using the
+     * default model values
+     *
+     * @param building Building in which the user is being located
+     */
+    public WeightedTrilateration(final Building building) {
+        this(building, DEFAULT_MAX_BEACONS, DEFAULT_RSSI_AT_ONE_METER, DEFAULT_PATH_LOSS_EXPONENT);
+    }
+
+    /**
+     * Constructor. Creates an engine for the given building using the given
+     * model values
+     *
+     * @param building Building in which the user is being located
+     * @param maxBeacons Max number of beacons used for a fix
+     * @param rssiAtOneMeter RSSI (in dBm) measured one meter away from a beacon
+     * @param pathLossExponent Path loss exponent
+     */
+    public WeightedTrilateration(final Building building,
+                                 final int maxBeacons,
+                                 final double rssiAtOneMeter,
+                                 final double pathLossExponent) {
+        this.building = building;
+        this.maxBeacons = Math.max(1, maxBeacons);
+        this.rssiAtOneMeter = rssiAtOneMeter;
+        this.pathLossExponent = pathLossExponent;
+        this.nodeDistance = building.getNodeDistance() > 0 ? building.getNodeDistance() : 1;
+        this.strongest = new StrongestBeacons(this.maxBeacons);
+        this.neighbourhood = new ArrayList<>(building.getBeaconIndex().size());
+        this.beaconX = new double[this.maxBeacons];
+        this.beaconY = new double[this.maxBeacons];
+        this.ranges = new double[this.maxBeacons];
+        this.weights = new double[this.maxBeacons];
+        this.hasFix = false;
+    }
+
+    /**
+     * Locates the user using the given beacons
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @return GridNode closest to the position of the user, or null if it
+     *         could not be found
+     */
+    public GridNode locate(final List<Beacon> beacons, final RSSIEstimator estimator) {
+        final int found = this.strongest.select(beacons, estimator, this.building.getBeaconLocationMap().keySet());
+        if (found == 0) {
+            return null;
+        }
+        final int z = this.building.getBeaconLocationMap().get(this.strongest.getBeacon(0)).getZ();
+        return this.locateOnFloor(found, z, estimator);
+    }
+
+    /**
+     * Locates the user on the given floor using the given beacons. Only the
+     * beacons located on that floor are candidates, so stronger beacons
+     * heard through a floor do not crowd them out. If the previous fix was
+     * on the same floor and at least MIN_NEIGHBOURS beacons around it are
+     * heard, only those are used
+     *
+     * @param beacons Beacons scanned
+     * @param estimator Estimator used to get the RSSI value of each beacon
+     * @param z Floor the user is on
+     * @return GridNode closest to the position of the user, or null if it
+     *         could not be found
+     */
+    public GridNode locate(final List<Beacon> beacons, final RSSIEstimator estimator, final int z) {
+        int found = 0;
+        if (this.hasFix && this.lastZ == z) {
+            this.neighbourhood.clear();
+            this.building.getBeaconIndex().findWithinRadius(this.lastX,
+                    this.lastY,
+                    z,
+                    NEIGHBOURHOOD_RADIUS / this.nodeDistance,
+                    this.neighbourhood);
+            found = this.strongest.select(beacons, estimator, this.neighbourhood);
+        }
+        if (found < Math.min(MIN_NEIGHBOURS, this.maxBeacons)) {
+            found = this.strongest.select(beacons, estimator, this.building.getBeaconIndex().getFloorBeacons(z));
+        }
+        if (found == 0) {
+            return null;
+        }
+        return this.locateOnFloor(found, z, estimator);
+    }
+
+    /**
+     * Finds the position minimizing the weighted range errors of the
+     * strongest beacons on the given floor
+     *
+     * @param found Number of strongest beacons
+     * @param z Floor being searched
+     * @param estimator Estimator used to get the variance of each beacon
+     * @return GridNode closest to the position, or null if fewer than two
+     *         of the beacons are on the floor or there is no traversable
+     *         node near the position
+     */
+    private GridNode locateOnFloor(final int found, final int z, final RSSIEstimator estimator) {
+        final int used = this.loadRanges(found, z, estimator);
+        // A single range only bounds the position, it does not fix it
+        if (used < 2) {
+            return null;
+        }
+        double x;
+        double y;
+        if (this.hasFix && this.lastZ == z) {
+            x = this.lastX;
+            y = this.lastY;
+        } else {
+            x = this.getCentroid(this.beaconX, used);
+            y = this.getCentroid(this.beaconY, used);
+        }
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double jxx = DAMPING;
+            double jxy = 0;
+            double jyy = DAMPING;
+            double gx = 0;
+            double gy = 0;
+            for (int i = 0; i < used; i++) {
+                final double dx = x - this.beaconX[i];
+                final double dy = y - this.beaconY[i];
+                final double distance = Math.max(Math.sqrt(dx * dx + dy * dy), CONVERGENCE_STEP);
+                final double ux = dx / distance;
+                final double uy = dy / distance;
+                final double residual = distance - this.ranges[i];
+                final double w = this.weights[i];
+                jxx += w * ux * ux;
+                jxy += w * ux * uy;
+                jyy += w * uy * uy;
+                gx += w * ux * residual;
+                gy += w * uy * residual;
+            }
+            final double determinant = jxx * jyy - jxy * jxy;
+            final double stepX = -(jyy * gx - jxy * gy) / determinant;
+            final double stepY = -(jxx * gy - jxy * gx) / determinant;
+            x += stepX;
+            y += stepY;
+            if (Math.abs(stepX) < CONVERGENCE_STEP && Math.abs(stepY) < CONVERGENCE_STEP) {
+                break;
+            }
+        }
+        final GridNode node = GridSnap.closestTraversable(this.building, x, y, z);
+        if (node == null) {
+            return null;
+        }
+        this.lastX = x;
+        this.lastY = y;
+        this.lastZ = z;
+        this.lastRadius = this.getConfidenceRadius(x, y, used);
+        this.lastBeaconCount = used;
+        this.hasFix = true;
+        return node;
+    }
+
+    /**
+     * Gets the confidence radius of the given solution. The covariance of
+     * the solution is the inverse of the weighted normal matrix, since the
+     * weights are the inverse variances of the ranges, and the radius is the
+     * square root of its trace. Ranges lined up only bound the position by
+     * the longest range
+     *
+     * @param x x coordinate of the solution
+     * @param y y coordinate of the solution
+     * @param used Number of ranges used for the solution
+     * @return Confidence radius (in grid units) of the solution
+     */
+    private double getConfidenceRadius(final double x, final double y, final int used) {
+        double maxRange = 0;
+        double jxx = 0;
+        double jxy = 0;
+        double jyy = 0;
+        for (int i = 0; i < used; i++) {
+            maxRange = Math.max(maxRange, this.ranges[i]);
+            final double dx = x - this.beaconX[i];
+            final double dy = y - this.beaconY[i];
+            final double distance = Math.max(Math.sqrt(dx * dx + dy * dy), CONVERGENCE_STEP);
+            final double ux = dx / distance;
+            final double uy = dy / distance;
+            jxx += this.weights[i] * ux * ux;
+            jxy += this.weights[i] * ux * uy;
+            jyy += this.weights[i] * uy * uy;
+        }
+        final double determinant = jxx * jyy - jxy * jxy;
+        if (determinant <= DAMPING) {
+            return maxRange;
+        }
+        return Math.min(maxRange, Math.sqrt((jxx + jyy) / determinant));
+    }
+
+    /**
+     * Gets the RSSI value the path loss model expects at the given distance
+     * from a beacon
+     *
+     * @param distance Distance (in meters) from the beacon. Distances under
+     *                 one meter are treated as one meter
+     * @return Expected RSSI value (in dBm)
+     */
+    public double getExpectedRSSI(final double distance) {
+        return this.rssiAtOneMeter - 10 * this.pathLossExponent * Math.log10(Math.max(1, distance));
+    }
+
+    /**
+     * Forgets the previous fix, so the next one starts from the centroid of
+     * the beacons
+     */
+    public void reset() {
+        this.hasFix = false;
+    }
+
+    /**
+     * Getter for the x coordinate of the last fix before snapping
+     *
+     * @return x coordinate in grid units
+     */
+    public double getLastX() {
+        return this.lastX;
+    }
+
+    /**
+     * Getter for the y coordinate of the last fix before snapping
+     *
+     * @return y coordinate in grid units
+     */
+    public double getLastY() {
+        return this.lastY;
+    }
+
+    /**
+     * Getter for the confidence radius of the last fix
+     *
+     * @return Radius (in grid units) around the last fix within which the
+     *         user most likely is
+     */
+    public double getLastRadius() {
+        return this.lastRadius;
+    }
+
+    /**
+     * Getter for the number of beacons used for the last fix
+     *
+     * @return Number of beacons used for the last fix
+     */
+    public int getLastBeaconCount() {
+        return this.lastBeaconCount;
+    }
+
+    /**
+     * Getter for the floor of the last fix
+     *
+     * @return z coordinate of the last fix
+     */
+    public int getLastZ() {
+        return this.lastZ;
+    }
+
+    /**
+     * Loads the location, range and weight of the strongest beacons on the
+     * given floor
+     *
+     * @param found Number of strongest beacons
+     * @param z Floor being searched
+     * @param estimator Estimator used to get the variance of each beacon
+     * @return Number of beacons loaded
+     */
+    private int loadRanges(final int found, final int z, final RSSIEstimator estimator) {
+        final double dbPerDecade = 10 * this.pathLossExponent;
+        int used = 0;
+        for (int i = 0; i < found; i++) {
+            final RectCoordinates location = this.building.getBeaconLocationMap().get(this.strongest.getBeacon(i));
+            if (location.getZ() != z) {
+                continue;
+            }
+            double variance = estimator.getRSSIVariance(this.strongest.getBeacon(i));
+            if (Double.isNaN(variance) || Double.isInfinite(variance)) {
+                variance = DEFAULT_RSSI_VARIANCE;
+            }
+            final double range = Math.pow(10, (this.rssiAtOneMeter - this.strongest.getRSSI(i)) / dbPerDecade)
+                    / this.nodeDistance;
+            // Range error grows linearly with the range in the log-distance model
+            final double rangeDeviation = range * Math.log(10) / dbPerDecade;
+            this.beaconX[used] = location.getX();
+            this.beaconY[used] = location.getY();
+            this.ranges[used] = range;
+            this.weights[used] = 1 / (rangeDeviation * rangeDeviation * variance + CONVERGENCE_STEP);
+            used++;
+        }
+        return used;
+    }
+
+    /**
+     * Gets the centroid of the first values of the given array, weighted by
+     * the weight of each range
+     *
+     * @param values Values whose centroid is being found
+     * @param count Number of values used
+     * @return Weighted centroid of the values
+     */
+    private double getCentroid(final double[] values, final int count) {
+        double sum = 0;
+        double totalWeight = 0;
+        for (int i = 0; i < count; i++) {
+            sum += this.weights[i] * values[i];
+            totalWeight += this.weights[i];
+        }
+        return sum / totalWeight;
+    }
+}
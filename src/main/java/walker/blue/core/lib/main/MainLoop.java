@@ -1,20 +1,30 @@
 package walker.blue.core.lib.main;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.util.Log;
 
+import java.io.Closeable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 
 import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.AdvertisementSource;
+import walker.blue.core.lib.beacon.BeaconAdmissionFilter;
+import walker.blue.core.lib.beacon.BeaconRegistry;
+import walker.blue.core.lib.beacon.RSSICalibration;
+import walker.blue.core.lib.beacon.ScanHub;
 import walker.blue.core.lib.beacon.SyncBeaconScanClient;
 import walker.blue.core.lib.common.ProcessCommon;
 import walker.blue.core.lib.direction.OrientationManager;
+import walker.blue.core.lib.direction.StepDetector;
 import walker.blue.core.lib.indicator.IndicatorView;
 import walker.blue.core.lib.init.InitializeProcess;
+import walker.blue.core.lib.location.DeadReckoning;
+import walker.blue.core.lib.location.MotionGate;
+import walker.blue.core.lib.location.PositionEstimate;
+import walker.blue.core.lib.location.WeightedTrilateration;
 import walker.blue.core.lib.speech.SpeechSubmitHandler;
 import walker.blue.core.lib.types.Building;
 import walker.blue.core.lib.user.UserState;
@@ -22,12 +32,13 @@ import walker.blue.core.lib.user.UserTracker;
 import walker.blue.path.lib.finder.GridAStar;
 import walker.blue.path.lib.node.GridNode;
 import walker.blue.path.lib.node.RectCoordinates;
-import walker.blue.tri.lib.Trilateration;
 
 /**
- * Class representing the main loop of the system
+ * Class representing the main loop of the system. The main loop keeps the
+ * radio, the accelerometer and its subscription to the ScanHub until it is
+ * closed, so whoever creates it must close it once the navigation ends
  */
-public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output> {
+public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>, Closeable {
 
     /**
      * Log messages
@@ -36,11 +47,36 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
     private static final String LOG_EMPTY_BEACONS = "List of Beacons is empty";
     private static final String LOG_NUM_BEACONS = "Number of Beacons: %d";
     private static final String LOG_BEACON_VALS = "\t Beacon Major: %d Minor: %d RSSIVals: %s";
-    private static final String LOG_SCAN_FAILED = "Failed consuming Beacons from client";
+    private static final String LOG_INTERRUPTED = "Main loop interrupted while waiting for the next update";
+    private static final String LOG_REJECTED = "Advertisements of foreign beacons rejected: %d";
+    private static final String LOG_OVERFLOW = "Advertisements dropped by the full beacon registry: %d";
+    private static final String LOG_NULL_LOCATION = "Location of the user could not be found";
+    private static final String LOG_GATED = "Fix rejected as too far from the previous one. Rejected fixes: %d";
+    private static final String LOG_CALIBRATION = "RSSI calibration gain: %.3f offset: %.2f samples: %d";
     /**
-     * Amount of time (in ms) the client will scan for beacons
+     * Amount of time (in ms) covered by the snapshot taken from the client
+     * for each location update
      */
     private static final int CLIENT_SCAN_TIME = 1000;
+    /**
+     * The radio is paused between updates if they are further apart than the
+     * scan time plus this amount of time (in ms)
+     */
+    private static final int DUTY_CYCLE_MARGIN = 500;
+    /**
+     * Interval (in ms) at which the dead reckoned position is given to the
+     * user tracker between location updates
+     */
+    private static final int DEAD_RECKONING_INTERVAL = 100;
+    /**
+     * Max distance (in meters) from the user of the beacons used to
+     * calibrate the RSSI values. Further beacons are too noisy
+     */
+    private static final double CALIBRATION_MAX_DISTANCE = 10.0;
+    /**
+     * Number of calibration pairs added between two saves of the calibration
+     */
+    private static final int CALIBRATION_SAVE_INTERVAL = 100;
     /**
      * The zone offset used in the user tracker
      */
@@ -53,7 +89,7 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
     /**
      * Trilatertion object used to calculate the users location
      */
-    private Trilateration trilateration;
+    private WeightedTrilateration trilateration;
     /**
      * Building object representing the building the user is currently in
      */
@@ -74,6 +110,53 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
      * Handler in charge of defining what happens when each state occurs
      */
     private UserStateHandler userStateHandler;
+    /**
+     * Time (in ms) at which the next location update is due
+     */
+    private long nextUpdateTime;
+    /**
+     * Scheduler choosing the interval between location updates
+     */
+    private ScanScheduler scanScheduler;
+    /**
+     * Detector counting the steps of the user. Null if there is no
+     * orientation manager
+     */
+    private StepDetector stepDetector;
+    /**
+     * Fusion of the steps of the user and the beacon fixes. Null if there is
+     * no orientation manager
+     */
+    private DeadReckoning deadReckoning;
+    /**
+     * Version of the dead reckoned position last given to the user tracker
+     */
+    private int deadReckoningVersion;
+    /**
+     * Number of beacons the latest location of the user is based on
+     */
+    private int evidenceCount;
+    /**
+     * Gate rejecting fixes which would move the user too fast
+     */
+    private MotionGate motionGate;
+    /**
+     * Calibration applied to the RSSI values measured by the device
+     */
+    private RSSICalibration calibration;
+    /**
+     * Preferences the calibration is saved in. Null if the calibration is
+     * not saved
+     */
+    private SharedPreferences calibrationPreferences;
+    /**
+     * Number of calibration pairs seen when the calibration was last saved
+     */
+    private int calibrationSavedSamples;
+    /**
+     * Whether the main loop has been stopped
+     */
+    private boolean stopped;
 
     /**
      * Consturctor sets the fields using the given values
@@ -136,8 +219,38 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
                     final OrientationManager orientationManager,
                     final SpeechSubmitHandler speechSubmitHandler,
                     final IndicatorView indicatorView) {
-        this.trilateration = initOutput.getTrilateration();
+        this(initOutput,
+                ScanHub.getInstance(context).subscribe(),
+                userStateHandler,
+                orientationManager,
+                speechSubmitHandler,
+                indicatorView);
+        this.setCalibrationPreferences(
+                context.getSharedPreferences(RSSICalibration.PREFERENCES_NAME, Context.MODE_PRIVATE));
+    }
+
+    /**
+     * Contructor, sets and initializes the fields using the given values
+     *
+     * @param initOutput output of the initialize process
+     * @param advertisementSource source of the advertisements scanned in the
+     *                            main loop
+     * @param userStateHandler handler for the user states
+     * @param orientationManager orientation manager user to get data
+     *                           for the user direction
+     * @param speechSubmitHandler speech submitter used in the main loop
+     * @param indicatorView indicator view being displayed throughout the main loop
+     */
+    public MainLoop(final InitializeProcess.Output initOutput,
+                    final AdvertisementSource advertisementSource,
+                    final UserStateHandler userStateHandler,
+                    final OrientationManager orientationManager,
+                    final SpeechSubmitHandler speechSubmitHandler,
+                    final IndicatorView indicatorView) {
         this.building = initOutput.getBuilding();
+        this.trilateration = initOutput.getTrilateration() != null
+                ? initOutput.getTrilateration()
+                : new WeightedTrilateration(this.building);
         this.userTracker = new UserTracker(speechSubmitHandler,
                 initOutput.getPath(),
                 ZONE_OFFSET,
@@ -146,34 +259,264 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
                 indicatorView,
                 this.building);
         this.userTracker.updateUserState(initOutput.getCurrentLocation().getLocation());
-        this.scanClient = new SyncBeaconScanClient(context);
+        this.scanClient = new SyncBeaconScanClient(advertisementSource,
+                BeaconRegistry.capacityFor(this.building.getBeaconLocationMap().size()));
         this.scanClient.setScanTime(CLIENT_SCAN_TIME);
+        this.scanClient.setAdmissionFilter(new BeaconAdmissionFilter(this.building));
+        this.calibration = new RSSICalibration();
+        this.scanClient.setCalibration(this.calibration);
+        this.scanClient.startContinuousScan();
+        this.setRSSIEstimator(this.scanClient.getRSSIEstimator());
         this.beacons = null;
         this.userStateHandler = userStateHandler;
+        this.nextUpdateTime = this.scanClient.currentTimeMillis() + CLIENT_SCAN_TIME;
+        this.scanScheduler = new ScanScheduler();
+        this.motionGate = new MotionGate(this.building);
+        this.motionGate.accept(initOutput.getCurrentLocation().getLocation(), 0, this.scanClient.currentTimeMillis());
+        if (orientationManager != null) {
+            this.deadReckoning = new DeadReckoning(this.building, orientationManager);
+            this.deadReckoning.onFix(initOutput.getCurrentLocation().getLocation(), 0);
+            this.deadReckoningVersion = this.deadReckoning.getVersion();
+            this.stepDetector = new StepDetector();
+            this.stepDetector.setOnStepListener(this.deadReckoning);
+            this.stepDetector.start(orientationManager.getSensorManager());
+        }
     }
 
     @Override
     public Output call() {
-        final Future<List<Beacon>> beaconsFuture = this.scanClient.startScan();
+        try {
+            this.waitForNextUpdate();
+        } catch (final InterruptedException e) {
+            Log.d(this.getClass().getName(), LOG_INTERRUPTED, e);
+            return this.createOutput();
+        }
+        this.beacons = this.scanClient.getSnapshot(CLIENT_SCAN_TIME);
         if (this.beacons == null) {
             Log.d(this.getClass().getName(), LOG_NULL_BEACONS);
         } else if (this.beacons.isEmpty()) {
             Log.d(this.getClass().getName(), LOG_EMPTY_BEACONS);
         } else {
             Log.d(this.getClass().getName(), String.format(LOG_NUM_BEACONS, this.beacons.size()));
+            Log.d(this.getClass().getName(),
+                    String.format(LOG_REJECTED, this.scanClient.getAdmissionFilter().getRejectedCount()));
+            if (this.scanClient.getOverflowCount() > 0) {
+                Log.d(this.getClass().getName(), String.format(LOG_OVERFLOW, this.scanClient.getOverflowCount()));
+            }
             this.logBeaconRSSIVals(this.beacons);
-            final GridNode currentLocation = this.getUserLocationProximity(beacons, building);
+            final PositionEstimate currentPosition =
+                    this.getUserPosition(this.beacons, this.building, this.trilateration);
 //            final GridNode currentLocation = this.debugLocationGet();
-            this.userTracker.updateUserState(currentLocation.getLocation());
-            this.userStateHandler.newStateFound(this.userTracker.getUserState());
+            if (currentPosition == null) {
+                Log.d(this.getClass().getName(), LOG_NULL_LOCATION);
+            } else if (!this.motionGate.accept(currentPosition.getLocation(),
+                    currentPosition.getConfidenceRadius(),
+                    this.scanClient.currentTimeMillis())) {
+                Log.d(this.getClass().getName(), String.format(LOG_GATED, this.motionGate.getRejectedCount()));
+            } else if (this.deadReckoning != null) {
+                this.evidenceCount = currentPosition.getEvidenceCount();
+                this.deadReckoning.onFix(currentPosition.getLocation(), currentPosition.getConfidenceRadius());
+                this.updateFromDeadReckoning();
+                this.calibrate(this.beacons);
+            } else {
+                this.evidenceCount = currentPosition.getEvidenceCount();
+                this.userTracker.updateUserState(currentPosition.getLocation(), currentPosition.getConfidenceRadius());
+                this.userStateHandler.newStateFound(this.userTracker.getUserState());
+                this.calibrate(this.beacons);
+            }
         }
-        try {
-            this.beacons = beaconsFuture.get();
-        } catch (final InterruptedException | ExecutionException e) {
-            Log.d(this.getClass().getName(), LOG_SCAN_FAILED, e);
-            this.beacons = null;
+        this.scheduleNextUpdate();
+        return this.createOutput();
+    }
+
+    /**
+     * Stops the continuous scan used by the main loop, releases its
+     * subscription to the ScanHub and the accelerometer, and saves the RSSI
+     * calibration. Does nothing if the main loop is already stopped
+     */
+    public synchronized void stop() {
+        if (this.stopped) {
+            return;
+        }
+        this.stopped = true;
+        if (this.stepDetector != null) {
+            this.stepDetector.stop();
+        }
+        this.scanClient.stopContinuousScan();
+        this.scanClient.close();
+        this.saveCalibration();
+    }
+
+    @Override
+    public void close() {
+        this.stop();
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+        return this.scanClient.currentTimeMillis();
+    }
+
+    /**
+     * Sets the preferences the RSSI calibration is saved in and loads the
+     * calibration saved in them, if any
+     *
+     * @param preferences Preferences holding the calibration, or null to
+     *                    not save the calibration
+     */
+    public void setCalibrationPreferences(final SharedPreferences preferences) {
+        this.calibrationPreferences = preferences;
+        if (preferences != null) {
+            this.calibration.load(preferences);
+            this.calibrationSavedSamples = this.calibration.getSampleCount();
+        }
+    }
+
+    /**
+     * Getter for the calibration applied to the RSSI values
+     *
+     * @return Calibration of the device
+     */
+    public RSSICalibration getCalibration() {
+        return this.calibration;
+    }
+
+    /**
+     * Adds the given beacons to the RSSI calibration while the user is
+     * walking the route. The location of the user matched onto the route
+     * is taken as the truth, and the RSSI value expected for each beacon
+     * there is found using the path loss model of the trilateration
+     *
+     * @param beacons Beacons scanned for the latest location update
+     */
+    private void calibrate(final List<Beacon> beacons) {
+        if (this.userTracker.getUserState() != UserState.ON_COURSE || this.userTracker.isLowConfidence()) {
+            return;
+        }
+        final RectCoordinates truth = this.userTracker.getMatchedLocation();
+        for (int i = 0; i < beacons.size(); i++) {
+            final RectCoordinates location = this.building.getBeaconLocationMap().get(beacons.get(i));
+            if (location == null || location.getZ() != truth.getZ()) {
+                continue;
+            }
+            final double distance = Math.hypot(location.getX() - truth.getX(), location.getY() - truth.getY())
+                    * this.getNodeDistance();
+            if (distance <= CALIBRATION_MAX_DISTANCE) {
+                this.calibration.addReference(this.getRSSIEstimator().getRSSI(beacons.get(i)),
+                        this.trilateration.getExpectedRSSI(distance));
+            }
+        }
+        if (this.calibration.getSampleCount() - this.calibrationSavedSamples >= CALIBRATION_SAVE_INTERVAL) {
+            this.saveCalibration();
+        }
+    }
+
+    /**
+     * Saves the RSSI calibration if it changed since it was last saved
+     */
+    private void saveCalibration() {
+        final int samples = this.calibration.getSampleCount();
+        if (this.calibrationPreferences == null || samples == this.calibrationSavedSamples) {
+            return;
+        }
+        this.calibration.save(this.calibrationPreferences);
+        this.calibrationSavedSamples = samples;
+        Log.d(this.getClass().getName(), String.format(LOG_CALIBRATION,
+                this.calibration.getGain(),
+                this.calibration.getOffset(),
+                samples));
+    }
+
+    /**
+     * Blocks until the next location update is due. If the radio was paused
+     * it is resumed early enough to fill the snapshot used by the update
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void waitForNextUpdate() throws InterruptedException {
+        if (!this.scanClient.isContinuous()) {
+            this.sleepUntil(this.nextUpdateTime - CLIENT_SCAN_TIME);
+            this.scanClient.startContinuousScan();
+        }
+        this.sleepUntil(this.nextUpdateTime);
+    }
+
+    /**
+     * Blocks until the given time. If the steps of the user are being
+     * tracked, the user tracker is given the dead reckoned position every
+     * DEAD_RECKONING_INTERVAL ms while waiting
+     *
+     * @param time Time (in ms) until which the thread is blocked
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void sleepUntil(final long time) throws InterruptedException {
+        if (this.deadReckoning == null) {
+            this.scanClient.sleepUntil(time);
+            return;
+        }
+        long tick = this.scanClient.currentTimeMillis();
+        while (tick < time) {
+            tick = Math.min(time, tick + DEAD_RECKONING_INTERVAL);
+            this.scanClient.sleepUntil(tick);
+            this.updateFromDeadReckoning();
         }
-        return new Output(this.userTracker.getLatestLocation(), this.userTracker.getUserState());
+    }
+
+    /**
+     * Gives the dead reckoned position to the user tracker if it moved since
+     * it was last given
+     */
+    private void updateFromDeadReckoning() {
+        final int version = this.deadReckoning.getVersion();
+        if (version == this.deadReckoningVersion) {
+            return;
+        }
+        this.deadReckoningVersion = version;
+        this.userTracker.updateUserState(this.deadReckoning.getPosition(), this.deadReckoning.getRadius());
+        this.userStateHandler.newStateFound(this.userTracker.getUserState());
+    }
+
+    /**
+     * Schedules the next location update using the scan scheduler. Updates
+     * are scheduled at a fixed rate, so the time spent processing the
+     * previous update is not added to the interval. The radio is paused
+     * until shortly before the next update if there is enough time
+     */
+    private void scheduleNextUpdate() {
+        final double distance = this.userTracker.getDistanceToNextNode() * this.getNodeDistance();
+        final int interval = this.scanScheduler.getUpdateInterval(this.userTracker.getUserState(), distance);
+        final long now = this.scanClient.currentTimeMillis();
+        if (this.nextUpdateTime < now) {
+            this.nextUpdateTime = now;
+        }
+        this.nextUpdateTime += interval;
+        if (interval > CLIENT_SCAN_TIME + DUTY_CYCLE_MARGIN) {
+            this.scanClient.pauseContinuousScan();
+        }
+    }
+
+    /**
+     * Gets the distance between two adjacent nodes of the building
+     *
+     * @return distance in meters, or 1 if the building does not define it
+     */
+    private double getNodeDistance() {
+        return this.building.getNodeDistance() > 0 ? this.building.getNodeDistance() : 1;
+    }
+
+    /**
+     * Creates the output for the current iteration
+     *
+     * @return Output of the main loop
+     */
+    private Output createOutput() {
+        return new Output(this.userTracker.getLatestLocation(),
+                this.userTracker.getUserState(),
+                this.scanScheduler.getCurrentInterval(),
+                this.userTracker.getLatestConfidenceRadius() * this.getNodeDistance(),
+                this.evidenceCount,
+                this.userTracker.isLowConfidence(),
+                this.motionGate.getRejectedCount());
     }
 
     /**
@@ -185,7 +528,7 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
         for (final Beacon b : beacons) {
             Log.d(this.getClass().getName(),
                     String.format(LOG_BEACON_VALS,b.getMajor(), b.getMinor(), b.getMeasuredRSSIValues().toString()));
-            Log.d(this.getClass().getName(), "\t" + b.getAverageRSSIValue());
+            Log.d(this.getClass().getName(), "\t" + this.getRSSIEstimator().getRSSI(b));
         }
     }
 
@@ -196,10 +539,26 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
 
         private RectCoordinates currentLocation;
         private UserState userState;
+        private int updateInterval;
+        private double confidenceRadius;
+        private int evidenceCount;
+        private boolean lowConfidence;
+        private int rejectedFixCount;
 
-        private Output(final RectCoordinates currentLocation, final UserState userState) {
+        private Output(final RectCoordinates currentLocation,
+                       final UserState userState,
+                       final int updateInterval,
+                       final double confidenceRadius,
+                       final int evidenceCount,
+                       final boolean lowConfidence,
+                       final int rejectedFixCount) {
             this.currentLocation = currentLocation;
             this.userState = userState;
+            this.updateInterval = updateInterval;
+            this.confidenceRadius = confidenceRadius;
+            this.evidenceCount = evidenceCount;
+            this.lowConfidence = lowConfidence;
+            this.rejectedFixCount = rejectedFixCount;
         }
 
         public RectCoordinates getCurrentLocation() {
@@ -209,6 +568,54 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
         public UserState getUserState() {
             return this.userState;
         }
+
+        /**
+         * Getter for the interval chosen by the scan scheduler
+         *
+         * @return Interval (in ms) until the next location update
+         */
+        public int getUpdateInterval() {
+            return this.updateInterval;
+        }
+
+        /**
+         * Getter for the confidence radius of the current location
+         *
+         * @return Radius (in meters) around the current location within
+         *         which the user most likely is
+         */
+        public double getConfidenceRadius() {
+            return this.confidenceRadius;
+        }
+
+        /**
+         * Getter for the number of beacons the current location is based on
+         *
+         * @return Number of beacons the latest fix was found with
+         */
+        public int getEvidenceCount() {
+            return this.evidenceCount;
+        }
+
+        /**
+         * Checks whether the current location was too uncertain to change
+         * the state of the user
+         *
+         * @return boolean indicating whether the current location is low
+         *         confidence
+         */
+        public boolean isLowConfidence() {
+            return this.lowConfidence;
+        }
+
+        /**
+         * Getter for the number of fixes rejected by the motion gate
+         *
+         * @return Number of fixes rejected since the main loop was created
+         */
+        public int getRejectedFixCount() {
+            return this.rejectedFixCount;
+        }
     }
 
     /* ############### DEBUG STUFF ############### */
@@ -294,9 +701,6 @@ public class MainLoop extends ProcessCommon implements Callable<MainLoop.Output>
      * @return GridNode object correspoinding to the given RectCoordinates
      */
     private GridNode rc2Gn(final RectCoordinates rc) {
-        return this.building.getSearchSpace()
-                .get(rc.getZ())
-                .get(rc.getY())
-                .get(rc.getX());
+        return this.building.nodeAt(rc);
     }
 }
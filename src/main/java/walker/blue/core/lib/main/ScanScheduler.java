@@ -0,0 +1,132 @@
+package walker.blue.core.lib.main;
+
+import walker.blue.core.lib.user.UserState;
+
+/**
+ * Chooses how often the location of the user is updated, and so how long the
+ * radio needs to scan, based on the navigation state. Updates are sparse
+ * while the user walks along a long straight segment and dense close to
+ * turns and destinations, or whenever the user strays from the path
+ */
+public class ScanScheduler {
+
+    /**
+     * Default interval (in ms) between updates close to the next node or
+     * while the user is not on course
+     */
+    public static final int DEFAULT_DENSE_INTERVAL = 500;
+    /**
+     * Default interval (in ms) between updates far from the next node
+     */
+    public static final int DEFAULT_SPARSE_INTERVAL = 3000;
+    /**
+     * Default distance (in meters) to the next node under which updates are
+     * dense
+     */
+    public static final double DEFAULT_NEAR_DISTANCE = 5.0;
+    /**
+     * Default distance (in meters) to the next node over which updates are
+     * sparse
+     */
+    public static final double DEFAULT_FAR_DISTANCE = 20.0;
+
+    /**
+     * Interval (in ms) between updates close to the next node
+     */
+    private final int denseInterval;
+    /**
+     * Interval (in ms) between updates far from the next node
+     */
+    private final int sparseInterval;
+    /**
+     * Distance (in meters) under which updates are dense
+     */
+    private final double nearDistance;
+    /**
+     * Distance (in meters) over which updates are sparse
+     */
+    private final double farDistance;
+    /**
+     * Last interval chosen
+     */
+    private int currentInterval;
+
+    /**
+     * Constructor. Creates a scheduler with the default values
+     */
+    public ScanScheduler() {
+        this(DEFAULT_DENSE_INTERVAL, DEFAULT_SPARSE_INTERVAL, DEFAULT_NEAR_DISTANCE, DEFAULT_FAR_DISTANCE);
+    }
+
+    /**
+     * Constructor. Creates a scheduler with the given values
+     *
+     * @param denseInterval Interval (in ms) between updates close to the next node
+     * @param sparseInterval Interval (in ms) between updates far from the next node
+     * @param nearDistance Distance (in meters) under which updates are dense
+     * @param farDistance Distance (in meters) over which updates are sparse
+     */
+    public ScanScheduler(final int denseInterval,
+                         final int sparseInterval,
+                         final double nearDistance,
+                         final double farDistance) {
+        this.denseInterval = denseInterval;
+        this.sparseInterval = sparseInterval;
+        this.nearDistance = nearDistance;
+        this.farDistance = farDistance;
+        this.currentInterval = denseInterval;
+    }
+
+    /**
+     * Chooses the interval until the next update
+     *
+     * @param userState Current state of the user
+     * @param distanceToNextNode Distance (in meters) between the user and the
+     *                           next node of the path
+     * @return Interval (in ms) until the next update
+     */
+    public int getUpdateInterval(final UserState userState, final double distanceToNextNode) {
+        if (userState == null) {
+            this.currentInterval = this.denseInterval;
+            return this.currentInterval;
+        }
+        switch (userState) {
+            case ON_COURSE:
+                this.currentInterval = this.getOnCourseInterval(distanceToNextNode);
+                break;
+            case ARRIVED:
+                this.currentInterval = this.sparseInterval;
+                break;
+            default:
+                this.currentInterval = this.denseInterval;
+                break;
+        }
+        return this.currentInterval;
+    }
+
+    /**
+     * Getter for the last interval chosen
+     *
+     * @return Last interval (in ms) chosen
+     */
+    public int getCurrentInterval() {
+        return this.currentInterval;
+    }
+
+    /**
+     * Chooses the interval while the user is on course, growing linearly with
+     * the distance to the next node between the near and far distances
+     *
+     * @param distance Distance (in meters) to the next node
+     * @return Interval (in ms) until the next update
+     */
+    private int getOnCourseInterval(final double distance) {
+        if (distance <= this.nearDistance) {
+            return this.denseInterval;
+        } else if (distance >= this.farDistance) {
+            return this.sparseInterval;
+        }
+        final double fraction = (distance - this.nearDistance) / (this.farDistance - this.nearDistance);
+        return (int) (this.denseInterval + fraction * (this.sparseInterval - this.denseInterval));
+    }
+}
@@ -0,0 +1,430 @@
+package walker.blue.core.lib.types;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Spatial index over the locations of the beacons of a building. Each floor
+ * is split into square cells and the beacons of each cell are stored next
+ * to each other, so radius and nearest neighbour queries only visit the
+ * cells around the query point instead of every beacon in the building.
+ * The beacons of each floor are also kept as a set, so a selection can be
+ * limited to one floor without building a new set on every scan.
+ *
+ * The index is a snapshot of the map it was built from, so it has to be
+ * rebuilt if the map changes
+ */
+public class BeaconIndex {
+
+    /**
+     * Default side (in grid units) of the cells
+     */
+    public static final int DEFAULT_CELL_SIZE = 8;
+
+    /**
+     * Side (in grid units) of the cells
+     */
+    private final int cellSize;
+    /**
+     * Number of floors with at least one beacon slot. Beacons on floor z are
+     * only indexed if 0 <= z < floorCount
+     */
+    private final int floorCount;
+    /**
+     * x coordinate of the first cell of each floor
+     */
+    private final int[] originX;
+    /**
+     * y coordinate of the first cell of each floor
+     */
+    private final int[] originY;
+    /**
+     * Number of columns of cells of each floor
+     */
+    private final int[] columns;
+    /**
+     * Number of rows of cells of each floor
+     */
+    private final int[] rows;
+    /**
+     * Index of the first entry of each cell of each floor, plus the end of
+     * the last cell. Cell (column, row) of floor z starts at
+     * cellStart[z][row * columns[z] + column]
+     */
+    private final int[][] cellStart;
+    /**
+     * Beacons of each floor
+     */
+    private final List<Set<Beacon>> floorBeacons;
+    /**
+     * Beacon of each entry
+     */
+    private final Beacon[] beacons;
+    /**
+     * x coordinate of each entry
+     */
+    private final int[] entryX;
+    /**
+     * y coordinate of each entry
+     */
+    private final int[] entryY;
+    /**
+     * Entries found so far by the nearest neighbour query
+     */
+    private int[] nearest;
+    /**
+     * Squared distance of the entries found so far by the nearest
+     * neighbour query
+     */
+    private double[] nearestDistance;
+
+    /**
+     * Constructor. Indexes the given beacon locations using the default cell
+     * size
+     *
+     * @param locations Map of the beacons to their location
+     */
+    public BeaconIndex(final Map<Beacon, RectCoordinates> locations) {
+        this(locations, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructor. Indexes the given beacon locations
+     *
+     * @param locations Map of the beacons to their location. Null is treated
+     *                  as an empty map
+     * @param cellSize Side (in grid units) of the cells
+     */
+    public BeaconIndex(final Map<Beacon, RectCoordinates> locations, final int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        int maxZ = -1;
+        int size = 0;
+        if (locations != null) {
+            for (final RectCoordinates location : locations.values()) {
+                if (location != null && location.getZ() >= 0) {
+                    maxZ = Math.max(maxZ, location.getZ());
+                    size++;
+                }
+            }
+        }
+        this.floorCount = maxZ + 1;
+        this.originX = new int[this.floorCount];
+        this.originY = new int[this.floorCount];
+        this.columns = new int[this.floorCount];
+        this.rows = new int[this.floorCount];
+        this.cellStart = new int[this.floorCount][];
+        this.floorBeacons = new ArrayList<>(this.floorCount);
+        for (int z = 0; z < this.floorCount; z++) {
+            this.floorBeacons.add(new HashSet<Beacon>());
+        }
+        this.beacons = new Beacon[size];
+        this.entryX = new int[size];
+        this.entryY = new int[size];
+        this.nearest = new int[0];
+        this.nearestDistance = new double[0];
+        if (size > 0) {
+            this.build(locations);
+        }
+    }
+
+    /**
+     * Finds the beacons within the given radius of the given point
+     *
+     * @param x x coordinate (in grid units) of the point
+     * @param y y coordinate (in grid units) of the point
+     * @param z Floor of the point
+     * @param radius Radius (in grid units) of the search
+     * @param out Collection the beacons found are added to
+     * @return Number of beacons found
+     */
+    public int findWithinRadius(final double x,
+                                final double y,
+                                final int z,
+                                final double radius,
+                                final Collection<Beacon> out) {
+        if (z < 0 || z >= this.floorCount || radius < 0) {
+            return 0;
+        }
+        final int firstColumn = Math.max(0, this.getColumn(x - radius, z));
+        final int lastColumn = Math.min(this.columns[z] - 1, this.getColumn(x + radius, z));
+        final int firstRow = Math.max(0, this.getRow(y - radius, z));
+        final int lastRow = Math.min(this.rows[z] - 1, this.getRow(y + radius, z));
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return 0;
+        }
+        final double radiusSquared = radius * radius;
+        int found = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            final int rowStart = row * this.columns[z];
+            final int end = this.cellStart[z][rowStart + lastColumn + 1];
+            for (int i = this.cellStart[z][rowStart + firstColumn]; i < end; i++) {
+                if (this.getDistanceSquared(i, x, y) <= radiusSquared) {
+                    out.add(this.beacons[i]);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the k beacons closest to the given point. The search visits the
+     * rings of cells around the point until no closer beacon can be found
+     *
+     * @param x x coordinate (in grid units) of the point
+     * @param y y coordinate (in grid units) of the point
+     * @param z Floor of the point
+     * @param k Number of beacons being searched for
+     * @param out List the beacons found are added to, closest first
+     * @return Number of beacons found. Less than k if the floor has less
+     *         than k beacons
+     */
+    public synchronized int findNearest(final double x,
+                                        final double y,
+                                        final int z,
+                                        final int k,
+                                        final List<Beacon> out) {
+        if (z < 0 || z >= this.floorCount || k <= 0 || this.columns[z] == 0) {
+            return 0;
+        }
+        if (this.nearest.length < k) {
+            this.nearest = new int[k];
+            this.nearestDistance = new double[k];
+        }
+        final int centerColumn = this.getColumn(x, z);
+        final int centerRow = this.getRow(y, z);
+        final int lastColumn = this.columns[z] - 1;
+        final int lastRow = this.rows[z] - 1;
+        // Rings closer than the first one touching the floor are empty
+        final int minRing = Math.max(Math.max(-centerColumn, centerColumn - lastColumn),
+                Math.max(-centerRow, centerRow - lastRow));
+        final int maxRing = Math.max(Math.max(centerColumn, lastColumn - centerColumn),
+                Math.max(centerRow, lastRow - centerRow));
+        int found = 0;
+        for (int ring = Math.max(0, minRing); ring <= maxRing; ring++) {
+            final int firstColumn = Math.max(0, centerColumn - ring);
+            final int ringLastColumn = Math.min(lastColumn, centerColumn + ring);
+            for (int row = Math.max(0, centerRow - ring); row <= Math.min(lastRow, centerRow + ring); row++) {
+                final int rowStart = row * this.columns[z];
+                if (row == centerRow - ring || row == centerRow + ring) {
+                    for (int column = firstColumn; column <= ringLastColumn; column++) {
+                        found = this.addNearestInCell(z, rowStart + column, x, y, k, found);
+                    }
+                } else {
+                    if (centerColumn - ring >= 0) {
+                        found = this.addNearestInCell(z, rowStart + centerColumn - ring, x, y, k, found);
+                    }
+                    if (centerColumn + ring <= lastColumn) {
+                        found = this.addNearestInCell(z, rowStart + centerColumn + ring, x, y, k, found);
+                    }
+                }
+            }
+            // Entries outside the visited rings are at least ring + 1 cells
+            // away, minus the offset of the point within its cell
+            final double bound = ring * this.cellSize;
+            if (found == k && this.nearestDistance[k - 1] <= bound * bound) {
+                break;
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            out.add(this.beacons[this.nearest[i]]);
+        }
+        return found;
+    }
+
+    /**
+     * Gets the beacons located on the given floor
+     *
+     * @param z Floor
+     * @return Unmodifiable set of the beacons on the floor, built with the
+     *         index. Empty if the floor has no beacons
+     */
+    public Set<Beacon> getFloorBeacons(final int z) {
+        if (z < 0 || z >= this.floorCount) {
+            return Collections.emptySet();
+        }
+        return this.floorBeacons.get(z);
+    }
+
+    /**
+     * Getter for the number of beacons in the index
+     *
+     * @return Number of beacons indexed
+     */
+    public int size() {
+        return this.beacons.length;
+    }
+
+    /**
+     * Getter for the number of floors in the index
+     *
+     * @return Highest floor with a beacon plus one
+     */
+    public int getFloorCount() {
+        return this.floorCount;
+    }
+
+    /**
+     * Lays out the floors, counts the beacons in each cell and stores the
+     * beacons of each cell next to each other
+     *
+     * @param locations Map of the beacons to their location
+     */
+    private void build(final Map<Beacon, RectCoordinates> locations) {
+        final int[] maxX = new int[this.floorCount];
+        final int[] maxY = new int[this.floorCount];
+        for (int z = 0; z < this.floorCount; z++) {
+            this.originX[z] = Integer.MAX_VALUE;
+            this.originY[z] = Integer.MAX_VALUE;
+            maxX[z] = Integer.MIN_VALUE;
+            maxY[z] = Integer.MIN_VALUE;
+        }
+        for (final RectCoordinates location : locations.values()) {
+            if (location != null && location.getZ() >= 0) {
+                final int z = location.getZ();
+                this.originX[z] = Math.min(this.originX[z], location.getX());
+                this.originY[z] = Math.min(this.originY[z], location.getY());
+                maxX[z] = Math.max(maxX[z], location.getX());
+                maxY[z] = Math.max(maxY[z], location.getY());
+            }
+        }
+        for (int z = 0; z < this.floorCount; z++) {
+            if (maxX[z] == Integer.MIN_VALUE) {
+                this.originX[z] = 0;
+                this.originY[z] = 0;
+                this.columns[z] = 0;
+                this.rows[z] = 0;
+            } else {
+                this.columns[z] = (maxX[z] - this.originX[z]) / this.cellSize + 1;
+                this.rows[z] = (maxY[z] - this.originY[z]) / this.cellSize + 1;
+            }
+            this.cellStart[z] = new int[this.columns[z] * this.rows[z] + 1];
+        }
+        // Count the entries of each cell, shifted by one so the prefix sums
+        // give the start of each cell
+        for (final RectCoordinates location : locations.values()) {
+            if (location != null && location.getZ() >= 0) {
+                this.cellStart[location.getZ()][this.getCell(location) + 1]++;
+            }
+        }
+        int offset = 0;
+        for (int z = 0; z < this.floorCount; z++) {
+            this.cellStart[z][0] = offset;
+            for (int cell = 1; cell < this.cellStart[z].length; cell++) {
+                this.cellStart[z][cell] += this.cellStart[z][cell - 1];
+            }
+            offset = this.cellStart[z][this.cellStart[z].length - 1];
+        }
+        final int[][] next = new int[this.floorCount][];
+        for (int z = 0; z < this.floorCount; z++) {
+            next[z] = this.cellStart[z].clone();
+        }
+        for (final Map.Entry<Beacon, RectCoordinates> entry : locations.entrySet()) {
+            final RectCoordinates location = entry.getValue();
+            if (location != null && location.getZ() >= 0) {
+                final int i = next[location.getZ()][this.getCell(location)]++;
+                this.beacons[i] = entry.getKey();
+                this.entryX[i] = location.getX();
+                this.entryY[i] = location.getY();
+                this.floorBeacons.get(location.getZ()).add(entry.getKey());
+            }
+        }
+        for (int z = 0; z < this.floorCount; z++) {
+            this.floorBeacons.set(z, Collections.unmodifiableSet(this.floorBeacons.get(z)));
+        }
+    }
+
+    /**
+     * Adds the entries of the given cell to the nearest entries found so far
+     * if they are closer than the furthest of them
+     *
+     * @param z Floor of the cell
+     * @param cell Index of the cell within its floor
+     * @param x x coordinate (in grid units) of the query point
+     * @param y y coordinate (in grid units) of the query point
+     * @param k Number of entries being searched for
+     * @param found Number of entries found so far
+     * @return Number of entries found after visiting the cell
+     */
+    private int addNearestInCell(final int z,
+                                 final int cell,
+                                 final double x,
+                                 final double y,
+                                 final int k,
+                                 final int found) {
+        int count = found;
+        final int end = this.cellStart[z][cell + 1];
+        for (int i = this.cellStart[z][cell]; i < end; i++) {
+            final double distance = this.getDistanceSquared(i, x, y);
+            if (count == k && distance >= this.nearestDistance[k - 1]) {
+                continue;
+            }
+            int position = count == k ? k - 1 : count++;
+            while (position > 0 && this.nearestDistance[position - 1] > distance) {
+                this.nearest[position] = this.nearest[position - 1];
+                this.nearestDistance[position] = this.nearestDistance[position - 1];
+                position--;
+            }
+            this.nearest[position] = i;
+            this.nearestDistance[position] = distance;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the squared distance from the given entry to the given point
+     *
+     * @param i Index of the entry
+     * @param x x coordinate (in grid units) of the point
+     * @param y y coordinate (in grid units) of the point
+     * @return Squared distance in grid units
+     */
+    private double getDistanceSquared(final int i, final double x, final double y) {
+        final double dx = this.entryX[i] - x;
+        final double dy = this.entryY[i] - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Gets the index of the cell holding the given location within its floor
+     *
+     * @param location Location of a beacon
+     * @return Index of the cell
+     */
+    private int getCell(final RectCoordinates location) {
+        final int z = location.getZ();
+        return this.getRow(location.getY(), z) * this.columns[z] + this.getColumn(location.getX(), z);
+    }
+
+    /**
+     * Gets the column of cells of the given floor containing the given x
+     * coordinate. May be outside of the floor
+     *
+     * @param x x coordinate (in grid units)
+     * @param z Floor
+     * @return Column of the cells containing x
+     */
+    private int getColumn(final double x, final int z) {
+        return (int) Math.floor((x - this.originX[z]) / this.cellSize);
+    }
+
+    /**
+     * Gets the row of cells of the given floor containing the given y
+     * coordinate. May be outside of the floor
+     *
+     * @param y y coordinate (in grid units)
+     * @param z Floor
+     * @return Row of the cells containing y
+     */
+    private int getRow(final double y, final int z) {
+        return (int) Math.floor((y - this.originY[z]) / this.cellSize);
+    }
+}
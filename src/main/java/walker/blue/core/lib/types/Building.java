@@ -37,6 +37,10 @@ public class Building {
      * Holds the bode layout of the building used for pathfinding.
      */
     protected List<List<List<GridNode>>> searchSpace;
+    /**
+     * Flat index over the nodes of the searchSpace
+     */
+    protected NodeGrid nodeGrid;
     /**
      * Contains references to all FloorConnectors within the searchSpace.
      */
@@ -45,6 +49,10 @@ public class Building {
      * Maps a beacon to its location within the building.
      */
     protected Map<Beacon, RectCoordinates> beaconLocationMap;
+    /**
+     * Spatial index over the locations in the beaconLocationMap
+     */
+    protected BeaconIndex beaconIndex;
     /**
      * Maps strings to a list of locations that represent the locations of the nodes
      * in the search space that have the given string tag.
@@ -54,6 +62,11 @@ public class Building {
      * Represents a vector that points to north within the building
      */
     protected RectCoordinates northPoint;
+    /**
+     * RSSI fingerprints surveyed in the building. Null if the building was
+     * not surveyed
+     */
+    protected FingerprintDatabase fingerprints;
 
     /**
      * Constructor. Sets the fields to their default values
@@ -91,9 +104,9 @@ public class Building {
         this.uuid = uuid;
         this.nodeDistance = nodeDistance;
         this.floorHeight = floorHeight;
-        this.searchSpace = searchSpace;
+        this.setSearchSpace(searchSpace);
         this.floorConnectors = floorConnectors;
-        this.beaconLocationMap = beaconLocationMap;
+        this.setBeaconLocationMap(beaconLocationMap);
         this.destinationTable = destinationTable;
         this.northPoint = northPoint;
     }
@@ -153,7 +166,8 @@ public class Building {
     }
 
     /**
-     * Getter for the search space field
+     * Getter for the search space field. The nested lists are a view over
+     * the nodes, lookups should use nodeAt instead
      *
      * @return current value of the search space field
      */
@@ -168,6 +182,7 @@ public class Building {
      */
     public void setSearchSpace(List<List<List<GridNode>>> searchSpace) {
         this.searchSpace = searchSpace;
+        this.nodeGrid = new NodeGrid(searchSpace);
     }
 
     /**
@@ -204,6 +219,18 @@ public class Building {
      */
     public void setBeaconLocationMap(Map<Beacon, RectCoordinates> beaconLocationMap) {
         this.beaconLocationMap = beaconLocationMap;
+        this.beaconIndex = new BeaconIndex(beaconLocationMap);
+    }
+
+    /**
+     * Getter for the spatial index over the beacon locations. The index is
+     * rebuilt each time the beaconLocationMap is set
+     *
+     * @return Index answering radius and nearest neighbour queries over the
+     *         beacon locations
+     */
+    public BeaconIndex getBeaconIndex() {
+        return this.beaconIndex;
     }
 
     /**
@@ -242,6 +269,25 @@ public class Building {
         this.northPoint = northPoint;
     }
 
+    /**
+     * Getter for the fingerprints field
+     *
+     * @return current value of the fingerprints field. Null if the building
+     *         was not surveyed
+     */
+    public FingerprintDatabase getFingerprints() {
+        return this.fingerprints;
+    }
+
+    /**
+     * Sets the fingerprints field to the given value
+     *
+     * @param fingerprints new value of the fingerprints
+     */
+    public void setFingerprints(final FingerprintDatabase fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
     /**
      * Checks if the search space of the building contains the following point
      *
@@ -251,9 +297,38 @@ public class Building {
      * @return boolean indicating whether that point exists
      */
     public boolean searchSpaceContains(final int x, final int y, final int z) {
-        return this.searchSpace.size() > z &&
-                this.searchSpace.get(z).size() > y &&
-                this.searchSpace.get(z).get(y).size() > x;
+        return this.nodeGrid.contains(x, y, z);
+    }
+
+    /**
+     * Gets the node at the given point of the search space
+     *
+     * @param x X value
+     * @param y Y value
+     * @param z Z value
+     * @return GridNode at the given point, or null if there is none
+     */
+    public GridNode nodeAt(final int x, final int y, final int z) {
+        return this.nodeGrid.nodeAt(x, y, z);
+    }
+
+    /**
+     * Gets the node at the given location of the search space
+     *
+     * @param location location of the node
+     * @return GridNode at the given location, or null if there is none
+     */
+    public GridNode nodeAt(final RectCoordinates location) {
+        return this.nodeGrid.nodeAt(location.getX(), location.getY(), location.getZ());
+    }
+
+    /**
+     * Getter for the flat index over the nodes of the search space
+     *
+     * @return Flat index over the nodes of the search space
+     */
+    public NodeGrid getNodeGrid() {
+        return this.nodeGrid;
     }
 
     /**
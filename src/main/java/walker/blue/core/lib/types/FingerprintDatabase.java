@@ -0,0 +1,373 @@
+package walker.blue.core.lib.types;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Table of the RSSI values expected at surveyed locations of a building.
+ * Each surveyed location holds a vector with one RSSI value per beacon, and
+ * beacons not heard at a location hold MISSING_RSSI.
+ *
+ * The vectors are indexed by a vantage point tree, a metric index which
+ * splits the vectors by their distance to a vantage point at every level,
+ * so the nearest neighbours of a vector are found without scanning the
+ * whole table. The tree lives in arrays built once in the constructor, and
+ * queries write into arrays given by the caller, so they do not allocate
+ */
+public class FingerprintDatabase {
+
+    /**
+     * RSSI value (in dBm) used for beacons which are not heard
+     */
+    public static final double MISSING_RSSI = -100.0;
+    /**
+     * Floor used to search the locations of every floor
+     */
+    public static final int ANY_FLOOR = -1;
+
+    /**
+     * Dimension of the vector assigned to each beacon
+     */
+    private final Map<Beacon, Integer> beaconDimensions;
+    /**
+     * Number of dimensions of each vector
+     */
+    private final int dimensions;
+    /**
+     * Surveyed locations
+     */
+    private final List<RectCoordinates> locations;
+    /**
+     * Vector of each surveyed location. The vector of location i starts at
+     * i * dimensions
+     */
+    private final double[] vectors;
+    /**
+     * Locations in tree order. The subtree rooted at position p holds the
+     * positions p to the end of its range, with its vantage point at p
+     */
+    private final int[] tree;
+    /**
+     * Distance from the vantage point at each position splitting its
+     * subtree into the inner and outer halves
+     */
+    private final double[] thresholds;
+    /**
+     * Position where the outer half of the subtree at each position starts
+     */
+    private final int[] splits;
+
+    /**
+     * Constructor. Builds the table and its index from the given survey
+     *
+     * @param locations Surveyed locations
+     * @param readings RSSI values measured at each surveyed location, keyed
+     *                 by beacon
+     */
+    public FingerprintDatabase(final List<RectCoordinates> locations,
+                               final List<Map<Beacon, Double>> readings) {
+        if (locations.size() != readings.size()) {
+            throw new IllegalArgumentException("locations.size() != readings.size()");
+        }
+        this.beaconDimensions = new HashMap<>();
+        for (final Map<Beacon, Double> reading : readings) {
+            for (final Beacon beacon : reading.keySet()) {
+                if (!this.beaconDimensions.containsKey(beacon)) {
+                    this.beaconDimensions.put(beacon, this.beaconDimensions.size());
+                }
+            }
+        }
+        this.dimensions = this.beaconDimensions.size();
+        this.locations = new ArrayList<>(locations);
+        this.vectors = new double[locations.size() * this.dimensions];
+        for (int i = 0; i < readings.size(); i++) {
+            for (int d = 0; d < this.dimensions; d++) {
+                this.vectors[i * this.dimensions + d] = MISSING_RSSI;
+            }
+            for (final Map.Entry<Beacon, Double> entry : readings.get(i).entrySet()) {
+                this.vectors[i * this.dimensions + this.beaconDimensions.get(entry.getKey())] = entry.getValue();
+            }
+        }
+        this.tree = new int[locations.size()];
+        this.thresholds = new double[locations.size()];
+        this.splits = new int[locations.size()];
+        for (int i = 0; i < this.tree.length; i++) {
+            this.tree[i] = i;
+        }
+        this.build(0, this.tree.length, new double[this.tree.length]);
+    }
+
+    /**
+     * Getter for the number of dimensions of each vector
+     *
+     * @return Number of beacons in the table
+     */
+    public int getDimensions() {
+        return this.dimensions;
+    }
+
+    /**
+     * Gets the dimension of the vector assigned to the given beacon
+     *
+     * @param beacon Beacon whose dimension is being looked up
+     * @return dimension of the beacon or -1 if the beacon is not in the table
+     */
+    public int getDimension(final Beacon beacon) {
+        final Integer dimension = this.beaconDimensions.get(beacon);
+        return dimension == null ? -1 : dimension;
+    }
+
+    /**
+     * Getter for the number of surveyed locations
+     *
+     * @return Number of surveyed locations
+     */
+    public int size() {
+        return this.locations.size();
+    }
+
+    /**
+     * Gets the surveyed location with the given index
+     *
+     * @param index index of the location
+     * @return Surveyed location
+     */
+    public RectCoordinates getLocation(final int index) {
+        return this.locations.get(index);
+    }
+
+    /**
+     * Finds the surveyed locations whose vectors are closest to the given
+     * vector
+     *
+     * @param query Vector holding one RSSI value per dimension
+     * @param k Max number of locations found
+     * @param indices Array receiving the indices of the locations found,
+     *                closest first. Must hold at least k values
+     * @param distances Array receiving the distance (in dBm) of each
+     *                  location found. Must hold at least k values
+     * @return Number of locations found
+     */
+    public int findNearest(final double[] query, final int k, final int[] indices, final double[] distances) {
+        return this.findNearest(query, k, ANY_FLOOR, indices, distances);
+    }
+
+    /**
+     * Finds the surveyed locations on the given floor whose vectors are
+     * closest to the given vector. Locations on other floors are still
+     * visited by the search but never found
+     *
+     * @param query Vector holding one RSSI value per dimension
+     * @param k Max number of locations found
+     * @param z Floor of the locations searched, or ANY_FLOOR
+     * @param indices Array receiving the indices of the locations found,
+     *                closest first. Must hold at least k values
+     * @param distances Array receiving the distance (in dBm) of each
+     *                  location found. Must hold at least k values
+     * @return Number of locations found
+     */
+    public int findNearest(final double[] query,
+                           final int k,
+                           final int z,
+                           final int[] indices,
+                           final double[] distances) {
+        return this.search(0, this.tree.length, query, k, z, 0, indices, distances);
+    }
+
+    /**
+     * Builds the subtree holding the given range of positions
+     *
+     * @param from first position of the subtree
+     * @param to position after the last one of the subtree
+     * @param scratch Array holding the distance of each position to the
+     *                vantage point being split
+     */
+    private void build(final int from, final int to, final double[] scratch) {
+        if (to - from <= 1) {
+            return;
+        }
+        final int vantagePoint = this.tree[from];
+        for (int i = from + 1; i < to; i++) {
+            scratch[i] = this.distance(vantagePoint, this.tree[i]);
+        }
+        final int split = (from + 1 + to) / 2;
+        this.select(from + 1, to - 1, split, scratch);
+        this.thresholds[from] = scratch[split];
+        this.splits[from] = split;
+        this.build(from + 1, split, scratch);
+        this.build(split, to, scratch);
+    }
+
+    /**
+     * Reorders the given range of positions so the position at the given
+     * index holds the value which would be there if the range was ordered by
+     * distance, with smaller distances before it and larger ones after it
+     *
+     * @param left first position of the range
+     * @param right last position of the range
+     * @param index position being selected
+     * @param scratch distance of each position to the vantage point
+     */
+    private void select(int left, int right, final int index, final double[] scratch) {
+        while (left < right) {
+            final double pivot = scratch[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (scratch[i] < pivot) {
+                    i++;
+                }
+                while (scratch[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    this.swap(i, j, scratch);
+                    i++;
+                    j--;
+                }
+            }
+            if (index <= j) {
+                right = j;
+            } else if (index >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two positions of the tree along with their distances
+     *
+     * @param i first position
+     * @param j second position
+     * @param scratch distance of each position to the vantage point
+     */
+    private void swap(final int i, final int j, final double[] scratch) {
+        final int location = this.tree[i];
+        this.tree[i] = this.tree[j];
+        this.tree[j] = location;
+        final double distance = scratch[i];
+        scratch[i] = scratch[j];
+        scratch[j] = distance;
+    }
+
+    /**
+     * Searches the subtree holding the given range of positions, skipping
+     * the halves which cannot hold a location closer than the k-th found
+     *
+     * @param from first position of the subtree
+     * @param to position after the last one of the subtree
+     * @param query Vector being searched
+     * @param k Max number of locations found
+     * @param z Floor of the locations searched, or ANY_FLOOR
+     * @param found Number of locations found so far
+     * @param indices Indices of the locations found so far, closest first
+     * @param distances Distances of the locations found so far
+     * @return Number of locations found
+     */
+    private int search(final int from,
+                       final int to,
+                       final double[] query,
+                       final int k,
+                       final int z,
+                       int found,
+                       final int[] indices,
+                       final double[] distances) {
+        if (from >= to || k <= 0) {
+            return found;
+        }
+        final int vantagePoint = this.tree[from];
+        final double distance = this.distance(query, vantagePoint);
+        if (z == ANY_FLOOR || this.locations.get(vantagePoint).getZ() == z) {
+            found = this.offer(vantagePoint, distance, k, found, indices, distances);
+        }
+        if (to - from == 1) {
+            return found;
+        }
+        final double threshold = this.thresholds[from];
+        final int split = this.splits[from];
+        if (distance < threshold) {
+            found = this.search(from + 1, split, query, k, z, found, indices, distances);
+            if (found < k || distance + distances[found - 1] >= threshold) {
+                found = this.search(split, to, query, k, z, found, indices, distances);
+            }
+        } else {
+            found = this.search(split, to, query, k, z, found, indices, distances);
+            if (found < k || distance - distances[found - 1] <= threshold) {
+                found = this.search(from + 1, split, query, k, z, found, indices, distances);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Inserts a location in the list of the closest locations found, if it
+     * is closer than the k-th one
+     *
+     * @param location index of the location
+     * @param distance distance of the location to the query
+     * @param k Max number of locations found
+     * @param found Number of locations found so far
+     * @param indices Indices of the locations found so far, closest first
+     * @param distances Distances of the locations found so far
+     * @return Number of locations found
+     */
+    private int offer(final int location,
+                      final double distance,
+                      final int k,
+                      final int found,
+                      final int[] indices,
+                      final double[] distances) {
+        if (found == k && distance >= distances[k - 1]) {
+            return found;
+        }
+        int position = found == k ? k - 1 : found;
+        while (position > 0 && distances[position - 1] > distance) {
+            indices[position] = indices[position - 1];
+            distances[position] = distances[position - 1];
+            position--;
+        }
+        indices[position] = location;
+        distances[position] = distance;
+        return found == k ? k : found + 1;
+    }
+
+    /**
+     * Gets the euclidean distance between the vectors of two locations
+     *
+     * @param a index of the first location
+     * @param b index of the second location
+     * @return distance (in dBm) between the vectors
+     */
+    private double distance(final int a, final int b) {
+        double sum = 0;
+        for (int d = 0; d < this.dimensions; d++) {
+            final double delta = this.vectors[a * this.dimensions + d] - this.vectors[b * this.dimensions + d];
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Gets the euclidean distance between a vector and the vector of a
+     * location
+     *
+     * @param query Vector holding one RSSI value per dimension
+     * @param location index of the location
+     * @return distance (in dBm) between the vectors
+     */
+    private double distance(final double[] query, final int location) {
+        double sum = 0;
+        for (int d = 0; d < this.dimensions; d++) {
+            final double delta = query[d] - this.vectors[location * this.dimensions + d];
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,154 @@
+package walker.blue.core.lib.types;
+
+import java.util.List;
+
+import walker.blue.path.lib.node.GridNode;
+
+/**
+ * Flat, row-major index over the nodes of a search space. Every node gets a
+ * packed integer id, (z * sizeY + y) * sizeX + x, and can be looked up in
+ * constant time without walking the nested lists. Floors and rows shorter
+ * than the largest ones are padded with empty cells.
+ *
+ * The grid is a snapshot of the nested lists it was built from, so it has
+ * to be rebuilt if those lists change
+ */
+public class NodeGrid {
+
+    /**
+     * Id returned for coordinates outside of the grid
+     */
+    public static final int NO_NODE = -1;
+
+    /**
+     * Number of nodes along the x axis
+     */
+    private final int sizeX;
+    /**
+     * Number of nodes along the y axis
+     */
+    private final int sizeY;
+    /**
+     * Number of floors
+     */
+    private final int sizeZ;
+    /**
+     * Node with each id. Null for padded cells
+     */
+    private final GridNode[] nodes;
+
+    /**
+     * Constructor. Indexes the nodes of the given search space
+     *
+     * @param searchSpace 3D list holding the node layout, indexed by z, y, x
+     */
+    public NodeGrid(final List<List<List<GridNode>>> searchSpace) {
+        int maxX = 0;
+        int maxY = 0;
+        for (final List<List<GridNode>> floor : searchSpace) {
+            maxY = Math.max(maxY, floor.size());
+            for (final List<GridNode> row : floor) {
+                maxX = Math.max(maxX, row.size());
+            }
+        }
+        this.sizeX = maxX;
+        this.sizeY = maxY;
+        this.sizeZ = searchSpace.size();
+        this.nodes = new GridNode[this.sizeX * this.sizeY * this.sizeZ];
+        for (int z = 0; z < this.sizeZ; z++) {
+            final List<List<GridNode>> floor = searchSpace.get(z);
+            for (int y = 0; y < floor.size(); y++) {
+                final List<GridNode> row = floor.get(y);
+                for (int x = 0; x < row.size(); x++) {
+                    this.nodes[(z * this.sizeY + y) * this.sizeX + x] = row.get(x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the node at the given coordinates
+     *
+     * @param x x coordinate of the node
+     * @param y y coordinate of the node
+     * @param z z coordinate of the node
+     * @return GridNode at the given coordinates, or null if there is none
+     */
+    public GridNode nodeAt(final int x, final int y, final int z) {
+        final int id = this.getNodeId(x, y, z);
+        return id == NO_NODE ? null : this.nodes[id];
+    }
+
+    /**
+     * Gets the node with the given id
+     *
+     * @param id packed id of the node
+     * @return GridNode with the given id, or null if there is none
+     */
+    public GridNode getNode(final int id) {
+        return id >= 0 && id < this.nodes.length ? this.nodes[id] : null;
+    }
+
+    /**
+     * Gets the packed id of the given coordinates
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return packed id, or NO_NODE if the coordinates are outside the grid
+     */
+    public int getNodeId(final int x, final int y, final int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= this.sizeX || y >= this.sizeY || z >= this.sizeZ) {
+            return NO_NODE;
+        }
+        return (z * this.sizeY + y) * this.sizeX + x;
+    }
+
+    /**
+     * Checks whether there is a node at the given coordinates
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return boolean indicating whether there is a node at the coordinates
+     */
+    public boolean contains(final int x, final int y, final int z) {
+        return this.nodeAt(x, y, z) != null;
+    }
+
+    /**
+     * Getter for the number of ids in the grid, padded cells included
+     *
+     * @return Number of ids in the grid
+     */
+    public int size() {
+        return this.nodes.length;
+    }
+
+    /**
+     * Getter for the number of nodes along the x axis
+     *
+     * @return Number of nodes along the x axis
+     */
+    public int getSizeX() {
+        return this.sizeX;
+    }
+
+    /**
+     * Getter for the number of nodes along the y axis
+     *
+     * @return Number of nodes along the y axis
+     */
+    public int getSizeY() {
+        return this.sizeY;
+    }
+
+    /**
+     * Getter for the number of floors
+     *
+     * @return Number of floors
+     */
+    public int getSizeZ() {
+        return this.sizeZ;
+    }
+}
@@ -0,0 +1,312 @@
+package walker.blue.core.lib.user;
+
+import java.util.List;
+
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Matches the fixes of the user onto the segments of the route using a
+ * hidden Markov model. Each segment between two consecutive nodes of the
+ * route is a state, fixes are scored by their distance to each segment and
+ * the user is expected to stay on a segment or move along the route to an
+ * adjacent one. An online Viterbi pass keeps the best score of each state
+ * for a window of segments around the current match, so each fix takes
+ * time proportional to the window and not to the length of the route.
+ *
+ * Distances are in grid units. Not thread safe
+ */
+public class RouteMatcher {
+
+    /**
+     * Default number of segments kept in the window
+     */
+    public static final int DEFAULT_WINDOW = 8;
+    /**
+     * Default deviation (in grid units) of the fixes around the route
+     */
+    public static final double DEFAULT_SIGMA = 2.0;
+    /**
+     * Log probability of staying on the same segment
+     */
+    private static final double LOG_STAY = Math.log(0.6);
+    /**
+     * Log probability of moving to the next segment
+     */
+    private static final double LOG_NEXT = Math.log(0.3);
+    /**
+     * Log probability of skipping a segment
+     */
+    private static final double LOG_SKIP = Math.log(0.05);
+    /**
+     * Log probability of moving back to the previous segment
+     */
+    private static final double LOG_BACK = Math.log(0.05);
+    /**
+     * Squared distance (in grid units) added to fixes on a different floor
+     * than the segment
+     */
+    private static final double FLOOR_MISMATCH_PENALTY = 100.0;
+
+    /**
+     * x coordinate of each node of the route
+     */
+    private final int[] nodeX;
+    /**
+     * y coordinate of each node of the route
+     */
+    private final int[] nodeY;
+    /**
+     * z coordinate of each node of the route
+     */
+    private final int[] nodeZ;
+    /**
+     * Distance along the route from the first node to each node
+     */
+    private final double[] cumulativeLength;
+    /**
+     * Number of segments kept in the window
+     */
+    private final int window;
+    /**
+     * Factor applied to the squared distance of a fix to get its log
+     * likelihood
+     */
+    private final double emissionScale;
+    /**
+     * Best log score of each segment in the window, indexed from windowStart
+     */
+    private double[] scores;
+    /**
+     * Scores of the next step
+     */
+    private double[] nextScores;
+    /**
+     * Position (0 to 1) of the projection of the latest fix on each segment
+     * in the window
+     */
+    private final double[] projections;
+    /**
+     * First segment in the window
+     */
+    private int windowStart;
+    /**
+     * Segment matching the latest fix
+     */
+    private int segment;
+    /**
+     * Position (0 to 1) of the latest fix along the matched segment
+     */
+    private double projection;
+    /**
+     * Whether a fix has been matched since the last reset
+     */
+    private boolean matched;
+
+    /**
+     * Constructor. Creates a matcher for the given route using the default
+     * window and deviation
+     *
+     * @param path Route the user is expected to follow
+     */
+    public RouteMatcher(final List<GridNode> path) {
+        this(path, DEFAULT_WINDOW, DEFAULT_SIGMA);
+    }
+
+    /**
+     * Constructor. Creates a matcher for the given route
+     *
+     * @param path Route the user is expected to follow. Must hold at least
+     *             two nodes
+     * @param window Number of segments kept in the window
+     * @param sigma Deviation (in grid units) of the fixes around the route
+     */
+    public RouteMatcher(final List<GridNode> path, final int window, final double sigma) {
+        if (path.size() < 2) {
+            throw new IllegalArgumentException("path.size() < 2");
+        }
+        this.nodeX = new int[path.size()];
+        this.nodeY = new int[path.size()];
+        this.nodeZ = new int[path.size()];
+        this.cumulativeLength = new double[path.size()];
+        for (int i = 0; i < path.size(); i++) {
+            final RectCoordinates location = path.get(i).getLocation();
+            this.nodeX[i] = location.getX();
+            this.nodeY[i] = location.getY();
+            this.nodeZ[i] = location.getZ();
+            if (i > 0) {
+                this.cumulativeLength[i] = this.cumulativeLength[i - 1]
+                        + Math.hypot(this.nodeX[i] - this.nodeX[i - 1], this.nodeY[i] - this.nodeY[i - 1]);
+            }
+        }
+        this.window = Math.max(1, Math.min(window, this.getSegmentCount()));
+        this.emissionScale = 1 / (2 * sigma * sigma);
+        this.scores = new double[this.window];
+        this.nextScores = new double[this.window];
+        this.projections = new double[this.window];
+        this.reset();
+    }
+
+    /**
+     * Forgets all the fixes matched so far. The next fix is matched from the
+     * start of the route
+     */
+    public void reset() {
+        this.windowStart = 0;
+        this.segment = 0;
+        this.projection = 0;
+        this.matched = false;
+    }
+
+    /**
+     * Matches the given fix onto the route
+     *
+     * @param fix Latest location of the user
+     * @return Segment of the route matching the fix, 0 being the segment
+     *         between the first two nodes
+     */
+    public int update(final RectCoordinates fix) {
+        final int start = this.matched ? this.clampStart(this.segment - this.window / 2) : 0;
+        double best = Double.NEGATIVE_INFINITY;
+        int bestSegment = start;
+        for (int i = 0; i < this.window; i++) {
+            final int current = start + i;
+            final double emission = -this.emissionScale * this.getSquaredDistance(fix, current, i);
+            double transition = 0;
+            if (this.matched) {
+                transition = Math.max(this.getScore(current) + LOG_STAY, this.getScore(current - 1) + LOG_NEXT);
+                transition = Math.max(transition, this.getScore(current - 2) + LOG_SKIP);
+                transition = Math.max(transition, this.getScore(current + 1) + LOG_BACK);
+            }
+            this.nextScores[i] = transition + emission;
+            if (this.nextScores[i] > best) {
+                best = this.nextScores[i];
+                bestSegment = current;
+            }
+        }
+        // Keep the scores relative to the best one so they do not drift
+        for (int i = 0; i < this.window; i++) {
+            this.nextScores[i] -= best;
+        }
+        final double[] swap = this.scores;
+        this.scores = this.nextScores;
+        this.nextScores = swap;
+        this.windowStart = start;
+        this.segment = bestSegment;
+        this.projection = this.projections[bestSegment - start];
+        this.matched = true;
+        return this.segment;
+    }
+
+    /**
+     * Getter for the segment matching the latest fix
+     *
+     * @return Segment matching the latest fix, 0 being the segment between
+     *         the first two nodes
+     */
+    public int getSegment() {
+        return this.segment;
+    }
+
+    /**
+     * Gets the distance along the route from the first node to the latest
+     * fix projected on its segment
+     *
+     * @return distance (in grid units) along the route
+     */
+    public double getDistanceAlongRoute() {
+        final double segmentLength = this.cumulativeLength[this.segment + 1] - this.cumulativeLength[this.segment];
+        return this.cumulativeLength[this.segment] + this.projection * segmentLength;
+    }
+
+    /**
+     * Gets the latest fix projected on its segment of the route
+     *
+     * @return Closest coordinates on the route to the latest fix
+     */
+    public RectCoordinates getMatchedLocation() {
+        final int from = this.segment;
+        final int to = this.segment + 1;
+        return new RectCoordinates(
+                (int) Math.round(this.nodeX[from] + this.projection * (this.nodeX[to] - this.nodeX[from])),
+                (int) Math.round(this.nodeY[from] + this.projection * (this.nodeY[to] - this.nodeY[from])),
+                this.projection < 0.5 ? this.nodeZ[from] : this.nodeZ[to]);
+    }
+
+    /**
+     * Getter for the length of the route
+     *
+     * @return length (in grid units) of the route
+     */
+    public double getRouteLength() {
+        return this.cumulativeLength[this.cumulativeLength.length - 1];
+    }
+
+    /**
+     * Getter for the number of segments in the route
+     *
+     * @return Number of segments in the route
+     */
+    public int getSegmentCount() {
+        return this.nodeX.length - 1;
+    }
+
+    /**
+     * Getter for whether a fix has been matched since the last reset
+     *
+     * @return boolean indicating whether a fix has been matched
+     */
+    public boolean isMatched() {
+        return this.matched;
+    }
+
+    /**
+     * Gets the first segment of a window starting at the given segment,
+     * moved so the window fits in the route
+     *
+     * @param start Desired first segment of the window
+     * @return First segment of the window
+     */
+    private int clampStart(final int start) {
+        return Math.max(0, Math.min(start, this.getSegmentCount() - this.window));
+    }
+
+    /**
+     * Gets the score of the given segment from the previous step
+     *
+     * @param current Segment whose score is being read
+     * @return Score of the segment, or negative infinity if it was outside of
+     *         the window
+     */
+    private double getScore(final int current) {
+        final int index = current - this.windowStart;
+        return index >= 0 && index < this.window ? this.scores[index] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Gets the squared distance between the given fix and a segment of the
+     * route, and stores the position of its projection on the segment
+     *
+     * @param fix Location being projected
+     * @param current Segment onto which the fix is projected
+     * @param index Index in the window where the projection is stored
+     * @return Squared distance (in grid units) between the fix and the segment
+     */
+    private double getSquaredDistance(final RectCoordinates fix, final int current, final int index) {
+        final double segmentX = this.nodeX[current + 1] - this.nodeX[current];
+        final double segmentY = this.nodeY[current + 1] - this.nodeY[current];
+        final double fixX = fix.getX() - this.nodeX[current];
+        final double fixY = fix.getY() - this.nodeY[current];
+        final double lengthSquared = segmentX * segmentX + segmentY * segmentY;
+        double t = lengthSquared > 0 ? (fixX * segmentX + fixY * segmentY) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        this.projections[index] = t;
+        final double dx = fixX - t * segmentX;
+        final double dy = fixY - t * segmentY;
+        double distance = dx * dx + dy * dy;
+        if (fix.getZ() != this.nodeZ[current] && fix.getZ() != this.nodeZ[current + 1]) {
+            distance += FLOOR_MISMATCH_PENALTY;
+        }
+        return distance;
+    }
+}
@@ -36,10 +36,27 @@ public class UserTracker implements OrientationManager.OnChangedListener {
      * The next node the user needs to reach in the path.
      */
     private GridNode nextNode;
+    /**
+     * Index of the segment between previousNode and nextNode in the path
+     */
+    private int segment;
+    /**
+     * Matcher placing the fixes of the user along the path
+     */
+    private RouteMatcher routeMatcher;
     /**
      * The latest knows location of the user
      */
     private RectCoordinates latestLocation;
+    /**
+     * Confidence radius (in nodes) of the latest location of the user
+     */
+    private double latestConfidenceRadius;
+    /**
+     * Max confidence radius (in nodes) of a location allowed to change the
+     * state of the user
+     */
+    private double maxConfidenceRadius;
     /**
      * size of the padding used when creating the zones
      */
@@ -100,6 +117,7 @@ public class UserTracker implements OrientationManager.OnChangedListener {
         this.speechSubmitHandler = speechSubmitHandler;
         this.zoneOffset = zoneOffset;
         this.destOffset = destOffset;
+        this.maxConfidenceRadius = zoneOffset * 2;
         this.setPath(path);
         this.indicatorView = indicatorView;
         this.orientationManager = orientationManager;
@@ -115,18 +133,49 @@ public class UserTracker implements OrientationManager.OnChangedListener {
      * @param userLocation New location for the user
      */
     public void updateUserState(final RectCoordinates userLocation) {
+        this.updateUserState(userLocation, 0);
+    }
+
+    /**
+     * Updates the state of the user according to the given location. If the
+     * location is not trusted enough it is stored, but the state of the user
+     * and the progress along the path are left as they are
+     *
+     * @param userLocation New location for the user
+     * @param confidenceRadius Confidence radius (in nodes) of the location
+     */
+    public void updateUserState(final RectCoordinates userLocation, final double confidenceRadius) {
         if (this.userState == UserState.ARRIVED) {
             return;
         }
-        final double currentDistance = this.getDistance(userLocation, this.nextNode.getLocation());
         this.latestLocation = userLocation;
+        this.latestConfidenceRadius = confidenceRadius;
         if (this.orientationManager != null && !this.orientationManager.isTracking()) {
             this.orientationManager.start();
         }
-        if (userLocation.getZ() != this.nextNode.getLocation().getZ()) {
-            // TODO Different Floors
+        if (this.isLowConfidence()) {
+            return;
+        }
+        this.catchUpWithRoute(this.routeMatcher.update(userLocation));
+        if (this.userState == UserState.ARRIVED) {
+            return;
         }
-        if (!this.warningZone.isPointInside(userLocation)) {
+        final double currentDistance = this.getDistance(userLocation, this.nextNode.getLocation());
+        final int previousZ = this.previousNode.getLocation().getZ();
+        final int nextZ = this.nextNode.getLocation().getZ();
+        if (userLocation.getZ() != previousZ && userLocation.getZ() != nextZ) {
+            this.userState = UserState.OFF_COURSE;
+        } else if (previousZ != nextZ) {
+            // The zones are flat, so they do not apply while changing floors
+            if (userLocation.getZ() != nextZ) {
+                this.userState = UserState.REACHING_NEXT_FLOOR;
+            } else if (!this.pathIterator.hasNext()) {
+                this.userState = UserState.ARRIVED;
+            } else {
+                this.userState = UserState.ON_COURSE;
+                this.incrementProgress();
+            }
+        } else if (!this.warningZone.isPointInside(userLocation)) {
             this.userState = UserState.OFF_COURSE;
         } else if (!this.bufferZone.isPointInside(userLocation)) {
             this.userState = UserState.IN_WARNING_ZONE;
@@ -193,6 +242,69 @@ public class UserTracker implements OrientationManager.OnChangedListener {
         return this.nextNode;
     }
 
+    /**
+     * Gets the distance between the latest location of the user and the next
+     * node in the path
+     *
+     * @return distance (in nodes) to the next node or 0 if the location of
+     *         the user is not known yet
+     */
+    public double getDistanceToNextNode() {
+        if (this.latestLocation == null) {
+            return 0;
+        }
+        return this.getDistance(this.latestLocation, this.nextNode.getLocation());
+    }
+
+    /**
+     * Getter for the confidence radius of the latest location of the user
+     *
+     * @return Radius (in nodes) around the latest location within which the
+     *         user most likely is
+     */
+    public double getLatestConfidenceRadius() {
+        return this.latestConfidenceRadius;
+    }
+
+    /**
+     * Checks whether the latest location of the user is too uncertain to
+     * change the state of the user
+     *
+     * @return boolean indicating whether the latest location is low confidence
+     */
+    public boolean isLowConfidence() {
+        return this.latestConfidenceRadius > this.maxConfidenceRadius;
+    }
+
+    /**
+     * Sets the max confidence radius of a location allowed to change the
+     * state of the user. Defaults to the width of the warning zone
+     *
+     * @param maxConfidenceRadius Max confidence radius (in nodes)
+     */
+    public void setMaxConfidenceRadius(final double maxConfidenceRadius) {
+        this.maxConfidenceRadius = maxConfidenceRadius;
+    }
+
+    /**
+     * Gets the distance along the path from its first node to the latest
+     * location of the user, as matched onto the path
+     *
+     * @return distance (in nodes) along the path
+     */
+    public double getDistanceAlongPath() {
+        return this.routeMatcher.getDistanceAlongRoute();
+    }
+
+    /**
+     * Gets the latest location of the user as matched onto the path
+     *
+     * @return closest coordinates on the path to the latest location
+     */
+    public RectCoordinates getMatchedLocation() {
+        return this.routeMatcher.getMatchedLocation();
+    }
+
     /**
      * Sets the path being used by the user tracker
      *
@@ -201,6 +313,8 @@ public class UserTracker implements OrientationManager.OnChangedListener {
     public void setPath(final List<GridNode> path) {
         this.speechGenerator = new SpeechGenerator(path);
         this.pathIterator = path.iterator();
+        this.routeMatcher = new RouteMatcher(path);
+        this.segment = 0;
         this.setProgress(this.pathIterator.next(), this.pathIterator.next());
         this.userState = UserState.UNINITIALIZED;
     }
@@ -233,6 +347,24 @@ public class UserTracker implements OrientationManager.OnChangedListener {
             this.userState = UserState.ARRIVED;
         } else if (this.pathIterator.hasNext()) {
             this.setProgress(this.nextNode, this.pathIterator.next());
+            this.segment++;
+        }
+    }
+
+    /**
+     * Moves the progress of the user forward until it reaches the segment
+     * the latest location was matched onto. Waypoints passed between two
+     * fixes are announced in order
+     *
+     * @param matchedSegment Segment of the path matching the latest location
+     */
+    private void catchUpWithRoute(final int matchedSegment) {
+        while (this.segment < matchedSegment && this.userState != UserState.ARRIVED) {
+            final int previousSegment = this.segment;
+            this.incrementProgress();
+            if (this.segment == previousSegment) {
+                return;
+            }
         }
     }
 
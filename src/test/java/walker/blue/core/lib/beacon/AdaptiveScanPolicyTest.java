@@ -0,0 +1,59 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the AdaptiveScanPolicy class
+ */
+public class AdaptiveScanPolicyTest {
+
+    private static final int CAPACITY = 8;
+    private static final int MIN_WINDOW = 300;
+    private static final int MAX_WINDOW = 3000;
+
+    @Test
+    public void testCleanSignalConverges() {
+        final AdaptiveScanPolicy policy = this.makePolicy();
+        for (int i = 0; i < 4; i++) {
+            policy.addSample(0, -60 - (i & 1));
+            policy.addSample(1, -70 + (i & 1));
+        }
+        Assert.assertTrue(policy.isConverged());
+        Assert.assertFalse(policy.isWindowOver(MIN_WINDOW - 1));
+        Assert.assertTrue(policy.isWindowOver(MIN_WINDOW));
+    }
+
+    @Test
+    public void testNoisyStrongestBeaconDoesNotConverge() {
+        final AdaptiveScanPolicy policy = this.makePolicy();
+        for (int i = 0; i < 4; i++) {
+            policy.addSample(0, (i & 1) == 0 ? -50 : -65);
+            policy.addSample(1, -80);
+            policy.addSample(2, -81);
+            policy.addSample(3, -90 - 10 * (i & 1));
+        }
+        Assert.assertFalse(policy.isConverged());
+        Assert.assertFalse(policy.isWindowOver(MAX_WINDOW - 1));
+        Assert.assertTrue(policy.isWindowOver(MAX_WINDOW));
+    }
+
+    @Test
+    public void testOnlyStrongestBeaconsMatter() {
+        final AdaptiveScanPolicy policy = this.makePolicy();
+        for (int i = 0; i < 4; i++) {
+            policy.addSample(0, -60);
+            policy.addSample(1, -61);
+            policy.addSample(2, -62);
+            policy.addSample(3, -90 - 10 * (i & 1));
+        }
+        Assert.assertTrue(policy.isConverged());
+        policy.reset();
+        Assert.assertFalse(policy.isConverged());
+    }
+
+    private AdaptiveScanPolicy makePolicy() {
+        return new AdaptiveScanPolicy(CAPACITY, MIN_WINDOW, MAX_WINDOW, 3, 3, 1.5);
+    }
+}
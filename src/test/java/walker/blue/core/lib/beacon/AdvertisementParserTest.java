@@ -0,0 +1,133 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+
+/**
+ * Unit tests for the AdvertisementParser class and the allocation free
+ * scan callback of the SyncBeaconScanClient
+ */
+public class AdvertisementParserTest {
+
+    private static final String NOT_RUN = "Allocation test was not run since the JVM can't measure allocations";
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+    private static final int MAJOR = 0x1234;
+    private static final int MINOR = 0xFEDC;
+    private static final int WARMUP_PACKETS = 50000;
+    private static final int MEASURED_PACKETS = 200000;
+    private static final int DEPLOYED_BEACONS = 4;
+    /**
+     * Allowed number of bytes allocated while measuring, which covers the
+     * allocations done by the measurement itself
+     */
+    private static final long ALLOCATION_SLACK = 1024;
+
+    /**
+     * Scan record containing flags followed by the beacon data
+     */
+    private static final byte[] SCAN_RECORD = new byte[] {
+            0x02, 0x01, 0x06,
+            0x1A, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15,
+            0x01, 0x12, 0x23, 0x34, 0x45, 0x56, 0x67, 0x78,
+            (byte) 0x89, (byte) 0x9A, (byte) 0xAB, (byte) 0xBC,
+            (byte) 0xCD, (byte) 0xDE, (byte) 0xEF, (byte) 0xF0,
+            0x12, 0x34, (byte) 0xFE, (byte) 0xDC, (byte) 0xC5,
+            0x00, 0x00
+    };
+    /**
+     * Scan record without beacon data
+     */
+    private static final byte[] OTHER_RECORD = new byte[] {
+            0x02, 0x01, 0x06, 0x03, 0x03, (byte) 0xAA, (byte) 0xFE, 0x00
+    };
+
+    @Test
+    public void testParse() {
+        final int offset = AdvertisementParser.findBeaconData(SCAN_RECORD);
+        Assert.assertEquals(9, offset);
+        Assert.assertEquals(MAJOR, AdvertisementParser.getMajor(SCAN_RECORD, offset));
+        Assert.assertEquals(MINOR, AdvertisementParser.getMinor(SCAN_RECORD, offset));
+        Assert.assertEquals(UUID, AdvertisementParser.uuidToString(
+                AdvertisementParser.getUUIDMostSignificantBits(SCAN_RECORD, offset),
+                AdvertisementParser.getUUIDLeastSignificantBits(SCAN_RECORD, offset)));
+    }
+
+    @Test
+    public void testNotABeacon() {
+        Assert.assertEquals(AdvertisementParser.NOT_A_BEACON, AdvertisementParser.findBeaconData(OTHER_RECORD));
+        Assert.assertEquals(AdvertisementParser.NOT_A_BEACON, AdvertisementParser.findBeaconData(new byte[0]));
+        Assert.assertEquals(AdvertisementParser.NOT_A_BEACON, AdvertisementParser.findBeaconData(null));
+    }
+
+    @Test
+    public void testIngestRegistersBeacon() {
+        final ScanWindow window = new ScanWindow();
+        final int slot = window.add(SCAN_RECORD, -70, 0);
+        Assert.assertEquals(slot, window.add(SCAN_RECORD, -71, 1));
+        Assert.assertEquals(UUID, window.getRegistry().getBeacon(slot).getUUID());
+        Assert.assertEquals(MAJOR, window.getRegistry().getBeacon(slot).getMajor());
+        Assert.assertEquals(MINOR, window.getRegistry().getBeacon(slot).getMinor());
+        Assert.assertEquals(BeaconRegistry.NO_SLOT, window.add(OTHER_RECORD, -70, 2));
+    }
+
+    @Test
+    public void testScanCallbackDoesNotAllocate() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(NOT_RUN, threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(NOT_RUN,
+                allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+        final List<Beacon> deployed = new ArrayList<>();
+        for (int i = 0; i < DEPLOYED_BEACONS; i++) {
+            deployed.add(new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(MAJOR).setBeaconMinor(i).build());
+        }
+        final FakeAdvertisementSource source = new FakeAdvertisementSource();
+        // The client installs a HampelRSSIFilter as its sample filter
+        final SyncBeaconScanClient client =
+                new SyncBeaconScanClient(source, new ArrayList<Beacon>(), 5000, DEPLOYED_BEACONS);
+        final BeaconAdmissionFilter filter = new BeaconAdmissionFilter(deployed);
+        client.setAdmissionFilter(filter);
+        final ScanHandle handle = client.startScan();
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_PACKETS; i++) {
+            this.sendPacket(source, i);
+        }
+        Assert.assertTrue(handle.isMinimumBeaconsSeen());
+        final long before = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int i = WARMUP_PACKETS; i < WARMUP_PACKETS + MEASURED_PACKETS; i++) {
+            this.sendPacket(source, i);
+        }
+        final long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated <= ALLOCATION_SLACK);
+        Assert.assertFalse(handle.isDone());
+        Assert.assertEquals((WARMUP_PACKETS + MEASURED_PACKETS) / (DEPLOYED_BEACONS + 1), filter.getRejectedCount());
+    }
+
+    /**
+     * Parses the scan record and sends it to the listeners of the source as
+     * one of the deployed beacons, or as an unknown beacon every
+     * DEPLOYED_BEACONS + 1 packets
+     *
+     * @param source Source the packet is sent through
+     * @param packet Number of the packet
+     */
+    private void sendPacket(final FakeAdvertisementSource source, final int packet) {
+        final int offset = AdvertisementParser.findBeaconData(SCAN_RECORD);
+        source.sleepUntil(packet);
+        source.advertise(AdvertisementParser.getUUIDMostSignificantBits(SCAN_RECORD, offset),
+                AdvertisementParser.getUUIDLeastSignificantBits(SCAN_RECORD, offset),
+                AdvertisementParser.getMajor(SCAN_RECORD, offset),
+                packet % (DEPLOYED_BEACONS + 1),
+                -60 - (packet & 31));
+    }
+}
@@ -0,0 +1,82 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+import walker.blue.core.lib.types.Building;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the BeaconAdmissionFilter class
+ */
+public class BeaconAdmissionFilterTest {
+
+    private static final String UUID_A = "0112233445566778899aabbccddeeff0";
+    private static final long UUID_A_MOST = 0x0112233445566778L;
+    private static final long UUID_A_LEAST = 0x899aabbccddeeff0L;
+    private static final long UUID_B_MOST = 0xffeeddccbbaa9988L;
+    private static final long UUID_B_LEAST = 0x7766554433221100L;
+
+    @Test
+    public void testAdmitsDeployedBeacons() {
+        final List<Beacon> deployed = new ArrayList<>();
+        deployed.add(this.makeBeacon(UUID_A, 1, 2));
+        deployed.add(this.makeBeacon("01122334-4556-6778-899a-abbccddeeff0", 1, 3));
+        final BeaconAdmissionFilter filter = new BeaconAdmissionFilter(deployed);
+        Assert.assertTrue(filter.admit(UUID_A_MOST, UUID_A_LEAST, 1, 2));
+        Assert.assertTrue(filter.admit(UUID_A_MOST, UUID_A_LEAST, 1, 3));
+        Assert.assertEquals(0, filter.getRejectedCount());
+    }
+
+    @Test
+    public void testRejectsUnknownMajorMinor() {
+        final List<Beacon> deployed = new ArrayList<>();
+        deployed.add(this.makeBeacon(UUID_A, 1, 2));
+        final BeaconAdmissionFilter filter = new BeaconAdmissionFilter(deployed);
+        Assert.assertFalse(filter.admit(UUID_A_MOST, UUID_A_LEAST, 1, 4));
+        Assert.assertFalse(filter.admit(UUID_A_MOST, UUID_A_LEAST, 2, 2));
+        Assert.assertEquals(2, filter.getRejectedCount());
+    }
+
+    @Test
+    public void testRejectsUUIDOutsideBuilding() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        locations.put(this.makeBeacon(UUID_A, 1, 2), new RectCoordinates(0, 0, 0));
+        final Building building = new Building();
+        building.setBeaconLocationMap(locations);
+        final BeaconAdmissionFilter filter = new BeaconAdmissionFilter(building);
+        Assert.assertTrue(filter.admit(UUID_A_MOST, UUID_A_LEAST, 1, 2));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertFalse(filter.admit(UUID_B_MOST, UUID_B_LEAST, 1, 2));
+        }
+        Assert.assertEquals(5, filter.getRejectedCount());
+        Assert.assertTrue(filter.admit(UUID_A_MOST, UUID_A_LEAST, 1, 2));
+        Assert.assertEquals(5, filter.getRejectedCount());
+    }
+
+    @Test
+    public void testIgnoresInvalidUUID() {
+        final List<Beacon> deployed = new ArrayList<>();
+        deployed.add(this.makeBeacon("not a uuid", 1, 2));
+        deployed.add(this.makeBeacon(UUID_A, 1, 2));
+        final BeaconAdmissionFilter filter = new BeaconAdmissionFilter(deployed);
+        Assert.assertTrue(filter.admit(UUID_A_MOST, UUID_A_LEAST, 1, 2));
+        Assert.assertEquals(0, filter.getRejectedCount());
+    }
+
+    private Beacon makeBeacon(final String uuid, final int major, final int minor) {
+        return new BeaconBuilder()
+                .setBeaconUUID(uuid)
+                .setBeaconMajor(major)
+                .setBeaconMinor(minor)
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for the BeaconHealthMonitor class
+ */
+public class BeaconHealthMonitorTest {
+
+    private static final long UUID_MOST = 0x0112233445566778L;
+    private static final long UUID_LEAST = 0x899aabbccddeeff0L;
+
+    @Test
+    public void testStatistics() {
+        final BeaconRegistry registry = new BeaconRegistry();
+        final int steady = registry.findOrRegister(UUID_MOST, UUID_LEAST, 1, 1);
+        final int flaky = registry.findOrRegister(UUID_MOST, UUID_LEAST, 1, 2);
+        final BeaconHealthMonitor monitor = new BeaconHealthMonitor(registry.capacity());
+        for (int i = 0; i < 10; i++) {
+            monitor.update(steady, -60, i * 100);
+        }
+        monitor.update(flaky, -50, 0);
+        monitor.update(flaky, -80, 500);
+        Assert.assertEquals(10.0, monitor.getPacketsPerSecond(steady), 1e-9);
+        Assert.assertEquals(0.0, monitor.getRSSIVariance(steady), 1e-9);
+        Assert.assertTrue(monitor.getRSSIVariance(flaky) > 0);
+        Assert.assertEquals(100, monitor.getLastSeenAge(steady, 1000));
+        monitor.endCycle(registry.size());
+        monitor.update(steady, -60, 1000);
+        monitor.endCycle(registry.size());
+        monitor.endCycle(registry.size());
+        Assert.assertEquals(2, monitor.getDropoutStreak(flaky));
+        Assert.assertEquals(1, monitor.getDropoutStreak(steady));
+        final List<BeaconHealth> snapshot = monitor.snapshot(registry, 1500);
+        Assert.assertEquals(2, snapshot.size());
+        Assert.assertEquals(2, snapshot.get(1).getDropoutStreak());
+        Assert.assertEquals(2, snapshot.get(1).getLongestDropoutStreak());
+        Assert.assertEquals(1000, snapshot.get(1).getLastSeenAge());
+    }
+}
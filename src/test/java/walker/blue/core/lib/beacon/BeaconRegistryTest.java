@@ -0,0 +1,81 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+
+/**
+ * Unit tests for the BeaconRegistry class
+ */
+public class BeaconRegistryTest {
+
+    private static final String UUID_A = "0112233445566778899aabbccddeeff0";
+    private static final long UUID_A_MOST = 0x0112233445566778L;
+    private static final long UUID_A_LEAST = 0x899aabbccddeeff0L;
+    private static final long UUID_B_MOST = 0xffeeddccbbaa9988L;
+    private static final long UUID_B_LEAST = 0x7766554433221100L;
+
+    @Test
+    public void testRegisterAndFind() {
+        final BeaconRegistry registry = new BeaconRegistry();
+        final int slot = registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 2);
+        Assert.assertEquals(0, slot);
+        Assert.assertEquals(slot, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 2));
+        Assert.assertEquals(slot, registry.find(this.makeBeacon(UUID_A, 1, 2)));
+        Assert.assertEquals(this.makeBeacon(UUID_A, 1, 2), registry.getBeacon(slot));
+        Assert.assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testDistinctKeys() {
+        final BeaconRegistry registry = new BeaconRegistry();
+        final int a = registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 2);
+        final int b = registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 2, 1);
+        final int c = registry.findOrRegister(UUID_B_MOST, UUID_B_LEAST, 1, 2);
+        Assert.assertTrue(a != b && b != c && a != c);
+        Assert.assertEquals(BeaconRegistry.NO_SLOT, registry.find(this.makeBeacon(UUID_A, 3, 3)));
+    }
+
+    @Test
+    public void testFull() {
+        final BeaconRegistry registry = new BeaconRegistry(4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(i, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, i));
+        }
+        Assert.assertEquals(BeaconRegistry.NO_SLOT, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 4));
+        Assert.assertEquals(BeaconRegistry.NO_SLOT, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 5));
+        Assert.assertEquals(3, registry.find(this.makeBeacon(UUID_A, 1, 3)));
+        Assert.assertEquals(2, registry.getOverflowCount());
+    }
+
+    @Test
+    public void testUUIDTableCapped() {
+        final BeaconRegistry registry = new BeaconRegistry(64, 2);
+        Assert.assertEquals(0, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 2));
+        Assert.assertEquals(1, registry.findOrRegister(UUID_B_MOST, UUID_B_LEAST, 1, 2));
+        Assert.assertEquals(BeaconRegistry.NO_SLOT, registry.findOrRegister(1L, 2L, 1, 2));
+        Assert.assertEquals(2, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, 1, 3));
+        Assert.assertEquals(1, registry.getOverflowCount());
+    }
+
+    @Test
+    public void testCapacityFor() {
+        Assert.assertEquals(1000 + BeaconRegistry.CAPACITY_HEADROOM, BeaconRegistry.capacityFor(1000));
+        final BeaconRegistry registry = new BeaconRegistry(BeaconRegistry.capacityFor(1000));
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i, registry.findOrRegister(UUID_A_MOST, UUID_A_LEAST, i / 100, i % 100));
+        }
+        Assert.assertEquals(0, registry.getOverflowCount());
+    }
+
+    private Beacon makeBeacon(final String uuid, final int major, final int minor) {
+        return new BeaconBuilder()
+                .setBeaconUUID(uuid)
+                .setBeaconMajor(major)
+                .setBeaconMinor(minor)
+                .build();
+    }
+}
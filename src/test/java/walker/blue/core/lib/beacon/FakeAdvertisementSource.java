@@ -0,0 +1,110 @@
+package walker.blue.core.lib.beacon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AdvertisementSource driven by the unit tests. Advertisements and the end
+ * of scan cycles are sent by calling the listeners directly, and the calls
+ * made by the consumers are counted
+ */
+public class FakeAdvertisementSource implements AdvertisementSource {
+
+    /**
+     * Listeners of the source
+     */
+    private final List<AdvertisementListener> listeners = new ArrayList<>();
+    /**
+     * Number of consumers waiting through acquireDemand
+     */
+    private int demand;
+    /**
+     * Number of scan cycles started
+     */
+    private int scansStarted;
+    /**
+     * Current time (in ms) of the source
+     */
+    private long time;
+
+    @Override
+    public void addListener(final AdvertisementListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(final AdvertisementListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public void setScanningInterval(final int scanInterval) {
+    }
+
+    @Override
+    public void startScanning() {
+        this.scansStarted++;
+    }
+
+    @Override
+    public void acquireDemand() {
+        this.demand++;
+    }
+
+    @Override
+    public void releaseDemand() {
+        this.demand--;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return this.time;
+    }
+
+    @Override
+    public void sleepUntil(final long time) {
+        this.time = Math.max(this.time, time);
+    }
+
+    /**
+     * Sends an advertisement to every listener, stamped with the current time
+     *
+     * @param uuidMost Most significant bits of the UUID
+     * @param uuidLeast Least significant bits of the UUID
+     * @param major Major of the beacon
+     * @param minor Minor of the beacon
+     * @param rssi RSSI (in dBm) of the advertisement
+     */
+    public void advertise(final long uuidMost, final long uuidLeast, final int major, final int minor, final int rssi) {
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).onAdvertisement(uuidMost, uuidLeast, major, minor, rssi, this.time);
+        }
+    }
+
+    /**
+     * Ends the current scan cycle
+     */
+    public void endCycle() {
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).onScanCycleEnded();
+        }
+    }
+
+    /**
+     * Getter for the number of consumers waiting through acquireDemand
+     *
+     * @return Demand of the consumers
+     */
+    public int getDemand() {
+        return this.demand;
+    }
+
+    /**
+     * Getter for the number of scan cycles started
+     *
+     * @return Number of calls to startScanning
+     */
+    public int getScansStarted() {
+        return this.scansStarted;
+    }
+}
@@ -0,0 +1,45 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the HampelRSSIFilter class
+ */
+public class HampelRSSIFilterTest {
+
+    @Test
+    public void testSpikeReplacedByMedian() {
+        final HampelRSSIFilter filter = new HampelRSSIFilter(2, 5, 3.0);
+        Assert.assertEquals(-70, filter.filter(0, -70));
+        Assert.assertEquals(-72, filter.filter(0, -72));
+        Assert.assertEquals(-71, filter.filter(0, -71));
+        Assert.assertEquals(-69, filter.filter(0, -69));
+        Assert.assertEquals(-70, filter.filter(0, -52));
+        Assert.assertEquals(-71, filter.filter(0, -71));
+        Assert.assertEquals(-40, filter.filter(1, -40));
+    }
+
+    @Test
+    public void testFollowsLevelChange() {
+        final HampelRSSIFilter filter = new HampelRSSIFilter(1, 5, 3.0);
+        for (int i = 0; i < 5; i++) {
+            filter.filter(0, -80);
+        }
+        Assert.assertEquals(-80, filter.filter(0, -60));
+        Assert.assertEquals(-80, filter.filter(0, -60));
+        Assert.assertEquals(-60, filter.filter(0, -60));
+    }
+
+    @Test
+    public void testRollingMedian() {
+        final HampelRSSIFilter filter = new HampelRSSIFilter(1, 3, 0);
+        filter.filter(0, -70);
+        filter.filter(0, -60);
+        Assert.assertEquals(-65, filter.filter(0, -65));
+        Assert.assertEquals(-60, filter.filter(0, -50));
+        filter.clear();
+        Assert.assertEquals(-90, filter.filter(0, -90));
+    }
+}
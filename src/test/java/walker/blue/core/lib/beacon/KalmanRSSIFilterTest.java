@@ -0,0 +1,48 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the KalmanRSSIFilter class
+ */
+public class KalmanRSSIFilterTest {
+
+    private static final double DELTA = 0.5;
+
+    @Test
+    public void testConvergesToSignal() {
+        final KalmanRSSIFilter filter = new KalmanRSSIFilter(4);
+        Assert.assertFalse(filter.hasEstimate(0));
+        for (int i = 0; i < 50; i++) {
+            filter.update(0, (i & 1) == 0 ? -66 : -74, i * 100);
+        }
+        Assert.assertEquals(-70, filter.getEstimate(0), 2);
+        Assert.assertTrue(filter.getVariance(0) < KalmanRSSIFilter.DEFAULT_MEASUREMENT_NOISE);
+        Assert.assertFalse(filter.hasEstimate(1));
+        Assert.assertTrue(Double.isNaN(filter.getEstimate(1)));
+    }
+
+    @Test
+    public void testStaleEstimateFollowsNewSamples() {
+        final KalmanRSSIFilter filter = new KalmanRSSIFilter(4);
+        for (int i = 0; i < 20; i++) {
+            filter.update(0, -60, i * 100);
+        }
+        final double settledVariance = filter.getVariance(0);
+        Assert.assertTrue(filter.getVariance(0, 60000) > settledVariance);
+        filter.update(0, -80, 60000);
+        Assert.assertEquals(-80, filter.getEstimate(0), 1);
+    }
+
+    @Test
+    public void testClear() {
+        final KalmanRSSIFilter filter = new KalmanRSSIFilter(4);
+        filter.update(2, -60, 0);
+        Assert.assertEquals(-60, filter.getEstimate(2), DELTA);
+        filter.clear();
+        Assert.assertFalse(filter.hasEstimate(2));
+        Assert.assertFalse(filter.hasEstimate(BeaconRegistry.NO_SLOT));
+    }
+}
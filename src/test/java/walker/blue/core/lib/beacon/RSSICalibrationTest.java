@@ -0,0 +1,59 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the RSSICalibration class
+ */
+public class RSSICalibrationTest {
+
+    @Test
+    public void testIdentityUntilEnoughPairs() {
+        final RSSICalibration calibration = new RSSICalibration();
+        for (int i = 0; i < 29; i++) {
+            calibration.addReference(-70, -60);
+        }
+        Assert.assertEquals(-70, calibration.apply(-70));
+        Assert.assertEquals(29, calibration.getSampleCount());
+        calibration.addReference(-70, -60);
+        Assert.assertEquals(-60, calibration.apply(-70));
+    }
+
+    @Test
+    public void testLearnsGainAndOffset() {
+        final RSSICalibration calibration = new RSSICalibration();
+        for (int i = 0; i < 200; i++) {
+            final double expected = -50 - (i * 7) % 40;
+            final double measured = 0.8 * expected - 6;
+            final double corrected = calibration.getGain() * measured + calibration.getOffset();
+            calibration.addReference(corrected, expected);
+        }
+        Assert.assertEquals(1.25, calibration.getGain(), 1e-6);
+        Assert.assertEquals(7.5, calibration.getOffset(), 1e-6);
+        Assert.assertEquals(-80, calibration.apply(-70));
+    }
+
+    @Test
+    public void testOffsetOnlyWithoutSpread() {
+        final RSSICalibration calibration = new RSSICalibration();
+        for (int i = 0; i < 50; i++) {
+            final double corrected = calibration.apply(-75);
+            calibration.addReference(corrected, -65 + (i % 2));
+        }
+        Assert.assertEquals(1.0, calibration.getGain(), 1e-9);
+        Assert.assertEquals(10.5, calibration.getOffset(), 0.1);
+    }
+
+    @Test
+    public void testReset() {
+        final RSSICalibration calibration = new RSSICalibration();
+        for (int i = 0; i < 40; i++) {
+            calibration.addReference(-80, -70);
+        }
+        calibration.reset();
+        Assert.assertEquals(0, calibration.getSampleCount());
+        Assert.assertEquals(-80, calibration.apply(-80));
+    }
+}
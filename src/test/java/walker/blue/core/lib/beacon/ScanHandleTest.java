@@ -0,0 +1,102 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+
+/**
+ * Unit tests for the ScanHandle class
+ */
+public class ScanHandleTest {
+
+    @Test
+    public void testMinimumBeforeFinish() throws Exception {
+        final ScanHandle handle = new ScanHandle(1);
+        final List<Beacon> early = new ArrayList<>();
+        final List<Beacon> all = new ArrayList<>();
+        Assert.assertFalse(handle.awaitMinimumBeacons(1, TimeUnit.MILLISECONDS));
+        handle.signalMinimumBeacons(early);
+        Assert.assertTrue(handle.awaitMinimumBeacons(0, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(handle.isDone());
+        Assert.assertTrue(handle.finish(all));
+        Assert.assertFalse(handle.finish(new ArrayList<Beacon>()));
+        Assert.assertSame(early, handle.getEarlyBeacons());
+        Assert.assertSame(all, handle.get(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testFinishWithoutMinimum() throws Exception {
+        final ScanHandle handle = new ScanHandle(3);
+        final List<Beacon> all = new ArrayList<>();
+        handle.finish(all);
+        handle.signalMinimumBeacons(new ArrayList<Beacon>());
+        Assert.assertFalse(handle.awaitMinimumBeacons(0, TimeUnit.MILLISECONDS));
+        Assert.assertSame(all, handle.getEarlyBeacons());
+    }
+
+    @Test
+    public void testListenerNotifiedOnce() {
+        final ScanHandle handle = new ScanHandle(1);
+        final int[] calls = new int[2];
+        handle.signalMinimumBeacons(new ArrayList<Beacon>());
+        handle.addListener(new ScanHandle.Listener() {
+            @Override
+            public void onMinimumBeaconsSeen(final ScanHandle handle) {
+                calls[0]++;
+            }
+
+            @Override
+            public void onWindowFinished(final ScanHandle handle) {
+                calls[1]++;
+            }
+        });
+        handle.signalMinimumBeacons(new ArrayList<Beacon>());
+        handle.finish(new ArrayList<Beacon>());
+        handle.finish(new ArrayList<Beacon>());
+        Assert.assertEquals(1, calls[0]);
+        Assert.assertEquals(1, calls[1]);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final ScanHandle handle = new ScanHandle(1);
+        Assert.assertTrue(handle.cancel(true));
+        Assert.assertTrue(handle.isCancelled());
+        try {
+            handle.get();
+            Assert.fail();
+        } catch (final CancellationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCancelReleasesRadio() throws Exception {
+        final FakeAdvertisementSource source = new FakeAdvertisementSource();
+        final SyncBeaconScanClient client = new SyncBeaconScanClient(source);
+        final ScanHandle handle = client.startScan();
+        Assert.assertEquals(1, source.getDemand());
+        Assert.assertEquals(1, source.getScansStarted());
+        Assert.assertTrue(handle.cancel(true));
+        Assert.assertEquals(0, source.getDemand());
+        Assert.assertTrue(handle.isDone());
+        Assert.assertFalse(handle.cancel(true));
+        // The radio is not restarted once the current cycle ends
+        source.endCycle();
+        Assert.assertEquals(1, source.getScansStarted());
+        Assert.assertEquals(0, source.getDemand());
+        try {
+            handle.get();
+            Assert.fail();
+        } catch (final CancellationException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.capture.ReplayAdvertisementSource;
+import walker.blue.core.lib.capture.ScanLogReader;
+import walker.blue.core.lib.capture.ScanRecorder;
+
+/**
+ * Unit tests for the ScanHub class
+ */
+public class ScanHubTest {
+
+    private static final long UUID_MOST = 0x0112233445566778L;
+    private static final long UUID_LEAST = 0x899aabbccddeeff0L;
+    private static final int PERIOD = 100;
+    private static final int NUM_PACKETS = 50;
+
+    @Test
+    public void testSubscribersKeepTheirOwnWindows() throws Exception {
+        final ReplayAdvertisementSource source = this.makeSource();
+        final ScanHub hub = new ScanHub(source);
+        final SyncBeaconScanClient shortClient = new SyncBeaconScanClient(hub.subscribe(),
+                new ArrayList<Beacon>(), 1000, 1);
+        final SyncBeaconScanClient longClient = new SyncBeaconScanClient(hub.subscribe(),
+                new ArrayList<Beacon>(), 2000, 1);
+        Assert.assertEquals(2, hub.getSubscriptionCount());
+        // The replay is paused so neither client sees an advertisement before
+        // both scans have started
+        source.pause();
+        final Future<List<Beacon>> shortScan = shortClient.startScan();
+        final Future<List<Beacon>> longScan = longClient.startScan();
+        source.resume();
+        Assert.assertEquals(10, this.countSamples(shortScan.get(5, TimeUnit.SECONDS)));
+        Assert.assertEquals(20, this.countSamples(longScan.get(5, TimeUnit.SECONDS)));
+        shortClient.close();
+        longClient.close();
+        Assert.assertEquals(0, hub.getSubscriptionCount());
+    }
+
+    private int countSamples(final List<Beacon> beacons) {
+        int samples = 0;
+        for (final Beacon beacon : beacons) {
+            samples += beacon.getMeasuredRSSIValues().size();
+        }
+        return samples;
+    }
+
+    private ReplayAdvertisementSource makeSource() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ScanRecorder recorder = new ScanRecorder(out);
+        for (int i = 0; i < NUM_PACKETS; i++) {
+            recorder.onAdvertisement(UUID_MOST, UUID_LEAST, 1, 1, -60, i * PERIOD);
+        }
+        recorder.close();
+        return new ReplayAdvertisementSource(new ScanLogReader(new ByteArrayInputStream(out.toByteArray())), false);
+    }
+}
@@ -0,0 +1,74 @@
+package walker.blue.core.lib.beacon;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+
+/**
+ * Unit tests for the StrongestBeacons class
+ */
+public class StrongestBeaconsTest {
+
+    private static final int NUM_BEACONS = 40;
+    private static final int K = 4;
+
+    @Test
+    public void testMatchesSort() {
+        final AverageRSSIEstimator estimator = new AverageRSSIEstimator();
+        final List<Beacon> scan = this.buildScan(new Random(11));
+        final List<Beacon> copy = new ArrayList<>(scan);
+        final StrongestBeacons strongest = new StrongestBeacons(K);
+        Assert.assertEquals(K, strongest.select(scan, estimator));
+        Assert.assertEquals(copy, scan);
+        final List<Beacon> sorted = new ArrayList<>(scan);
+        Collections.sort(sorted, Collections.reverseOrder(new BeaconComparator(estimator)));
+        for (int rank = 0; rank < K; rank++) {
+            Assert.assertEquals(estimator.getRSSI(sorted.get(rank)), strongest.getRSSI(rank));
+            Assert.assertEquals(estimator.getRSSI(strongest.getBeacon(rank)), strongest.getRSSI(rank));
+        }
+    }
+
+    @Test
+    public void testCandidates() {
+        final AverageRSSIEstimator estimator = new AverageRSSIEstimator();
+        final List<Beacon> scan = this.buildScan(new Random(12));
+        final Set<Beacon> candidates = new HashSet<>();
+        candidates.add(scan.get(3));
+        candidates.add(scan.get(17));
+        final StrongestBeacons strongest = new StrongestBeacons(K);
+        Assert.assertEquals(2, strongest.select(scan, estimator, candidates));
+        Assert.assertTrue(candidates.contains(strongest.getBeacon(0)));
+        Assert.assertTrue(candidates.contains(strongest.getBeacon(1)));
+        Assert.assertTrue(strongest.getRSSI(0) >= strongest.getRSSI(1));
+        Assert.assertEquals(0, strongest.select(new ArrayList<Beacon>(), estimator));
+    }
+
+    /**
+     * Builds a scan holding beacons with random RSSI values
+     *
+     * @param random Random number generator used
+     * @return List of beacons scanned
+     */
+    private List<Beacon> buildScan(final Random random) {
+        final List<Beacon> scan = new ArrayList<>();
+        for (int i = 0; i < NUM_BEACONS; i++) {
+            scan.add(new BeaconBuilder()
+                    .setBeaconMajor(1)
+                    .setBeaconMinor(i)
+                    .setMeasuredRSSI(-40 - random.nextInt(60))
+                    .setMeasuredRSSI(-40 - random.nextInt(60))
+                    .build());
+        }
+        return scan;
+    }
+}
@@ -0,0 +1,104 @@
+package walker.blue.core.lib.capture;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.core.lib.beacon.SyncBeaconScanClient;
+
+/**
+ * Unit tests for the scan capture and replay classes
+ */
+public class ScanReplayTest {
+
+    private static final long UUID_MOST = 0x0112233445566778L;
+    private static final long UUID_LEAST = 0x899aabbccddeeff0L;
+    private static final long START_TIME = 123456789L;
+    private static final int PERIOD = 100;
+    private static final int NUM_PACKETS = 100;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final ScanLogReader reader = new ScanLogReader(new ByteArrayInputStream(this.record()));
+        Assert.assertEquals(START_TIME, reader.getStartTime());
+        int count = 0;
+        while (reader.next()) {
+            Assert.assertEquals(START_TIME + count * PERIOD, reader.getTime());
+            Assert.assertEquals(UUID_MOST, reader.getUUIDMostSignificantBits());
+            Assert.assertEquals(UUID_LEAST, reader.getUUIDLeastSignificantBits());
+            Assert.assertEquals(0xFFFF, reader.getMajor());
+            Assert.assertEquals(count % 2, reader.getMinor());
+            Assert.assertEquals(-60 - count % 10, reader.getRSSI());
+            count++;
+        }
+        Assert.assertEquals(NUM_PACKETS, count);
+        Assert.assertEquals(ScanLog.RECORD_SIZE * NUM_PACKETS + 14, this.record().length);
+    }
+
+    @Test
+    public void testReplayScan() throws Exception {
+        final ReplayAdvertisementSource source = this.makeSource();
+        final SyncBeaconScanClient client = new SyncBeaconScanClient(source);
+        client.setScanTime(1000);
+        final List<Beacon> beacons = client.startScan().get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, beacons.size());
+        Assert.assertEquals(START_TIME + 1000, client.currentTimeMillis());
+        int samples = 0;
+        for (final Beacon beacon : beacons) {
+            samples += beacon.getMeasuredRSSIValues().size();
+        }
+        Assert.assertEquals(11, samples);
+        client.close();
+        source.close();
+    }
+
+    @Test
+    public void testReplayIsDeterministic() throws Exception {
+        final String first = this.replayContinuous();
+        Assert.assertFalse(first.isEmpty());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(first, this.replayContinuous());
+        }
+    }
+
+    /**
+     * Replays the log the way the MainLoop consumes it and describes the
+     * snapshots taken
+     */
+    private String replayContinuous() throws Exception {
+        final ReplayAdvertisementSource source = this.makeSource();
+        final SyncBeaconScanClient client = new SyncBeaconScanClient(source);
+        client.setScanTime(1000);
+        client.startContinuousScan();
+        final StringBuilder result = new StringBuilder();
+        for (long time = START_TIME + 1000; time <= START_TIME + 5000; time += 1000) {
+            client.sleepUntil(time);
+            for (final Beacon beacon : client.getSnapshot(1000)) {
+                result.append(beacon.getMinor()).append(beacon.getMeasuredRSSIValues()).append(';');
+            }
+        }
+        client.close();
+        source.close();
+        return result.toString();
+    }
+
+    private ReplayAdvertisementSource makeSource() throws Exception {
+        return new ReplayAdvertisementSource(new ScanLogReader(new ByteArrayInputStream(this.record())), false);
+    }
+
+    private byte[] record() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ScanRecorder recorder = new ScanRecorder(out);
+        for (int i = 0; i < NUM_PACKETS; i++) {
+            recorder.onAdvertisement(UUID_MOST, UUID_LEAST, 0xFFFF, i % 2, -60 - i % 10, START_TIME + i * PERIOD);
+        }
+        recorder.close();
+        return out.toByteArray();
+    }
+}
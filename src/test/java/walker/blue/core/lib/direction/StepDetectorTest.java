@@ -0,0 +1,49 @@
+package walker.blue.core.lib.direction;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the StepDetector class
+ */
+public class StepDetectorTest {
+
+    private static final float GRAVITY = 9.80665f;
+    private static final int SAMPLE_INTERVAL = 20;
+
+    @Test
+    public void testCountsWalkingSteps() {
+        final StepDetector detector = new StepDetector();
+        final List<Double> lengths = new ArrayList<>();
+        detector.setOnStepListener(new StepDetector.OnStepListener() {
+            @Override
+            public void onStep(final double stepLength, final long time) {
+                lengths.add(stepLength);
+            }
+        });
+        // Ten seconds of walking at two steps per second
+        for (long time = 0; time < 10000; time += SAMPLE_INTERVAL) {
+            final double bounce = 3.0 * Math.sin(2 * Math.PI * 2 * time / 1000.0);
+            detector.addSample(0.3f, 0.2f, (float) (GRAVITY + bounce), time);
+        }
+        Assert.assertTrue(Math.abs(detector.getStepCount() - 20) <= 1);
+        Assert.assertEquals(detector.getStepCount(), lengths.size());
+        for (final double length : lengths) {
+            Assert.assertTrue(length >= 0.3 && length <= 1.2);
+        }
+    }
+
+    @Test
+    public void testIgnoresStanding() {
+        final StepDetector detector = new StepDetector();
+        for (long time = 0; time < 10000; time += SAMPLE_INTERVAL) {
+            final double noise = 0.3 * Math.sin(2 * Math.PI * 7 * time / 1000.0);
+            detector.addSample(0.1f, 0.1f, (float) (GRAVITY + noise), time);
+        }
+        Assert.assertEquals(0, detector.getStepCount());
+    }
+}
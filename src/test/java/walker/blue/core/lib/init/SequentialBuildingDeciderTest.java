@@ -0,0 +1,41 @@
+package walker.blue.core.lib.init;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the SequentialBuildingDecider class
+ */
+public class SequentialBuildingDeciderTest {
+
+    private static final long UUID_MOST = 0x0112233445566778L;
+    private static final long UUID_LEAST = 0x899aabbccddeeff0L;
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+
+    @Test
+    public void testDecidesOnMargin() {
+        final SequentialBuildingDecider decider = new SequentialBuildingDecider(3, 4);
+        Assert.assertFalse(decider.addPacket(UUID_MOST, UUID_LEAST));
+        Assert.assertFalse(decider.addPacket(1L, 1L));
+        Assert.assertFalse(decider.addPacket(UUID_MOST, UUID_LEAST));
+        Assert.assertFalse(decider.addPacket(UUID_MOST, UUID_LEAST));
+        Assert.assertNull(decider.getDecision());
+        Assert.assertTrue(decider.addPacket(UUID_MOST, UUID_LEAST));
+        Assert.assertEquals(UUID, decider.getDecision());
+        Assert.assertEquals(5, decider.getPacketsToDecision());
+        Assert.assertTrue(decider.addPacket(1L, 1L));
+        Assert.assertEquals(UUID, decider.getDecision());
+    }
+
+    @Test
+    public void testFirstSightingCounts() {
+        final SequentialBuildingDecider decider = new SequentialBuildingDecider(3, 4);
+        Assert.assertNull(decider.getLeader());
+        decider.addPacket(1L, 1L);
+        decider.addPacket(UUID_MOST, UUID_LEAST);
+        decider.addPacket(UUID_MOST, UUID_LEAST);
+        Assert.assertFalse(decider.isDecided());
+        Assert.assertEquals(UUID, decider.getLeader());
+    }
+}
@@ -0,0 +1,58 @@
+package walker.blue.core.lib.location;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.TestBuildings;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the DeadReckoning class
+ */
+public class DeadReckoningTest {
+
+    private static final int SIZE = 20;
+
+    @Test
+    public void testStepsMoveAlongHeading() {
+        final DeadReckoning deadReckoning = new DeadReckoning(this.makeBuilding(), null);
+        Assert.assertNull(deadReckoning.getPosition());
+        deadReckoning.onStep(1.0, 0.0);
+        Assert.assertNull(deadReckoning.getPosition());
+        deadReckoning.onFix(new RectCoordinates(5, 5, 0), 1.0);
+        for (int i = 0; i < 4; i++) {
+            deadReckoning.onStep(1.0, 0.0);
+        }
+        Assert.assertEquals(5.0, deadReckoning.getX(), 1e-9);
+        Assert.assertEquals(9.0, deadReckoning.getY(), 1e-9);
+        for (int i = 0; i < 3; i++) {
+            deadReckoning.onStep(1.0, 90.0);
+        }
+        final RectCoordinates position = deadReckoning.getPosition();
+        Assert.assertEquals(2, position.getX());
+        Assert.assertEquals(9, position.getY());
+    }
+
+    @Test
+    public void testFixesCorrectDrift() {
+        final DeadReckoning deadReckoning = new DeadReckoning(this.makeBuilding(), null);
+        deadReckoning.onFix(new RectCoordinates(5, 5, 0), 1.0);
+        deadReckoning.onFix(new RectCoordinates(7, 5, 0), 1.0);
+        Assert.assertEquals(6.0, deadReckoning.getX(), 1e-9);
+        deadReckoning.onFix(new RectCoordinates(15, 5, 0), 1.0);
+        Assert.assertEquals(15.0, deadReckoning.getX(), 1e-9);
+        Assert.assertEquals(1.0, deadReckoning.getRadius(), 1e-9);
+        final int version = deadReckoning.getVersion();
+        deadReckoning.onStep(1.0, 0.0);
+        Assert.assertEquals(version + 1, deadReckoning.getVersion());
+        Assert.assertTrue(deadReckoning.getRadius() > 1.0);
+    }
+
+    private Building makeBuilding() {
+        final Building building = TestBuildings.grid(SIZE, SIZE, 1, TestBuildings.ALL);
+        building.setNorthPoint(new RectCoordinates(1, 0, 0));
+        return building;
+    }
+}
@@ -0,0 +1,110 @@
+package walker.blue.core.lib.location;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.TestBuildings;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the FloorEstimator class
+ */
+public class FloorEstimatorTest {
+
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+    private static final int FLOORS = 3;
+
+    private final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+    private final Map<Beacon, Double> rssiValues = new HashMap<>();
+    private final List<Beacon> beacons = new ArrayList<>();
+    private final RSSIEstimator estimator = new RSSIEstimator() {
+        @Override
+        public double getRSSI(final Beacon beacon) {
+            return rssiValues.get(beacon);
+        }
+
+        @Override
+        public double getRSSIVariance(final Beacon beacon) {
+            return 4.0;
+        }
+    };
+
+    @Test
+    public void testIgnoresSingleScan() {
+        this.addBeacons();
+        final FloorEstimator estimator = new FloorEstimator(this.makeBuilding());
+        this.setFloorRSSI(1, -60);
+        this.setFloorRSSI(0, -80);
+        Assert.assertEquals(1, estimator.update(this.beacons, this.estimator));
+        // Beacon below heard through the floor for a single scan
+        this.setFloorRSSI(0, -55);
+        Assert.assertEquals(1, estimator.update(this.beacons, this.estimator));
+        this.setFloorRSSI(0, -80);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(1, estimator.update(this.beacons, this.estimator));
+        }
+    }
+
+    @Test
+    public void testSwitchesAfterSustainedEvidence() {
+        this.addBeacons();
+        final FloorEstimator estimator = new FloorEstimator(this.makeBuilding());
+        this.setFloorRSSI(1, -60);
+        this.setFloorRSSI(2, -85);
+        Assert.assertEquals(1, estimator.update(this.beacons, this.estimator));
+        this.setFloorRSSI(1, -85);
+        this.setFloorRSSI(2, -60);
+        int scans = 0;
+        while (estimator.update(this.beacons, this.estimator) == 1) {
+            scans++;
+            Assert.assertTrue(scans < 10);
+        }
+        Assert.assertTrue(scans >= FloorEstimator.DEFAULT_SWITCH_SCANS - 1);
+        Assert.assertEquals(2, estimator.getFloor());
+    }
+
+    @Test
+    public void testUnknownWithoutLocatedBeacons() {
+        final FloorEstimator estimator = new FloorEstimator(this.makeBuilding());
+        Assert.assertEquals(FloorEstimator.UNKNOWN_FLOOR, estimator.update(this.beacons, this.estimator));
+    }
+
+    private void addBeacons() {
+        for (int z = 0; z < FLOORS; z++) {
+            for (int i = 0; i < 2; i++) {
+                final Beacon beacon = new BeaconBuilder()
+                        .setBeaconUUID(UUID)
+                        .setBeaconMajor(z)
+                        .setBeaconMinor(i)
+                        .build();
+                this.locations.put(beacon, new RectCoordinates(i * 4, 0, z));
+                this.rssiValues.put(beacon, -100.0);
+                this.beacons.add(beacon);
+            }
+        }
+    }
+
+    private void setFloorRSSI(final int z, final double rssi) {
+        for (final Beacon beacon : this.beacons) {
+            if (this.locations.get(beacon).getZ() == z) {
+                this.rssiValues.put(beacon, rssi);
+            }
+        }
+    }
+
+    private Building makeBuilding() {
+        final Building building = TestBuildings.grid(5, 1, FLOORS, TestBuildings.ALL);
+        building.setBeaconLocationMap(this.locations);
+        return building;
+    }
+}
@@ -0,0 +1,175 @@
+package walker.blue.core.lib.location;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.TestBuildings;
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the GridParticleFilter class
+ */
+public class GridParticleFilterTest {
+
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+    private static final int LENGTH = 20;
+    private static final int WIDTH = 5;
+    private static final int CORRIDOR = 2;
+
+    @Test
+    public void testStaysInCorridor() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = new ArrayList<>();
+        final Map<Beacon, Double> rssiValues = new HashMap<>();
+        final int[] positions = {0, 10, 19};
+        for (int i = 0; i < positions.length; i++) {
+            final Beacon beacon = new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(1).setBeaconMinor(i).build();
+            locations.put(beacon, new RectCoordinates(positions[i], 0, 0));
+            beacons.add(beacon);
+            final double distance = Math.hypot(positions[i] - 5, CORRIDOR);
+            rssiValues.put(beacon, WeightedTrilateration.DEFAULT_RSSI_AT_ONE_METER - 20 * Math.log10(distance));
+        }
+        final GridParticleFilter filter =
+                new GridParticleFilter(this.makeCorridor(locations), 300, 1.4, new Random(42));
+        final RSSIEstimator estimator = new RSSIEstimator() {
+            @Override
+            public double getRSSI(final Beacon beacon) {
+                return rssiValues.get(beacon);
+            }
+
+            @Override
+            public double getRSSIVariance(final Beacon beacon) {
+                return 4.0;
+            }
+        };
+        GridNode node = null;
+        for (int i = 0; i < 10; i++) {
+            node = filter.locate(beacons, estimator, i * 1000);
+        }
+        Assert.assertEquals(CORRIDOR, node.getLocation().getY());
+        Assert.assertTrue(Math.abs(node.getLocation().getX() - 5) <= 2);
+    }
+
+    @Test
+    public void testTakesStairs() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = new ArrayList<>();
+        for (int z = 0; z < 2; z++) {
+            for (final int x : new int[] {0, 9}) {
+                final Beacon beacon =
+                        new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(z).setBeaconMinor(x).build();
+                locations.put(beacon, new RectCoordinates(x, CORRIDOR, z));
+                beacons.add(beacon);
+            }
+        }
+        // User stands at the top of the stairs, on the second floor
+        final RSSIEstimator estimator = new RSSIEstimator() {
+            @Override
+            public double getRSSI(final Beacon beacon) {
+                final RectCoordinates location = locations.get(beacon);
+                final double distance = Math.max(1, Math.hypot(location.getX() - 8, (location.getZ() - 1) * 4.0));
+                return WeightedTrilateration.DEFAULT_RSSI_AT_ONE_METER - 20 * Math.log10(distance);
+            }
+
+            @Override
+            public double getRSSIVariance(final Beacon beacon) {
+                return 4.0;
+            }
+        };
+        final Building withoutStairs = this.makeFloors(locations);
+        final Building withStairs = this.makeFloors(locations);
+        TestBuildings.addStairs(withStairs, 9, CORRIDOR - 1, 0);
+        TestBuildings.addStairs(withStairs, 9, CORRIDOR - 1, 1);
+        final GridParticleFilter stuck = new GridParticleFilter(withoutStairs, 300, 1.4, new Random(42));
+        final GridParticleFilter filter = new GridParticleFilter(withStairs, 300, 1.4, new Random(42));
+        stuck.reset(withoutStairs.nodeAt(8, CORRIDOR, 0), 0);
+        filter.reset(withStairs.nodeAt(8, CORRIDOR, 0), 0);
+        GridNode stuckNode = null;
+        GridNode node = null;
+        for (int i = 1; i <= 10; i++) {
+            stuckNode = stuck.locate(beacons, estimator, i * 1000);
+            node = filter.locate(beacons, estimator, i * 1000);
+        }
+        Assert.assertEquals(0, stuckNode.getLocation().getZ());
+        Assert.assertEquals(1, node.getLocation().getZ());
+        Assert.assertEquals(CORRIDOR, node.getLocation().getY());
+        Assert.assertTrue(Math.abs(node.getLocation().getX() - 8) <= 2);
+        Assert.assertEquals(4, filter.getLastBeaconCount());
+        Assert.assertTrue(filter.getLastRadius() < 3);
+    }
+
+    @Test
+    public void testDoesNotCrossWall() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = new ArrayList<>();
+        final int[] positions = {2, 5, 8};
+        for (int i = 0; i < positions.length; i++) {
+            final Beacon beacon = new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(1).setBeaconMinor(i).build();
+            locations.put(beacon, new RectCoordinates(positions[i], WIDTH - 1, 0));
+            beacons.add(beacon);
+        }
+        // Scans place the user in the corridor on the other side of the wall
+        final RSSIEstimator estimator = new RSSIEstimator() {
+            @Override
+            public double getRSSI(final Beacon beacon) {
+                final RectCoordinates location = locations.get(beacon);
+                final double distance = Math.max(1, Math.hypot(location.getX() - 5, location.getY() - CORRIDOR - 1));
+                return WeightedTrilateration.DEFAULT_RSSI_AT_ONE_METER - 20 * Math.log10(distance);
+            }
+
+            @Override
+            public double getRSSIVariance(final Beacon beacon) {
+                return 4.0;
+            }
+        };
+        final Building building = TestBuildings.grid(LENGTH, WIDTH, 1, new TestBuildings.Traversable() {
+            @Override
+            public boolean isTraversable(final int x, final int y, final int z) {
+                return y == CORRIDOR - 1 || y == CORRIDOR + 1;
+            }
+        });
+        building.setBeaconLocationMap(locations);
+        final GridParticleFilter filter = new GridParticleFilter(building, 300, 1.4, new Random(42));
+        filter.reset(building.nodeAt(5, CORRIDOR - 1, 0), 0);
+        GridNode node = null;
+        for (int i = 1; i <= 10; i++) {
+            node = filter.locate(beacons, estimator, i * 3000);
+        }
+        Assert.assertEquals(CORRIDOR - 1, node.getLocation().getY());
+    }
+
+    private Building makeFloors(final Map<Beacon, RectCoordinates> locations) {
+        final Building building = TestBuildings.grid(10, WIDTH, 2, new TestBuildings.Traversable() {
+            @Override
+            public boolean isTraversable(final int x, final int y, final int z) {
+                return y == CORRIDOR;
+            }
+        });
+        building.setFloorHeight(4.0);
+        building.setBeaconLocationMap(locations);
+        return building;
+    }
+
+    private Building makeCorridor(final Map<Beacon, RectCoordinates> locations) {
+        final Building building = TestBuildings.grid(LENGTH, WIDTH, 1, new TestBuildings.Traversable() {
+            @Override
+            public boolean isTraversable(final int x, final int y, final int z) {
+                return y == CORRIDOR;
+            }
+        });
+        building.setBeaconLocationMap(locations);
+        return building;
+    }
+}
@@ -0,0 +1,80 @@
+package walker.blue.core.lib.location;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.TestBuildings;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the MotionGate class
+ */
+public class MotionGateTest {
+
+    @Test
+    public void testRejectsImpossibleJump() {
+        final MotionGate gate = new MotionGate(this.makeBuilding(), 2.0, 3);
+        Assert.assertTrue(gate.accept(new RectCoordinates(0, 0, 0), 0, 0));
+        Assert.assertTrue(gate.accept(new RectCoordinates(2, 0, 0), 0, 1000));
+        Assert.assertFalse(gate.accept(new RectCoordinates(30, 0, 0), 0, 2000));
+        Assert.assertEquals(1, gate.getRejectedCount());
+        // Allowed distance grows with the time since the last accepted fix
+        Assert.assertTrue(gate.accept(new RectCoordinates(5, 0, 0), 0, 2500));
+        Assert.assertEquals(1, gate.getRejectedCount());
+    }
+
+    @Test
+    public void testConfidenceRadiusWidensGate() {
+        final MotionGate gate = new MotionGate(this.makeBuilding(), 2.0, 3);
+        gate.accept(new RectCoordinates(0, 0, 0), 0, 0);
+        Assert.assertFalse(gate.accept(new RectCoordinates(6, 0, 0), 0, 1000));
+        Assert.assertTrue(gate.accept(new RectCoordinates(6, 0, 0), 3, 1000));
+    }
+
+    @Test
+    public void testNodeDistanceScalesSpeed() {
+        final Building building = this.makeBuilding();
+        building.setNodeDistance(0.5);
+        final MotionGate gate = new MotionGate(building, 2.0, 3);
+        gate.accept(new RectCoordinates(0, 0, 0), 0, 0);
+        Assert.assertTrue(gate.accept(new RectCoordinates(5, 0, 0), 0, 1000));
+    }
+
+    @Test
+    public void testAcceptsAfterRepeatedRejections() {
+        final MotionGate gate = new MotionGate(this.makeBuilding(), 2.0, 2);
+        gate.accept(new RectCoordinates(0, 0, 0), 0, 0);
+        Assert.assertFalse(gate.accept(new RectCoordinates(40, 0, 0), 0, 100));
+        Assert.assertFalse(gate.accept(new RectCoordinates(40, 0, 0), 0, 200));
+        Assert.assertTrue(gate.accept(new RectCoordinates(40, 0, 0), 0, 300));
+        Assert.assertTrue(gate.accept(new RectCoordinates(40, 1, 0), 0, 400));
+        Assert.assertEquals(2, gate.getRejectedCount());
+    }
+
+    @Test
+    public void testFloorChangeNearStairsAccepted() {
+        final MotionGate gate = new MotionGate(this.makeBuilding(), 2.0, 3);
+        gate.accept(new RectCoordinates(1, 2, 0), 0, 0);
+        Assert.assertTrue(gate.accept(new RectCoordinates(3, 2, 1), 0, 1000));
+        Assert.assertEquals(0, gate.getRejectedCount());
+    }
+
+    @Test
+    public void testFloorChangeAwayFromStairsRejected() {
+        final MotionGate gate = new MotionGate(this.makeBuilding(), 2.0, 3);
+        gate.accept(new RectCoordinates(20, 20, 0), 0, 0);
+        Assert.assertFalse(gate.accept(new RectCoordinates(20, 20, 1), 0, 1000));
+        Assert.assertEquals(1, gate.getRejectedCount());
+        // Walking towards the stairs for long enough makes the change possible
+        Assert.assertTrue(gate.accept(new RectCoordinates(20, 20, 1), 0, 15000));
+    }
+
+    private Building makeBuilding() {
+        final Building building = TestBuildings.grid(30, 30, 2, TestBuildings.ALL);
+        TestBuildings.addStairs(building, 2, 2, 0);
+        TestBuildings.addStairs(building, 2, 2, 1);
+        return building;
+    }
+}
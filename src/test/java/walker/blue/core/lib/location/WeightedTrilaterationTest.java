@@ -0,0 +1,166 @@
+package walker.blue.core.lib.location;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+import walker.blue.core.lib.beacon.RSSIEstimator;
+import walker.blue.core.lib.types.Building;
+import walker.blue.core.lib.types.TestBuildings;
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the WeightedTrilateration class
+ */
+public class WeightedTrilaterationTest {
+
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+    private static final int SIZE = 10;
+
+    @Test
+    public void testLocatesBetweenBeacons() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = this.makeCornerBeacons(locations, 0);
+        final Building building = this.makeBuilding(locations, SIZE);
+        final WeightedTrilateration trilateration = new WeightedTrilateration(building);
+        final GridNode node = trilateration.locate(beacons, this.makeEstimator(locations, 3, 4));
+        Assert.assertEquals(3.0, trilateration.getLastX(), 0.05);
+        Assert.assertEquals(4.0, trilateration.getLastY(), 0.05);
+        Assert.assertEquals(3, node.getLocation().getX());
+        Assert.assertEquals(4, node.getLocation().getY());
+        Assert.assertEquals(4, trilateration.getLastBeaconCount());
+        Assert.assertTrue(trilateration.getLastRadius() > 0);
+        Assert.assertTrue(trilateration.getLastRadius() < 3);
+    }
+
+    @Test
+    public void testSingleBeaconGivesNoFix() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = this.makeCornerBeacons(locations, 0);
+        final WeightedTrilateration trilateration = new WeightedTrilateration(this.makeBuilding(locations, SIZE));
+        Assert.assertNotNull(trilateration.locate(beacons, this.makeEstimator(locations, 3, 4)));
+        final List<Beacon> single = beacons.subList(3, 4);
+        Assert.assertNull(trilateration.locate(single, this.makeEstimator(locations, 8, 8)));
+        Assert.assertNull(trilateration.locate(single, this.makeEstimator(locations, 8, 8), 0));
+        Assert.assertEquals(3.0, trilateration.getLastX(), 0.05);
+        Assert.assertEquals(4.0, trilateration.getLastY(), 0.05);
+        Assert.assertEquals(4, trilateration.getLastBeaconCount());
+    }
+
+    @Test
+    public void testFailedSnapKeepsPreviousFix() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = this.makeCornerBeacons(locations, 0);
+        // Nodes with x and y of 5 or more cannot be walked, so (9, 9) is
+        // further than the max snap radius from any traversable node
+        final WeightedTrilateration trilateration = new WeightedTrilateration(this.makeBuilding(locations, 5));
+        Assert.assertNotNull(trilateration.locate(beacons, this.makeEstimator(locations, 3, 4)));
+        Assert.assertNull(trilateration.locate(beacons, this.makeEstimator(locations, 9, 9), 0));
+        Assert.assertEquals(3.0, trilateration.getLastX(), 0.05);
+        Assert.assertEquals(4.0, trilateration.getLastY(), 0.05);
+        Assert.assertEquals(0, trilateration.getLastZ());
+    }
+
+    @Test
+    public void testIgnoresStrongerBeaconsOnAdjacentFloor() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = this.makeCornerBeacons(locations, 0);
+        beacons.addAll(this.makeCornerBeacons(locations, 1));
+        final Building building = TestBuildings.grid(SIZE, SIZE, 2, TestBuildings.ALL);
+        building.setBeaconLocationMap(locations);
+        final WeightedTrilateration trilateration = new WeightedTrilateration(building);
+        final RSSIEstimator onFloor = this.makeEstimator(locations, 3, 4);
+        // Every beacon of the floor above is heard stronger than those of
+        // the floor the user is on
+        final RSSIEstimator estimator = new RSSIEstimator() {
+            @Override
+            public double getRSSI(final Beacon beacon) {
+                return locations.get(beacon).getZ() == 1 ? -40 : onFloor.getRSSI(beacon);
+            }
+
+            @Override
+            public double getRSSIVariance(final Beacon beacon) {
+                return 4.0;
+            }
+        };
+        final GridNode node = trilateration.locate(beacons, estimator, 0);
+        Assert.assertEquals(0, node.getLocation().getZ());
+        Assert.assertEquals(3, node.getLocation().getX());
+        Assert.assertEquals(4, node.getLocation().getY());
+        Assert.assertEquals(4, trilateration.getLastBeaconCount());
+    }
+
+    @Test
+    public void testFewNeighboursUseWholeFloor() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        final List<Beacon> beacons = this.makeCornerBeacons(locations, 0);
+        final int[][] far = {{50, 0}, {50, 9}, {59, 5}};
+        for (int i = 0; i < far.length; i++) {
+            final Beacon beacon = new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(2).setBeaconMinor(i).build();
+            locations.put(beacon, new RectCoordinates(far[i][0], far[i][1], 0));
+        }
+        final Building building = TestBuildings.grid(60, SIZE, 1, TestBuildings.ALL);
+        building.setBeaconLocationMap(locations);
+        final WeightedTrilateration trilateration = new WeightedTrilateration(building);
+        Assert.assertNotNull(trilateration.locate(beacons, this.makeEstimator(locations, 3, 4), 0));
+        // Only two of the beacons around the previous fix are heard
+        final List<Beacon> scan = new ArrayList<>(beacons.subList(0, 2));
+        for (final Beacon beacon : locations.keySet()) {
+            if (locations.get(beacon).getX() >= 50) {
+                scan.add(beacon);
+            }
+        }
+        Assert.assertNotNull(trilateration.locate(scan, this.makeEstimator(locations, 5, 4), 0));
+        Assert.assertEquals(WeightedTrilateration.DEFAULT_MAX_BEACONS, trilateration.getLastBeaconCount());
+    }
+
+    private List<Beacon> makeCornerBeacons(final Map<Beacon, RectCoordinates> locations, final int z) {
+        final List<Beacon> beacons = new ArrayList<>();
+        final int[][] corners = {{0, 0}, {9, 0}, {0, 9}, {9, 9}};
+        for (int i = 0; i < corners.length; i++) {
+            final Beacon beacon = new BeaconBuilder()
+                    .setBeaconUUID(UUID)
+                    .setBeaconMajor(1)
+                    .setBeaconMinor(z * corners.length + i)
+                    .build();
+            locations.put(beacon, new RectCoordinates(corners[i][0], corners[i][1], z));
+            beacons.add(beacon);
+        }
+        return beacons;
+    }
+
+    private RSSIEstimator makeEstimator(final Map<Beacon, RectCoordinates> locations, final double x, final double y) {
+        return new RSSIEstimator() {
+            @Override
+            public double getRSSI(final Beacon beacon) {
+                final RectCoordinates location = locations.get(beacon);
+                final double distance = Math.max(1, Math.hypot(location.getX() - x, location.getY() - y));
+                return WeightedTrilateration.DEFAULT_RSSI_AT_ONE_METER - 20 * Math.log10(distance);
+            }
+
+            @Override
+            public double getRSSIVariance(final Beacon beacon) {
+                return 4.0;
+            }
+        };
+    }
+
+    private Building makeBuilding(final Map<Beacon, RectCoordinates> locations, final int blockedFrom) {
+        final Building building = TestBuildings.grid(SIZE, SIZE, 1, new TestBuildings.Traversable() {
+            @Override
+            public boolean isTraversable(final int x, final int y, final int z) {
+                return x < blockedFrom || y < blockedFrom;
+            }
+        });
+        building.setBeaconLocationMap(locations);
+        return building;
+    }
+}
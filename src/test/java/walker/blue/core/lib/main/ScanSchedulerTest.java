@@ -0,0 +1,31 @@
+package walker.blue.core.lib.main;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import walker.blue.core.lib.user.UserState;
+
+/**
+ * Unit tests for the ScanScheduler class
+ */
+public class ScanSchedulerTest {
+
+    @Test
+    public void testOnCourseInterval() {
+        final ScanScheduler scheduler = new ScanScheduler(500, 3000, 5.0, 15.0);
+        Assert.assertEquals(500, scheduler.getUpdateInterval(UserState.ON_COURSE, 2.0));
+        Assert.assertEquals(1750, scheduler.getUpdateInterval(UserState.ON_COURSE, 10.0));
+        Assert.assertEquals(3000, scheduler.getUpdateInterval(UserState.ON_COURSE, 40.0));
+        Assert.assertEquals(3000, scheduler.getCurrentInterval());
+    }
+
+    @Test
+    public void testDenseWhenNotOnCourse() {
+        final ScanScheduler scheduler = new ScanScheduler(500, 3000, 5.0, 15.0);
+        Assert.assertEquals(500, scheduler.getUpdateInterval(UserState.OFF_COURSE, 40.0));
+        Assert.assertEquals(500, scheduler.getUpdateInterval(UserState.IN_WARNING_ZONE, 40.0));
+        Assert.assertEquals(500, scheduler.getUpdateInterval(UserState.UNINITIALIZED, 40.0));
+        Assert.assertEquals(3000, scheduler.getUpdateInterval(UserState.ARRIVED, 0.0));
+    }
+}
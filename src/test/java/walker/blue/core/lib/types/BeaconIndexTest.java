@@ -0,0 +1,120 @@
+package walker.blue.core.lib.types;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the BeaconIndex class
+ */
+public class BeaconIndexTest {
+
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+    private static final double[][] QUERIES = {{0, 0}, {25, 31}, {49, 49}, {12.5, 40.2}, {-20, 10}, {90, 90}};
+
+    @Test
+    public void testWithinRadiusMatchesBruteForce() {
+        final Map<Beacon, RectCoordinates> locations = this.makeLocations(300);
+        final BeaconIndex index = new BeaconIndex(locations, 7);
+        Assert.assertEquals(300, index.size());
+        for (int z = 0; z < 2; z++) {
+            for (final double[] query : QUERIES) {
+                for (final double radius : new double[] {0, 3, 10.5, 100}) {
+                    final Set<Beacon> found = new HashSet<>();
+                    final int count = index.findWithinRadius(query[0], query[1], z, radius, found);
+                    final Set<Beacon> expected = new HashSet<>();
+                    for (final Map.Entry<Beacon, RectCoordinates> entry : locations.entrySet()) {
+                        if (entry.getValue().getZ() == z
+                                && this.distance(entry.getValue(), query[0], query[1]) <= radius) {
+                            expected.add(entry.getKey());
+                        }
+                    }
+                    Assert.assertEquals(expected.size(), count);
+                    Assert.assertEquals(expected, found);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNearestMatchesBruteForce() {
+        final Map<Beacon, RectCoordinates> locations = this.makeLocations(300);
+        final BeaconIndex index = new BeaconIndex(locations, 7);
+        for (int z = 0; z < 2; z++) {
+            for (final double[] query : QUERIES) {
+                for (final int k : new int[] {1, 4, 20}) {
+                    final List<Beacon> found = new ArrayList<>();
+                    Assert.assertEquals(k, index.findNearest(query[0], query[1], z, k, found));
+                    final List<Double> distances = new ArrayList<>();
+                    for (final Map.Entry<Beacon, RectCoordinates> entry : locations.entrySet()) {
+                        if (entry.getValue().getZ() == z) {
+                            distances.add(this.distance(entry.getValue(), query[0], query[1]));
+                        }
+                    }
+                    Collections.sort(distances);
+                    for (int i = 0; i < k; i++) {
+                        Assert.assertEquals(distances.get(i),
+                                this.distance(locations.get(found.get(i)), query[0], query[1]), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFewerBeaconsThanRequested() {
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        locations.put(this.makeBeacon(0), new RectCoordinates(3, 4, 1));
+        locations.put(this.makeBeacon(1), new RectCoordinates(30, 40, 1));
+        final BeaconIndex index = new BeaconIndex(locations);
+        Assert.assertEquals(2, index.getFloorCount());
+        Assert.assertTrue(index.getFloorBeacons(0).isEmpty());
+        Assert.assertEquals(2, index.getFloorBeacons(1).size());
+        Assert.assertTrue(index.getFloorBeacons(5).isEmpty());
+        final List<Beacon> found = new ArrayList<>();
+        Assert.assertEquals(0, index.findNearest(3, 4, 0, 3, found));
+        Assert.assertEquals(2, index.findNearest(100, 100, 1, 3, found));
+        Assert.assertEquals(this.makeBeacon(1), found.get(0));
+        Assert.assertEquals(0, index.findNearest(3, 4, 2, 3, found));
+        Assert.assertEquals(0, index.findWithinRadius(3, 4, 5, 10, found));
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        final BeaconIndex index = new BeaconIndex(null);
+        Assert.assertEquals(0, index.size());
+        Assert.assertEquals(0, index.findNearest(0, 0, 0, 1, new ArrayList<Beacon>()));
+        Assert.assertEquals(0, index.findWithinRadius(0, 0, 0, 10, new ArrayList<Beacon>()));
+    }
+
+    private Map<Beacon, RectCoordinates> makeLocations(final int count) {
+        final Random random = new Random(42);
+        final Map<Beacon, RectCoordinates> locations = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            locations.put(this.makeBeacon(i),
+                    new RectCoordinates(random.nextInt(50), random.nextInt(50), random.nextInt(2)));
+        }
+        return locations;
+    }
+
+    private Beacon makeBeacon(final int minor) {
+        return new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(1).setBeaconMinor(minor).build();
+    }
+
+    private double distance(final RectCoordinates location, final double x, final double y) {
+        return Math.hypot(location.getX() - x, location.getY() - y);
+    }
+}
@@ -0,0 +1,82 @@
+package walker.blue.core.lib.types;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import walker.blue.beacon.lib.beacon.Beacon;
+import walker.blue.beacon.lib.beacon.BeaconBuilder;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the FingerprintDatabase class
+ */
+public class FingerprintDatabaseTest {
+
+    private static final String UUID = "0112233445566778899aabbccddeeff0";
+    private static final int NUM_BEACONS = 6;
+    private static final int NUM_LOCATIONS = 2000;
+    private static final int K = 5;
+
+    @Test
+    public void testMatchesLinearScan() {
+        final Random random = new Random(7);
+        final List<Beacon> beacons = new ArrayList<>();
+        for (int i = 0; i < NUM_BEACONS; i++) {
+            beacons.add(new BeaconBuilder().setBeaconUUID(UUID).setBeaconMajor(1).setBeaconMinor(i).build());
+        }
+        final List<RectCoordinates> locations = new ArrayList<>();
+        final List<Map<Beacon, Double>> readings = new ArrayList<>();
+        final double[][] vectors = new double[NUM_LOCATIONS][NUM_BEACONS];
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            locations.add(new RectCoordinates(i, 0, i % 2));
+            final Map<Beacon, Double> reading = new HashMap<>();
+            for (int b = 0; b < NUM_BEACONS; b++) {
+                vectors[i][b] = -40 - 60 * random.nextDouble();
+                reading.put(beacons.get(b), vectors[i][b]);
+            }
+            readings.add(reading);
+        }
+        final FingerprintDatabase database = new FingerprintDatabase(locations, readings);
+        final int[] indices = new int[K];
+        final double[] distances = new double[K];
+        final double[] query = new double[NUM_BEACONS];
+        for (int trial = 0; trial < 20; trial++) {
+            for (int b = 0; b < NUM_BEACONS; b++) {
+                query[database.getDimension(beacons.get(b))] = -40 - 60 * random.nextDouble();
+            }
+            final double[] expected = new double[NUM_LOCATIONS];
+            final double[] expectedOnFloor = new double[NUM_LOCATIONS / 2];
+            for (int i = 0; i < NUM_LOCATIONS; i++) {
+                double sum = 0;
+                for (int b = 0; b < NUM_BEACONS; b++) {
+                    final double delta = query[database.getDimension(beacons.get(b))] - vectors[i][b];
+                    sum += delta * delta;
+                }
+                expected[i] = Math.sqrt(sum);
+                if (i % 2 == 1) {
+                    expectedOnFloor[i / 2] = expected[i];
+                }
+            }
+            Arrays.sort(expected);
+            Arrays.sort(expectedOnFloor);
+            Assert.assertEquals(K, database.findNearest(query, K, indices, distances));
+            for (int i = 0; i < K; i++) {
+                Assert.assertEquals(expected[i], distances[i], 1e-9);
+            }
+            Assert.assertEquals(K, database.findNearest(query, K, 1, indices, distances));
+            for (int i = 0; i < K; i++) {
+                Assert.assertEquals(expectedOnFloor[i], distances[i], 1e-9);
+                Assert.assertEquals(1, database.getLocation(indices[i]).getZ());
+            }
+            Assert.assertEquals(0, database.findNearest(query, K, 2, indices, distances));
+        }
+    }
+}
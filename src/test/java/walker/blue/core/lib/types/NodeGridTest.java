@@ -0,0 +1,70 @@
+package walker.blue.core.lib.types;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import walker.blue.path.lib.node.GridNode;
+
+/**
+ * Unit tests for the NodeGrid class
+ */
+public class NodeGridTest {
+
+    @Test
+    public void testMatchesNestedLists() {
+        final List<List<List<GridNode>>> searchSpace = this.buildSearchSpace(new int[][] {{4, 4, 4}, {2, 5}});
+        final NodeGrid grid = new NodeGrid(searchSpace);
+        Assert.assertEquals(5, grid.getSizeX());
+        Assert.assertEquals(3, grid.getSizeY());
+        Assert.assertEquals(2, grid.getSizeZ());
+        for (int z = 0; z < searchSpace.size(); z++) {
+            for (int y = 0; y < searchSpace.get(z).size(); y++) {
+                for (int x = 0; x < searchSpace.get(z).get(y).size(); x++) {
+                    final GridNode node = searchSpace.get(z).get(y).get(x);
+                    Assert.assertSame(node, grid.nodeAt(x, y, z));
+                    Assert.assertSame(node, grid.getNode(grid.getNodeId(x, y, z)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        final NodeGrid grid = new NodeGrid(this.buildSearchSpace(new int[][] {{4, 4, 4}, {2, 5}}));
+        Assert.assertFalse(grid.contains(-1, 0, 0));
+        Assert.assertFalse(grid.contains(0, -1, 0));
+        Assert.assertFalse(grid.contains(0, 0, 2));
+        Assert.assertFalse(grid.contains(4, 0, 0));
+        Assert.assertFalse(grid.contains(2, 0, 1));
+        Assert.assertFalse(grid.contains(0, 2, 1));
+        Assert.assertTrue(grid.contains(4, 1, 1));
+        Assert.assertEquals(NodeGrid.NO_NODE, grid.getNodeId(5, 0, 0));
+        Assert.assertNull(grid.getNode(NodeGrid.NO_NODE));
+    }
+
+    /**
+     * Builds a search space with the given row lengths on each floor
+     *
+     * @param rowLengths length of each row, indexed by floor
+     * @return search space with the given layout
+     */
+    private List<List<List<GridNode>>> buildSearchSpace(final int[][] rowLengths) {
+        final List<List<List<GridNode>>> searchSpace = new ArrayList<>();
+        for (int z = 0; z < rowLengths.length; z++) {
+            final List<List<GridNode>> floor = new ArrayList<>();
+            for (int y = 0; y < rowLengths[z].length; y++) {
+                final List<GridNode> row = new ArrayList<>();
+                for (int x = 0; x < rowLengths[z][y]; x++) {
+                    row.add(new GridNode(x, y, z, true));
+                }
+                floor.add(row);
+            }
+            searchSpace.add(floor);
+        }
+        return searchSpace;
+    }
+}
@@ -0,0 +1,90 @@
+package walker.blue.core.lib.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import walker.blue.path.lib.floor.FloorConnector;
+import walker.blue.path.lib.node.GridNode;
+
+/**
+ * Buildings shared by the unit tests
+ */
+public final class TestBuildings {
+
+    /**
+     * Decides which nodes of a test building can be walked
+     */
+    public interface Traversable {
+
+        /**
+         * Checks whether the node at the given coordinates can be walked
+         *
+         * @param x x coordinate of the node
+         * @param y y coordinate of the node
+         * @param z z coordinate of the node
+         * @return boolean indicating whether the node is traversable
+         */
+        boolean isTraversable(int x, int y, int z);
+    }
+
+    /**
+     * Every node can be walked
+     */
+    public static final Traversable ALL = new Traversable() {
+        @Override
+        public boolean isTraversable(final int x, final int y, final int z) {
+            return true;
+        }
+    };
+
+    /**
+     * Not instantiable
+     */
+    private TestBuildings() {
+    }
+
+    /**
+     * Creates a building made of a grid of nodes one meter apart, without
+     * beacons
+     *
+     * @param sizeX Number of nodes along x
+     * @param sizeY Number of nodes along y
+     * @param floors Number of floors
+     * @param traversable Decides which nodes can be walked
+     * @return Building holding the grid
+     */
+    public static Building grid(final int sizeX, final int sizeY, final int floors, final Traversable traversable) {
+        final List<List<List<GridNode>>> searchSpace = new ArrayList<>();
+        for (int z = 0; z < floors; z++) {
+            final List<List<GridNode>> floor = new ArrayList<>();
+            for (int y = 0; y < sizeY; y++) {
+                final List<GridNode> row = new ArrayList<>();
+                for (int x = 0; x < sizeX; x++) {
+                    row.add(new GridNode(x, y, z, traversable.isTraversable(x, y, z)));
+                }
+                floor.add(row);
+            }
+            searchSpace.add(floor);
+        }
+        final Building building = new Building();
+        building.setNodeDistance(1.0);
+        building.setSearchSpace(searchSpace);
+        return building;
+    }
+
+    /**
+     * Replaces the node at the given coordinates of the building with a
+     * staircase and adds it to the floor connectors of the building
+     *
+     * @param building Building created by grid
+     * @param x x coordinate of the staircase
+     * @param y y coordinate of the staircase
+     * @param z z coordinate of the staircase
+     */
+    public static void addStairs(final Building building, final int x, final int y, final int z) {
+        final FloorConnector stairs = new FloorConnector(x, y, z, false, FloorConnector.Type.STAIRS);
+        building.getSearchSpace().get(z).get(y).set(x, stairs);
+        building.setSearchSpace(building.getSearchSpace());
+        building.getFloorConnectors().add(stairs);
+    }
+}
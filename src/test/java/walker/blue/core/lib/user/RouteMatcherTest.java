@@ -0,0 +1,61 @@
+package walker.blue.core.lib.user;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import walker.blue.path.lib.node.GridNode;
+import walker.blue.path.lib.node.RectCoordinates;
+
+/**
+ * Unit tests for the RouteMatcher class
+ */
+public class RouteMatcherTest {
+
+    @Test
+    public void testFollowsRoute() {
+        final RouteMatcher matcher = new RouteMatcher(this.buildRoute());
+        Assert.assertEquals(20.0, matcher.getRouteLength());
+        Assert.assertEquals(0, matcher.update(new RectCoordinates(1, 0, 0)));
+        Assert.assertEquals(0, matcher.update(new RectCoordinates(4, 1, 0)));
+        Assert.assertEquals(1, matcher.update(new RectCoordinates(8, 0, 0)));
+        Assert.assertEquals(2, matcher.update(new RectCoordinates(10, 3, 0)));
+        Assert.assertEquals(3, matcher.update(new RectCoordinates(10, 8, 0)));
+        Assert.assertEquals(18.0, matcher.getDistanceAlongRoute(), 1e-9);
+        final RectCoordinates matched = matcher.getMatchedLocation();
+        Assert.assertEquals(10, matched.getX());
+        Assert.assertEquals(8, matched.getY());
+    }
+
+    @Test
+    public void testIgnoresSidewaysJump() {
+        final RouteMatcher matcher = new RouteMatcher(this.buildRoute());
+        matcher.update(new RectCoordinates(1, 0, 0));
+        matcher.update(new RectCoordinates(3, 0, 0));
+        // Fix jumping into the corridor running next to the route
+        Assert.assertEquals(0, matcher.update(new RectCoordinates(4, 4, 0)));
+        final RectCoordinates matched = matcher.getMatchedLocation();
+        Assert.assertEquals(4, matched.getX());
+        Assert.assertEquals(0, matched.getY());
+        Assert.assertEquals(4.0, matcher.getDistanceAlongRoute(), 1e-9);
+    }
+
+    /**
+     * Builds an L shaped route, ten nodes along x and then ten along y, with
+     * a node every five
+     *
+     * @return Route holding five nodes
+     */
+    private List<GridNode> buildRoute() {
+        final List<GridNode> route = new ArrayList<>();
+        route.add(new GridNode(0, 0, 0, true));
+        route.add(new GridNode(5, 0, 0, true));
+        route.add(new GridNode(10, 0, 0, true));
+        route.add(new GridNode(10, 5, 0, true));
+        route.add(new GridNode(10, 10, 0, true));
+        return route;
+    }
+}